@@ -0,0 +1,92 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.common.collect.AttributesMap;
+import org.sonatype.nexus.common.collect.NestedAttributesMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link AttributesMap} and {@link NestedAttributesMap} access patterns used by request contexts and asset attributes.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AttributesMapBenchmark
+{
+  private AttributesMap attributes;
+
+  private NestedAttributesMap assetAttributes;
+
+  @Setup
+  public void setUp() {
+    attributes = new AttributesMap();
+    attributes.set(String.class, "value");
+    attributes.set("count", 42L);
+
+    assetAttributes = new NestedAttributesMap("attributes", new HashMap<>());
+    NestedAttributesMap checksum = assetAttributes.child("checksum");
+    checksum.set("sha1", "6b4a3e2ef7c3f18e7b8c1a28e9d6f0f0bb3e1c7d");
+    checksum.set("md5", "0cc175b9c0f1b6a831c399e269772661");
+    NestedAttributesMap maven2 = assetAttributes.child("maven2");
+    maven2.set("groupId", "org.sonatype.nexus");
+    maven2.set("artifactId", "nexus-core");
+    maven2.set("version", "3.9.0-01");
+  }
+
+  @Benchmark
+  public String getByType() {
+    return attributes.get(String.class);
+  }
+
+  @Benchmark
+  public Long getByKeyAndType() {
+    return attributes.get("count", Long.class);
+  }
+
+  @Benchmark
+  public Object setAndRemove() {
+    attributes.set("transient", Boolean.TRUE);
+    return attributes.remove("transient");
+  }
+
+  @Benchmark
+  public String nestedGet() {
+    return assetAttributes.child("checksum").get("sha1", String.class);
+  }
+
+  @Benchmark
+  public NestedAttributesMap newNestedChild() {
+    NestedAttributesMap map = new NestedAttributesMap("attributes", new HashMap<>());
+    map.child("content").set("last_modified", 0L);
+    return map;
+  }
+}
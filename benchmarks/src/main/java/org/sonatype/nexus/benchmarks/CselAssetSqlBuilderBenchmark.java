@@ -0,0 +1,63 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.selector.CselAssetSql;
+import org.sonatype.nexus.selector.CselAssetSqlBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CselAssetSqlBuilder} translation of content selector expressions into asset queries.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CselAssetSqlBuilderBenchmark
+{
+  @Param({
+      "format == \"maven2\"",
+      "format == \"maven2\" && path =^ \"/org/sonatype/\"",
+      "format == \"maven2\" && (path =~ \"^/org/sonatype/.*\" || coordinate.groupId == \"com.sonatype\")"
+  })
+  public String expression;
+
+  private CselAssetSqlBuilder builder;
+
+  @Setup
+  public void setUp() {
+    builder = new CselAssetSqlBuilder();
+  }
+
+  @Benchmark
+  public CselAssetSql buildWhereClause() {
+    return builder.buildWhereClause(expression, "maven2", "s0p", "$asset.");
+  }
+}
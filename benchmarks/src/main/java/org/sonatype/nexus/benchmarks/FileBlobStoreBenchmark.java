@@ -0,0 +1,144 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.blobstore.DefaultBlobIdLocationResolver;
+import org.sonatype.nexus.blobstore.api.Blob;
+import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration;
+import org.sonatype.nexus.blobstore.file.FileBlobStore;
+import org.sonatype.nexus.blobstore.file.internal.BlobStoreMetricsStoreImpl;
+import org.sonatype.nexus.blobstore.file.internal.SimpleFileOperations;
+import org.sonatype.nexus.blobstore.internal.PeriodicJobServiceImpl;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
+import org.sonatype.nexus.common.io.DirectoryHelper;
+import org.sonatype.nexus.common.log.DryRunPrefix;
+import org.sonatype.nexus.common.node.NodeAccess;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.reflect.Reflection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.sonatype.nexus.blobstore.api.BlobStore.BLOB_NAME_HEADER;
+import static org.sonatype.nexus.blobstore.api.BlobStore.CREATED_BY_HEADER;
+
+/**
+ * {@link FileBlobStore} create/get cycle against a temporary directory.
+ *
+ * Each invocation stores a blob, reads it back in full and hard-deletes it again so the store stays the same size
+ * across iterations.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileBlobStoreBenchmark
+{
+  private static final Map<String, String> HEADERS = ImmutableMap.of(
+      CREATED_BY_HEADER, "benchmark",
+      BLOB_NAME_HEADER, "benchmark/content.bin"
+  );
+
+  @Param({"1024", "1048576"})
+  public int size;
+
+  private Path directory;
+
+  private FileBlobStore blobStore;
+
+  private byte[] content;
+
+  @Setup
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("file-blobstore-benchmark");
+    content = new byte[size];
+    new Random(size).nextBytes(content);
+
+    String nodeId = UUID.randomUUID().toString();
+    NodeAccess nodeAccess = Reflection.newProxy(NodeAccess.class, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "getId":
+          return nodeId;
+        case "isOldestNode":
+          return true;
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    });
+    File workDirectory = directory.toFile();
+    ApplicationDirectories directories = Reflection.newProxy(ApplicationDirectories.class, (proxy, method, args) -> {
+      if (method.getName().equals("getWorkDirectory")) {
+        return workDirectory;
+      }
+      throw new UnsupportedOperationException(method.getName());
+    });
+
+    BlobStoreConfiguration configuration = new BlobStoreConfiguration();
+    configuration.setName("benchmark");
+    configuration.attributes(FileBlobStore.CONFIG_KEY).set(FileBlobStore.PATH_KEY, directory.toString());
+
+    blobStore = new FileBlobStore(
+        new DefaultBlobIdLocationResolver(),
+        new SimpleFileOperations(),
+        directories,
+        new BlobStoreMetricsStoreImpl(new PeriodicJobServiceImpl(), nodeAccess),
+        nodeAccess,
+        new DryRunPrefix("")
+    );
+    blobStore.init(configuration);
+    blobStore.start();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    blobStore.stop();
+    DirectoryHelper.delete(directory);
+  }
+
+  @Benchmark
+  public long createGetDelete() throws IOException {
+    Blob blob = blobStore.create(new ByteArrayInputStream(content), HEADERS);
+    long read;
+    try (InputStream in = blobStore.get(blob.getId()).getInputStream()) {
+      read = ByteStreams.exhaust(in);
+    }
+    blobStore.deleteHard(blob.getId());
+    return read;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.repository.maven.MavenPath;
+import org.sonatype.nexus.repository.maven.internal.Maven2MavenPathParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Maven2MavenPathParser} parsing of the request paths a Maven client typically issues.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MavenPathParserBenchmark
+{
+  @Param({
+      "/org/sonatype/nexus/nexus-core/3.9.0-01/nexus-core-3.9.0-01.jar",
+      "/org/sonatype/nexus/nexus-core/3.9.0-01/nexus-core-3.9.0-01-sources.jar.sha1",
+      "/org/sonatype/nexus/nexus-core/3.9.0-SNAPSHOT/nexus-core-3.9.0-20180101.120000-12.pom",
+      "/org/sonatype/nexus/nexus-core/maven-metadata.xml",
+      "/.index/nexus-maven-repository-index.properties"
+  })
+  public String path;
+
+  private Maven2MavenPathParser parser;
+
+  @Setup
+  public void setUp() {
+    parser = new Maven2MavenPathParser();
+  }
+
+  @Benchmark
+  public MavenPath parsePath() {
+    return parser.parsePath(path);
+  }
+
+  @Benchmark
+  public MavenPath parsePathCaseInsensitive() {
+    return parser.parsePath(path, false);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.common.hash.HashAlgorithm;
+import org.sonatype.nexus.common.hash.MultiHashingInputStream;
+import org.sonatype.nexus.common.hash.ParallelMultiHashingInputStream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.sonatype.nexus.common.hash.HashAlgorithm.MD5;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA256;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA512;
+
+/**
+ * {@link MultiHashingInputStream} and {@link ParallelMultiHashingInputStream} throughput when hashing content with the
+ * algorithms used by the storage layer.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiHashingInputStreamBenchmark
+{
+  private static final List<HashAlgorithm> STORAGE_ALGORITHMS = ImmutableList.of(SHA1, SHA256, SHA512, MD5);
+
+  @Param({"1024", "65536", "8388608"})
+  public int size;
+
+  @Param({"1", "4"})
+  public int algorithms;
+
+  private byte[] content;
+
+  private List<HashAlgorithm> hashAlgorithms;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void setUp() {
+    content = new byte[size];
+    new Random(size).nextBytes(content);
+    hashAlgorithms = STORAGE_ALGORITHMS.subList(0, algorithms);
+    executor = Executors.newFixedThreadPool(STORAGE_ALGORITHMS.size());
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public Map<HashAlgorithm, HashCode> hash() throws IOException {
+    MultiHashingInputStream in = new MultiHashingInputStream(hashAlgorithms, new ByteArrayInputStream(content));
+    ByteStreams.exhaust(in);
+    return in.hashes();
+  }
+
+  @Benchmark
+  public Map<HashAlgorithm, HashCode> hashInParallel() throws IOException {
+    MultiHashingInputStream in = new ParallelMultiHashingInputStream(hashAlgorithms, new ByteArrayInputStream(content),
+        executor, 65536, 8);
+    ByteStreams.exhaust(in);
+    return in.hashes();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.repository.security.RepositoryViewPermission;
+import org.sonatype.nexus.security.authz.PermissionIndex;
+import org.sonatype.nexus.security.authz.WildcardPermission2;
+
+import org.apache.shiro.authz.Permission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Repository view authorization of a user whose roles grant {@code roles} repository privileges, comparing the scan
+ * over all permissions done by Shiro's realm with a {@link PermissionIndex} lookup.
+ *
+ * The {@code permitted} check is granted by the last role, {@code denied} by none of them.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionIndexBenchmark
+{
+  static final String[] FORMATS = {"maven2", "npm", "nuget", "docker", "raw"};
+
+  @Param({"10", "100", "1000"})
+  public int roles;
+
+  private List<Permission> permissions;
+
+  private PermissionIndex index;
+
+  private Permission permitted;
+
+  private Permission denied;
+
+  @Setup
+  public void setUp() {
+    permissions = new ArrayList<>();
+    for (int i = 0; i < roles; i++) {
+      String format = FORMATS[i % FORMATS.length];
+      permissions.add(new RepositoryViewPermission(format, "repo-" + i, "browse", "read"));
+      permissions.add(new RepositoryViewPermission(format, "repo-" + i + "-hosted", "*"));
+      permissions.add(new WildcardPermission2("nexus:component:repo-" + i + ":read"));
+    }
+    permissions.add(new WildcardPermission2("nexus:repository-view:*:*:browse"));
+    index = new PermissionIndex(permissions);
+
+    String format = FORMATS[(roles - 1) % FORMATS.length];
+    permitted = new RepositoryViewPermission(format, "repo-" + (roles - 1), "read");
+    denied = new RepositoryViewPermission(format, "repo-" + (roles - 1), "delete");
+  }
+
+  @Benchmark
+  public boolean scanPermitted() {
+    return scan(permitted);
+  }
+
+  @Benchmark
+  public boolean scanDenied() {
+    return scan(denied);
+  }
+
+  @Benchmark
+  public boolean indexPermitted() {
+    return index.implies(permitted);
+  }
+
+  @Benchmark
+  public boolean indexDenied() {
+    return index.implies(denied);
+  }
+
+  @Benchmark
+  public PermissionIndex compile() {
+    return new PermissionIndex(permissions);
+  }
+
+  private boolean scan(final Permission permission) {
+    for (Permission each : permissions) {
+      if (each.implies(permission)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
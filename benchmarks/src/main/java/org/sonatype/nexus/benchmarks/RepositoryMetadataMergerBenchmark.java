@@ -0,0 +1,116 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.repository.maven.internal.MavenModels;
+import org.sonatype.nexus.repository.maven.internal.group.RepositoryMetadataMerger;
+import org.sonatype.nexus.repository.maven.internal.group.RepositoryMetadataMerger.Envelope;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link RepositoryMetadataMerger#merge} of artifact level {@code maven-metadata.xml} from several group members.
+ *
+ * Members publish overlapping version ranges, as a proxy and the hosted repositories mirroring it would.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryMetadataMergerBenchmark
+{
+  @Param({"2", "8"})
+  public int members;
+
+  @Param({"20", "500"})
+  public int versions;
+
+  private RepositoryMetadataMerger merger;
+
+  private List<Envelope> envelopes;
+
+  private List<byte[]> serialized;
+
+  @Setup
+  public void setUp() throws IOException {
+    merger = new RepositoryMetadataMerger();
+    envelopes = new ArrayList<>(members);
+    serialized = new ArrayList<>(members);
+    for (int member = 0; member < members; member++) {
+      Metadata metadata = metadata(member * versions / 2, versions);
+      envelopes.add(new Envelope("member-" + member, metadata));
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      MavenModels.writeMetadata(out, metadata);
+      serialized.add(out.toByteArray());
+    }
+  }
+
+  private Metadata metadata(final int firstVersion, final int count) {
+    Versioning versioning = new Versioning();
+    for (int i = firstVersion; i < firstVersion + count; i++) {
+      versioning.addVersion("1." + (i / 10) + "." + (i % 10));
+    }
+    String last = versioning.getVersions().get(count - 1);
+    versioning.setLatest(last);
+    versioning.setRelease(last);
+    versioning.setLastUpdated("20180101000000");
+
+    Metadata metadata = new Metadata();
+    metadata.setModelVersion("1.1.0");
+    metadata.setGroupId("org.sonatype.nexus");
+    metadata.setArtifactId("nexus-benchmarks");
+    metadata.setVersioning(versioning);
+    return metadata;
+  }
+
+  @Benchmark
+  public Metadata merge() {
+    return merger.merge(envelopes);
+  }
+
+  /**
+   * Includes parsing the members' XML, as the group facet does for every merge.
+   */
+  @Benchmark
+  public Metadata parseAndMerge() throws IOException {
+    List<Envelope> parsed = new ArrayList<>(serialized.size());
+    for (int i = 0; i < serialized.size(); i++) {
+      parsed.add(new Envelope("member-" + i, MavenModels.readMetadata(new ByteArrayInputStream(serialized.get(i)))));
+    }
+    return merger.merge(parsed);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Handler;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.Route;
+import org.sonatype.nexus.repository.view.Router;
+import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
+
+import com.google.common.reflect.Reflection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Router} dispatch and {@link TokenMatcher} matching over a docker/npm style route table.
+ *
+ * The {@code path} parameter selects requests matching the first, a middle and the catch-all route, plus one that
+ * falls through to the default route.
+ *
+ * @since 3.9
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouterBenchmark
+{
+  static final String[] PATTERNS = {
+      "/v2/",
+      "/v2/{name:.+}/tags/list",
+      "/v2/{name:.+}/manifests/{reference}",
+      "/v2/{name:.+}/blobs/uploads/{uuid}",
+      "/v2/{name:.+}/blobs/{digest}",
+      "/-/v1/search",
+      "/-/all",
+      "/@{scope}/{name}/-/{tarball}",
+      "/{name}/-/{tarball}",
+      "/@{scope}/{name}",
+      "/{name:.+}/{version}.{extension}"
+  };
+
+  @Param({
+      "/v2/",
+      "/v2/library/alpine/blobs/sha256:6a0c8c7f6c1ae6b0bc5f1b82a9e4c1b4e9b1a2e3d4c5f6a7b8c9d0e1f2a3b4c5",
+      "/org/sonatype/nexus/nexus-core/3.9.0/nexus-core-3.9.0.jar",
+      "/unmatched"
+  })
+  public String path;
+
+  private Router router;
+
+  private TokenMatcher catchAllMatcher;
+
+  private Repository repository;
+
+  private Request request;
+
+  @Setup
+  public void setUp() {
+    Handler ok = context -> HttpResponses.ok();
+
+    Router.Builder builder = new Router.Builder();
+    for (String pattern : PATTERNS) {
+      builder.route(new Route.Builder().matcher(new TokenMatcher(pattern)).handler(ok).create());
+    }
+    router = builder.defaultHandlers(context -> HttpResponses.notFound()).create();
+
+    catchAllMatcher = new TokenMatcher(PATTERNS[PATTERNS.length - 1]);
+
+    repository = Reflection.newProxy(Repository.class, (proxy, method, args) -> {
+      throw new UnsupportedOperationException(method.getName());
+    });
+
+    request = new Request.Builder().action("GET").path(path).build();
+  }
+
+  @Benchmark
+  public Response dispatch() throws Exception {
+    return router.dispatch(repository, request, null);
+  }
+
+  @Benchmark
+  public boolean tokenMatch() {
+    return catchAllMatcher.matches(new Context(repository, request));
+  }
+}
@@ -12,31 +12,53 @@
  */
 package org.sonatype.nexus.internal.event;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.SynchronousQueue;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.Nullable;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.goodies.lifecycle.LifecycleSupport;
 import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.entity.EntityBatchEvent;
+import org.sonatype.nexus.common.entity.EntityEvent;
 import org.sonatype.nexus.common.event.EventAware.Asynchronous;
-import org.sonatype.nexus.thread.NexusExecutorService;
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.thread.NexusThreadFactory;
+import org.sonatype.nexus.thread.internal.MDCAwareRunnable;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+import org.apache.shiro.SecurityUtils;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.TASKS;
+import static org.sonatype.nexus.common.event.EventBusFactory.reentrantEventBus;
 import static org.sonatype.nexus.common.event.EventHelper.asReplicating;
 import static org.sonatype.nexus.common.event.EventHelper.isReplicating;
 import static org.sonatype.nexus.internal.event.EventManagerImpl.HOST_THREAD_POOL_SIZE;
 
 /**
- * Custom {@link Executor} used to dispatch events to {@link Asynchronous} subscribers.
+ * Dispatches events to {@link Asynchronous} subscribers.
  *
  * As Nexus starts, subscribers are called directly by the originating thread. Once the
  * TASKS phase is reached subscribers will be called asynchronously using a thread pool.
@@ -45,6 +67,13 @@ import static org.sonatype.nexus.internal.event.EventManagerImpl.HOST_THREAD_POO
  * and subscribers will again be called directly by the originating thread. This avoids
  * asynchronous subscribers from having services disappear beneath them.
  *
+ * While asynchronous, each subscriber has its own bounded queue, split into lanes which are drained one at a time
+ * by the shared pool. Events about the same entity always go to the same lane, so a subscriber sees them in the order
+ * they were posted; batches of entity events all go to one lane, as their entities may be spread over every lane.
+ * When a queue is full its {@link OverflowPolicy} decides what the posting thread does; it never
+ * runs the subscriber itself. Queue depth, lag and handler time are recorded per subscriber under
+ * {@code EventExecutor.<subscriber>.*}.
+ *
  * @since 3.2
  */
 @Named
@@ -52,13 +81,73 @@ import static org.sonatype.nexus.internal.event.EventManagerImpl.HOST_THREAD_POO
 @Singleton
 class EventExecutor
     extends LifecycleSupport
-    implements Executor
 {
-  private volatile Executor delegate;
+  private static final String CONFIG_PREFIX = EventExecutor.class.getName();
+
+  private static final int DRAIN_BATCH = 64;
+
+  /**
+   * What a posting thread does when the queue of a subscriber is full.
+   *
+   * @since 3.9
+   */
+  enum OverflowPolicy
+  {
+    /**
+     * Wait for the subscriber to make room. Threads already dispatching events spill instead, so subscribers posting
+     * further events cannot deadlock on each other. This is the default.
+     */
+    BLOCK,
+
+    /**
+     * Replace the queued, not yet handled event of the same type about the same entity; otherwise block.
+     */
+    COALESCE,
+
+    /**
+     * Queue the event beyond the configured capacity, so posting threads never wait on a slow subscriber. The queue is
+     * then unbounded, so this only suits subscribers known to keep up.
+     */
+    SPILL
+  }
+
+  private final int queueCapacity;
+
+  private final int lanesPerSubscriber;
+
+  private final OverflowPolicy defaultPolicy;
+
+  private final Map<Object, SubscriberQueue> queues = new ConcurrentHashMap<>();
+
+  private final ThreadLocal<Boolean> dispatching = new ThreadLocal<>();
+
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private MetricRegistry metricRegistry;
+
+  private volatile ThreadPoolExecutor threadPool;
 
   public EventExecutor() {
-    // single-threaded until we reach TASKS phase
-    this.delegate = MoreExecutors.directExecutor();
+    this(SystemPropertiesHelper.getInteger(CONFIG_PREFIX + ".queueCapacity", 10_000),
+        SystemPropertiesHelper.getInteger(CONFIG_PREFIX + ".lanes", 8),
+        OverflowPolicy.valueOf(SystemPropertiesHelper.getString(CONFIG_PREFIX + ".overflowPolicy", "BLOCK")));
+  }
+
+  @VisibleForTesting
+  EventExecutor(final int queueCapacity, final int lanesPerSubscriber, final OverflowPolicy defaultPolicy) {
+    checkArgument(queueCapacity > 0, "Queue capacity must be greater than zero");
+    checkArgument(lanesPerSubscriber > 0, "Lanes per subscriber must be greater than zero");
+    this.queueCapacity = queueCapacity;
+    this.lanesPerSubscriber = lanesPerSubscriber;
+    this.defaultPolicy = checkNotNull(defaultPolicy);
+  }
+
+  /**
+   * @since 3.9
+   */
+  @Inject
+  public void setMetricRegistry(final MetricRegistry metricRegistry) {
+    this.metricRegistry = checkNotNull(metricRegistry);
   }
 
   /**
@@ -66,19 +155,19 @@ class EventExecutor
    */
   @Override
   protected void doStart() throws Exception {
-    // direct hand-off used! Host pool will use caller thread to execute async subscribers when pool full!
-    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
-        0,
+    // pool only ever holds one drain task per lane, so the unbounded work queue stays small
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+        HOST_THREAD_POOL_SIZE,
         HOST_THREAD_POOL_SIZE,
         60L,
         TimeUnit.SECONDS,
-        new SynchronousQueue<>(),
-        new NexusThreadFactory("event", "event-manager"),
-        new CallerRunsPolicy()
+        new LinkedBlockingQueue<>(),
+        new NexusThreadFactory("event", "event-manager")
     );
+    pool.allowCoreThreadTimeOut(true);
 
     // begin distributing events in truly asynchronous fashion
-    delegate = NexusExecutorService.forCurrentSubject(threadPool);
+    threadPool = pool;
   }
 
   /**
@@ -86,16 +175,16 @@ class EventExecutor
    */
   @Override
   protected void doStop() throws Exception {
-    Executor currentExecutor = delegate;
+    ThreadPoolExecutor pool = threadPool;
 
-    if (currentExecutor instanceof NexusExecutorService) {
+    if (pool != null) {
       // go back to single-threaded for rest of shutdown
-      delegate = MoreExecutors.directExecutor();
+      threadPool = null;
 
       // wait for all background event subscribers to finish to have consistent state
-      ((NexusExecutorService) currentExecutor).shutdown();
+      pool.shutdown();
       try {
-        ((NexusExecutorService) currentExecutor).awaitTermination(5L, TimeUnit.SECONDS);
+        pool.awaitTermination(5L, TimeUnit.SECONDS);
       }
       catch (InterruptedException e) {
         log.debug("Interrupted while waiting for termination", e);
@@ -108,22 +197,73 @@ class EventExecutor
    */
   @VisibleForTesting
   boolean isCalmPeriod() {
-    Executor currentExecutor = delegate;
+    return pending.get() == 0;
+  }
 
-    if (currentExecutor instanceof NexusExecutorService) {
-      ThreadPoolExecutor threadPool = (ThreadPoolExecutor)
-          ((NexusExecutorService) currentExecutor).getTargetExecutorService();
+  /**
+   * Registers an asynchronous subscriber, giving it its own queue.
+   *
+   * @since 3.9
+   */
+  void register(final Object subscriber) {
+    queues.computeIfAbsent(subscriber, SubscriberQueue::new);
+  }
 
-      // "calm period" is when we have no queued nor active threads
-      return threadPool.getQueue().isEmpty() && threadPool.getActiveCount() == 0;
+  /**
+   * Unregisters an asynchronous subscriber; events already queued for it are still delivered, the subscriber is only
+   * removed from its queue once that has drained.
+   *
+   * @since 3.9
+   */
+  void unregister(final Object subscriber) {
+    SubscriberQueue queue = queues.remove(subscriber);
+    if (queue != null) {
+      queue.close();
     }
+  }
 
-    return true; // single-threaded mode
+  /**
+   * Posts the event to every asynchronous subscriber interested in it.
+   *
+   * @since 3.9
+   */
+  void post(final Object event) {
+    for (SubscriberQueue queue : queues.values()) {
+      if (queue.handles(event.getClass())) {
+        queue.post(event);
+      }
+    }
   }
 
-  @Override
-  public void execute(final Runnable command) {
-    delegate.execute(inheritIsReplicating(command));
+  private OverflowPolicy policyFor(final Object subscriber) {
+    String policy = SystemPropertiesHelper.getString(
+        CONFIG_PREFIX + ".overflowPolicy." + subscriber.getClass().getName(), null);
+    return policy != null ? OverflowPolicy.valueOf(policy) : defaultPolicy;
+  }
+
+  /**
+   * Event types accepted by the {@link Subscribe} methods of the given subscriber type, found the way {@link EventBus}
+   * finds them.
+   */
+  private static Set<Class<?>> subscribedTypes(final Class<?> subscriberType) {
+    Set<Class<?>> types = new HashSet<>();
+    for (Class<?> type : TypeToken.of(subscriberType).getTypes().rawTypes()) {
+      for (Method method : type.getDeclaredMethods()) {
+        if (method.isAnnotationPresent(Subscribe.class) && !method.isSynthetic()
+            && method.getParameterTypes().length == 1) {
+          types.add(Primitives.wrap(method.getParameterTypes()[0]));
+        }
+      }
+    }
+    return types;
+  }
+
+  @Nullable
+  private static String entityKey(@Nullable final Object event) {
+    if (event instanceof EntityEvent && ((EntityEvent) event).getId() != null) {
+      return ((EntityEvent) event).getId().getValue();
+    }
+    return null;
   }
 
   /**
@@ -143,4 +283,310 @@ class EventExecutor
       }
     };
   }
+
+  /**
+   * Bounded queue of events for a single subscriber, delivered through its own {@link EventBus}.
+   */
+  private class SubscriberQueue
+  {
+    private final Object subscriber;
+
+    private final EventBus eventBus;
+
+    private final Set<Class<?>> subscribedTypes;
+
+    private final Map<Class<?>, Boolean> handledTypes = new ConcurrentHashMap<>();
+
+    private final OverflowPolicy policy;
+
+    private final Semaphore capacity = new Semaphore(queueCapacity);
+
+    private final Lane[] lanes = new Lane[lanesPerSubscriber];
+
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final Map<CoalesceKey, Task> coalescible = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    @Nullable
+    private final EventSubscriberMetrics metrics;
+
+    SubscriberQueue(final Object subscriber) {
+      this.subscriber = subscriber;
+      this.eventBus = reentrantEventBus("nexus.async." + subscriber.getClass().getName());
+      this.eventBus.register(subscriber);
+      this.subscribedTypes = subscribedTypes(subscriber.getClass());
+      this.policy = policyFor(subscriber);
+      for (int i = 0; i < lanes.length; i++) {
+        lanes[i] = new Lane();
+      }
+      this.metrics = metricRegistry != null
+          ? new EventSubscriberMetrics(metricRegistry, subscriber, depth::get)
+          : null;
+    }
+
+    boolean handles(final Class<?> eventType) {
+      return handledTypes.computeIfAbsent(eventType,
+          type -> subscribedTypes.stream().anyMatch(subscribed -> subscribed.isAssignableFrom(type)));
+    }
+
+    void post(final Object event) {
+      if (threadPool == null) {
+        eventBus.post(event);
+        return;
+      }
+
+      String entityKey = entityKey(event);
+      CoalesceKey coalesceKey = policy == OverflowPolicy.COALESCE && entityKey != null
+          ? new CoalesceKey(event.getClass(), entityKey)
+          : null;
+
+      Task task = new Task(event, coalesceKey);
+
+      // bind the posting subject and context to the delivery, whichever thread runs it
+      task.delivery = SecurityUtils.getSubject().associateWith(new MDCAwareRunnable(inheritIsReplicating(task)));
+
+      if (!capacity.tryAcquire()) {
+        if (coalesceKey != null) {
+          Task queued = coalescible.get(coalesceKey);
+          if (queued != null && queued.replace(event)) {
+            if (metrics != null) {
+              metrics.coalesced();
+            }
+            return;
+          }
+        }
+        if (policy == OverflowPolicy.SPILL || Boolean.TRUE.equals(dispatching.get()) || !awaitCapacity()) {
+          task.bounded = false;
+          if (metrics != null) {
+            metrics.spilled();
+          }
+        }
+      }
+
+      if (coalesceKey != null) {
+        coalescible.put(coalesceKey, task);
+      }
+      depth.incrementAndGet();
+      pending.incrementAndGet();
+
+      lanes[Math.floorMod(laneOf(event, entityKey), lanes.length)].submit(task);
+    }
+
+    /**
+     * Events about an entity go to the lane of that entity. Batches go to the first lane, so they are handled in the
+     * order they were posted. Any other event may go to any lane.
+     */
+    private int laneOf(final Object event, @Nullable final String entityKey) {
+      if (entityKey != null) {
+        return entityKey.hashCode();
+      }
+      if (event instanceof EntityBatchEvent) {
+        return 0;
+      }
+      return nextLane.getAndIncrement();
+    }
+
+    /**
+     * Stops the subscriber once the events queued for it have been delivered.
+     */
+    void close() {
+      closed.set(true);
+      if (depth.get() == 0) {
+        release();
+      }
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        eventBus.unregister(subscriber);
+        if (metrics != null) {
+          metrics.remove();
+        }
+      }
+    }
+
+    private boolean awaitCapacity() {
+      long start = System.nanoTime();
+      try {
+        capacity.acquire();
+        return true;
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      finally {
+        if (metrics != null) {
+          metrics.blocked(System.nanoTime() - start);
+        }
+      }
+    }
+
+    private void run(final Task task) {
+      try {
+        if (task.coalesceKey != null) {
+          coalescible.remove(task.coalesceKey, task);
+        }
+        long start = System.nanoTime();
+        if (metrics != null) {
+          metrics.lag(start - task.queuedAt);
+        }
+        try {
+          task.delivery.run();
+        }
+        catch (Exception e) {
+          log.warn("Failed to dispatch event", e);
+        }
+        finally {
+          if (metrics != null) {
+            metrics.handled(System.nanoTime() - start);
+          }
+        }
+      }
+      finally {
+        if (task.bounded) {
+          capacity.release();
+        }
+        if (depth.decrementAndGet() == 0 && closed.get()) {
+          release();
+        }
+        pending.decrementAndGet();
+      }
+    }
+
+    /**
+     * Deliveries queued for one lane, drained by at most one pool thread at a time.
+     */
+    private class Lane
+    {
+      private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+      private final AtomicBoolean scheduled = new AtomicBoolean();
+
+      void submit(final Task task) {
+        tasks.offer(task);
+        schedule();
+      }
+
+      private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+          ThreadPoolExecutor pool = threadPool;
+          try {
+            if (pool == null) {
+              throw new RejectedExecutionException();
+            }
+            pool.execute(this::drain);
+          }
+          catch (RejectedExecutionException e) { // NOSONAR
+            // pool is shutting down, deliver what is left directly
+            drain();
+          }
+        }
+      }
+
+      private void drain() {
+        Boolean wasDispatching = dispatching.get();
+        dispatching.set(true);
+        try {
+          // yield the pool thread after a batch so busy lanes cannot starve others
+          for (int i = 0; i < DRAIN_BATCH; i++) {
+            Task task = tasks.poll();
+            if (task == null) {
+              break;
+            }
+            SubscriberQueue.this.run(task);
+          }
+        }
+        finally {
+          if (wasDispatching == null) {
+            dispatching.remove();
+          }
+          scheduled.set(false);
+        }
+        if (!tasks.isEmpty()) {
+          schedule();
+        }
+      }
+    }
+
+    /**
+     * Event queued for delivery to the subscriber.
+     */
+    private class Task
+        implements Runnable
+    {
+      private final CoalesceKey coalesceKey;
+
+      private final long queuedAt = System.nanoTime();
+
+      private Object event;
+
+      private boolean started;
+
+      private volatile Runnable delivery;
+
+      private volatile boolean bounded = true;
+
+      Task(final Object event, @Nullable final CoalesceKey coalesceKey) {
+        this.event = event;
+        this.coalesceKey = coalesceKey;
+      }
+
+      synchronized boolean replace(final Object newEvent) {
+        if (started) {
+          return false;
+        }
+        event = newEvent;
+        return true;
+      }
+
+      @Override
+      public void run() {
+        Object latestEvent;
+        synchronized (this) {
+          started = true;
+          latestEvent = event;
+        }
+        eventBus.post(latestEvent);
+      }
+    }
+  }
+
+  /**
+   * Identifies queued events which may replace each other.
+   */
+  private static class CoalesceKey
+  {
+    private final Class<?> eventType;
+
+    private final String entityKey;
+
+    CoalesceKey(final Class<?> eventType, final String entityKey) {
+      this.eventType = eventType;
+      this.entityKey = entityKey;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CoalesceKey)) {
+        return false;
+      }
+      CoalesceKey that = (CoalesceKey) o;
+      return eventType.equals(that.eventType) && entityKey.equals(that.entityKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * eventType.hashCode() + entityKey.hashCode();
+    }
+  }
 }
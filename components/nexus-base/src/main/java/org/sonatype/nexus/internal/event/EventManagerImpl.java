@@ -34,7 +34,6 @@ import org.eclipse.sisu.inject.BeanLocator;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.EVENTS;
-import static org.sonatype.nexus.common.event.EventBusFactory.reentrantAsyncEventBus;
 import static org.sonatype.nexus.common.event.EventBusFactory.reentrantEventBus;
 
 /**
@@ -57,8 +56,6 @@ public class EventManagerImpl
 
   private final EventBus eventBus;
 
-  private final EventBus asyncBus;
-
   @Inject
   public EventManagerImpl(final BeanLocator beanLocator, final EventExecutor eventExecutor)
   {
@@ -66,7 +63,6 @@ public class EventManagerImpl
     this.eventExecutor = checkNotNull(eventExecutor);
 
     this.eventBus = reentrantEventBus("nexus");
-    this.asyncBus = reentrantAsyncEventBus("nexus.async", eventExecutor);
   }
 
   /**
@@ -97,7 +93,7 @@ public class EventManagerImpl
     boolean async = object instanceof Asynchronous;
 
     if (async) {
-      asyncBus.register(object);
+      eventExecutor.register(object);
     }
     else {
       eventBus.register(object);
@@ -111,7 +107,7 @@ public class EventManagerImpl
     boolean async = object instanceof Asynchronous;
 
     if (async) {
-      asyncBus.unregister(object);
+      eventExecutor.unregister(object);
     }
     else {
       eventBus.unregister(object);
@@ -124,7 +120,7 @@ public class EventManagerImpl
   public void post(final Object event) {
     // notify synchronous subscribers before going asynchronous
     eventBus.post(event);
-    asyncBus.post(event);
+    eventExecutor.post(event);
   }
 
   @Override
@@ -0,0 +1,114 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.event;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Dispatch metrics of a single asynchronous event subscriber, registered under
+ * {@code EventExecutor.<subscriber class>.*}; further instances of the same class get their identity hash appended.
+ *
+ * @since 3.9
+ */
+class EventSubscriberMetrics
+{
+  private final MetricRegistry registry;
+
+  private final String prefix;
+
+  private final Timer lag;
+
+  private final Timer handler;
+
+  private final Timer blocked;
+
+  private final Meter coalesced;
+
+  private final Meter spilled;
+
+  EventSubscriberMetrics(final MetricRegistry registry, final Object subscriber, final Gauge<Integer> depth) {
+    this.registry = checkNotNull(registry);
+    this.prefix = registerDepth(registry, subscriber, depth);
+    this.lag = registry.timer(name(prefix, "lag"));
+    this.handler = registry.timer(name(prefix, "handler"));
+    this.blocked = registry.timer(name(prefix, "blocked"));
+    this.coalesced = registry.meter(name(prefix, "coalesced"));
+    this.spilled = registry.meter(name(prefix, "spilled"));
+  }
+
+  /**
+   * Registers the depth gauge under the first free prefix, which is then used for the remaining metrics.
+   */
+  private static String registerDepth(final MetricRegistry registry,
+                                      final Object subscriber,
+                                      final Gauge<Integer> depth)
+  {
+    String prefix = name(EventExecutor.class, subscriber.getClass().getName());
+    try {
+      registry.register(name(prefix, "depth"), depth);
+    }
+    catch (IllegalArgumentException e) { // NOSONAR
+      // another instance of the same class got there first
+      prefix = prefix + '@' + Integer.toHexString(System.identityHashCode(subscriber));
+      registry.register(name(prefix, "depth"), depth);
+    }
+    return prefix;
+  }
+
+  /**
+   * Records the time an event waited in the queue before being handled.
+   */
+  void lag(final long nanos) {
+    lag.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records the time the subscriber took to handle an event.
+   */
+  void handled(final long nanos) {
+    handler.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records the time a posting thread waited for room in the full queue.
+   */
+  void blocked(final long nanos) {
+    blocked.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records an event which replaced a queued event about the same entity.
+   */
+  void coalesced() {
+    coalesced.mark();
+  }
+
+  /**
+   * Records an event queued beyond the capacity of the queue.
+   */
+  void spilled() {
+    spilled.mark();
+  }
+
+  void remove() {
+    registry.removeMatching((metricName, metric) -> metricName.startsWith(prefix + '.'));
+  }
+}
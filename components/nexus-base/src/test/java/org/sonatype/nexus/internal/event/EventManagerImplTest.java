@@ -12,24 +12,39 @@
  */
 package org.sonatype.nexus.internal.event;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.entity.DetachedEntityId;
+import org.sonatype.nexus.common.entity.DetachedEntityMetadata;
+import org.sonatype.nexus.common.entity.DetachedEntityVersion;
+import org.sonatype.nexus.common.entity.EntityBatchEvent;
+import org.sonatype.nexus.common.entity.EntityEvent;
 import org.sonatype.nexus.common.event.EventAware.Asynchronous;
 import org.sonatype.nexus.common.event.EventHelper;
 import org.sonatype.nexus.common.event.EventManager;
+import org.sonatype.nexus.internal.event.EventExecutor.OverflowPolicy;
 import org.sonatype.nexus.security.subject.FakeAlmightySubject;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Throwables;
 import com.google.common.eventbus.Subscribe;
 import org.eclipse.sisu.inject.DefaultBeanLocator;
 import org.junit.Test;
 
 import static com.jayway.awaitility.Awaitility.await;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -200,4 +215,206 @@ public class EventManagerImplTest
       Thread.sleep(100); // make sure events are handled by different threads from the pool
     }
   }
+
+  @Test
+  public void entityEventsAreHandledInOrder() throws Exception {
+    EventExecutor executor = new EventExecutor(1000, 4, OverflowPolicy.BLOCK);
+    MetricRegistry metricRegistry = new MetricRegistry();
+    executor.setMetricRegistry(metricRegistry);
+    EventManager underTest = new EventManagerImpl(new DefaultBeanLocator(), executor);
+    EntityHandler handler = new EntityHandler();
+    underTest.register(handler);
+
+    executor.start();
+    try {
+      for (int i = 0; i < 100; i++) {
+        for (String entity : Arrays.asList("a", "b", "c")) {
+          int sequence = i;
+          FakeAlmightySubject.forUserId("testUser").execute(
+              () -> underTest.post(new TestEntityEvent(entity, sequence)));
+        }
+      }
+      await().atMost(5, TimeUnit.SECONDS).until(underTest::isCalmPeriod);
+    }
+    finally {
+      executor.stop();
+    }
+
+    for (String entity : Arrays.asList("a", "b", "c")) {
+      assertThat(handler.sequences(entity), is(IntStream.range(0, 100).boxed().collect(toList())));
+    }
+    assertThat(metricRegistry.timer(
+        "org.sonatype.nexus.internal.event.EventExecutor." + EntityHandler.class.getName() + ".handler").getCount(),
+        is(300L));
+  }
+
+  @Test
+  public void fullQueueNeverRunsSubscriberOnPostingThread() throws Exception {
+    EventExecutor executor = new EventExecutor(1, 1, OverflowPolicy.SPILL);
+    EventManager underTest = new EventManagerImpl(new DefaultBeanLocator(), executor);
+    EntityHandler handler = new EntityHandler();
+    handler.blocker = new CountDownLatch(1);
+    underTest.register(handler);
+
+    executor.start();
+    try {
+      for (int i = 0; i < 5; i++) {
+        int sequence = i;
+        FakeAlmightySubject.forUserId("testUser").execute(
+            () -> underTest.post(new TestEntityEvent("a", sequence)));
+      }
+      assertThat(underTest.isCalmPeriod(), is(false));
+
+      handler.blocker.countDown();
+      await().atMost(5, TimeUnit.SECONDS).until(underTest::isCalmPeriod);
+    }
+    finally {
+      executor.stop();
+    }
+
+    assertThat(handler.sequences("a"), is(Arrays.asList(0, 1, 2, 3, 4)));
+    assertThat(handler.handledByThread, not(hasItem(Thread.currentThread())));
+  }
+
+  @Test
+  public void fullQueueCoalescesEventsAboutSameEntity() throws Exception {
+    EventExecutor executor = new EventExecutor(2, 1, OverflowPolicy.COALESCE);
+    EventManager underTest = new EventManagerImpl(new DefaultBeanLocator(), executor);
+    EntityHandler handler = new EntityHandler();
+    handler.blocker = new CountDownLatch(1);
+    underTest.register(handler);
+
+    executor.start();
+    try {
+      FakeAlmightySubject.forUserId("testUser").execute(() -> underTest.post(new TestEntityEvent("a", 0)));
+      handler.started.await(5, TimeUnit.SECONDS);
+
+      // first update waits in the queue, the next ones replace it
+      for (int i = 1; i < 4; i++) {
+        int sequence = i;
+        FakeAlmightySubject.forUserId("testUser").execute(
+            () -> underTest.post(new TestEntityEvent("a", sequence)));
+      }
+
+      handler.blocker.countDown();
+      await().atMost(5, TimeUnit.SECONDS).until(underTest::isCalmPeriod);
+    }
+    finally {
+      executor.stop();
+    }
+
+    assertThat(handler.sequences("a"), is(Arrays.asList(0, 3)));
+  }
+
+  @Test
+  public void batchEventsAreHandledInOrder() throws Exception {
+    EventExecutor executor = new EventExecutor(1000, 4, OverflowPolicy.BLOCK);
+    EventManager underTest = new EventManagerImpl(new DefaultBeanLocator(), executor);
+    BatchHandler handler = new BatchHandler();
+    underTest.register(handler);
+
+    executor.start();
+    try {
+      for (int i = 0; i < 100; i++) {
+        int sequence = i;
+        FakeAlmightySubject.forUserId("testUser").execute(
+            () -> underTest.post(new EntityBatchEvent(Arrays.asList(
+                new TestEntityEvent("a", sequence), new TestEntityEvent("b", sequence)))));
+      }
+      await().atMost(5, TimeUnit.SECONDS).until(underTest::isCalmPeriod);
+    }
+    finally {
+      executor.stop();
+    }
+
+    for (String entity : Arrays.asList("a", "b")) {
+      assertThat(handler.sequences(entity), is(IntStream.range(0, 100).boxed().collect(toList())));
+    }
+  }
+
+  @Test
+  public void unregisterDeliversQueuedEvents() throws Exception {
+    EventExecutor executor = new EventExecutor(1000, 1, OverflowPolicy.BLOCK);
+    EventManager underTest = new EventManagerImpl(new DefaultBeanLocator(), executor);
+    EntityHandler handler = new EntityHandler();
+    handler.blocker = new CountDownLatch(1);
+    underTest.register(handler);
+
+    executor.start();
+    try {
+      for (int i = 0; i < 3; i++) {
+        int sequence = i;
+        FakeAlmightySubject.forUserId("testUser").execute(
+            () -> underTest.post(new TestEntityEvent("a", sequence)));
+      }
+      handler.started.await(5, TimeUnit.SECONDS);
+      underTest.unregister(handler);
+
+      handler.blocker.countDown();
+      await().atMost(5, TimeUnit.SECONDS).until(underTest::isCalmPeriod);
+
+      FakeAlmightySubject.forUserId("testUser").execute(() -> underTest.post(new TestEntityEvent("a", 3)));
+      await().atMost(5, TimeUnit.SECONDS).until(underTest::isCalmPeriod);
+    }
+    finally {
+      executor.stop();
+    }
+
+    assertThat(handler.sequences("a"), is(Arrays.asList(0, 1, 2)));
+  }
+
+  private static class TestEntityEvent
+      extends EntityEvent
+  {
+    private final int sequence;
+
+    TestEntityEvent(final String id, final int sequence) {
+      super(new DetachedEntityMetadata(new DetachedEntityId(id), new DetachedEntityVersion("1")));
+      this.sequence = sequence;
+    }
+  }
+
+  private class EntityHandler
+      implements Asynchronous
+  {
+    private final Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+
+    private final List<Thread> handledByThread = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private volatile CountDownLatch blocker;
+
+    @Subscribe
+    public void handle(final TestEntityEvent event) throws Exception {
+      started.countDown();
+      if (blocker != null) {
+        blocker.await(5, TimeUnit.SECONDS);
+      }
+      handledByThread.add(Thread.currentThread());
+      handled.computeIfAbsent(event.getId().getValue(), id -> new CopyOnWriteArrayList<>()).add(event.sequence);
+    }
+
+    List<Integer> sequences(final String id) {
+      return handled.getOrDefault(id, emptyList());
+    }
+  }
+
+  private class BatchHandler
+      implements Asynchronous
+  {
+    private final Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+
+    @Subscribe
+    public void handle(final EntityBatchEvent batch) {
+      for (EntityEvent event : batch.getEvents()) {
+        handled.computeIfAbsent(event.getId().getValue(), id -> new CopyOnWriteArrayList<>())
+            .add(((TestEntityEvent) event).sequence);
+      }
+    }
+
+    List<Integer> sequences(final String id) {
+      return handled.getOrDefault(id, emptyList());
+    }
+  }
 }
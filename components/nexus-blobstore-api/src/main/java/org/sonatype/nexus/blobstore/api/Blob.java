@@ -12,9 +12,17 @@
  */
 package org.sonatype.nexus.blobstore.api;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import com.google.common.io.ByteStreams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * A handle for binary data stored within a {@link BlobStore}.
  *
@@ -41,6 +49,47 @@ public interface Blob
    */
   InputStream getInputStream();
 
+  /**
+   * Opens an input stream to {@code length} bytes of the blob's content, starting at {@code offset}. Blob stores
+   * should override this to read only the requested range; by default the preceding content is skipped.
+   *
+   * @throws BlobStoreException may be thrown if the blob is {@link BlobStore#delete deleted} or
+   *                            {@link BlobStore#delete hard deleted}.
+   * @since 3.9
+   */
+  default InputStream getInputStream(final long offset, final long length) {
+    checkArgument(offset >= 0, "Offset must not be negative");
+    checkArgument(length >= 0, "Length must not be negative");
+    InputStream input = getInputStream();
+    try {
+      ByteStreams.skipFully(input, offset);
+    }
+    catch (IOException e) {
+      try {
+        input.close();
+      }
+      catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw new BlobStoreException(e, getId());
+    }
+    return ByteStreams.limit(input, length);
+  }
+
+  /**
+   * Opens a read-only {@link FileChannel} to the blob's content when it is held in a local file, allowing callers to
+   * transfer it without copying through heap buffers. Returns {@code null} when the blob store does not keep content
+   * in local files, in which case callers should use {@link #getInputStream()}.
+   *
+   * @throws BlobStoreException may be thrown if the blob is {@link BlobStore#delete deleted} or
+   *                            {@link BlobStore#delete hard deleted}.
+   * @since 3.9
+   */
+  @Nullable
+  default FileChannel openFileChannel() {
+    return null;
+  }
+
   /**
    * Provides metrics about this Blob.
    *
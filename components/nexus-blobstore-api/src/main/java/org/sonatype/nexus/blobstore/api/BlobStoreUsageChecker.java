@@ -12,6 +12,11 @@
  */
 package org.sonatype.nexus.blobstore.api;
 
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+
 /**
  * Determines if a given {@link BlobId}, with a given {@code name}, is in use by a {@link BlobStore}.
  *
@@ -21,4 +26,20 @@ package org.sonatype.nexus.blobstore.api;
 public interface BlobStoreUsageChecker
 {
   boolean test(BlobStore blobStore, BlobId blobId, String blobName);
+
+  /**
+   * Determines which of the given blobs, mapped to their names, are in use by a {@link BlobStore}.
+   *
+   * Implementations backed by a database should override this to resolve many blobs per query; by default each blob
+   * is checked in turn with {@link #test(BlobStore, BlobId, String)}.
+   *
+   * @return the ids of the blobs which are in use
+   * @since 3.9
+   */
+  default Set<BlobId> test(final BlobStore blobStore, final Map<BlobId, String> blobNames) {
+    return blobNames.entrySet().stream()
+        .filter(entry -> test(blobStore, entry.getKey(), entry.getValue()))
+        .map(Map.Entry::getKey)
+        .collect(toSet());
+  }
 }
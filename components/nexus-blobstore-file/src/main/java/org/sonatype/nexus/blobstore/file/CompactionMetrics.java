@@ -0,0 +1,105 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.file;
+
+import java.util.function.Supplier;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compaction metrics of a single {@link FileBlobStore}, registered under {@code FileBlobStore.<name>.compact.*}.
+ *
+ * @since 3.9
+ */
+class CompactionMetrics
+{
+  private final MetricRegistry registry;
+
+  private final String prefix;
+
+  private final Meter processed;
+
+  private final Meter hardDeleted;
+
+  private final Meter undeleted;
+
+  private final Meter requeued;
+
+  private final Meter failed;
+
+  private final Timer batches;
+
+  CompactionMetrics(final MetricRegistry registry, final String blobStoreName, final Supplier<Integer> pending) {
+    this.registry = checkNotNull(registry);
+    this.prefix = name(FileBlobStore.class, blobStoreName, "compact");
+    this.processed = registry.meter(name(prefix, "processed"));
+    this.hardDeleted = registry.meter(name(prefix, "hardDeleted"));
+    this.undeleted = registry.meter(name(prefix, "undeleted"));
+    this.requeued = registry.meter(name(prefix, "requeued"));
+    this.failed = registry.meter(name(prefix, "failed"));
+    this.batches = registry.timer(name(prefix, "batches"));
+
+    String pendingName = name(prefix, "pending");
+    registry.remove(pendingName);
+    registry.register(pendingName, (Gauge<Integer>) pending::get);
+  }
+
+  /**
+   * Records a soft-deleted blob taken from the deletions index.
+   */
+  void processed() {
+    processed.mark();
+  }
+
+  /**
+   * Records a soft-deleted blob whose files were removed.
+   */
+  void hardDeleted() {
+    hardDeleted.mark();
+  }
+
+  /**
+   * Records a soft-deleted blob found to be still in use and restored.
+   */
+  void undeleted() {
+    undeleted.mark();
+  }
+
+  /**
+   * Records a blob put back in the deletions index for the next compaction.
+   */
+  void requeued() {
+    requeued.mark();
+  }
+
+  /**
+   * Records a blob which could not be compacted and was put back in the deletions index.
+   */
+  void failed() {
+    failed.mark();
+  }
+
+  Timer.Context startBatch() {
+    return batches.time();
+  }
+
+  void remove() {
+    registry.removeMatching((metricName, metric) -> metricName.startsWith(prefix + '.'));
+  }
+}
@@ -17,17 +17,32 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
@@ -59,12 +74,16 @@ import org.sonatype.nexus.common.stateguard.Guarded;
 import org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport;
 import org.sonatype.nexus.logging.task.ProgressLogIntervalHelper;
 import org.sonatype.nexus.scheduling.TaskInterruptedException;
+import org.sonatype.nexus.thread.NexusThreadFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
 import com.squareup.tape.QueueFile;
 import org.joda.time.DateTime;
 
@@ -74,7 +93,6 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.cache.CacheLoader.from;
 import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
 import static java.nio.file.Files.exists;
-import static java.util.Optional.ofNullable;
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.apache.commons.lang3.StringUtils.removeEnd;
 import static org.sonatype.nexus.blobstore.DefaultBlobIdLocationResolver.TEMPORARY_BLOB_ID_PREFIX;
@@ -125,12 +143,25 @@ public class FileBlobStore
   @VisibleForTesting
   public static final String DELETIONS_FILENAME = "deletions.index";
 
+  @VisibleForTesting
+  public static final String COMPACT_CHECKPOINT_FILENAME = "compact.checkpoint";
+
   private static final boolean RETRY_ON_COLLISION =
       SystemPropertiesHelper.getBoolean("nexus.blobstore.retryOnCollision", true);
 
   @VisibleForTesting
   static final int MAX_COLLISION_RETRIES = 8;
 
+  private static final int COMPACT_THREADS = SystemPropertiesHelper.getInteger("nexus.blobstore.compact.threads", 4);
+
+  private static final int COMPACT_BATCH_SIZE =
+      SystemPropertiesHelper.getInteger("nexus.blobstore.compact.batchSize", 1000);
+
+  /**
+   * Depth of the content directories, such as volume chapters, which partition blobs for parallel walks.
+   */
+  private static final int PARTITION_DEPTH = 2;
+
   private Path contentDir;
 
   private final BlobIdLocationResolver blobIdLocationResolver;
@@ -147,6 +178,12 @@ public class FileBlobStore
 
   private QueueFile deletedBlobIndex;
 
+  private QueueFile compactCheckpoint;
+
+  private MetricRegistry metricRegistry = new MetricRegistry();
+
+  private CompactionMetrics compactionMetrics;
+
   private final NodeAccess nodeAccess;
 
   private boolean supportsHardLinkCopy;
@@ -188,6 +225,11 @@ public class FileBlobStore
     this.blobStoreConfiguration = checkNotNull(configuration);
   }
 
+  @Inject
+  public void setMetricRegistry(final MetricRegistry metricRegistry) {
+    this.metricRegistry = checkNotNull(metricRegistry);
+  }
+
   @Override
   protected void doStart() throws Exception {
     Path storageDir = getAbsoluteBlobDir();
@@ -218,10 +260,29 @@ public class FileBlobStore
       metadata.setProperty(REBUILD_DELETED_BLOB_INDEX_KEY, "true");
       metadata.store();
     }
+    File checkpointFile = storageDir.resolve(getCompactCheckpointFilename()).toFile();
+    try {
+      compactCheckpoint = new QueueFile(checkpointFile);
+    }
+    catch (IOException e) {
+      // blobs of an interrupted compaction may be lost, so recover them by rebuilding the deletions index
+      log.error("Unable to load compaction checkpoint file {}, rebuilding deletions index", checkpointFile, e);
+      createEmptyDeletionsIndex(checkpointFile);
+      compactCheckpoint = new QueueFile(checkpointFile);
+      metadata.setProperty(REBUILD_DELETED_BLOB_INDEX_KEY, "true");
+      metadata.store();
+    }
+    compactionMetrics = new CompactionMetrics(metricRegistry, blobStoreConfiguration.getName(), this::pendingDeletions);
     storeMetrics.setStorageDir(storageDir);
     storeMetrics.start();
   }
 
+  private int pendingDeletions() {
+    QueueFile index = deletedBlobIndex;
+    QueueFile checkpoint = compactCheckpoint;
+    return (index != null ? index.size() : 0) + (checkpoint != null ? checkpoint.size() : 0);
+  }
+
   private void maybeUpgradeLegacyIndexFile(final Path deletedIndexPath) throws IOException {
     //While Path#getParent can return null we don't expect that from a configured blob store directory.
     Path legacyDeletionsIndex = deletedIndexPath.getParent().resolve(DELETIONS_FILENAME); //NOSONAR
@@ -237,14 +298,21 @@ public class FileBlobStore
     return nodeAccess.getId() + "-" + DELETIONS_FILENAME;
   }
 
+  private String getCompactCheckpointFilename() {
+    return nodeAccess.getId() + "-" + COMPACT_CHECKPOINT_FILENAME;
+  }
+
   @Override
   protected void doStop() throws Exception {
     liveBlobs = null;
+    compactionMetrics.remove();
     try {
       deletedBlobIndex.close();
+      compactCheckpoint.close();
     }
     finally {
       deletedBlobIndex = null;
+      compactCheckpoint = null;
       storeMetrics.stop();
     }
   }
@@ -547,6 +615,13 @@ public class FileBlobStore
     compact(null);
   }
 
+  /**
+   * Hard deletes soft-deleted blobs which are no longer in use.
+   *
+   * The deletions index is drained in batches of {@code nexus.blobstore.compact.batchSize} blobs, each processed by up
+   * to {@code nexus.blobstore.compact.threads} threads. Blobs of the current batch are moved to a checkpoint file
+   * before they are taken off the index, so a cancelled or failed compaction resumes with them on its next run.
+   */
   @Override
   @Guarded(by = STARTED)
   public synchronized void compact(@Nullable final BlobStoreUsageChecker inUseChecker) {
@@ -554,28 +629,35 @@ public class FileBlobStore
       maybeRebuildDeletedBlobIndex();
 
       log.info("Begin deleted blobs processing");
-      // only process each blob once (in-use blobs may be re-added to the index)
       ProgressLogIntervalHelper progressLogger = new ProgressLogIntervalHelper(log, 60);
-      for (int counter = 0, numBlobs = deletedBlobIndex.size(); counter < numBlobs; counter++) {
-        checkCancellation();
-        byte[] bytes = deletedBlobIndex.peek();
-        if (bytes == null) {
-          return;
-        }
-        deletedBlobIndex.remove();
-        BlobId blobId = new BlobId(new String(bytes, StandardCharsets.UTF_8));
-        FileBlob blob = liveBlobs.getIfPresent(blobId);
-        if (blob == null || blob.isStale()) {
-          maybeCompactBlob(inUseChecker, blobId);
+      ExecutorService executor = Executors.newFixedThreadPool(COMPACT_THREADS,
+          new NexusThreadFactory("blobstore-compact", "blobstore-compact-" + blobStoreConfiguration.getName()));
+      try {
+        List<BlobId> resumed = readCompactCheckpoint();
+        if (!resumed.isEmpty()) {
+          log.info("Resuming compaction of {} blobs from checkpoint", resumed.size());
+          compactBatch(inUseChecker, resumed, executor);
         }
-        else {
-          // still in use, so move it to end of the queue
-          deletedBlobIndex.add(bytes);
+
+        // only process each blob once (in-use blobs may be re-added to the index)
+        int numBlobs = deletedBlobIndex.size();
+        int processed = 0;
+        while (processed < numBlobs) {
+          checkCancellation();
+          List<BlobId> batch = checkpointNextBatch(Math.min(COMPACT_BATCH_SIZE, numBlobs - processed));
+          if (batch.isEmpty()) {
+            break;
+          }
+          compactBatch(inUseChecker, batch, executor);
+          processed += batch.size();
+          progressLogger.info("Elapsed time: {}, processed: {}/{}", progressLogger.getElapsed(),
+              processed, numBlobs);
         }
-        progressLogger.info("Elapsed time: {}, processed: {}/{}", progressLogger.getElapsed(),
-            counter + 1, numBlobs);
+        progressLogger.flush();
+      }
+      finally {
+        executor.shutdownNow();
       }
-      progressLogger.flush();
     }
     catch (BlobStoreException | TaskInterruptedException e) {
       throw e;
@@ -585,17 +667,161 @@ public class FileBlobStore
     }
   }
 
-  private void maybeCompactBlob(@Nullable final BlobStoreUsageChecker inUseChecker, final BlobId blobId)
-      throws IOException
+  private List<BlobId> readCompactCheckpoint() throws IOException {
+    List<BlobId> blobIds = new ArrayList<>(compactCheckpoint.size());
+    compactCheckpoint.forEach((in, length) -> blobIds.add(toBlobId(ByteStreams.toByteArray(in))));
+    return blobIds;
+  }
+
+  /**
+   * Moves up to {@code max} blobs from the head of the deletions index to the compaction checkpoint.
+   */
+  private List<BlobId> checkpointNextBatch(final int max) throws IOException {
+    List<BlobId> batch = new ArrayList<>(max);
+    for (int i = 0; i < max; i++) {
+      byte[] bytes = deletedBlobIndex.peek();
+      if (bytes == null) {
+        break;
+      }
+      // a crash in between leaves the blob in both files, which is harmless as compaction is idempotent
+      compactCheckpoint.add(bytes);
+      deletedBlobIndex.remove();
+      batch.add(toBlobId(bytes));
+    }
+    return batch;
+  }
+
+  private static BlobId toBlobId(final byte[] bytes) {
+    return new BlobId(new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Compacts a batch of blobs recorded in the checkpoint, then clears the checkpoint. Blobs still in use by a live
+   * {@link Blob} handle, or which failed to compact, are put back in the deletions index for the next run.
+   */
+  private void compactBatch(@Nullable final BlobStoreUsageChecker inUseChecker,
+                            final List<BlobId> batch,
+                            final ExecutorService executor) throws IOException
+  {
+    try (Timer.Context timer = compactionMetrics.startBatch()) {
+      Map<BlobId, FileBlobAttributes> candidates = new ConcurrentHashMap<>();
+      Set<BlobId> requeue = ConcurrentHashMap.newKeySet();
+
+      inParallel(executor, batch, blobId -> {
+        compactionMetrics.processed();
+        FileBlob blob = liveBlobs.getIfPresent(blobId);
+        if (blob != null && !blob.isStale()) {
+          // still in use, so move it to end of the queue
+          requeue.add(blobId);
+          compactionMetrics.requeued();
+          return;
+        }
+        FileBlobAttributes attributes = (FileBlobAttributes) getBlobAttributes(blobId);
+        if (attributes == null) {
+          // attributes file is missing, so it's safe to delete the file
+          hardDelete(blobId, requeue);
+        }
+        else {
+          candidates.put(blobId, attributes);
+        }
+      });
+      checkCancellation();
+
+      Set<BlobId> inUse = findBlobsInUse(inUseChecker, candidates);
+      checkCancellation();
+
+      BlobStoreUsageChecker knownUsage = (blobStore, blobId, blobName) -> inUse.contains(blobId);
+      inParallel(executor, candidates.keySet(), blobId -> {
+        try {
+          if (maybeUndeleteBlob(knownUsage, blobId, candidates.get(blobId), false)) {
+            compactionMetrics.undeleted();
+          }
+          else {
+            hardDelete(blobId, requeue);
+          }
+        }
+        catch (RuntimeException e) {
+          log.warn("Unable to compact blob {} in blob store {}, will retry on next compaction", blobId,
+              blobStoreConfiguration.getName(), e);
+          requeue.add(blobId);
+          compactionMetrics.failed();
+        }
+      });
+
+      for (BlobId blobId : requeue) {
+        deletedBlobIndex.add(blobId.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      compactCheckpoint.clear();
+    }
+  }
+
+  /**
+   * Returns the soft-deleted candidates which the checker reports as in use, checking the whole batch at once.
+   */
+  private Set<BlobId> findBlobsInUse(@Nullable final BlobStoreUsageChecker inUseChecker,
+                                     final Map<BlobId, FileBlobAttributes> candidates)
   {
-    Optional<FileBlobAttributes> attributesOption = ofNullable((FileBlobAttributes) getBlobAttributes(blobId));
-    if (!attributesOption.isPresent() || !maybeUndeleteBlob(inUseChecker, blobId, attributesOption.get(), false)) {
-      // attributes file is missing or blob id not in use, so it's safe to delete the file
-      log.debug("Hard deleting blob id: {}, in blob store: {}", blobId, blobStoreConfiguration.getName());
+    if (inUseChecker == null) {
+      return Collections.emptySet();
+    }
+    Map<BlobId, String> blobNames = new HashMap<>();
+    candidates.forEach((blobId, attributes) -> {
+      Optional<String> blobName = blobName(attributes);
+      if (attributes.isDeleted() && blobName.isPresent()) {
+        blobNames.put(blobId, blobName.get());
+      }
+    });
+    return blobNames.isEmpty() ? Collections.emptySet() : inUseChecker.test(this, blobNames);
+  }
+
+  private void hardDelete(final BlobId blobId, final Set<BlobId> requeue) {
+    log.debug("Hard deleting blob id: {}, in blob store: {}", blobId, blobStoreConfiguration.getName());
+    try {
       deleteHard(blobId);
+      compactionMetrics.hardDeleted();
+    }
+    catch (BlobStoreException e) {
+      log.warn("Unable to hard delete blob {} in blob store {}, will retry on next compaction", blobId,
+          blobStoreConfiguration.getName(), e);
+      requeue.add(blobId);
+      compactionMetrics.failed();
     }
   }
 
+  /**
+   * Runs the action for every blob on the executor and waits for all of them to complete.
+   */
+  private void inParallel(final ExecutorService executor,
+                          final Collection<BlobId> blobIds,
+                          final Consumer<BlobId> action)
+  {
+    List<Future<?>> futures = new ArrayList<>(blobIds.size());
+    for (BlobId blobId : blobIds) {
+      futures.add(executor.submit(() -> action.accept(blobId)));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TaskInterruptedException("Thread '" + Thread.currentThread().getName() + "' is interrupted", false);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof BlobStoreException) {
+        throw (BlobStoreException) e.getCause();
+      }
+      throw new BlobStoreException(e.getCause(), null);
+    }
+  }
+
+  private static Optional<String> blobName(final FileBlobAttributes attributes) {
+    return Optional.of(attributes)
+        .map(FileBlobAttributes::getProperties)
+        .map(p -> p.getProperty(HEADER_PREFIX + BLOB_NAME_HEADER));
+  }
+
   public boolean maybeUndeleteBlob(@Nullable final BlobStoreUsageChecker inUseChecker,
                                    final BlobId blobId,
                                    final FileBlobAttributes attributes,
@@ -603,9 +829,7 @@ public class FileBlobStore
   {
     checkNotNull(attributes);
     String logPrefix = isDryRun ? dryRunPrefix.get() : "";
-    Optional<String> blobName = Optional.of(attributes)
-        .map(FileBlobAttributes::getProperties)
-        .map(p -> p.getProperty(HEADER_PREFIX + BLOB_NAME_HEADER));
+    Optional<String> blobName = blobName(attributes);
     if (!blobName.isPresent()) {
       log.error("Property not present: {}, for blob id: {}, at path: {}", HEADER_PREFIX + BLOB_NAME_HEADER,
           blobId, attributes.getPath());
@@ -897,6 +1121,42 @@ public class FileBlobStore
         throw new BlobStoreException(e, getId());
       }
     }
+
+    @Override
+    public InputStream getInputStream(final long offset, final long length) {
+      checkArgument(offset >= 0, "Offset must not be negative");
+      checkArgument(length >= 0, "Length must not be negative");
+      FileChannel channel = openFileChannel();
+      try {
+        channel.position(offset);
+      }
+      catch (IOException e) {
+        try {
+          channel.close();
+        }
+        catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw new BlobStoreException(e, getId());
+      }
+      return new BufferedInputStream(ByteStreams.limit(Channels.newInputStream(channel), length));
+    }
+
+    @Override
+    public FileChannel openFileChannel() {
+      Path contentPath = contentPath(getId());
+      try {
+        checkExists(contentPath, getId());
+        return fileOperations.openFileChannel(contentPath);
+      }
+      catch (BlobStoreException e) {
+        markStale();
+        throw e;
+      }
+      catch (Exception e) {
+        throw new BlobStoreException(e, getId());
+      }
+    }
   }
 
   private interface BlobIngester
@@ -921,6 +1181,54 @@ public class FileBlobStore
     }
   }
 
+  /**
+   * Returns partitions of the content directory, relative to it, whose blobs can be walked independently of each other,
+   * for example in parallel. Directories two levels down, such as volume chapters, are partitions of their whole
+   * subtree; shallower directories are partitions of only the blobs directly within them.
+   *
+   * @see #getBlobIdStream(String)
+   * @since 3.9
+   */
+  public List<String> getBlobIdPartitions() {
+    if (!contentDir.toFile().exists()) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> directories = Files.walk(contentDir, PARTITION_DEPTH, FOLLOW_LINKS)) {
+      return directories
+          .filter(Files::isDirectory)
+          .map(directory -> contentDir.relativize(directory).toString().replace(File.separatorChar, '/'))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the ids of the blobs in a partition of the content directory.
+   *
+   * @see #getBlobIdPartitions()
+   * @since 3.9
+   */
+  public Stream<BlobId> getBlobIdStream(final String partition) {
+    checkArgument(!partition.contains(".."), "path traversal not allowed");
+    Path parent = contentDir.resolve(partition);
+    if (!parent.toFile().exists()) {
+      return Stream.empty();
+    }
+    int depth = partition.isEmpty() ? 0 : parent.getNameCount() - contentDir.getNameCount();
+    try {
+      return Files.walk(parent, depth < PARTITION_DEPTH ? 1 : Integer.MAX_VALUE, FOLLOW_LINKS)
+          .filter(this::isNonTemporaryAttributeFile)
+          .map(this::getBlobIdFromAttributeFilePath)
+          .map(BlobId::new);
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public Stream<BlobId> getDirectPathBlobIdStream(final String prefix) {
     checkArgument(!prefix.contains(".."), "path traversal not allowed");
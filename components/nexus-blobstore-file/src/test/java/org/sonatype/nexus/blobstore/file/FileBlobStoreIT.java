@@ -303,6 +303,24 @@ public class FileBlobStoreIT
     assertThat(deletedBlob, is(nullValue()));
   }
 
+  @Test
+  public void rangedReadReturnsOnlyRequestedBytes() throws Exception {
+    final byte[] content = new byte[TEST_DATA_LENGTH];
+    new Random().nextBytes(content);
+
+    final Blob blob = underTest.create(new ByteArrayInputStream(content), TEST_HEADERS);
+
+    final byte[] output;
+    try (InputStream input = blob.getInputStream(3, 4)) {
+      output = ByteStreams.toByteArray(input);
+    }
+    assertThat(output, is(equalTo(Arrays.copyOfRange(content, 3, 7))));
+
+    try (InputStream input = blob.getInputStream(TEST_DATA_LENGTH - 2, 100)) {
+      assertThat(ByteStreams.toByteArray(input).length, is(2));
+    }
+  }
+
   @Test
   public void testDeleteHardUpdatesMetrics() {
     long initialBlobCount = underTest.getMetrics().getBlobCount();
@@ -17,6 +17,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystemException;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
@@ -26,6 +27,7 @@ import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.blobstore.BlobIdLocationResolver;
 import org.sonatype.nexus.blobstore.api.Blob;
 import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.api.BlobMetrics;
 import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration;
 import org.sonatype.nexus.blobstore.api.BlobStoreException;
 import org.sonatype.nexus.blobstore.api.BlobStoreUsageChecker;
@@ -38,10 +40,12 @@ import org.sonatype.nexus.common.property.PropertiesFile;
 import org.sonatype.nexus.scheduling.CancelableHelper;
 import org.sonatype.nexus.scheduling.TaskInterruptedException;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.HashCode;
 import com.squareup.tape.QueueFile;
+import org.joda.time.DateTime;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -49,13 +53,20 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 
+import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.write;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
@@ -368,6 +379,85 @@ public class FileBlobStoreTest
     verify(fileOperations, never()).delete(any());
   }
 
+  @Test
+  public void testCompactResumesFromCheckpoint() throws Exception {
+    Path contentPath = underTest.getAbsoluteBlobDir().resolve("content");
+    write(contentPath.resolve("test-blob.properties"), deletedBlobStoreProperties);
+
+    QueueFile checkpoint = new QueueFile(checkpointFile().toFile());
+    checkpoint.add("test-blob".getBytes(StandardCharsets.UTF_8));
+    checkpoint.close();
+
+    underTest.doStart();
+    underTest.compact();
+
+    verify(fileOperations).delete(contentPath.resolve("test-blob.bytes"));
+    verify(fileOperations).delete(contentPath.resolve("test-blob.properties"));
+    checkCheckpoint(true);
+    checkDeletionsIndex(true);
+  }
+
+  @Test
+  public void testCompactRequeuesBlobsInUse() throws Exception {
+    when(nodeAccess.isOldestNode()).thenReturn(true);
+    underTest.doStart();
+
+    write(underTest.getAbsoluteBlobDir().resolve("content").resolve("test-blob.properties"),
+        deletedBlobStoreProperties);
+    setRebuildMetadataToTrue();
+
+    BlobId blobId = new BlobId("test-blob");
+    FileBlob liveBlob = underTest.new FileBlob(blobId);
+    liveBlob.refresh(TEST_HEADERS, new BlobMetrics(new DateTime(), "sha1", 40));
+    when(loadingCache.getIfPresent(blobId)).thenReturn(liveBlob);
+
+    underTest.compact();
+
+    verify(fileOperations, never()).delete(any());
+    checkCheckpoint(true);
+    checkDeletionsIndex(false);
+  }
+
+  @Test
+  public void testCompactUndeletesBlobsInUse() throws Exception {
+    when(nodeAccess.isOldestNode()).thenReturn(true);
+    MetricRegistry metricRegistry = new MetricRegistry();
+    underTest.setMetricRegistry(metricRegistry);
+    underTest.doStart();
+
+    Path contentPath = underTest.getAbsoluteBlobDir().resolve("content");
+    write(contentPath.resolve("in-use.properties"), deletedBlobStoreProperties);
+    write(contentPath.resolve("unused.properties"), deletedBlobStoreProperties);
+    setRebuildMetadataToTrue();
+
+    when(blobStoreUsageChecker.test(eq(underTest), anyMapOf(BlobId.class, String.class)))
+        .thenReturn(singleton(new BlobId("in-use")));
+
+    underTest.compact(blobStoreUsageChecker);
+
+    verify(blobStoreUsageChecker, never()).test(eq(underTest), any(BlobId.class), anyString());
+    verify(fileOperations, never()).delete(contentPath.resolve("in-use.bytes"));
+    verify(fileOperations).delete(contentPath.resolve("unused.bytes"));
+    assertThat(underTest.getBlobAttributes(new BlobId("in-use")).isDeleted(), is(false));
+    checkCheckpoint(true);
+    checkDeletionsIndex(true);
+
+    String prefix = MetricRegistry.name(FileBlobStore.class, null, "compact");
+    assertThat(metricRegistry.meter(prefix + ".processed").getCount(), is(2L));
+    assertThat(metricRegistry.meter(prefix + ".undeleted").getCount(), is(1L));
+    assertThat(metricRegistry.meter(prefix + ".hardDeleted").getCount(), is(1L));
+  }
+
+  private Path checkpointFile() {
+    return underTest.getAbsoluteBlobDir().resolve("test-" + FileBlobStore.COMPACT_CHECKPOINT_FILENAME);
+  }
+
+  private void checkCheckpoint(final boolean expectEmpty) throws IOException {
+    QueueFile queueFile = new QueueFile(checkpointFile().toFile());
+    assertThat(queueFile.isEmpty(), is(expectEmpty));
+    queueFile.close();
+  }
+
   @Test
   public void testDeleteWithCorruptAttributes() throws Exception {
     when(nodeAccess.isOldestNode()).thenReturn(true);
@@ -423,4 +513,25 @@ public class FileBlobStoreTest
 
     assertNull(underTest.getBlobAttributes(new BlobId("test-blob")));
   }
+
+  @Test
+  public void getBlobIdPartitionsCoverAllBlobs() throws Exception {
+    Path contentPath = underTest.getContentDir();
+    for (String path : asList("root", "vol-01/vol", "vol-01/chap-01/chap", "vol-01/chap-01/deep/nested/deep",
+        "vol-02/chap-01/other", "vol-02/chap-01/tmp$temp")) {
+      Path propertiesPath = contentPath.resolve(path + ".properties");
+      createDirectories(propertiesPath.getParent());
+      write(propertiesPath, VALID_BLOB_STORE_PROPERTIES);
+    }
+
+    List<String> partitions = underTest.getBlobIdPartitions();
+
+    assertThat(partitions, hasItems("", "vol-01", "vol-01/chap-01", "vol-02", "vol-02/chap-01"));
+    List<BlobId> blobIds = partitions.stream()
+        .flatMap(underTest::getBlobIdStream)
+        .collect(toList());
+    assertThat(blobIds, containsInAnyOrder(underTest.getBlobIdStream().toArray()));
+    assertThat(blobIds, containsInAnyOrder(new BlobId("root"), new BlobId("vol"), new BlobId("chap"),
+        new BlobId("deep"), new BlobId("other")));
+  }
 }
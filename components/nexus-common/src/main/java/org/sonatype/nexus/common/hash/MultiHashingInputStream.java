@@ -15,6 +15,7 @@ package org.sonatype.nexus.common.hash;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -105,4 +106,18 @@ public class MultiHashingInputStream
   public long count() {
     return count;
   }
+
+  /**
+   * For subclasses which feed the hashers themselves; hashers are kept in the order of the given algorithms.
+   */
+  Map<HashAlgorithm, Hasher> hashers() {
+    return Collections.unmodifiableMap(hashers);
+  }
+
+  /**
+   * For subclasses which read from the underlying stream themselves.
+   */
+  void addCount(final long bytes) {
+    count += bytes;
+  }
 }
@@ -0,0 +1,291 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.common.hash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link MultiHashingInputStream} which computes its hashes concurrently, one lane per algorithm.
+ *
+ * Data read from the stream is copied into shared chunks which every lane hashes in order on the given executor, so
+ * the reading thread only pays for the copy. Up to {@code maxPendingChunks} chunks may be in flight before reads wait
+ * for the slowest lane to catch up, which bounds the memory held by each stream. Lanes that cannot be scheduled on the
+ * executor are run by the reading thread; content smaller than a single chunk is hashed directly on the reading thread.
+ *
+ * @since 3.9
+ */
+public class ParallelMultiHashingInputStream
+    extends MultiHashingInputStream
+{
+  private final Executor executor;
+
+  private final int chunkSize;
+
+  private final int maxPendingChunks;
+
+  private final Lane[] lanes;
+
+  private final Semaphore pendingChunks;
+
+  private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+
+  private volatile Throwable failure;
+
+  private byte[] buffer;
+
+  private int position;
+
+  private boolean dispatched;
+
+  private boolean finished;
+
+  public ParallelMultiHashingInputStream(final Iterable<HashAlgorithm> algorithms,
+                                         final InputStream inputStream,
+                                         final Executor executor,
+                                         final int chunkSize,
+                                         final int maxPendingChunks)
+  {
+    super(algorithms, inputStream);
+    checkArgument(chunkSize > 0, "Chunk size must be greater than zero");
+    checkArgument(maxPendingChunks > 0, "Maximum pending chunks must be greater than zero");
+    this.executor = checkNotNull(executor);
+    this.chunkSize = chunkSize;
+    this.maxPendingChunks = maxPendingChunks;
+    this.pendingChunks = new Semaphore(maxPendingChunks);
+    this.lanes = hashers().entrySet().stream().map(Lane::new).toArray(Lane[]::new);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b != -1) {
+      ensureBuffer();
+      buffer[position++] = (byte) b;
+      if (position == chunkSize) {
+        dispatch();
+      }
+      addCount(1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(@Nonnull final byte[] bytes, final int off, final int len) throws IOException {
+    int numRead = in.read(bytes, off, len);
+    if (numRead > 0) {
+      int copied = 0;
+      while (copied < numRead) {
+        ensureBuffer();
+        int length = Math.min(numRead - copied, chunkSize - position);
+        System.arraycopy(bytes, off + copied, buffer, position, length);
+        position += length;
+        copied += length;
+        if (position == chunkSize) {
+          dispatch();
+        }
+      }
+      addCount(numRead);
+    }
+    return numRead;
+  }
+
+  /**
+   * Waits for every lane to finish hashing the data read so far, then gets the resulting {@link HashCode}s.
+   */
+  @Override
+  public Map<HashAlgorithm, HashCode> hashes() {
+    finish();
+    return super.hashes();
+  }
+
+  /**
+   * Gets the time in nanoseconds each algorithm spent hashing the data read from this stream.
+   */
+  public Map<HashAlgorithm, Long> hashingTimes() {
+    finish();
+    Map<HashAlgorithm, Long> times = new HashMap<>(lanes.length);
+    for (Lane lane : lanes) {
+      times.put(lane.algorithm, lane.nanos);
+    }
+    return times;
+  }
+
+  private void finish() {
+    if (finished) {
+      return;
+    }
+    if (buffer != null) {
+      if (!dispatched) {
+        // everything fits in one chunk; hashing it here is cheaper than handing it over
+        for (Lane lane : lanes) {
+          lane.hash(buffer, position);
+        }
+        releaseBuffer(buffer);
+        buffer = null;
+      }
+      else if (position > 0) {
+        dispatch();
+      }
+      else {
+        releaseBuffer(buffer);
+        buffer = null;
+      }
+    }
+    // every chunk returns its permit once all lanes are done with it
+    pendingChunks.acquireUninterruptibly(maxPendingChunks);
+    pendingChunks.release(maxPendingChunks);
+    finished = true;
+    if (failure != null) {
+      throw new IllegalStateException("Failed to hash content", failure);
+    }
+  }
+
+  private void ensureBuffer() throws InterruptedIOException {
+    if (buffer != null) {
+      return;
+    }
+    try {
+      pendingChunks.acquire();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for hashing to catch up");
+    }
+    byte[] free = freeBuffers.poll();
+    buffer = free != null ? free : new byte[chunkSize];
+    position = 0;
+  }
+
+  private void dispatch() {
+    Chunk chunk = new Chunk(buffer, position, lanes.length);
+    buffer = null;
+    position = 0;
+    dispatched = true;
+    for (Lane lane : lanes) {
+      lane.submit(chunk);
+    }
+  }
+
+  private void releaseBuffer(final byte[] bytes) {
+    freeBuffers.offer(bytes);
+    pendingChunks.release();
+  }
+
+  /**
+   * Data shared by all lanes; its buffer is recycled once every lane has hashed it.
+   */
+  private class Chunk
+  {
+    private final byte[] bytes;
+
+    private final int length;
+
+    private final AtomicInteger remaining;
+
+    Chunk(final byte[] bytes, final int length, final int lanes) {
+      this.bytes = bytes;
+      this.length = length;
+      this.remaining = new AtomicInteger(lanes);
+    }
+
+    void release() {
+      if (remaining.decrementAndGet() == 0) {
+        releaseBuffer(bytes);
+      }
+    }
+  }
+
+  /**
+   * Feeds chunks to a single {@link Hasher} in the order they were read, running on at most one thread at a time.
+   */
+  private class Lane
+  {
+    private final HashAlgorithm algorithm;
+
+    private final Hasher hasher;
+
+    private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private long nanos;
+
+    Lane(final Entry<HashAlgorithm, Hasher> entry) {
+      this.algorithm = entry.getKey();
+      this.hasher = entry.getValue();
+    }
+
+    void submit(final Chunk chunk) {
+      chunks.offer(chunk);
+      if (scheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(this::drain);
+        }
+        catch (RejectedExecutionException e) { // NOSONAR
+          drain();
+        }
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        Chunk chunk = chunks.poll();
+        if (chunk == null) {
+          scheduled.set(false);
+          // re-check in case a chunk was offered after the poll but saw this lane still scheduled
+          if (chunks.isEmpty() || !scheduled.compareAndSet(false, true)) {
+            return;
+          }
+          continue;
+        }
+        try {
+          hash(chunk.bytes, chunk.length);
+        }
+        finally {
+          chunk.release();
+        }
+      }
+    }
+
+    void hash(final byte[] bytes, final int length) {
+      long start = System.nanoTime();
+      try {
+        hasher.putBytes(bytes, 0, length);
+      }
+      catch (Throwable e) { // NOSONAR
+        failure = e;
+      }
+      nanos += System.nanoTime() - start;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.common.hash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.MD5;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA256;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA512;
+
+public class ParallelMultiHashingInputStreamTest
+{
+  private static final List<HashAlgorithm> ALGORITHMS = ImmutableList.of(SHA1, SHA256, SHA512, MD5);
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void hashesMatchSequentialHashing() throws IOException {
+    byte[] bytes = randomBytes(100_000);
+
+    MultiHashingInputStream hashingStream = new ParallelMultiHashingInputStream(ALGORITHMS,
+        new ByteArrayInputStream(bytes), executor, 1024, 2);
+    ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+
+    assertThat(hashingStream.hashes(), is(equalTo(sequentialHashes(bytes))));
+    assertThat(hashingStream.count(), is(equalTo((long) bytes.length)));
+  }
+
+  @Test
+  public void singleByteReadsAreHashed() throws IOException {
+    byte[] bytes = randomBytes(5000);
+
+    MultiHashingInputStream hashingStream = new ParallelMultiHashingInputStream(ALGORITHMS,
+        new ByteArrayInputStream(bytes), executor, 100, 3);
+    while (hashingStream.read() != -1) {
+      // keep reading
+    }
+
+    assertThat(hashingStream.hashes(), is(equalTo(sequentialHashes(bytes))));
+    assertThat(hashingStream.count(), is(equalTo((long) bytes.length)));
+  }
+
+  @Test
+  public void contentSmallerThanChunkIsHashed() throws IOException {
+    byte[] bytes = randomBytes(10);
+
+    MultiHashingInputStream hashingStream = new ParallelMultiHashingInputStream(ALGORITHMS,
+        new ByteArrayInputStream(bytes), executor, 1024, 2);
+    ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+
+    assertThat(hashingStream.hashes(), is(equalTo(sequentialHashes(bytes))));
+  }
+
+  @Test
+  public void emptyContentIsHashed() throws IOException {
+    MultiHashingInputStream hashingStream = new ParallelMultiHashingInputStream(ALGORITHMS,
+        new ByteArrayInputStream(new byte[0]), executor, 1024, 2);
+    ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+
+    assertThat(hashingStream.hashes(), is(equalTo(sequentialHashes(new byte[0]))));
+    assertThat(hashingStream.count(), is(0L));
+  }
+
+  @Test
+  public void rejectedLanesAreHashedByReader() throws IOException {
+    byte[] bytes = randomBytes(10_000);
+
+    MultiHashingInputStream hashingStream = new ParallelMultiHashingInputStream(ALGORITHMS,
+        new ByteArrayInputStream(bytes), command -> {
+          throw new RejectedExecutionException();
+        }, 512, 1);
+    ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+
+    assertThat(hashingStream.hashes(), is(equalTo(sequentialHashes(bytes))));
+  }
+
+  @Test
+  public void hashingTimesAreReportedPerAlgorithm() throws IOException {
+    byte[] bytes = randomBytes(10_000);
+
+    ParallelMultiHashingInputStream hashingStream = new ParallelMultiHashingInputStream(ALGORITHMS,
+        new ByteArrayInputStream(bytes), MoreExecutors.directExecutor(), 512, 2);
+    ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+
+    Map<HashAlgorithm, Long> times = hashingStream.hashingTimes();
+    assertThat(times.keySet(), is(equalTo(sequentialHashes(bytes).keySet())));
+    assertThat(hashingStream.hashes(), is(equalTo(sequentialHashes(bytes))));
+  }
+
+  private static byte[] randomBytes(final int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static Map<HashAlgorithm, HashCode> sequentialHashes(final byte[] bytes) throws IOException {
+    try (InputStream in = new ByteArrayInputStream(bytes)) {
+      return Hashes.hash(ALGORITHMS, in);
+    }
+  }
+}
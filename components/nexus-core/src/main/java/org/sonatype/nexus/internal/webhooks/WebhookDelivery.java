@@ -0,0 +1,115 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.webhooks;
+
+import javax.annotation.Nullable;
+
+/**
+ * Webhook POST ready to be sent: the serialized body of one or more {@link org.sonatype.nexus.webhooks.WebhookRequest}s
+ * with its signature, so it can be retried after a restart without access to the originating subscription.
+ *
+ * @since 3.9
+ */
+public class WebhookDelivery
+{
+  private String id;
+
+  private String webhookId;
+
+  private String url;
+
+  private String body;
+
+  @Nullable
+  private String signature;
+
+  private int attempts;
+
+  private long due;
+
+  /**
+   * Delivery id, sent as {@code X-Nexus-Webhook-Delivery}; that of the first request of a batch.
+   */
+  public String getId() {
+    return id;
+  }
+
+  public void setId(final String id) {
+    this.id = id;
+  }
+
+  public String getWebhookId() {
+    return webhookId;
+  }
+
+  public void setWebhookId(final String webhookId) {
+    this.webhookId = webhookId;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(final String url) {
+    this.url = url;
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  public void setBody(final String body) {
+    this.body = body;
+  }
+
+  @Nullable
+  public String getSignature() {
+    return signature;
+  }
+
+  public void setSignature(@Nullable final String signature) {
+    this.signature = signature;
+  }
+
+  /**
+   * Number of failed attempts so far.
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(final int attempts) {
+    this.attempts = attempts;
+  }
+
+  /**
+   * When the next attempt is due, in milliseconds since the epoch.
+   */
+  public long getDue() {
+    return due;
+  }
+
+  public void setDue(final long due) {
+    this.due = due;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "id='" + id + '\'' +
+        ", webhookId='" + webhookId + '\'' +
+        ", url=" + url +
+        ", attempts=" + attempts +
+        '}';
+  }
+}
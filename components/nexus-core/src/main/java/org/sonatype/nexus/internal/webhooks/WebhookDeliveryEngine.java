@@ -0,0 +1,574 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.webhooks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.event.EventAware;
+import org.sonatype.nexus.common.stateguard.Guarded;
+import org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport;
+import org.sonatype.nexus.httpclient.config.HttpClientConfigurationChangedEvent;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+import org.sonatype.nexus.webhooks.WebhookRequest;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.io.BaseEncoding;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+import static org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport.State.STARTED;
+
+/**
+ * Sends {@link WebhookRequest}s on a dedicated thread pool, reusing one long-lived HTTP client per target host.
+ *
+ * Requests are queued per webhook and target URL with at most {@code maxConcurrency} POSTs in flight for each. With a
+ * {@code batchSize} above one, up to that many queued payloads sharing a secret are sent together as a JSON array.
+ * Failed POSTs are kept in a {@link WebhookRetryQueue} under the work directory and retried with exponential backoff
+ * until {@code maxAttempts} is reached; client errors other than timeouts and throttling are not retried.
+ *
+ * @since 3.9
+ */
+@Named
+@ManagedLifecycle(phase = SERVICES)
+@Singleton
+public class WebhookDeliveryEngine
+    extends StateGuardLifecycleSupport
+    implements EventAware
+{
+  private static final String WEBHOOK_ID_HEADER = "X-Nexus-Webhook-ID";
+
+  private static final String WEBHOOK_DELIVERY_HEADER = "X-Nexus-Webhook-Delivery";
+
+  private static final String WEBHOOK_SIGNATURE_HEADER = "X-Nexus-Webhook-Signature";
+
+  private static final String HMAC_SHA1 = "HmacSHA1";
+
+  private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+  private final Provider<CloseableHttpClient> httpClientProvider;
+
+  private final ApplicationDirectories applicationDirectories;
+
+  private final MetricRegistry metricRegistry;
+
+  private final int threads;
+
+  private final int maxConcurrency;
+
+  private final int batchSize;
+
+  private final int maxAttempts;
+
+  private final long retryDelay;
+
+  private final long maxRetryDelay;
+
+  private final ConcurrentMap<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+  private final AtomicInteger backlog = new AtomicInteger();
+
+  private final Timer latency;
+
+  private final Meter delivered;
+
+  private final Meter failed;
+
+  private final Meter dropped;
+
+  private ExecutorService executor;
+
+  private ScheduledExecutorService scheduler;
+
+  private WebhookRetryQueue retryQueue;
+
+  @Inject
+  public WebhookDeliveryEngine(final Provider<CloseableHttpClient> httpClientProvider,
+                               final ApplicationDirectories applicationDirectories,
+                               final MetricRegistry metricRegistry,
+                               @Named("${nexus.webhooks.delivery.threads:-10}") final int threads,
+                               @Named("${nexus.webhooks.delivery.maxConcurrency:-2}") final int maxConcurrency,
+                               @Named("${nexus.webhooks.delivery.batchSize:-1}") final int batchSize,
+                               @Named("${nexus.webhooks.delivery.maxAttempts:-8}") final int maxAttempts,
+                               @Named("${nexus.webhooks.delivery.retryDelay:-10s}") final Time retryDelay,
+                               @Named("${nexus.webhooks.delivery.maxRetryDelay:-1h}") final Time maxRetryDelay)
+  {
+    checkArgument(threads > 0, "Threads must be greater than zero");
+    checkArgument(maxConcurrency > 0, "Maximum concurrency must be greater than zero");
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
+    checkArgument(maxAttempts > 0, "Maximum attempts must be greater than zero");
+    this.httpClientProvider = checkNotNull(httpClientProvider);
+    this.applicationDirectories = checkNotNull(applicationDirectories);
+    this.metricRegistry = checkNotNull(metricRegistry);
+    this.threads = threads;
+    this.maxConcurrency = maxConcurrency;
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.retryDelay = retryDelay.toMillis();
+    this.maxRetryDelay = maxRetryDelay.toMillis();
+
+    this.latency = metricRegistry.timer(name(WebhookDeliveryEngine.class, "latency"));
+    this.delivered = metricRegistry.meter(name(WebhookDeliveryEngine.class, "delivered"));
+    this.failed = metricRegistry.meter(name(WebhookDeliveryEngine.class, "failed"));
+    this.dropped = metricRegistry.meter(name(WebhookDeliveryEngine.class, "dropped"));
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    retryQueue = new WebhookRetryQueue(applicationDirectories.getWorkDirectory("webhooks").toPath(), objectMapper);
+    executor = Executors.newFixedThreadPool(threads, new NexusThreadFactory("webhook-delivery", "webhooks"));
+    scheduler = Executors.newSingleThreadScheduledExecutor(new NexusThreadFactory("webhook-retry", "webhooks"));
+
+    registerGauge("backlog", backlog::get);
+    registerGauge("retries", retryQueue::size);
+
+    List<WebhookDelivery> pending = retryQueue.load();
+    if (!pending.isEmpty()) {
+      log.info("Resuming {} pending webhook deliveries", pending.size());
+      long now = System.currentTimeMillis();
+      for (WebhookDelivery delivery : pending) {
+        retryLater(delivery, Math.max(0, delivery.getDue() - now));
+      }
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    // scheduled retries are already on disk and resumed on the next start
+    scheduler.shutdownNow();
+    executor.shutdown();
+    if (!executor.awaitTermination(5L, TimeUnit.SECONDS)) {
+      log.warn("Failed to terminate thread pool in allotted time");
+    }
+
+    // keep requests which were never attempted for the next start as well
+    for (Lane lane : lanes.values()) {
+      for (List<WebhookRequest> batch = lane.takeBatch(); !batch.isEmpty(); batch = lane.takeBatch()) {
+        backlog.addAndGet(-batch.size());
+        try {
+          retryQueue.put(prepare(batch, batchSize > 1));
+        }
+        catch (IOException e) {
+          log.warn("Unable to keep webhook requests {} for the next start", batch, e);
+        }
+      }
+    }
+    lanes.clear();
+    closeClients();
+
+    metricRegistry.remove(name(WebhookDeliveryEngine.class, "backlog"));
+    metricRegistry.remove(name(WebhookDeliveryEngine.class, "retries"));
+
+    executor = null;
+    scheduler = null;
+  }
+
+  private void registerGauge(final String gaugeName, final Gauge<Integer> gauge) {
+    String fullName = name(WebhookDeliveryEngine.class, gaugeName);
+    metricRegistry.remove(fullName);
+    metricRegistry.register(fullName, gauge);
+  }
+
+  /**
+   * Queues the request for delivery.
+   */
+  @Guarded(by = STARTED)
+  public void deliver(final WebhookRequest request) {
+    checkNotNull(request);
+    Lane lane = lane(request.getWebhook().getId(), request.getUrl().toString());
+    backlog.incrementAndGet();
+    if (lane.add(request)) {
+      drainLater(lane);
+    }
+  }
+
+  /**
+   * Sends the request immediately on the calling thread, without retrying.
+   *
+   * @throws HttpResponseException if the target responds with an exceptional status
+   */
+  @Guarded(by = STARTED)
+  public void send(final WebhookRequest request) throws IOException {
+    checkNotNull(request);
+    post(prepare(singletonList(request), false));
+  }
+
+  /**
+   * Clients pick up HTTP configuration such as proxies when created, so replace them after it has changed.
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final HttpClientConfigurationChangedEvent event) {
+    closeClients();
+  }
+
+  private Lane lane(final String webhookId, final String url) {
+    return lanes.computeIfAbsent(webhookId + ' ' + url, key -> new Lane());
+  }
+
+  private void drainLater(final Lane lane) {
+    try {
+      executor.execute(() -> drain(lane));
+    }
+    catch (RejectedExecutionException e) {
+      log.debug("Webhook delivery is stopping, leaving requests queued", e);
+      lane.abandon();
+    }
+  }
+
+  private void drain(final Lane lane) {
+    boolean drained = false;
+    try {
+      do {
+        WebhookDelivery retry = lane.takeRetry();
+        if (retry != null) {
+          attempt(retry);
+        }
+        List<WebhookRequest> batch = lane.takeBatch();
+        if (!batch.isEmpty()) {
+          backlog.addAndGet(-batch.size());
+          attempt(batch);
+        }
+      }
+      while (lane.keepDraining());
+      drained = true;
+    }
+    finally {
+      if (!drained) {
+        lane.abandon();
+      }
+    }
+  }
+
+  private void attempt(final List<WebhookRequest> batch) {
+    WebhookDelivery delivery;
+    try {
+      delivery = prepare(batch, batchSize > 1);
+    }
+    catch (Exception e) {
+      log.error("Failed to prepare webhook requests: {}", batch, e);
+      dropped.mark(batch.size());
+      return;
+    }
+    attempt(delivery);
+  }
+
+  @VisibleForTesting
+  void attempt(final WebhookDelivery delivery) {
+    try {
+      post(delivery);
+    }
+    catch (Exception e) {
+      failed.mark();
+      delivery.setAttempts(delivery.getAttempts() + 1);
+      if (!isRetryable(e) || delivery.getAttempts() >= maxAttempts) {
+        log.error("Failed to send webhook request: {} after {} attempts", delivery, delivery.getAttempts(), e);
+        giveUp(delivery);
+        return;
+      }
+      long delay = backoff(delivery.getAttempts());
+      log.warn("Failed to send webhook request: {}, retrying in {} ms: {}", delivery, delay, e.toString(),
+          log.isDebugEnabled() ? e : null);
+      delivery.setDue(System.currentTimeMillis() + delay);
+      try {
+        retryQueue.put(delivery);
+      }
+      catch (IOException io) {
+        log.warn("Unable to persist webhook request {} for retry", delivery, io);
+      }
+      retryLater(delivery, delay);
+      return;
+    }
+    delivered.mark();
+    // the request was delivered, so failing to forget it must not get it sent again
+    forget(delivery);
+  }
+
+  private void giveUp(final WebhookDelivery delivery) {
+    dropped.mark();
+    forget(delivery);
+  }
+
+  private void forget(final WebhookDelivery delivery) {
+    try {
+      retryQueue.remove(delivery);
+    }
+    catch (IOException e) {
+      log.warn("Unable to remove webhook request {} from retry queue", delivery, e);
+    }
+  }
+
+  private void retryLater(final WebhookDelivery delivery, final long delay) {
+    try {
+      scheduler.schedule(() -> {
+        Lane lane = lane(delivery.getWebhookId(), delivery.getUrl());
+        if (lane.retry(delivery)) {
+          drainLater(lane);
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException e) {
+      log.debug("Webhook delivery is stopping, leaving {} for the next start", delivery, e);
+    }
+  }
+
+  private static boolean isRetryable(final Exception e) {
+    if (e instanceof HttpResponseException) {
+      int code = ((HttpResponseException) e).getStatusCode();
+      return code >= 500 || code == 408 || code == 429;
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  long backoff(final int attempts) {
+    return Math.min(maxRetryDelay, retryDelay * (1L << Math.min(attempts - 1, 20)));
+  }
+
+  /**
+   * Serializes the payloads of the given requests, which share their webhook, target and secret.
+   */
+  @VisibleForTesting
+  WebhookDelivery prepare(final List<WebhookRequest> requests, final boolean asArray) throws IOException {
+    WebhookRequest first = requests.get(0);
+    Object content = asArray ? requests.stream().map(WebhookRequest::getPayload).collect(toList()) : first.getPayload();
+    String body = objectMapper.writeValueAsString(content);
+
+    WebhookDelivery delivery = new WebhookDelivery();
+    delivery.setId(first.getId());
+    delivery.setWebhookId(first.getWebhook().getId());
+    delivery.setUrl(first.getUrl().toString());
+    delivery.setBody(body);
+
+    // generate HMAC signature of body if secret is present
+    if (!Strings.isNullOrEmpty(first.getSecret())) {
+      delivery.setSignature(sign(body, first.getSecret()));
+    }
+    return delivery;
+  }
+
+  /**
+   * Send HTTP POST request.
+   *
+   * @throws HttpResponseException
+   */
+  private void post(final WebhookDelivery delivery) throws IOException {
+    log.debug("Sending webhook request: {}", delivery);
+
+    HttpPost httpPost = new HttpPost(delivery.getUrl());
+    httpPost.setHeader(WEBHOOK_ID_HEADER, delivery.getWebhookId());
+    httpPost.setHeader(WEBHOOK_DELIVERY_HEADER, delivery.getId());
+    if (delivery.getSignature() != null) {
+      httpPost.setHeader(WEBHOOK_SIGNATURE_HEADER, delivery.getSignature());
+    }
+    httpPost.setEntity(new StringEntity(delivery.getBody(), ContentType.APPLICATION_JSON));
+
+    log.debug("Sending POST request: {}", httpPost);
+    try (Timer.Context ignored = latency.time();
+         CloseableHttpResponse response = client(httpPost.getURI()).execute(httpPost)) {
+      StatusLine status = response.getStatusLine();
+      log.debug("Response status: {}", status);
+
+      // on exceptional status throw exception
+      int code = status.getStatusCode();
+      if (code >= 300) {
+        String message = extractResponseBody(response);
+        if (message == null) {
+          message = status.getReasonPhrase();
+        }
+        throw new HttpResponseException(code, message);
+      }
+
+      // fully read the response so the connection can be reused
+      EntityUtils.consume(response.getEntity());
+    }
+  }
+
+  private CloseableHttpClient client(final URI uri) {
+    return clients.computeIfAbsent(Objects.toString(URIUtils.extractHost(uri), ""), host -> httpClientProvider.get());
+  }
+
+  private void closeClients() {
+    for (String host : clients.keySet()) {
+      CloseableHttpClient client = clients.remove(host);
+      if (client != null) {
+        try {
+          client.close();
+        }
+        catch (IOException e) {
+          log.debug("Failed to close HTTP client for {}", host, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Attempt to extract response body as string.
+   */
+  @Nullable
+  private static String extractResponseBody(final HttpResponse response) throws IOException {
+    HttpEntity entity = response.getEntity();
+    if (entity != null) {
+      try {
+        String body = EntityUtils.toString(entity);
+        if (body != null && body.length() != 0 && !body.contains("<html")) {
+          return body;
+        }
+      }
+      finally {
+        EntityUtils.consume(entity);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Generate HMAC signature (HEX encoded) of given body using secret as key.
+   */
+  private static String sign(final String body, final String secret) {
+    try {
+      Mac mac = Mac.getInstance(HMAC_SHA1);
+      mac.init(new SecretKeySpec(secret.getBytes(UTF_8), HMAC_SHA1));
+      return HEX.encode(mac.doFinal(body.getBytes(UTF_8)));
+    }
+    catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Requests and retries queued for one webhook and target, drained by at most {@code maxConcurrency} threads.
+   */
+  private class Lane
+  {
+    private final Deque<WebhookRequest> requests = new ArrayDeque<>();
+
+    private final Deque<WebhookDelivery> retries = new ArrayDeque<>();
+
+    private int active;
+
+    /**
+     * Returns {@code true} if the caller should start another thread draining this lane.
+     */
+    synchronized boolean add(final WebhookRequest request) {
+      requests.add(request);
+      return claim();
+    }
+
+    /**
+     * Returns {@code true} if the caller should start another thread draining this lane.
+     */
+    synchronized boolean retry(final WebhookDelivery delivery) {
+      retries.add(delivery);
+      return claim();
+    }
+
+    private boolean claim() {
+      if (active < maxConcurrency) {
+        active++;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized void abandon() {
+      active--;
+    }
+
+    @Nullable
+    synchronized WebhookDelivery takeRetry() {
+      return retries.poll();
+    }
+
+    /**
+     * Takes up to {@code batchSize} queued requests sharing the secret of the first.
+     */
+    synchronized List<WebhookRequest> takeBatch() {
+      List<WebhookRequest> batch = new ArrayList<>();
+      WebhookRequest next;
+      while (batch.size() < batchSize && (next = requests.peek()) != null &&
+          (batch.isEmpty() || Objects.equals(next.getSecret(), batch.get(0).getSecret()))) {
+        batch.add(requests.poll());
+      }
+      return batch;
+    }
+
+    /**
+     * Returns {@code false} once the lane is empty, releasing the draining thread.
+     */
+    synchronized boolean keepDraining() {
+      if (requests.isEmpty() && retries.isEmpty()) {
+        active--;
+        return false;
+      }
+      return true;
+    }
+  }
+}
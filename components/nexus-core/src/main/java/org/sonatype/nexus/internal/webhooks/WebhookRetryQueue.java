@@ -0,0 +1,97 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.webhooks;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sonatype.goodies.common.ComponentSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Durable queue of {@link WebhookDelivery}s waiting to be retried, kept as one JSON file per delivery so pending
+ * retries survive a restart. Each file is replaced as a whole when its delivery is updated.
+ *
+ * @since 3.9
+ */
+class WebhookRetryQueue
+    extends ComponentSupport
+{
+  private static final String EXTENSION = ".json";
+
+  private final Path directory;
+
+  private final ObjectMapper objectMapper;
+
+  private final Set<String> ids = ConcurrentHashMap.newKeySet();
+
+  WebhookRetryQueue(final Path directory, final ObjectMapper objectMapper) {
+    this.directory = checkNotNull(directory);
+    this.objectMapper = checkNotNull(objectMapper);
+  }
+
+  /**
+   * Reads all pending deliveries; unreadable entries are logged and discarded.
+   */
+  List<WebhookDelivery> load() throws IOException {
+    Files.createDirectories(directory);
+    List<WebhookDelivery> deliveries = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      for (Path file : files) {
+        try {
+          WebhookDelivery delivery = objectMapper.readValue(file.toFile(), WebhookDelivery.class);
+          ids.add(delivery.getId());
+          deliveries.add(delivery);
+        }
+        catch (IOException e) {
+          log.warn("Discarding unreadable webhook delivery {}", file, log.isDebugEnabled() ? e : null);
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    return deliveries;
+  }
+
+  void put(final WebhookDelivery delivery) throws IOException {
+    Path file = file(delivery);
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    objectMapper.writeValue(temp.toFile(), delivery);
+    Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    ids.add(delivery.getId());
+  }
+
+  void remove(final WebhookDelivery delivery) throws IOException {
+    if (ids.remove(delivery.getId())) {
+      Files.deleteIfExists(file(delivery));
+    }
+  }
+
+  int size() {
+    return ids.size();
+  }
+
+  private Path file(final WebhookDelivery delivery) {
+    return directory.resolve(delivery.getId() + EXTENSION);
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.internal.webhooks
+
+import javax.inject.Provider
+
+import org.sonatype.goodies.common.Time
+import org.sonatype.goodies.testsupport.TestSupport
+import org.sonatype.nexus.common.app.ApplicationDirectories
+import org.sonatype.nexus.repository.webhooks.GlobalRepositoryWebhook
+import org.sonatype.nexus.repository.webhooks.GlobalRepositoryWebhook.RepositoryWebhookPayload
+import org.sonatype.nexus.webhooks.WebhookRequest
+
+import com.codahale.metrics.MetricRegistry
+import org.apache.http.StatusLine
+import org.apache.http.client.methods.CloseableHttpResponse
+import org.apache.http.client.methods.HttpPost
+import org.apache.http.impl.client.CloseableHttpClient
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mock
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.equalTo
+import static org.hamcrest.Matchers.notNullValue
+import static org.mockito.Matchers.any
+import static org.mockito.Mockito.mock
+import static org.mockito.Mockito.times
+import static org.mockito.Mockito.verify
+import static org.mockito.Mockito.when
+
+/**
+ * Tests {@link WebhookDeliveryEngine}
+ */
+class WebhookDeliveryEngineTest
+    extends TestSupport
+{
+  @Mock
+  Provider<CloseableHttpClient> httpClientProvider
+
+  @Mock
+  CloseableHttpClient httpClient
+
+  @Mock
+  ApplicationDirectories applicationDirectories
+
+  private File workDirectory
+
+  private WebhookDeliveryEngine underTest
+
+  @Before
+  void setup() {
+    workDirectory = util.createTempDir()
+    when(applicationDirectories.getWorkDirectory('webhooks')).thenReturn(workDirectory)
+    when(httpClientProvider.get()).thenReturn(httpClient)
+    underTest = engine(3)
+    underTest.start()
+  }
+
+  @After
+  void tearDown() {
+    underTest.stop()
+  }
+
+  private WebhookDeliveryEngine engine(final int batchSize) {
+    return new WebhookDeliveryEngine(httpClientProvider, applicationDirectories, new MetricRegistry(),
+        1, 1, batchSize, 3, Time.seconds(10), Time.hours(1))
+  }
+
+  private static WebhookRequest request(final String action) {
+    return new WebhookRequest(
+        url: new URI('http://example.com/hook'),
+        secret: 'secret',
+        webhook: new GlobalRepositoryWebhook(),
+        payload: new RepositoryWebhookPayload(nodeId: 'nodeId', action: action)
+    )
+  }
+
+  private void respondWith(final int code) {
+    def response = mock(CloseableHttpResponse.class)
+    def statusLine = mock(StatusLine.class)
+    when(statusLine.getStatusCode()).thenReturn(code)
+    when(response.getStatusLine()).thenReturn(statusLine)
+    when(httpClient.execute(any(HttpPost.class))).thenReturn(response)
+  }
+
+  @Test
+  void 'Batched payloads are sent as a JSON array'() {
+    def first = request('CREATED')
+    def second = request('DELETED')
+
+    def delivery = underTest.prepare([first, second], true)
+
+    assertThat(delivery.id, equalTo(first.id))
+    assertThat(delivery.webhookId, equalTo('rm:global:repository'))
+    assertThat(delivery.body,
+        equalTo('[{"nodeId":"nodeId","action":"CREATED"},{"nodeId":"nodeId","action":"DELETED"}]'))
+    assertThat(delivery.signature, notNullValue())
+  }
+
+  @Test
+  void 'Failed delivery is kept for retry across restarts'() {
+    when(httpClient.execute(any(HttpPost.class))).thenThrow(new IOException('connection refused'))
+    def delivery = underTest.prepare([request('CREATED')], false)
+
+    underTest.attempt(delivery)
+
+    assertThat(delivery.attempts, equalTo(1))
+    assertThat(underTest.retryQueue.size(), equalTo(1))
+    assertThat(new File(workDirectory, "${delivery.id}.json").exists(), equalTo(true))
+
+    underTest.stop()
+    underTest = engine(3)
+    underTest.start()
+
+    assertThat(underTest.retryQueue.size(), equalTo(1))
+  }
+
+  @Test
+  void 'Successful retry is removed from the retry queue'() {
+    when(httpClient.execute(any(HttpPost.class))).thenThrow(new IOException('connection refused'))
+    def delivery = underTest.prepare([request('CREATED')], false)
+    underTest.attempt(delivery)
+
+    respondWith(200)
+    underTest.attempt(delivery)
+
+    assertThat(underTest.retryQueue.size(), equalTo(0))
+    assertThat(new File(workDirectory, "${delivery.id}.json").exists(), equalTo(false))
+  }
+
+  @Test
+  void 'Delivered request is not sent again when it cannot be removed from the retry queue'() {
+    when(httpClient.execute(any(HttpPost.class))).thenThrow(new IOException('connection refused'))
+    def delivery = underTest.prepare([request('CREATED')], false)
+    underTest.attempt(delivery)
+
+    // a non-empty directory in place of the persisted request cannot be deleted
+    def persisted = new File(workDirectory, "${delivery.id}.json")
+    assertThat(persisted.delete(), equalTo(true))
+    assertThat(new File(persisted, 'blocker').mkdirs(), equalTo(true))
+
+    respondWith(200)
+    underTest.attempt(delivery)
+
+    assertThat(delivery.attempts, equalTo(1))
+    assertThat(underTest.retryQueue.size(), equalTo(0))
+    verify(httpClient, times(2)).execute(any(HttpPost.class))
+  }
+
+  @Test
+  void 'Client errors are not retried'() {
+    respondWith(400)
+    def delivery = underTest.prepare([request('CREATED')], false)
+
+    underTest.attempt(delivery)
+
+    assertThat(delivery.attempts, equalTo(1))
+    assertThat(underTest.retryQueue.size(), equalTo(0))
+  }
+
+  @Test
+  void 'Retry delay doubles up to the maximum'() {
+    assertThat(underTest.backoff(1), equalTo(10_000L))
+    assertThat(underTest.backoff(2), equalTo(20_000L))
+    assertThat(underTest.backoff(3), equalTo(40_000L))
+    assertThat(underTest.backoff(20), equalTo(3_600_000L))
+  }
+}
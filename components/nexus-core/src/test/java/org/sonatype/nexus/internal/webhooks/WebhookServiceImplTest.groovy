@@ -16,17 +16,21 @@ import java.text.SimpleDateFormat
 
 import javax.inject.Provider
 
+import org.sonatype.goodies.common.Time
 import org.sonatype.goodies.testsupport.TestSupport
+import org.sonatype.nexus.common.app.ApplicationDirectories
 import org.sonatype.nexus.repository.webhooks.GlobalRepositoryWebhook
 import org.sonatype.nexus.repository.webhooks.GlobalRepositoryWebhook.RepositoryWebhookPayload
 import org.sonatype.nexus.repository.webhooks.GlobalRepositoryWebhook.RepositoryWebhookPayload.Repository
 import org.sonatype.nexus.webhooks.WebhookRequest
 
+import com.codahale.metrics.MetricRegistry
 import org.apache.http.StatusLine
 import org.apache.http.client.methods.CloseableHttpResponse
 import org.apache.http.client.methods.HttpPost
 import org.apache.http.impl.client.CloseableHttpClient
 import org.apache.http.util.EntityUtils
+import org.junit.After
 import org.junit.Before
 import org.junit.Test
 import org.mockito.ArgumentCaptor
@@ -49,14 +53,24 @@ class WebhookServiceImplTest
   @Mock
   CloseableHttpClient httpClient
 
+  @Mock
+  ApplicationDirectories applicationDirectories
+
   private ArgumentCaptor<HttpPost> postCaptor
 
+  private WebhookDeliveryEngine deliveryEngine
+
   private WebhookServiceImpl underTest
 
   @Before
   void setup() {
+    when(applicationDirectories.getWorkDirectory('webhooks')).thenReturn(util.createTempDir())
+    deliveryEngine = new WebhookDeliveryEngine(httpClientProvider, applicationDirectories, new MetricRegistry(),
+        1, 1, 1, 3, Time.seconds(10), Time.hours(1))
+    deliveryEngine.start()
+
     underTest = new WebhookServiceImpl(
-        httpClientProvider: httpClientProvider
+        deliveryEngine: deliveryEngine
     )
     when(httpClientProvider.get()).thenReturn(httpClient)
 
@@ -68,6 +82,11 @@ class WebhookServiceImplTest
     when(httpClient.execute(postCaptor.capture())).thenReturn(response)
   }
 
+  @After
+  void tearDown() {
+    deliveryEngine.stop()
+  }
+
   @Test
   void 'Properly marshalls and signs payload'() {
     def request = new WebhookRequest()
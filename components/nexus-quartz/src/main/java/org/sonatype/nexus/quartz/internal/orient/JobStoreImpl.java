@@ -14,11 +14,8 @@ package org.sonatype.nexus.quartz.internal.orient;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -35,6 +32,7 @@ import javax.inject.Singleton;
 import org.sonatype.goodies.common.Time;
 import org.sonatype.goodies.lifecycle.LifecycleSupport;
 import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.event.EventAware;
 import org.sonatype.nexus.common.log.ExceptionSummarizer;
 import org.sonatype.nexus.common.node.NodeAccess;
 import org.sonatype.nexus.common.text.Strings2;
@@ -45,6 +43,8 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 import com.orientechnologies.common.concur.ONeedRetryException;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
@@ -72,7 +72,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Sets.immutableEnumSet;
 import static com.google.common.collect.Sets.union;
-import static java.util.Collections.emptyList;
 import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SCHEMAS;
 import static org.sonatype.nexus.common.log.ExceptionSummarizer.sameType;
 import static org.sonatype.nexus.common.log.ExceptionSummarizer.summarize;
@@ -91,6 +90,12 @@ import static org.sonatype.nexus.scheduling.TaskDescriptorSupport.MULTINODE_KEY;
 /**
  * Orient {@link JobStore}.
  *
+ * Triggers which may be acquired are also held in a {@link TriggerIndex} ordered by next fire time, so acquisition
+ * reads only the triggers due in the requested window instead of loading and sorting all of them on every poll. The
+ * index is updated once the transactions changing triggers commit, and from trigger events of other nodes.
+ *
+ * Database reads run concurrently; changes are serialized as many of them span several triggers of a job or group.
+ *
  * @since 3.0
  */
 @Named("orient")
@@ -98,7 +103,7 @@ import static org.sonatype.nexus.scheduling.TaskDescriptorSupport.MULTINODE_KEY;
 @Singleton
 public class JobStoreImpl
     extends LifecycleSupport
-    implements JobStore
+    implements JobStore, EventAware
 {
   private static final Set<TriggerEntity.State> ACQUIRABLE_ORPHAN_STATES = immutableEnumSet(ACQUIRED, BLOCKED, WAITING);
 
@@ -120,6 +125,8 @@ public class JobStoreImpl
 
   private final ExceptionSummarizer acquireNextTriggersSummarizer = summarize(sameType(), warn(log));
 
+  private final TriggerIndex triggerIndex = new TriggerIndex(ALL_ACQUIRABLE_STATES);
+
   private SchedulerSignaler signaler;
 
   private String instanceName;
@@ -187,16 +194,20 @@ public class JobStoreImpl
 
   private final Object monitor = new Object();
 
+  /**
+   * Trigger index updates made by the current operation, applied once its transaction commits.
+   *
+   * Guarded by {@link #monitor}.
+   */
+  private final List<Runnable> indexUpdates = new ArrayList<>();
+
   /**
    * Execute operation within transaction and propagate/translate exceptions.
    */
   private <T> T execute(final Operation<T> operation) throws JobPersistenceException {
     try {
       synchronized (monitor) {
-        return inTx(databaseInstance)
-            .retryOn(ONeedRetryException.class, ORecordNotFoundException.class)
-            .throwing(JobPersistenceException.class)
-            .call(operation::execute);
+        return executeUpdatingIndex(operation);
       }
     }
     catch (Exception e) {
@@ -206,6 +217,48 @@ public class JobStoreImpl
     }
   }
 
+  /**
+   * Execute read-only operation within transaction and propagate/translate exceptions.
+   *
+   * Unlike {@link #execute} this doesn't wait for other operations, it must not change any entity.
+   */
+  private <T> T read(final Operation<T> operation) throws JobPersistenceException {
+    try {
+      return inTx(databaseInstance)
+          .retryOn(ONeedRetryException.class, ORecordNotFoundException.class)
+          .throwing(JobPersistenceException.class)
+          .call(operation::execute);
+    }
+    catch (Exception e) {
+      log.warn("Execution failed", e);
+      Throwables.propagateIfPossible(e, JobPersistenceException.class);
+      throw new JobPersistenceException(e.toString(), e);
+    }
+  }
+
+  /**
+   * Execute operation within transaction, applying its trigger index updates once committed.
+   *
+   * Caller must hold {@link #monitor}.
+   */
+  private <T> T executeUpdatingIndex(final Operation<T> operation) throws JobPersistenceException {
+    try {
+      T result = inTx(databaseInstance)
+          .retryOn(ONeedRetryException.class, ORecordNotFoundException.class)
+          .throwing(JobPersistenceException.class)
+          .call(db -> {
+            // updates of a previous attempt were rolled back
+            indexUpdates.clear();
+            return operation.execute(db);
+          });
+      indexUpdates.forEach(Runnable::run);
+      return result;
+    }
+    finally {
+      indexUpdates.clear();
+    }
+  }
+
   /**
    * Execute operation and propagate exceptions.
    *
@@ -221,6 +274,62 @@ public class JobStoreImpl
     }
   }
 
+  //
+  // Trigger index
+  //
+
+  private void addTrigger(final ODatabaseDocumentTx db, final TriggerEntity entity) {
+    triggerEntityAdapter.addEntity(db, entity);
+    indexLater(entity);
+  }
+
+  private void editTrigger(final ODatabaseDocumentTx db, final TriggerEntity entity) {
+    triggerEntityAdapter.editEntity(db, entity);
+    indexLater(entity);
+  }
+
+  private void deleteTrigger(final ODatabaseDocumentTx db, final TriggerEntity entity) {
+    triggerEntityAdapter.deleteEntity(db, entity);
+    unindexLater(entity.getValue().getKey());
+  }
+
+  /**
+   * Queues update of the index entry to the current state of the trigger, captured now.
+   */
+  private void indexLater(final TriggerEntity entity) {
+    TriggerKey key = entity.getValue().getKey();
+    TriggerIndex.Entry entry = triggerIndex.entry(entity);
+    indexUpdates.add(() -> triggerIndex.put(key, entry));
+  }
+
+  private void unindexLater(final TriggerKey key) {
+    indexUpdates.add(() -> triggerIndex.remove(key));
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final TriggerCreatedEvent event) {
+    if (!event.isLocal()) {
+      triggerIndex.put(event.getTrigger());
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final TriggerUpdatedEvent event) {
+    if (!event.isLocal()) {
+      triggerIndex.put(event.getTrigger());
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final TriggerDeletedEvent event) {
+    if (!event.isLocal()) {
+      triggerIndex.remove(event.getTrigger().getValue().getKey());
+    }
+  }
+
   //
   // Lifecycle
   //
@@ -269,14 +378,20 @@ public class JobStoreImpl
 
             // remove COMPLETE ones, others needs awake
             if (COMPLETE == triggerEntity.getState()) {
-              triggerEntityAdapter.deleteEntity(db, triggerEntity);
+              deleteTrigger(db, triggerEntity);
             }
             else {
               applyMisfire(db, triggerEntity);
-              triggerEntityAdapter.editEntity(db, triggerEntity);
+              editTrigger(db, triggerEntity);
             }
           }
 
+          // (re)build index of all triggers, including those of other nodes which may be orphaned
+          indexUpdates.add(triggerIndex::clear);
+          for (TriggerEntity triggerEntity : triggerEntityAdapter.browse(db)) {
+            indexLater(triggerEntity);
+          }
+
           // TODO: recover jobs marked for recovery that were not fully executed
           return null;
         }
@@ -322,6 +437,7 @@ public class JobStoreImpl
     execute(db -> {
       jobDetailEntityAdapter.deleteAll(db);
       triggerEntityAdapter.deleteAll(db);
+      indexUpdates.add(triggerIndex::clear);
       calendarEntityAdapter.deleteAll(db);
       return null;
     });
@@ -370,6 +486,9 @@ public class JobStoreImpl
 
   private boolean removeJob(final ODatabaseDocumentTx db, final JobKey jobKey) throws JobPersistenceException {
     boolean deleted = jobDetailEntityAdapter.deleteByKey(db, jobKey);
+    for (TriggerEntity entity : triggerEntityAdapter.browseByJobKey(db, jobKey)) {
+      unindexLater(entity.getValue().getKey());
+    }
     triggerEntityAdapter.deleteByJobKey(db, jobKey);
     return deleted;
   }
@@ -389,7 +508,7 @@ public class JobStoreImpl
   @Override
   @Nullable
   public JobDetail retrieveJob(final JobKey jobKey) throws JobPersistenceException {
-    return execute(db -> {
+    return read(db -> {
       JobDetailEntity entity = jobDetailEntityAdapter.readByKey(db, jobKey);
       return entity != null ? entity.getValue() : null;
     });
@@ -397,17 +516,17 @@ public class JobStoreImpl
 
   @Override
   public boolean checkExists(final JobKey jobKey) throws JobPersistenceException {
-    return execute(db -> jobDetailEntityAdapter.existsByKey(db, jobKey));
+    return read(db -> jobDetailEntityAdapter.existsByKey(db, jobKey));
   }
 
   @Override
   public int getNumberOfJobs() throws JobPersistenceException {
-    return execute(db -> jobDetailEntityAdapter.countI(db));
+    return read(db -> jobDetailEntityAdapter.countI(db));
   }
 
   @Override
   public List<String> getJobGroupNames() throws JobPersistenceException {
-    return execute(db -> {
+    return read(db -> {
       ArrayList<String> result = new ArrayList<>();
       for (JobDetailEntity entity : jobDetailEntityAdapter.browse(db)) {
         result.add(entity.getGroup());
@@ -418,7 +537,7 @@ public class JobStoreImpl
 
   @Override
   public Set<JobKey> getJobKeys(final GroupMatcher<JobKey> matcher) throws JobPersistenceException {
-    return execute(db -> getJobKeys(db, matcher));
+    return read(db -> getJobKeys(db, matcher));
   }
 
   private Set<JobKey> getJobKeys(final ODatabaseDocumentTx db, final GroupMatcher<JobKey> matcher)
@@ -564,13 +683,13 @@ public class JobStoreImpl
     if (entity == null) {
       // no existing entity, add new one
       entity = new TriggerEntity(trigger, WAITING);
-      triggerEntityAdapter.addEntity(db, entity);
+      addTrigger(db, entity);
     }
     else {
       // otherwise entity exists, maybe replace if allowed
       if (replaceExisting) {
         entity.setValue(trigger);
-        triggerEntityAdapter.editEntity(db, entity);
+        editTrigger(db, entity);
       }
       else {
         throw new ObjectAlreadyExistsException(trigger);
@@ -599,6 +718,7 @@ public class JobStoreImpl
 
     boolean deleted = triggerEntityAdapter.deleteByKey(db, triggerKey);
     log.debug("Trigger deleted: {} for key: {}", deleted, triggerKey);
+    unindexLater(triggerKey);
 
     // delete related job if there are no triggers for it
     if (deleted) {
@@ -656,13 +776,13 @@ public class JobStoreImpl
           throw new JobPersistenceException("New trigger is not related to the same job as the old trigger");
         }
         entity.setValue(trigger);
-        triggerEntityAdapter.editEntity(db, entity);
+        editTrigger(db, entity);
         return true;
       }
       else {
         // otherwise add new entity
         entity = new TriggerEntity(trigger, WAITING);
-        triggerEntityAdapter.addEntity(db, entity);
+        addTrigger(db, entity);
         return false;
       }
     });
@@ -671,7 +791,7 @@ public class JobStoreImpl
   @Override
   @Nullable
   public OperableTrigger retrieveTrigger(final TriggerKey triggerKey) throws JobPersistenceException {
-    return execute(db -> {
+    return read(db -> {
       TriggerEntity entity = triggerEntityAdapter.readByKey(db, triggerKey);
       return entity != null ? entity.getValue() : null;
     });
@@ -679,17 +799,17 @@ public class JobStoreImpl
 
   @Override
   public boolean checkExists(final TriggerKey triggerKey) throws JobPersistenceException {
-    return execute(db -> triggerEntityAdapter.existsByKey(db, triggerKey));
+    return read(db -> triggerEntityAdapter.existsByKey(db, triggerKey));
   }
 
   @Override
   public int getNumberOfTriggers() throws JobPersistenceException {
-    return execute(db -> triggerEntityAdapter.countI(db));
+    return read(db -> triggerEntityAdapter.countI(db));
   }
 
   @Override
   public Set<TriggerKey> getTriggerKeys(final GroupMatcher<TriggerKey> matcher) throws JobPersistenceException {
-    return execute(db -> getTriggerKeys(db, matcher));
+    return read(db -> getTriggerKeys(db, matcher));
   }
 
   /**
@@ -722,12 +842,12 @@ public class JobStoreImpl
 
   @Override
   public List<String> getTriggerGroupNames() throws JobPersistenceException {
-    return execute(db -> ImmutableList.copyOf(getTriggerGroups(db, GroupMatcher.anyGroup())));
+    return read(db -> ImmutableList.copyOf(getTriggerGroups(db, GroupMatcher.anyGroup())));
   }
 
   @Override
   public List<OperableTrigger> getTriggersForJob(final JobKey jobKey) throws JobPersistenceException {
-    return execute(db -> getTriggersForJob(db, jobKey));
+    return read(db -> getTriggersForJob(db, jobKey));
   }
 
   private List<OperableTrigger> getTriggersForJob(final ODatabaseDocumentTx db, final JobKey jobKey) {
@@ -740,7 +860,7 @@ public class JobStoreImpl
 
   @Override
   public TriggerState getTriggerState(final TriggerKey triggerKey) throws JobPersistenceException {
-    return execute(db -> {
+    return read(db -> {
       TriggerEntity entity = triggerEntityAdapter.readByKey(db, triggerKey);
       if (entity == null) {
         return TriggerState.NONE;
@@ -800,7 +920,7 @@ public class JobStoreImpl
         break;
     }
 
-    triggerEntityAdapter.editEntity(db, entity);
+    editTrigger(db, entity);
   }
 
   @Override
@@ -859,7 +979,7 @@ public class JobStoreImpl
 
     applyMisfire(db, entity);
 
-    triggerEntityAdapter.editEntity(db, entity);
+    editTrigger(db, entity);
   }
 
   @Override
@@ -891,7 +1011,7 @@ public class JobStoreImpl
 
   @Override
   public Set<String> getPausedTriggerGroups() throws JobPersistenceException {
-    return execute(
+    return read(
         db -> {
           Set<String> pausedGroups = new HashSet<>();
           Set<String> groups = getTriggerGroups(db, GroupMatcher.anyGroup());
@@ -915,12 +1035,10 @@ public class JobStoreImpl
   {
     try {
       synchronized (monitor) {
-        return inTx(databaseInstance)
-            .retryOn(ONeedRetryException.class, ORecordNotFoundException.class)
-            .call(db -> doAcquireNextTriggers(db, noLaterThan, maxCount, timeWindow));
+        return executeUpdatingIndex(db -> doAcquireNextTriggers(db, noLaterThan, maxCount, timeWindow));
       }
     }
-    catch (RuntimeException e) {
+    catch (RuntimeException | JobPersistenceException e) {
       acquireNextTriggersSummarizer.log("Problem acquiring next triggers", e);
       try {
         Thread.sleep(10); // introduce small delay, otherwise quartz will immediately try again
@@ -934,24 +1052,6 @@ public class JobStoreImpl
 
 
 
-  private List<TriggerEntity> getAcquirableEntities(final ODatabaseDocumentTx db,
-                                                     final long noLaterThan,
-                                                     final long timeWindow)
-  {
-    long noEarlierThan = getMisfireTime();
-    List<TriggerEntity> possibleEntities = new ArrayList<>();
-    List<TriggerEntity> acquirableEntities = new ArrayList<>();
-
-    triggerEntityAdapter.browseByStates(db, ALL_ACQUIRABLE_STATES).forEach(possibleEntities::add);
-
-    possibleEntities.stream()
-        .filter(this::isLocalOrOrphaned)
-        .filter(entity -> canBeAcquired(entity, db, noEarlierThan, noLaterThan + timeWindow))
-        .forEach(acquirableEntities::add);
-
-    return acquirableEntities;
-  }
-
   private boolean isLocalOrOrphaned(TriggerEntity entity) {
     return (isOrphaned(entity) && ACQUIRABLE_ORPHAN_STATES.contains(entity.getState())) ||
         (isLocal(entity) && ACQUIRABLE_LOCAL_STATES.contains(entity.getState()));
@@ -964,45 +1064,44 @@ public class JobStoreImpl
   {
     log.debug("Acquire next triggers: noLaterThan={}, maxCount={}, timeWindow={}", noLaterThan, maxCount, timeWindow);
 
-    List<TriggerEntity> acquirableEntities = getAcquirableEntities(db, noLaterThan, timeWindow);
-
-    // short-circuit if no matches
-    if (acquirableEntities.isEmpty()) {
-      return emptyList();
-    }
-
-    // sort candidates
-    Collections.sort(acquirableEntities, TRIGGER_COMPARATOR);
+    long noEarlierThan = getMisfireTime();
+    List<OperableTrigger> result = new ArrayList<>();
 
     // cope with jobs which have disallowed concurrent execution
-    // gather set of job-keys acquired which have concurrent execution disabled and eliminate dupe triggers
+    // gather set of job-keys acquired which have concurrent execution disabled and skip dupe triggers
     Set<JobKey> jobsAcquired = new HashSet<>();
-    Iterator<TriggerEntity> triggerEntityIterator = acquirableEntities.iterator();
-    while (triggerEntityIterator.hasNext()) {
-      TriggerEntity triggerEntity = triggerEntityIterator.next();
-      OperableTrigger trigger = triggerEntity.getValue();
-      JobKey jobKey = trigger.getJobKey();
-      JobDetailEntity jobDetailEntity = jobDetailEntityAdapter.readByKey(db, jobKey);
-      if (jobDetailEntity != null && jobDetailEntity.getValue().isConcurrentExectionDisallowed()) {
-        if (jobsAcquired.contains(jobKey)) {
-          // trigger for job disallowing concurrent execution already acquired
-          triggerEntityIterator.remove();
-        }
-        else {
-          jobsAcquired.add(jobKey);
-        }
+
+    // candidates come by next fire time then priority, corrected entries may turn up again further along
+    Set<TriggerKey> visited = new HashSet<>();
+    for (TriggerKey triggerKey : triggerIndex.due(noLaterThan + timeWindow)) {
+      if (result.size() >= maxCount) {
+        break;
+      }
+      if (!visited.add(triggerKey)) {
+        continue;
       }
-    }
 
-    // limit result set if needed
-    if (!acquirableEntities.isEmpty() && maxCount < acquirableEntities.size()) {
-      acquirableEntities = acquirableEntities.subList(0, maxCount);
-    }
+      TriggerEntity entity = triggerEntityAdapter.readByKey(db, triggerKey);
+      if (entity == null) {
+        unindexLater(triggerKey);
+        continue;
+      }
+      // correct the entry in case the trigger was changed behind our back
+      indexLater(entity);
+
+      if (!isLocalOrOrphaned(entity) || !canBeAcquired(entity, db, noEarlierThan, noLaterThan + timeWindow)) {
+        continue;
+      }
 
-    // set state on selected ones
-    List<OperableTrigger> result = new ArrayList<>();
-    for (TriggerEntity entity : acquirableEntities) {
       OperableTrigger trigger = entity.getValue();
+      JobKey jobKey = trigger.getJobKey();
+      JobDetailEntity jobDetailEntity = jobDetailEntityAdapter.readByKey(db, jobKey);
+      if (jobDetailEntity != null && jobDetailEntity.getValue().isConcurrentExectionDisallowed()
+          && !jobsAcquired.add(jobKey)) {
+        // trigger for job disallowing concurrent execution already acquired
+        continue;
+      }
+
       // TODO: Sort out if this is needed, maybe set to entity-id.value?
       // TODO: JDBC store impl uses this to do some validation on triggersFired()
       trigger.setFireInstanceId(UUID.randomUUID().toString());
@@ -1012,31 +1111,13 @@ public class JobStoreImpl
       }
       result.add(trigger);
       entity.setState(ACQUIRED);
-      triggerEntityAdapter.editEntity(db, entity);
+      editTrigger(db, entity);
     }
 
     log.trace("Acquired triggers: {}", result);
     return result;
   }
 
-  /**
-   * Comparator used for trigger selection: sorts by next fire time, then by priority.
-   */
-  private static final Comparator<TriggerEntity> TRIGGER_COMPARATOR = new Comparator<TriggerEntity>()
-  {
-    @Override
-    public int compare(final TriggerEntity o1, final TriggerEntity o2) {
-      int res;
-      // nextFireTime ASC
-      res = o1.getValue().getNextFireTime().compareTo(o2.getValue().getNextFireTime());
-      if (res != 0) {
-        return res;
-      }
-      // priority DESC
-      return o2.getValue().getPriority() - o1.getValue().getPriority();
-    }
-  };
-
   @Override
   public void releaseAcquiredTrigger(final OperableTrigger trigger) {
     log.debug("Release acquired trigger: {}", trigger);
@@ -1047,7 +1128,7 @@ public class JobStoreImpl
       // update state to WAITING if the current state is ACQUIRED
       if (entity != null && entity.getState() == ACQUIRED) {
         entity.setState(WAITING);
-        triggerEntityAdapter.editEntity(db, entity);
+        editTrigger(db, entity);
       }
 
       return null;
@@ -1124,7 +1205,7 @@ public class JobStoreImpl
 
     // update trigger to WAITING state
     entity.setState(WAITING);
-    triggerEntityAdapter.editEntity(db, entity);
+    editTrigger(db, entity);
 
     // re-resolve trigger value after edit for sanity
     trigger = entity.getValue();
@@ -1188,7 +1269,7 @@ public class JobStoreImpl
       else {
         entity.setState(BLOCKED);
       }
-      triggerEntityAdapter.editEntity(db, entity);
+      editTrigger(db, entity);
     }
   }
 
@@ -1225,24 +1306,24 @@ public class JobStoreImpl
             if (trigger.getNextFireTime() == null) {
               // double check for possible reschedule within job execution, which would cancel the need to delete
               if (triggerEntity.getValue().getNextFireTime() == null) {
-                triggerEntityAdapter.deleteEntity(db, triggerEntity);
+                deleteTrigger(db, triggerEntity);
               }
             }
             else {
-              triggerEntityAdapter.deleteEntity(db, triggerEntity);
+              deleteTrigger(db, triggerEntity);
               signaler.signalSchedulingChange(0L);
             }
             break;
 
           case SET_TRIGGER_COMPLETE:
             triggerEntity.setState(COMPLETE);
-            triggerEntityAdapter.editEntity(db, triggerEntity);
+            editTrigger(db, triggerEntity);
             signaler.signalSchedulingChange(0L);
             break;
 
           case SET_TRIGGER_ERROR:
             triggerEntity.setState(ERROR);
-            triggerEntityAdapter.editEntity(db, triggerEntity);
+            editTrigger(db, triggerEntity);
             signaler.signalSchedulingChange(0L);
             break;
 
@@ -1293,7 +1374,7 @@ public class JobStoreImpl
       else {
         entity.setState(WAITING);
       }
-      triggerEntityAdapter.editEntity(db, entity);
+      editTrigger(db, entity);
     }
   }
 
@@ -1309,7 +1390,7 @@ public class JobStoreImpl
 
     for (TriggerEntity entity : matches) {
       entity.setState(state);
-      triggerEntityAdapter.editEntity(db, entity);
+      editTrigger(db, entity);
     }
   }
 
@@ -1351,7 +1432,7 @@ public class JobStoreImpl
 
     if (trigger.getNextFireTime() == null) {
       triggerEntity.setState(COMPLETE);
-      triggerEntityAdapter.editEntity(db, triggerEntity);
+      editTrigger(db, triggerEntity);
       signaler.notifySchedulerListenersFinalized(trigger);
     }
     else if (nextFireTime.equals(trigger.getNextFireTime())) {
@@ -1394,7 +1475,7 @@ public class JobStoreImpl
         // update all triggers using this calender
         for (TriggerEntity triggerEntity : triggerEntityAdapter.browseByCalendarName(db, name)) {
           triggerEntity.getValue().updateWithNewCalendar(calendar, misfireThreshold);
-          triggerEntityAdapter.editEntity(db, triggerEntity);
+          editTrigger(db, triggerEntity);
         }
       }
 
@@ -1412,7 +1493,7 @@ public class JobStoreImpl
   @Override
   @Nullable
   public Calendar retrieveCalendar(final String name) throws JobPersistenceException {
-    return execute(db -> {
+    return read(db -> {
       CalendarEntity entity = calendarEntityAdapter.readByName(db, name);
       return entity != null ? entity.getValue() : null;
     });
@@ -1420,12 +1501,12 @@ public class JobStoreImpl
 
   @Override
   public int getNumberOfCalendars() throws JobPersistenceException {
-    return execute(db -> calendarEntityAdapter.countI(db));
+    return read(db -> calendarEntityAdapter.countI(db));
   }
 
   @Override
   public List<String> getCalendarNames() throws JobPersistenceException {
-    return execute(db -> calendarEntityAdapter.browseNames(db));
+    return read(db -> calendarEntityAdapter.browseNames(db));
   }
 
   /**
@@ -0,0 +1,152 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.quartz.internal.orient;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import org.quartz.TriggerKey;
+import org.quartz.spi.OperableTrigger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * In-memory index of the triggers which may be acquired, ordered by next fire time then priority, the order in which
+ * {@link JobStoreImpl#acquireNextTriggers} considers them.
+ *
+ * Only triggers in an acquirable state with a next fire time are indexed. The index is a hint: acquisition re-reads
+ * each candidate from the database and corrects its entry when it no longer matches.
+ *
+ * Updates to the entry of a trigger are atomic per trigger key; the ordered set may be iterated while it is updated.
+ *
+ * @since 3.9
+ */
+class TriggerIndex
+{
+  private static final Comparator<Entry> ENTRY_COMPARATOR = Comparator
+      // nextFireTime ASC
+      .comparingLong((Entry entry) -> entry.nextFireTime)
+      // priority DESC
+      .thenComparing((o1, o2) -> Integer.compare(o2.priority, o1.priority))
+      .thenComparing(entry -> entry.key);
+
+  private final ConcurrentMap<TriggerKey, Entry> entries = new ConcurrentHashMap<>();
+
+  private final NavigableSet<Entry> ordered = new ConcurrentSkipListSet<>(ENTRY_COMPARATOR);
+
+  private final Set<TriggerEntity.State> indexedStates;
+
+  TriggerIndex(final Set<TriggerEntity.State> indexedStates) {
+    this.indexedStates = checkNotNull(indexedStates);
+  }
+
+  /**
+   * Indexes the current state of the trigger entity, or drops it from the index if it can no longer be acquired.
+   */
+  void put(final TriggerEntity entity) {
+    OperableTrigger trigger = entity.getValue();
+    put(trigger.getKey(), entry(entity));
+  }
+
+  void put(final TriggerKey key, @Nullable final Entry entry) {
+    entries.compute(key, (k, existing) -> {
+      if (existing != null) {
+        ordered.remove(existing);
+      }
+      if (entry != null) {
+        ordered.add(entry);
+      }
+      return entry;
+    });
+  }
+
+  void remove(final TriggerKey key) {
+    put(key, null);
+  }
+
+  void clear() {
+    entries.keySet().forEach(this::remove);
+  }
+
+  /**
+   * Returns the keys of indexed triggers due to fire no later than the given time, in acquisition order.
+   */
+  Iterable<TriggerKey> due(final long noLaterThan) {
+    return () -> new AbstractIterator<TriggerKey>()
+    {
+      private final Iterator<Entry> iterator = ordered.iterator();
+
+      @Override
+      protected TriggerKey computeNext() {
+        if (iterator.hasNext()) {
+          Entry entry = iterator.next();
+          if (entry.nextFireTime <= noLaterThan) {
+            return entry.key;
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @VisibleForTesting
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Captures the ordering details of the trigger entity; {@code null} if it should not be indexed.
+   */
+  @Nullable
+  Entry entry(final TriggerEntity entity) {
+    OperableTrigger trigger = entity.getValue();
+    Date nextFireTime = trigger.getNextFireTime();
+    if (nextFireTime == null || !indexedStates.contains(entity.getState())) {
+      return null;
+    }
+    return new Entry(trigger.getKey(), nextFireTime.getTime(), trigger.getPriority());
+  }
+
+  /**
+   * Immutable ordering details of an indexed trigger.
+   */
+  static final class Entry
+  {
+    private final TriggerKey key;
+
+    private final long nextFireTime;
+
+    private final int priority;
+
+    private Entry(final TriggerKey key, final long nextFireTime, final int priority) {
+      this.key = checkNotNull(key);
+      this.nextFireTime = nextFireTime;
+      this.priority = priority;
+    }
+
+    @Override
+    public String toString() {
+      return key + "@" + nextFireTime;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.quartz.internal.orient;
+
+import java.util.Date;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.quartz.internal.orient.TriggerEntity.State;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.quartz.TriggerKey;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.is;
+import static org.quartz.TriggerKey.triggerKey;
+
+public class TriggerIndexTest
+    extends TestSupport
+{
+  private final TriggerIndex underTest = new TriggerIndex(Sets.immutableEnumSet(State.WAITING, State.ACQUIRED));
+
+  @Test
+  public void dueTriggersAreOrderedByFireTimeThenPriority() {
+    underTest.put(trigger("late", 3000L, 5, State.WAITING));
+    underTest.put(trigger("early", 1000L, 5, State.WAITING));
+    underTest.put(trigger("urgent", 2000L, 10, State.WAITING));
+    underTest.put(trigger("normal", 2000L, 5, State.ACQUIRED));
+
+    assertThat(underTest.due(2000L),
+        contains(triggerKey("early", "group"), triggerKey("urgent", "group"), triggerKey("normal", "group")));
+    assertThat(underTest.due(500L), is(emptyIterable()));
+  }
+
+  @Test
+  public void triggersWhichCannotBeAcquiredAreNotIndexed() {
+    underTest.put(trigger("paused", 1000L, 5, State.PAUSED));
+    underTest.put(trigger("complete", null, 5, State.WAITING));
+
+    assertThat(underTest.size(), is(0));
+  }
+
+  @Test
+  public void updatesReplaceEntries() {
+    underTest.put(trigger("first", 1000L, 5, State.WAITING));
+    underTest.put(trigger("second", 2000L, 5, State.WAITING));
+
+    // rescheduled after the second trigger
+    underTest.put(trigger("first", 3000L, 5, State.WAITING));
+    assertThat(underTest.due(5000L), contains(triggerKey("second", "group"), triggerKey("first", "group")));
+
+    // paused
+    underTest.put(trigger("second", 2000L, 5, State.PAUSED));
+    assertThat(underTest.due(5000L), contains(triggerKey("first", "group")));
+
+    underTest.remove(triggerKey("first", "group"));
+    assertThat(underTest.size(), is(0));
+  }
+
+  @Test
+  public void clearRemovesAllEntries() {
+    underTest.put(trigger("first", 1000L, 5, State.WAITING));
+    underTest.put(trigger("second", 2000L, 5, State.WAITING));
+
+    underTest.clear();
+
+    assertThat(underTest.size(), is(0));
+    assertThat(ImmutableList.copyOf(underTest.due(Long.MAX_VALUE)), is(ImmutableList.<TriggerKey>of()));
+  }
+
+  private static TriggerEntity trigger(final String name,
+                                       final Long nextFireTime,
+                                       final int priority,
+                                       final State state)
+  {
+    SimpleTriggerImpl trigger = new SimpleTriggerImpl(name, "group", "job", "jobGroup", new Date(0L), null, 0, 0L);
+    trigger.setNextFireTime(nextFireTime != null ? new Date(nextFireTime) : null);
+    trigger.setPriority(priority);
+    return new TriggerEntity(trigger, state);
+  }
+}
@@ -12,10 +12,19 @@
  */
 package org.sonatype.nexus.repository.assetdownloadcount.internal;
 
-import java.util.concurrent.Executors;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -29,15 +38,17 @@ import org.sonatype.nexus.orient.DatabaseInstance;
 import org.sonatype.nexus.repository.assetdownloadcount.AssetDownloadCountStore;
 import org.sonatype.nexus.repository.assetdownloadcount.DateType;
 import org.sonatype.nexus.repository.storage.ComponentDatabase;
-import org.sonatype.nexus.thread.NexusExecutorService;
 import org.sonatype.nexus.thread.NexusThreadFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListeners;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import org.joda.time.DateTime;
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SCHEMAS;
 import static org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport.State.STARTED;
@@ -48,6 +59,11 @@ import static org.sonatype.nexus.orient.transaction.OrientTransactional.inTxRetr
  * Manages shuffling counts data to from the database, as well as a cache of counts to not overwhelm the request
  * handling with these db updates
  *
+ * Increments are aggregated in per-asset {@link LongAdder}s and written behind in periodic batches, one transaction
+ * per {@code nexus.assetdownloads.flush.batchSize} assets of a repository. Pending counts are flushed at least every
+ * {@code nexus.assetdownloads.cache.duration} seconds, or early once {@code nexus.assetdownloads.cache.size} assets
+ * are pending; increments of further assets are dropped until the flush has caught up.
+ *
  * @since 3.4
  */
 @Named
@@ -65,35 +81,59 @@ public class AssetDownloadCountStoreImpl
 
   private final AssetDownloadHistoricDataCleaner historicDataCleaner;
 
-  private final LoadingCache<CacheEntryKey,AtomicLong> cache;
+  private final DownloadCountWriter writer;
+
+  private final int maxPending;
+
+  private final int flushInterval;
+
+  private final int batchSize;
+
+  private final ConcurrentMap<CacheEntryKey, LongAdder> pending = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+  private final Timer flushTimer;
+
+  private final Meter droppedIncrements;
+
+  private volatile long lastFlushed = System.currentTimeMillis();
+
+  private ScheduledExecutorService flushExecutor;
 
   @Inject
   public AssetDownloadCountStoreImpl(@Named(ComponentDatabase.NAME) final Provider<DatabaseInstance> databaseInstance,
                                      @Named("${nexus.assetdownloads.enabled:-true}") final boolean enabled,
                                      @Named("${nexus.assetdownloads.cache.size:-10000}") final int cacheSize,
                                      @Named("${nexus.assetdownloads.cache.duration:-3600}") final int cacheDuration,
+                                     @Named("${nexus.assetdownloads.flush.batchSize:-500}") final int batchSize,
                                      final AssetDownloadCountEntityAdapter entityAdapter,
                                      final AssetDownloadHistoricDataCleaner historicDataCleaner,
-                                     final CacheRemovalListener cacheRemovalListener)
+                                     final DownloadCountWriter writer,
+                                     final MetricRegistry metricRegistry)
   {
+    checkArgument(cacheSize > 0, "Cache size must be greater than zero");
+    checkArgument(cacheDuration > 0, "Cache duration must be greater than zero");
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
     this.databaseInstance = checkNotNull(databaseInstance);
     this.entityAdapter = checkNotNull(entityAdapter);
     this.historicDataCleaner = checkNotNull(historicDataCleaner);
+    this.writer = checkNotNull(writer);
     this.enabled = enabled;
+    this.maxPending = cacheSize;
+    this.flushInterval = cacheDuration;
+    this.batchSize = batchSize;
 
-    cache = CacheBuilder.newBuilder()
-        .maximumSize(cacheSize)
-        .expireAfterWrite(cacheDuration, TimeUnit.SECONDS)
-        .removalListener(RemovalListeners.asynchronous(cacheRemovalListener, NexusExecutorService
-            .forCurrentSubject(Executors.newSingleThreadExecutor(
-                new NexusThreadFactory("assetdownloads-count", "Asset Downloads Count")))))
-        .build(new CacheLoader<CacheEntryKey, AtomicLong>()
-        {
-          @Override
-          public AtomicLong load(final CacheEntryKey cacheEntryKey) throws Exception {
-            return new AtomicLong(0);
-          }
-        });
+    String prefix = name(AssetDownloadCountStoreImpl.class);
+    this.flushTimer = metricRegistry.timer(name(prefix, "flush"));
+    this.droppedIncrements = metricRegistry.meter(name(prefix, "dropped"));
+    registerGauge(metricRegistry, name(prefix, "pending"), pending::size);
+    registerGauge(metricRegistry, name(prefix, "flushLag"), () -> System.currentTimeMillis() - lastFlushed);
+  }
+
+  private static void registerGauge(final MetricRegistry metricRegistry, final String name, final Gauge<?> gauge) {
+    metricRegistry.remove(name);
+    metricRegistry.register(name, gauge);
   }
 
   @Override
@@ -101,11 +141,24 @@ public class AssetDownloadCountStoreImpl
     try (ODatabaseDocumentTx db = databaseInstance.get().connect()) {
       entityAdapter.register(db);
     }
+
+    flushExecutor = new ScheduledThreadPoolExecutor(1,
+        new NexusThreadFactory("assetdownloads-count", "Asset Downloads Count"));
+    flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.SECONDS);
   }
 
   @Override
   protected void doStop() throws Exception {
     historicDataCleaner.stop();
+
+    flushExecutor.shutdownNow();
+    if (!flushExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+      log.warn("Failed to terminate thread pool in allotted time");
+    }
+    flushExecutor = null;
+
+    // write out whatever is still pending
+    flush();
   }
 
   @Override
@@ -159,12 +212,107 @@ public class AssetDownloadCountStoreImpl
   public void incrementCount(final String repositoryName, final String assetName) {
     log.debug("Incremented count(CACHE) {} {} by {}", repositoryName, assetName, 1);
 
-    //with the dead simple impl of the cache loader, i dont have concerns doing the getUnchecked over get method
-    cache.getUnchecked(new CacheEntryKey(repositoryName, assetName)).incrementAndGet();
+    // increment while mapped, so a flush which removed the counter has seen every increment made to it
+    CacheEntryKey key = new CacheEntryKey(repositoryName, assetName);
+    if (pending.computeIfPresent(key, AssetDownloadCountStoreImpl::increment) == null) {
+      if (pending.size() >= maxPending) {
+        requestFlush();
+        droppedIncrements.mark();
+        log.debug("Dropped count increment of {} {}, too many pending", repositoryName, assetName);
+        return;
+      }
+      pending.compute(key, AssetDownloadCountStoreImpl::increment);
+    }
+
+    if (pending.size() >= maxPending) {
+      requestFlush();
+    }
 
     historicDataCleaner.start();
   }
 
+  private static LongAdder increment(final CacheEntryKey key, @Nullable final LongAdder count) {
+    LongAdder result = count != null ? count : new LongAdder();
+    result.increment();
+    return result;
+  }
+
+  private void requestFlush() {
+    ScheduledExecutorService executor = flushExecutor;
+    if (executor != null && flushRequested.compareAndSet(false, true)) {
+      executor.execute(this::flushQuietly);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    }
+    catch (Exception e) {
+      log.warn("Failed to flush download counts", log.isDebugEnabled() ? e : null);
+    }
+  }
+
+  /**
+   * Writes all pending counts to the database, in batches of up to {@link #batchSize} assets per repository.
+   */
+  @VisibleForTesting
+  public synchronized void flush() {
+    flushRequested.set(false);
+    try (Timer.Context timer = flushTimer.time()) {
+      Map<String, Map<String, Long>> countsByRepository = drainPending();
+      for (Entry<String, Map<String, Long>> repositoryCounts : countsByRepository.entrySet()) {
+        String repositoryName = repositoryCounts.getKey();
+        Map<String, Long> batch = new LinkedHashMap<>();
+        for (Entry<String, Long> assetCount : repositoryCounts.getValue().entrySet()) {
+          batch.put(assetCount.getKey(), assetCount.getValue());
+          if (batch.size() >= batchSize) {
+            writeBatch(repositoryName, batch);
+            batch = new LinkedHashMap<>();
+          }
+        }
+        if (!batch.isEmpty()) {
+          writeBatch(repositoryName, batch);
+        }
+      }
+    }
+    lastFlushed = System.currentTimeMillis();
+  }
+
+  /**
+   * Removes and collects all pending counts, making room for new assets; later increments start fresh counters.
+   */
+  private Map<String, Map<String, Long>> drainPending() {
+    Map<String, Map<String, Long>> countsByRepository = new HashMap<>();
+    for (CacheEntryKey key : pending.keySet()) {
+      LongAdder adder = pending.remove(key);
+      long count = adder != null ? adder.sum() : 0;
+      if (count > 0) {
+        countsByRepository.computeIfAbsent(key.getRepositoryName(), k -> new LinkedHashMap<>())
+            .put(key.getAssetName(), count);
+      }
+    }
+    return countsByRepository;
+  }
+
+  private void writeBatch(final String repositoryName, final Map<String, Long> batch) {
+    try {
+      if (!writer.write(repositoryName, batch)) {
+        droppedIncrements.mark(total(batch));
+        log.debug("Dropped counts of {} assets in {}, database is frozen", batch.size(), repositoryName);
+      }
+    }
+    catch (Exception e) {
+      droppedIncrements.mark(total(batch));
+      log.warn("Failed to write counts of {} assets in {}", batch.size(), repositoryName,
+          log.isDebugEnabled() ? e : null);
+    }
+  }
+
+  private static long total(final Map<String, Long> batch) {
+    return batch.values().stream().mapToLong(Long::longValue).sum();
+  }
+
   @Override
   @Guarded(by = STARTED)
   public void setMonthlyVulnerableCount(final String repositoryName,
@@ -221,7 +369,10 @@ public class AssetDownloadCountStoreImpl
     for (long day : getDailyCounts(repositoryName, assetName)) {
       lastThirty += day;
     }
-    lastThirty += cache.getUnchecked(new CacheEntryKey(repositoryName, assetName)).get();
+    LongAdder count = pending.get(new CacheEntryKey(repositoryName, assetName));
+    if (count != null) {
+      lastThirty += count.sum();
+    }
     return lastThirty;
   }
 }
@@ -12,7 +12,7 @@
  */
 package org.sonatype.nexus.repository.assetdownloadcount.internal;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -25,23 +25,21 @@ import org.sonatype.nexus.orient.DatabaseInstance;
 import org.sonatype.nexus.orient.freeze.DatabaseFreezeChangeEvent;
 import org.sonatype.nexus.repository.storage.ComponentDatabase;
 
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.google.common.eventbus.Subscribe;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.orient.transaction.OrientTransactional.inTxRetry;
 
 /**
- * Google cache removal listener that will stuff the data into the database
+ * Writes batches of aggregated download counts to the database, one transaction per batch.
  *
- * @since 3.4
+ * @since 3.9
  */
 @Named
 @Singleton
-public class CacheRemovalListener
+public class DownloadCountWriter
     extends ComponentSupport
-    implements RemovalListener<CacheEntryKey, AtomicLong>, EventAware, EventAware.Asynchronous
+    implements EventAware, EventAware.Asynchronous
 {
   private final AssetDownloadCountEntityAdapter entityAdapter;
 
@@ -50,25 +48,29 @@ public class CacheRemovalListener
   private volatile boolean frozen;
 
   @Inject
-  public CacheRemovalListener(@Named(ComponentDatabase.NAME) final Provider<DatabaseInstance> databaseInstance,
-                              final AssetDownloadCountEntityAdapter entityAdapter)
+  public DownloadCountWriter(@Named(ComponentDatabase.NAME) final Provider<DatabaseInstance> databaseInstance,
+                             final AssetDownloadCountEntityAdapter entityAdapter)
   {
     this.entityAdapter = checkNotNull(entityAdapter);
     this.databaseInstance = checkNotNull(databaseInstance);
   }
 
-  @Override
-  public void onRemoval(final RemovalNotification<CacheEntryKey, AtomicLong> removalNotification) {
-    if (!frozen) {
-      inTxRetry(databaseInstance).run(
-          db -> {
-            final CacheEntryKey key = removalNotification.getKey();
-            entityAdapter.incrementCount(db, key.getRepositoryName(), key.getAssetName(), removalNotification
-                .getValue().get());
-            log.debug("Incremented count(DB) {} {} by {}", key.getRepositoryName(), key.getAssetName(),
-                removalNotification.getValue());
-          });
+  /**
+   * Adds the given asset counts of a repository in a single transaction.
+   *
+   * @return {@code false} if the counts were not written because the database is frozen
+   */
+  public boolean write(final String repositoryName, final Map<String, Long> assetCounts) {
+    if (frozen) {
+      return false;
     }
+    inTxRetry(databaseInstance).run(db -> {
+      for (Map.Entry<String, Long> entry : assetCounts.entrySet()) {
+        entityAdapter.incrementCount(db, repositoryName, entry.getKey(), entry.getValue());
+      }
+    });
+    log.debug("Incremented count(DB) of {} assets in {}", assetCounts.size(), repositoryName);
+    return true;
   }
 
   @Subscribe
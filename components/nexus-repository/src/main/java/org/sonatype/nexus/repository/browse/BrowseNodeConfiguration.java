@@ -48,6 +48,8 @@ public class BrowseNodeConfiguration
 
   private final Time queryTimeout;
 
+  private final int groupQueryThreads;
+
   @Inject
   public BrowseNodeConfiguration(@Named("${nexus.browse.component.tree.enabled:-true}") final boolean enabled,
                                  @Named("${nexus.browse.component.tree.automaticRebuild:-true}") final boolean automaticRebuild,
@@ -55,7 +57,8 @@ public class BrowseNodeConfiguration
                                  @Named("${nexus.browse.component.tree.deletePageSize:-1000}") final int deletePageSize,
                                  @Named("${nexus.browse.component.tree.maxNodes:-10000}") final int maxNodes,
                                  @Named("${nexus.browse.component.tree.maxHtmlNodes:-10000}") final int maxHtmlNodes,
-                                 @Named("${nexus.browse.component.tree.queryTimeout:-59s}") final Time queryTimeout)
+                                 @Named("${nexus.browse.component.tree.queryTimeout:-59s}") final Time queryTimeout,
+                                 @Named("${nexus.browse.component.tree.groupQueryThreads:-8}") final int groupQueryThreads)
   {
     this.enabled = enabled;
     this.automaticRebuild = automaticRebuild;
@@ -64,11 +67,12 @@ public class BrowseNodeConfiguration
     this.maxNodes = maxNodes;
     this.maxHtmlNodes = maxHtmlNodes;
     this.queryTimeout = queryTimeout;
+    this.groupQueryThreads = groupQueryThreads;
   }
 
   @VisibleForTesting
   public BrowseNodeConfiguration() {
-    this(true, true, 1000, 1000, 10_000, 10_000, seconds(0));
+    this(true, true, 1000, 1000, 10_000, 10_000, seconds(0), 8);
   }
 
   /**
@@ -112,6 +116,15 @@ public class BrowseNodeConfiguration
     return queryTimeout;
   }
 
+  /**
+   * The maximum number of threads used to query the members of group repositories concurrently
+   *
+   * @since 3.9
+   */
+  public int getGroupQueryThreads() {
+    return groupQueryThreads;
+  }
+
   /**
    * Whether the tree should be automatically rebuilt if the number of assets is different from the number of leaves in
    * the browse tree on startup
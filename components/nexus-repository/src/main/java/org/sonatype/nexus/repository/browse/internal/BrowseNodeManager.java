@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.repository.browse.internal;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -91,7 +93,40 @@ public class BrowseNodeManager
 
     String repositoryName = repository.getName();
     BrowseNodeGenerator generator = pathGenerators.getOrDefault(repository.getFormat().getValue(), defaultGenerator);
-    assets.forEach(asset -> createBrowseNodes(repositoryName, generator, asset));
+
+    Map<List<String>, Asset> assetNodes = new LinkedHashMap<>();
+    Map<List<String>, Component> componentNodes = new LinkedHashMap<>();
+    Map<EntityId, Component> components = new HashMap<>();
+    for (Asset asset : assets) {
+      try {
+        // assets of the same component tend to arrive together, so only read each component once
+        Component component = asset.componentId() != null ?
+            components.computeIfAbsent(asset.componentId(), componentStore::read) : null;
+
+        List<String> assetPath = generator.computeAssetPath(asset, component);
+        if (!assetPath.isEmpty()) {
+          assetNodes.put(assetPath, asset);
+        }
+
+        if (component != null) {
+          List<String> componentPath = generator.computeComponentPath(asset, component);
+          if (!componentPath.isEmpty()) {
+            componentNodes.putIfAbsent(componentPath, component);
+          }
+        }
+      }
+      catch (RuntimeException e) {
+        log.warn("Problem generating browse nodes for {}", asset, e);
+      }
+    }
+
+    try {
+      browseNodeStore.createNodes(repositoryName, assetNodes, componentNodes);
+    }
+    catch (RuntimeException e) {
+      log.debug("Problem creating browse nodes in bulk for {}, retrying one asset at a time", repositoryName, e);
+      assets.forEach(asset -> createBrowseNodes(repositoryName, generator, asset));
+    }
   }
 
   /**
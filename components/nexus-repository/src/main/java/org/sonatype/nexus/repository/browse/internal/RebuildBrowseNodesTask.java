@@ -12,7 +12,6 @@
  */
 package org.sonatype.nexus.repository.browse.internal;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
@@ -22,7 +21,6 @@ import javax.inject.Named;
 
 import org.sonatype.nexus.common.entity.EntityId;
 import org.sonatype.nexus.logging.task.ProgressLogIntervalHelper;
-import org.sonatype.nexus.orient.entity.AttachedEntityHelper;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.RepositoryTaskSupport;
 import org.sonatype.nexus.repository.browse.BrowseNodeConfiguration;
@@ -36,23 +34,24 @@ import org.sonatype.nexus.scheduling.TaskInterruptedException;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.index.OCompositeKey;
 import com.orientechnologies.orient.core.index.OIndexCursor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Browse nodes rebuild task.
  *
+ * Only the repository's own range of the bucket/component/name index is walked, one page of assets at a time, so the
+ * rebuild time is proportional to the size of the repository rather than the whole instance.
+ *
  * @since 3.6
  */
 @Named
 public class RebuildBrowseNodesTask
     extends RepositoryTaskSupport
 {
-  private static final int BUCKET_KEY_ID = 0;
-
   private final AssetStore assetStore;
 
   private final BucketStore bucketStore;
@@ -84,7 +83,6 @@ public class RebuildBrowseNodesTask
     browseNodeManager.deleteByRepository(repo.getName());
 
     Bucket bucket = bucketStore.read(repo.getName());
-    ORID bucketId = AttachedEntityHelper.id(bucket);
 
     try {
       long processed = 0;
@@ -95,19 +93,15 @@ public class RebuildBrowseNodesTask
         Stopwatch sw = Stopwatch.createStarted();
         long lastTime = sw.elapsed(TimeUnit.MILLISECONDS);
 
-        OIndexCursor cursor = assetStore.getIndex(AssetEntityAdapter.I_BUCKET_COMPONENT_NAME).cursor();
+        OIndexCursor cursor = assetStore.getIndexCursor(AssetEntityAdapter.I_BUCKET_COMPONENT_NAME, bucket);
         List<Entry<OCompositeKey, EntityId>> nextPage = assetStore.getNextPage(cursor, rebuildPageSize);
         while (!Iterables.isEmpty(nextPage)) {
           checkContinuation(repo);
 
-          List<Asset> assets = new ArrayList<>(rebuildPageSize);
-          for (Entry<OCompositeKey, EntityId> indexEntry : nextPage) {
-            if (bucketId.equals(indexEntry.getKey().getKeys().get(BUCKET_KEY_ID))) {
-              assets.add(assetStore.getById(indexEntry.getValue()));
-            }
-          }
+          List<EntityId> assetIds = nextPage.stream().map(Entry::getValue).collect(toList());
+          List<Asset> assets = ImmutableList.copyOf(assetStore.getByIds(assetIds));
 
-          int assetsSize = Iterables.size(assets);
+          int assetsSize = assets.size();
 
           browseNodeManager.createFromAssets(repo, assets);
 
@@ -0,0 +1,116 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tells a member request made by {@link GroupHandler} during parallel dispatch that its response is no longer needed,
+ * because a member earlier in group order has already answered.
+ *
+ * The member request runs with its cancellation bound to the thread, so code deep inside the member, such as a proxy
+ * about to contact its remote, can skip or abort work whose result would only be thrown away.
+ *
+ * @since 3.9
+ */
+public final class DispatchCancellation
+{
+  /**
+   * Stops running a cancellation action.
+   */
+  public interface Registration
+      extends AutoCloseable
+  {
+    @Override
+    void close();
+  }
+
+  private static final ThreadLocal<DispatchCancellation> current = new ThreadLocal<>();
+
+  private final List<Runnable> actions = new ArrayList<>();
+
+  private boolean cancelled;
+
+  DispatchCancellation() {
+    // created by GroupHandler only
+  }
+
+  /**
+   * Returns the cancellation of the member request running on this thread, or {@code null} outside parallel dispatch.
+   */
+  @Nullable
+  public static DispatchCancellation current() {
+    return current.get();
+  }
+
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Runs the action when the request is cancelled, unless the returned registration is closed first. The action runs
+   * at once if the request is already cancelled.
+   */
+  public Registration onCancel(final Runnable action) {
+    synchronized (this) {
+      if (!cancelled) {
+        actions.add(action);
+        return () -> {
+          synchronized (this) {
+            actions.remove(action);
+          }
+        };
+      }
+    }
+    action.run();
+    return () -> {
+      // nothing to stop
+    };
+  }
+
+  /**
+   * Calls the member request with this cancellation bound to the current thread.
+   */
+  <T> T call(final Callable<T> request) throws Exception {
+    DispatchCancellation previous = current.get();
+    current.set(this);
+    try {
+      return request.call();
+    }
+    finally {
+      if (previous != null) {
+        current.set(previous);
+      }
+      else {
+        current.remove();
+      }
+    }
+  }
+
+  void cancel() {
+    List<Runnable> pending;
+    synchronized (this) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      pending = new ArrayList<>(actions);
+      actions.clear();
+    }
+    pending.forEach(Runnable::run);
+  }
+}
@@ -18,6 +18,7 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -34,15 +35,24 @@ import org.sonatype.nexus.repository.cache.CacheInfo;
 import org.sonatype.nexus.repository.cache.RepositoryCacheUtils;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
+import org.sonatype.nexus.repository.manager.RepositoryCreatedEvent;
+import org.sonatype.nexus.repository.manager.RepositoryDeletedEvent;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.repository.manager.RepositoryUpdatedEvent;
 import org.sonatype.nexus.repository.types.GroupType;
 import org.sonatype.nexus.repository.view.Content;
 import org.sonatype.nexus.validation.ConstraintViolationFactory;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.repository.FacetSupport.State.STARTED;
 import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_ATTRIBUTES;
@@ -52,6 +62,10 @@ import static org.sonatype.nexus.validation.ConstraintViolations.maybePropagate;
 /**
  * Default {@link GroupFacet} implementation.
  *
+ * Resolved member lists are cached in an immutable snapshot, rebuilt on first use after this group is configured or
+ * any repository is created, updated or deleted. A shared generation counter makes sure a nested group's snapshot
+ * is never reused once it has gone stale, whichever group notices the change first.
+ *
  * @since 3.0
  */
 @Named("default")
@@ -83,8 +97,19 @@ public class GroupFacetImpl
     }
   }
 
+  /**
+   * Bumped whenever any repository is created, updated or deleted; snapshots from earlier generations are stale.
+   */
+  private static final AtomicLong membershipGeneration = new AtomicLong();
+
   private Config config;
 
+  private volatile MemberSnapshot memberSnapshot;
+
+  private volatile AllMemberSnapshot allMemberSnapshot;
+
+  private Meter snapshotRebuilds;
+
   protected CacheController cacheController;
 
   @Inject
@@ -97,6 +122,14 @@ public class GroupFacetImpl
     this.constraintViolationFactory = checkNotNull(constraintViolationFactory);
   }
 
+  /**
+   * @since 3.9
+   */
+  @Inject
+  public void setMetricRegistry(final MetricRegistry metricRegistry) {
+    this.snapshotRebuilds = metricRegistry.meter(name(GroupFacetImpl.class, "memberSnapshot", "rebuilds"));
+  }
+
   @Override
   protected void doValidate(final Configuration configuration) throws Exception {
     facet(ConfigurationFacet.class).validateSection(configuration, CONFIG_KEY, Config.class);
@@ -136,6 +169,8 @@ public class GroupFacetImpl
   @Override
   protected void doConfigure(final Configuration configuration) throws Exception {
     config = facet(ConfigurationFacet.class).readSection(configuration, CONFIG_KEY, Config.class);
+    memberSnapshot = null;
+    allMemberSnapshot = null;
 
     cacheController = new CacheController(-1, null);
 
@@ -157,6 +192,32 @@ public class GroupFacetImpl
   @Override
   protected void doDestroy() throws Exception {
     config = null;
+    memberSnapshot = null;
+    allMemberSnapshot = null;
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryCreatedEvent event) {
+    invalidateMemberSnapshots();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryUpdatedEvent event) {
+    invalidateMemberSnapshots();
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryDeletedEvent event) {
+    invalidateMemberSnapshots();
+  }
+
+  private void invalidateMemberSnapshots() {
+    membershipGeneration.incrementAndGet();
+    memberSnapshot = null;
+    allMemberSnapshot = null;
   }
 
   @Override
@@ -176,6 +237,46 @@ public class GroupFacetImpl
   @Override
   @Guarded(by = STARTED)
   public List<Repository> members() {
+    return memberSnapshot().members;
+  }
+
+  @Override
+  public List<Repository> leafMembers() {
+    return memberSnapshot().leafMembers;
+  }
+
+  @Override
+  public List<Repository> allMembers() {
+    AllMemberSnapshot snapshot = allMemberSnapshot;
+    long generation = membershipGeneration.get();
+    if (snapshot == null || snapshot.generation != generation) {
+      snapshot = new AllMemberSnapshot(generation, allMembers(new ArrayList<>(), getRepository()));
+      allMemberSnapshot = snapshot;
+      markRebuilt();
+    }
+    return snapshot.allMembers;
+  }
+
+  private MemberSnapshot memberSnapshot() {
+    MemberSnapshot snapshot = memberSnapshot;
+    long generation = membershipGeneration.get();
+    if (snapshot == null || snapshot.generation != generation) {
+      // generation is read before resolving, so a change made meanwhile leaves this snapshot stale
+      snapshot = new MemberSnapshot(generation, resolveMembers());
+      memberSnapshot = snapshot;
+      markRebuilt();
+      log.trace("Rebuilt member snapshot of {}: {}", getRepository().getName(), snapshot.members);
+    }
+    return snapshot;
+  }
+
+  private void markRebuilt() {
+    if (snapshotRebuilds != null) {
+      snapshotRebuilds.mark();
+    }
+  }
+
+  private List<Repository> resolveMembers() {
     final Repository repository = getRepository();
 
     List<Repository> members = new ArrayList<>(config.memberNames.size());
@@ -195,11 +296,10 @@ public class GroupFacetImpl
     return members;
   }
 
-  @Override
-  public List<Repository> leafMembers() {
+  private List<Repository> resolveLeafMembers(final List<Repository> members) {
     Set<Repository> leafMembers = new LinkedHashSet<>();
 
-    for (Repository repository : members()) {
+    for (Repository repository : members) {
       if (groupType.equals(repository.getType())) {
         leafMembers.addAll(repository.facet(GroupFacet.class).leafMembers());
       }
@@ -208,12 +308,7 @@ public class GroupFacetImpl
       }
     }
 
-    return new ArrayList<>(leafMembers);
-  }
-
-  @Override
-  public List<Repository> allMembers() {
-    return allMembers(new ArrayList<>(), getRepository());
+    return ImmutableList.copyOf(leafMembers);
   }
 
   private static List<Repository> allMembers(final List<Repository> members, final Repository root) {
@@ -226,6 +321,39 @@ public class GroupFacetImpl
     return members;
   }
 
+  /**
+   * Immutable view of this group's direct and leaf members.
+   */
+  private class MemberSnapshot
+  {
+    private final long generation;
+
+    private final List<Repository> members;
+
+    private final List<Repository> leafMembers;
+
+    MemberSnapshot(final long generation, final List<Repository> members) {
+      this.generation = generation;
+      this.members = ImmutableList.copyOf(members);
+      this.leafMembers = resolveLeafMembers(this.members);
+    }
+  }
+
+  /**
+   * Immutable view of this group and all its nested members.
+   */
+  private static class AllMemberSnapshot
+  {
+    private final long generation;
+
+    private final List<Repository> allMembers;
+
+    AllMemberSnapshot(final long generation, final List<Repository> allMembers) {
+      this.generation = generation;
+      this.allMembers = ImmutableList.copyOf(allMembers);
+    }
+  }
+
   @Override
   public void invalidateGroupCaches() {
     log.info("Invalidating group caches of {}", getRepository().getName());
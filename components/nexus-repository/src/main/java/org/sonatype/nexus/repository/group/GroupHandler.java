@@ -12,24 +12,33 @@
  */
 package org.sonatype.nexus.repository.group;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.sonatype.goodies.common.ComponentSupport;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.types.GroupType;
 import org.sonatype.nexus.repository.view.Context;
 import org.sonatype.nexus.repository.view.Handler;
+import org.sonatype.nexus.repository.view.Payload;
 import org.sonatype.nexus.repository.view.Request;
 import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.ViewFacet;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -53,7 +62,8 @@ public class GroupHandler
   @VisibleForTesting
   public static class DispatchedRepositories
   {
-    private final Set<String> dispatched = Sets.newLinkedHashSet();
+    // synchronized as members of nested groups may be dispatched to concurrently
+    private final Set<String> dispatched = Collections.synchronizedSet(Sets.newLinkedHashSet());
 
     public void add(final Repository repository) {
       dispatched.add(repository.getName());
@@ -69,6 +79,26 @@ public class GroupHandler
     }
   }
 
+  private ParallelGroupDispatcher parallelDispatcher;
+
+  private GroupMembershipIndex membershipIndex;
+
+  /**
+   * @since 3.9
+   */
+  @Inject
+  protected void setParallelDispatcher(final ParallelGroupDispatcher parallelDispatcher) {
+    this.parallelDispatcher = parallelDispatcher;
+  }
+
+  /**
+   * @since 3.9
+   */
+  @Inject
+  protected void setMembershipIndex(final GroupMembershipIndex membershipIndex) {
+    this.membershipIndex = membershipIndex;
+  }
+
   @Nonnull
   @Override
   public Response handle(@Nonnull final Context context) throws Exception {
@@ -100,12 +130,19 @@ public class GroupHandler
   /**
    * Returns the first OK response from member repositories or {@link HttpResponses#notFound()} if none of the members
    * responded with OK.
+   *
+   * When {@link ParallelGroupDispatcher parallel dispatch} is enabled nested groups are resolved to their members and
+   * all of them are asked at once, but the response of the earliest successful member in group order still wins.
    */
   protected Response getFirst(@Nonnull final Context context,
                               @Nonnull final List<Repository> members,
                               @Nonnull final DispatchedRepositories dispatched)
       throws Exception
   {
+    if (parallelDispatcher != null && parallelDispatcher.isEnabled() && members.size() > 1) {
+      return getFirstInParallel(context, members, dispatched);
+    }
+
     final Request request = context.getRequest();
     for (Repository member : members) {
       log.trace("Trying member: {}", member);
@@ -116,6 +153,11 @@ public class GroupHandler
       }
       dispatched.add(member);
 
+      if (!mightContain(member, request)) {
+        log.trace("Skipping member without requested path: {}", member);
+        continue;
+      }
+
       final ViewFacet view = member.facet(ViewFacet.class);
       final Response response = view.dispatch(request, context);
       log.trace("Member {} response {}", member, response.getStatus());
@@ -126,6 +168,164 @@ public class GroupHandler
     return notFoundResponse(context);
   }
 
+  private Response getFirstInParallel(final Context context,
+                                      final List<Repository> members,
+                                      final DispatchedRepositories dispatched)
+      throws Exception
+  {
+    final Request request = context.getRequest();
+
+    List<Repository> leaves = new ArrayList<>(members.size());
+    claimLeaves(members, dispatched, request, leaves);
+
+    List<MemberDispatch> dispatches = new ArrayList<>(leaves.size());
+    List<Future<Response>> pending = new ArrayList<>(leaves.size());
+    for (Repository leaf : leaves) {
+      log.trace("Trying member: {}", leaf);
+      MemberDispatch dispatch = new MemberDispatch(leaf.facet(ViewFacet.class), context);
+      dispatches.add(dispatch);
+      // null when no dispatch thread is free, the member is then asked in turn below
+      pending.add(parallelDispatcher.trySubmit(dispatch));
+    }
+
+    try {
+      for (int i = 0; i < pending.size(); i++) {
+        Future<Response> future = pending.get(i);
+        final Response response = future != null ? await(future) : dispatches.get(i).call();
+        log.trace("Member {} response {}", leaves.get(i), response.getStatus());
+        if (response.getStatus().isSuccessful()) {
+          discard(dispatches.subList(i + 1, dispatches.size()));
+          return response;
+        }
+      }
+    }
+    catch (Exception e) {
+      discard(dispatches);
+      throw e;
+    }
+    return notFoundResponse(context);
+  }
+
+  /**
+   * Claims members the way sequential dispatch would, descending into nested groups in place, and collects the leaf
+   * members to dispatch to in the order sequential dispatch would have reached them.
+   *
+   * Nested groups are resolved up front rather than dispatched to concurrently, as their members are claimed while
+   * they run: a later member shared with an earlier nested group could otherwise be claimed first and served ahead of
+   * the nested group's other members.
+   */
+  private void claimLeaves(final List<Repository> members,
+                           final DispatchedRepositories dispatched,
+                           final Request request,
+                           final List<Repository> leaves)
+  {
+    for (Repository member : members) {
+      // track repositories we have dispatched to, prevent circular dispatch for nested groups
+      if (dispatched.contains(member)) {
+        log.trace("Skipping already dispatched member: {}", member);
+        continue;
+      }
+      dispatched.add(member);
+
+      if (member.getType() instanceof GroupType) {
+        claimLeaves(member.facet(GroupFacet.class).members(), dispatched, request, leaves);
+      }
+      else if (!mightContain(member, request)) {
+        log.trace("Skipping member without requested path: {}", member);
+      }
+      else {
+        leaves.add(member);
+      }
+    }
+  }
+
+  private boolean mightContain(final Repository member, final Request request) {
+    return membershipIndex == null || membershipIndex.mightContain(member, request.getPath());
+  }
+
+  private static Response await(final Future<Response> future) throws Exception {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  /**
+   * Drops member requests whose response is no longer needed. Requests not yet started don't run at all. Those already
+   * running are not interrupted, but their {@link DispatchCancellation} is signalled, so a proxy member skips or aborts
+   * its remote request; their payloads are released once they complete.
+   */
+  private void discard(final List<MemberDispatch> dispatches) {
+    dispatches.forEach(MemberDispatch::discard);
+  }
+
+  /**
+   * Request to a single member which releases its own response if it is discarded.
+   */
+  private class MemberDispatch
+      implements Callable<Response>
+  {
+    private final ViewFacet view;
+
+    private final Context context;
+
+    private final DispatchCancellation cancellation = new DispatchCancellation();
+
+    private boolean discarded;
+
+    private Response response;
+
+    MemberDispatch(final ViewFacet view, final Context context) {
+      this.view = view;
+      this.context = context;
+    }
+
+    @Override
+    public Response call() throws Exception {
+      synchronized (this) {
+        if (discarded) {
+          return null;
+        }
+      }
+      Response memberResponse = cancellation.call(() -> view.dispatch(context.getRequest(), context));
+      synchronized (this) {
+        if (discarded) {
+          release(memberResponse);
+          return null;
+        }
+        response = memberResponse;
+        return memberResponse;
+      }
+    }
+
+    void discard() {
+      synchronized (this) {
+        discarded = true;
+        if (response != null) {
+          release(response);
+          response = null;
+        }
+      }
+      cancellation.cancel();
+    }
+  }
+
+  private void release(final Response response) {
+    Payload payload = response.getPayload();
+    if (payload != null) {
+      try {
+        payload.close();
+      }
+      catch (Exception e) {
+        log.trace("Ignoring discarded member response", e);
+      }
+    }
+  }
+
   /**
    * Returns all responses from all members as a linked map, where order is group member order.
    */
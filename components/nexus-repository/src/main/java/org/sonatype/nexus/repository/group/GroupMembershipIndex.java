@@ -0,0 +1,317 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.event.EventAware;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.Type;
+import org.sonatype.nexus.repository.manager.RepositoryDeletedEvent;
+import org.sonatype.nexus.repository.storage.AssetCreatedEvent;
+import org.sonatype.nexus.repository.storage.AssetDeletedEvent;
+import org.sonatype.nexus.repository.storage.Bucket;
+import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.repository.storage.StorageTx;
+import org.sonatype.nexus.repository.types.HostedType;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+import org.sonatype.nexus.transaction.Transactional;
+import org.sonatype.nexus.transaction.UnitOfWork;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.singletonList;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+import static org.sonatype.nexus.orient.entity.AttachedEntityHelper.id;
+import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_BUCKET;
+import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_NAME;
+
+/**
+ * Per-member index of asset names used by {@link GroupHandler} to skip hosted members that definitely do not contain
+ * a requested path.
+ *
+ * Each hosted member of an enabled format gets a {@link BloomFilter} of its asset names, built in the background from
+ * the database on first use and then maintained from asset events. Bloom filters have no false negatives, so a member
+ * is only skipped when the path was never stored there; deletes cannot be removed from the filter and instead trigger
+ * a rebuild once they make up a large share of its content. A failed build leaves a placeholder behind, so the member
+ * is not rescanned before {@code nexus.group.membershipIndex.retryDelay} has passed, doubling with each failure in a
+ * row up to {@code nexus.group.membershipIndex.maxRetryDelay}.
+ *
+ * The asset events are consumed synchronously, so content is in the index before the storing request completes.
+ *
+ * @since 3.9
+ */
+@Named
+@ManagedLifecycle(phase = SERVICES)
+@Singleton
+public class GroupMembershipIndex
+    extends LifecycleSupport
+    implements EventAware
+{
+  private static final String SELECT_ASSET_NAMES = "SELECT name FROM asset WHERE bucket = :bucket";
+
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+  private static final long MIN_CAPACITY = 10_000;
+
+  private final boolean enabled;
+
+  private final Set<String> formats;
+
+  private final Type hostedType;
+
+  private final long retryDelay;
+
+  private final long maxRetryDelay;
+
+  private final ConcurrentMap<String, MemberFilter> filters = new ConcurrentHashMap<>();
+
+  private ExecutorService buildExecutor;
+
+  @Inject
+  public GroupMembershipIndex(@Named("${nexus.group.membershipIndex.enabled:-true}") final boolean enabled,
+                              @Named("${nexus.group.membershipIndex.formats:-maven2,raw}") final String formats,
+                              @Named(HostedType.NAME) final Type hostedType,
+                              @Named("${nexus.group.membershipIndex.retryDelay:-30s}") final Time retryDelay,
+                              @Named("${nexus.group.membershipIndex.maxRetryDelay:-30m}") final Time maxRetryDelay)
+  {
+    this.enabled = enabled;
+    this.formats = ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(formats));
+    this.hostedType = checkNotNull(hostedType);
+    this.retryDelay = retryDelay.toMillis();
+    this.maxRetryDelay = maxRetryDelay.toMillis();
+    checkArgument(this.retryDelay > 0, "Retry delay must be positive");
+    checkArgument(this.maxRetryDelay >= this.retryDelay, "Maximum retry delay must not be less than retry delay");
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    if (enabled) {
+      buildExecutor = Executors.newSingleThreadExecutor(
+          new NexusThreadFactory("group-membership-index", "group-membership-index"));
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    if (buildExecutor != null) {
+      buildExecutor.shutdownNow();
+      if (!buildExecutor.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+      buildExecutor = null;
+    }
+    filters.clear();
+  }
+
+  /**
+   * Returns {@code false} only if the member is known to contain no asset for the given request path.
+   */
+  public boolean mightContain(final Repository member, final String path) {
+    if (!isIndexed(member) || path.endsWith("/")) {
+      return true;
+    }
+    MemberFilter filter = filters.get(member.getName());
+    if (filter == null || filter.isRetryDue()) {
+      scheduleBuild(member, filter);
+      return true;
+    }
+    return filter.mightContain(assetName(path));
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final AssetCreatedEvent event) {
+    MemberFilter filter = filters.get(event.getRepositoryName());
+    if (filter != null && !filter.put(event.getAsset().name())) {
+      log.debug("Membership index of {} is over capacity, rebuilding", event.getRepositoryName());
+      filters.remove(event.getRepositoryName(), filter);
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final AssetDeletedEvent event) {
+    MemberFilter filter = filters.get(event.getRepositoryName());
+    if (filter != null && !filter.delete()) {
+      log.debug("Membership index of {} has too many deletions, rebuilding", event.getRepositoryName());
+      filters.remove(event.getRepositoryName(), filter);
+    }
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final RepositoryDeletedEvent event) {
+    filters.remove(event.getRepository().getName());
+  }
+
+  private boolean isIndexed(final Repository member) {
+    return enabled && hostedType.equals(member.getType()) && formats.contains(member.getFormat().getValue());
+  }
+
+  @VisibleForTesting
+  static String assetName(final String path) {
+    return path.startsWith("/") ? path.substring(1) : path;
+  }
+
+  /**
+   * Schedules a build of the member's index, unless one is already under way.
+   *
+   * @param failed the placeholder of the last build, if it failed
+   */
+  private void scheduleBuild(final Repository member, @Nullable final MemberFilter failed) {
+    ExecutorService executor = buildExecutor;
+    if (executor == null) {
+      return;
+    }
+    MemberFilter placeholder = new MemberFilter(0);
+    boolean claimed = failed == null
+        ? filters.putIfAbsent(member.getName(), placeholder) == null
+        : filters.replace(member.getName(), failed, placeholder);
+    if (claimed) {
+      int failures = failed == null ? 0 : failed.getFailures();
+      executor.execute(() -> build(member, placeholder, failures));
+    }
+  }
+
+  /**
+   * Builds the member's index in place of the given placeholder. On failure the placeholder is put back, marked to be
+   * retried after a delay.
+   *
+   * @param failures how many builds in a row have failed before this one
+   */
+  @VisibleForTesting
+  void build(final Repository member, final MemberFilter placeholder, final int failures) {
+    String name = member.getName();
+    AtomicReference<MemberFilter> published = new AtomicReference<>(placeholder);
+    try {
+      log.debug("Building membership index of {}", name);
+      Transactional.operation.withDb(member.facet(StorageFacet.class).txSupplier()).call(() -> {
+        StorageTx tx = UnitOfWork.currentTx();
+        Bucket bucket = tx.findBucket(member);
+        long count = tx.countAssets(null, null, singletonList(member), null);
+        MemberFilter filter = new MemberFilter(count);
+
+        // publish before scanning so assets created meanwhile are caught by the event subscriber
+        if (!filters.replace(name, placeholder, filter)) {
+          return null;
+        }
+        published.set(filter);
+        for (ODocument document : tx.browse(SELECT_ASSET_NAMES, ImmutableMap.of(P_BUCKET, id(bucket)))) {
+          filter.put(document.field(P_NAME, String.class));
+        }
+        filter.markReady();
+        log.debug("Built membership index of {} with {} assets", name, count);
+        return null;
+      });
+    }
+    catch (Exception e) {
+      long delay = Math.min(maxRetryDelay, retryDelay * (1L << Math.min(failures, 20)));
+      log.warn("Failed to build membership index of {}, retrying in {}", name, Time.millis(delay),
+          log.isDebugEnabled() ? e : null);
+      placeholder.markFailed(failures + 1, System.currentTimeMillis() + delay);
+      filters.replace(name, published.get(), placeholder);
+    }
+  }
+
+  /**
+   * Bloom filter of a member's asset names; answers "might contain" until fully populated.
+   */
+  @VisibleForTesting
+  static class MemberFilter
+  {
+    private final BloomFilter<CharSequence> bloomFilter;
+
+    private final long capacity;
+
+    private long insertions;
+
+    private long deletions;
+
+    private volatile boolean ready;
+
+    private volatile int failures;
+
+    private volatile long retryAt;
+
+    MemberFilter(final long assetCount) {
+      this.capacity = Math.max(MIN_CAPACITY, assetCount * 2);
+      this.bloomFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity,
+          FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * Returns {@code false} when the filter has exceeded its capacity and should be rebuilt.
+     */
+    synchronized boolean put(final String assetName) {
+      bloomFilter.put(assetName);
+      return ++insertions <= capacity;
+    }
+
+    /**
+     * Returns {@code false} when deletions have made the filter too imprecise and it should be rebuilt.
+     */
+    synchronized boolean delete() {
+      return ++deletions <= insertions / 2 || !ready;
+    }
+
+    synchronized boolean mightContain(final String assetName) {
+      return !ready || bloomFilter.mightContain(assetName);
+    }
+
+    void markReady() {
+      ready = true;
+    }
+
+    /**
+     * Marks this placeholder as left by a failed build, which should be retried once {@code retryAt} has passed.
+     */
+    void markFailed(final int failures, final long retryAt) {
+      this.failures = failures;
+      this.retryAt = retryAt;
+    }
+
+    int getFailures() {
+      return failures;
+    }
+
+    boolean isRetryDue() {
+      return retryAt != 0 && System.currentTimeMillis() >= retryAt;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.thread.NexusExecutorService;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Bounded executor used by {@link GroupHandler} to dispatch requests to group members concurrently.
+ *
+ * Parallel dispatch is opt-in, enabled with {@code nexus.group.parallelDispatch.enabled}. Member requests are never
+ * queued: when all threads are busy they are refused, and the group asks those members itself, in order, only if no
+ * earlier member answered.
+ *
+ * @since 3.9
+ */
+@Named
+@ManagedLifecycle(phase = SERVICES)
+@Singleton
+public class ParallelGroupDispatcher
+    extends LifecycleSupport
+{
+  private final boolean enabled;
+
+  private final int maxThreads;
+
+  private volatile NexusExecutorService executor;
+
+  @Inject
+  public ParallelGroupDispatcher(@Named("${nexus.group.parallelDispatch.enabled:-false}") final boolean enabled,
+                                 @Named("${nexus.group.parallelDispatch.maxThreads:-50}") final int maxThreads)
+  {
+    checkArgument(maxThreads > 0, "Maximum threads must be greater than zero");
+    this.enabled = enabled;
+    this.maxThreads = maxThreads;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    if (enabled) {
+      ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+          0,
+          maxThreads,
+          60L,
+          TimeUnit.SECONDS,
+          new SynchronousQueue<>(),
+          new NexusThreadFactory("group-dispatch", "group-dispatch")
+      );
+      executor = NexusExecutorService.forCurrentSubject(threadPool);
+      log.info("Parallel group dispatch enabled with up to {} threads", maxThreads);
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    NexusExecutorService currentExecutor = executor;
+    executor = null;
+    if (currentExecutor != null) {
+      currentExecutor.shutdown();
+      if (!currentExecutor.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if group members should be dispatched to concurrently.
+   */
+  public boolean isEnabled() {
+    return isStarted() && executor != null;
+  }
+
+  /**
+   * Submits a member request to a free dispatch thread, returns {@code null} if there is none or the dispatcher is
+   * stopping.
+   */
+  @Nullable
+  public <T> Future<T> trySubmit(final Callable<T> task) {
+    NexusExecutorService currentExecutor = executor;
+    if (currentExecutor == null) {
+      return null;
+    }
+    try {
+      return currentExecutor.submit(task);
+    }
+    catch (RejectedExecutionException e) { // NOSONAR
+      return null;
+    }
+  }
+}
@@ -21,8 +21,6 @@ import org.sonatype.nexus.repository.view.Payload;
 
 import com.google.common.collect.Range;
 
-import static com.google.common.io.ByteStreams.limit;
-
 /**
  * A wrapper {@link Payload} that returns only a portion of the original payload.
  *
@@ -48,9 +46,7 @@ class PartialPayload
 
   @Override
   public InputStream openInputStream() throws IOException {
-    final InputStream payloadStream = payload.openInputStream();
-    payloadStream.skip(rangeToSend.lowerEndpoint());
-    return limit(payloadStream, partialSize);
+    return payload.openInputStream(rangeToSend.lowerEndpoint(), partialSize);
   }
 
   @Override
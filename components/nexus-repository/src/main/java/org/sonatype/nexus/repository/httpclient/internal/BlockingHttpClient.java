@@ -14,7 +14,8 @@ package org.sonatype.nexus.repository.httpclient.internal;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -28,12 +29,14 @@ import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatus;
 import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusObserver;
 import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusType;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.execchain.RequestAbortedException;
 import org.joda.time.DateTime;
-import org.joda.time.Duration;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusType.AUTO_BLOCKED_UNAVAILABLE;
@@ -47,6 +50,11 @@ import static org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusTyp
 /**
  * Wraps an {@link HttpClient} with manual and automatic blocking functionality.
  *
+ * Connection status is kept in an immutable {@link State} swapped by compare-and-set, so requests to a healthy remote
+ * only read it and never contend with each other. Each state carries a sequence number so observers are told about
+ * transitions in order, skipping any already superseded by the time they would be reported. Delayed status checks of auto-blocked remotes are run by the shared
+ * {@link StatusCheckScheduler}.
+ *
  * @since 3.0
  */
 public class BlockingHttpClient
@@ -55,28 +63,52 @@ public class BlockingHttpClient
 {
   private final boolean blocked;
 
-  private HttpHost mainTarget;
-
-  private DateTime blockedUntil;
-
-  private Thread checkThread;
+  private volatile HttpHost mainTarget;
 
   private final boolean autoBlock;
 
-  private final NumberSequence autoBlockSequence;
+  private final long autoBlockMillis;
 
   private final RemoteConnectionStatusObserver statusObserver;
 
-  private RemoteConnectionStatus status = new RemoteConnectionStatus(UNINITIALISED);
+  private final StatusCheckScheduler statusCheckScheduler;
+
+  private final RemoteHealthMetrics metrics;
 
-  public BlockingHttpClient(final HttpClient delegate,
-                            final HttpClientFacetImpl.Config config,
-                            final RemoteConnectionStatusObserver statusObserver,
-                            final boolean repositoryOnline)
+  private final AtomicReference<State> state = new AtomicReference<>(
+      new State(0, new RemoteConnectionStatus(UNINITIALISED), null, null, 0, null));
+
+  private final Object notifyLock = new Object();
+
+  private State notified = state.get();
+
+  BlockingHttpClient(final HttpClient delegate,
+                     final HttpClientFacetImpl.Config config,
+                     final RemoteConnectionStatusObserver statusObserver,
+                     final boolean repositoryOnline,
+                     final StatusCheckScheduler statusCheckScheduler,
+                     final RemoteHealthMetrics metrics)
+  {
+    // TODO shall we use config.getConnectionConfig().getTimeout() * 2 as in NX2?
+    this(delegate, config, statusObserver, repositoryOnline, statusCheckScheduler, metrics,
+        Time.seconds(40).toMillis());
+  }
+
+  @VisibleForTesting
+  BlockingHttpClient(final HttpClient delegate,
+                     final HttpClientFacetImpl.Config config,
+                     final RemoteConnectionStatusObserver statusObserver,
+                     final boolean repositoryOnline,
+                     final StatusCheckScheduler statusCheckScheduler,
+                     final RemoteHealthMetrics metrics,
+                     final long autoBlockMillis)
   {
     super(delegate);
     checkNotNull(config);
     this.statusObserver = checkNotNull(statusObserver);
+    this.statusCheckScheduler = checkNotNull(statusCheckScheduler);
+    this.metrics = checkNotNull(metrics);
+    this.autoBlockMillis = autoBlockMillis;
     blocked = config.blocked != null ? config.blocked : false;
     autoBlock = config.autoBlock != null ? config.autoBlock : false;
     if (repositoryOnline) {
@@ -85,8 +117,6 @@ public class BlockingHttpClient
     else {
       updateStatus(OFFLINE);
     }
-    // TODO shall we use config.getConnectionConfig().getTimeout() * 2 as in NX2?
-    autoBlockSequence = new FibonacciNumberSequence(Time.seconds(40).toMillis());
   }
 
   protected <T> T filter(final HttpHost target, final Filterable<T> filterable) throws IOException {
@@ -99,92 +129,142 @@ public class BlockingHttpClient
       return filterable.call();
     }
     if (blocked) {
+      metrics.rejected();
       throw new RemoteBlockedIOException("Remote Manually Blocked");
     }
-    DateTime blockedUntilCopy = this.blockedUntil;
-    if (autoBlock && blockedUntilCopy != null && blockedUntilCopy.isAfterNow()) {
-      throw new RemoteBlockedIOException("Remote Auto Blocked until " + blockedUntilCopy);
+    DateTime blockedUntil = state.get().blockedUntil;
+    if (autoBlock && blockedUntil != null && blockedUntil.isAfterNow()) {
+      metrics.rejected();
+      throw new RemoteBlockedIOException("Remote Auto Blocked until " + blockedUntil);
     }
 
-    Optional<IOException> exception = Optional.empty();
-    T result = null;
+    long start = System.nanoTime();
+    T result;
     try {
       result = filterable.call();
     }
     catch (IOException e) {
-      exception = Optional.of(e);
+      metrics.failure();
+      if (isRemoteUnavailable(e)) {
+        onRemoteUnavailable(target, e);
+      }
+      throw e;
+    }
+    metrics.success(System.nanoTime() - start);
+    onRemoteAvailable();
+    return result;
+  }
+
+  private void onRemoteAvailable() {
+    State current;
+    State next;
+    do {
+      current = state.get();
+      if (current.status.getType() == AVAILABLE) {
+        return;
+      }
+      next = new State(current.sequence + 1, new RemoteConnectionStatus(AVAILABLE), null, null, 0, null);
+    }
+    while (!state.compareAndSet(current, next));
+
+    if (current.blockedSince != null) {
+      cancelStatusCheck(current);
+      metrics.unblocked(DateTime.now().getMillis() - current.blockedSince.getMillis());
     }
+    notifyStatusChanged(next);
+  }
 
-    synchronized (this) {
-      if (!exception.isPresent()) {
-        if (autoBlock && blockedUntil != null) {
-            blockedUntil = null;
-            checkThread.interrupt();
-            checkThread = null;
-            autoBlockSequence.reset();
+  private void onRemoteUnavailable(final HttpHost target, final IOException e) {
+    String uri = target.toURI();
+    State current;
+    State next;
+    do {
+      current = state.get();
+      if (autoBlock) {
+        // some other thread has already (re-)blocked the remote
+        if (current.blockedUntil != null && current.blockedUntil.isAfterNow()) {
+          return;
         }
-        updateStatus(AVAILABLE);
+        DateTime now = DateTime.now();
+        DateTime blockedUntil = now.plus(autoBlockDelay(current.autoBlocks));
+        next = new State(
+            current.sequence + 1,
+            new RemoteConnectionStatus(AUTO_BLOCKED_UNAVAILABLE, getReason(e))
+                .setBlockedUntil(blockedUntil)
+                .setRequestUrl(uri),
+            blockedUntil,
+            current.blockedSince != null ? current.blockedSince : now,
+            current.autoBlocks + 1,
+            new StatusCheck(uri));
       }
       else {
-        IOException e = exception.get();
-        if (isRemoteUnavailable(e)) {
-          if (autoBlock) {
-            // avoid some other thread already increased the sequence
-            if (blockedUntil == null || blockedUntil.isBeforeNow()) {
-              blockedUntil = DateTime.now().plus(autoBlockSequence.next());
-              if (checkThread != null) {
-                checkThread.interrupt();
-              }
-              String uri = target.toURI();
-              // TODO maybe find different means to schedule status checking
-              checkThread = new Thread(new CheckStatus(uri, blockedUntil), "Check Status " + uri);
-              checkThread.setDaemon(true);
-              checkThread.start();
-            }
-            updateStatus(AUTO_BLOCKED_UNAVAILABLE, getReason(e), target.toURI(),
-                blockedUntil.isAfter(status.getBlockedUntil()));
-          }
-          else {
-            updateStatus(UNAVAILABLE, getReason(e), target.toURI(), false);
-          }
+        if (current.status.getType() == UNAVAILABLE) {
+          return;
         }
+        next = new State(current.sequence + 1, new RemoteConnectionStatus(UNAVAILABLE, getReason(e)).setRequestUrl(uri),
+            null, null, 0, null);
       }
     }
+    while (!state.compareAndSet(current, next));
 
-    if (exception.isPresent()) {
-      throw exception.get();
-    }
-    else {
-      return result;
+    cancelStatusCheck(current);
+    if (next.statusCheck != null) {
+      next.statusCheck.schedule(next.blockedUntil.getMillis() - DateTime.now().getMillis());
     }
+    notifyStatusChanged(next);
   }
 
-  private void updateStatus(final RemoteConnectionStatusType type,
-                            final String reason,
-                            @Nullable final String url,
-                            final boolean autoBlockTimeIncrease)
-  {
-    if (type != status.getType() || autoBlockTimeIncrease) {
-      RemoteConnectionStatus oldStatus = status;
-      status = new RemoteConnectionStatus(type, reason)
-          .setBlockedUntil(blockedUntil)
-          .setRequestUrl(url);
-      statusObserver.onStatusChanged(oldStatus, status);
+  /**
+   * Returns the delay of the next auto-block, growing along a Fibonacci sequence with consecutive blocks.
+   */
+  private long autoBlockDelay(final int previousBlocks) {
+    NumberSequence sequence = new FibonacciNumberSequence(autoBlockMillis);
+    for (int i = 0; i < previousBlocks; i++) {
+      sequence.next();
     }
+    return sequence.next();
   }
 
   private void updateStatus(final RemoteConnectionStatusType type) {
-    updateStatus(type, null, null, false);
+    State current;
+    State next;
+    do {
+      current = state.get();
+      next = new State(current.sequence + 1, new RemoteConnectionStatus(type), null, null, 0, null);
+    }
+    while (!state.compareAndSet(current, next));
+
+    cancelStatusCheck(current);
+    notifyStatusChanged(next);
+  }
+
+  /**
+   * Tells the observer about a transition unless a later one has already been reported, so it never sees statuses
+   * out of order. The previous status reported is the last one the observer was told about.
+   */
+  private void notifyStatusChanged(final State next) {
+    synchronized (notifyLock) {
+      if (next.sequence <= notified.sequence) {
+        return;
+      }
+      State previous = notified;
+      notified = next;
+      statusObserver.onStatusChanged(previous.status, next.status);
+    }
   }
 
   public RemoteConnectionStatus getStatus() {
-    return status;
+    return state.get().status;
   }
 
   private boolean isRemoteUnavailable(final Exception e) {
     if (e instanceof ConnectionPoolTimeoutException) {
       return false;
     }
+    // aborted by us, e.g. a group no longer needing the response
+    if (e instanceof RequestAbortedException) {
+      return false;
+    }
     return true;
   }
 
@@ -195,48 +275,95 @@ public class BlockingHttpClient
     return e.getClass().getName() + ": " + e.getMessage();
   }
 
+  private static void cancelStatusCheck(final State previous) {
+    if (previous.statusCheck != null) {
+      previous.statusCheck.cancel();
+    }
+  }
+
   @Override
   public void close() throws IOException {
-    if (checkThread != null) {
-      checkThread.interrupt();
-    }
+    cancelStatusCheck(state.get());
+    metrics.remove();
     super.close();
   }
 
-  private class CheckStatus
-      implements Runnable
+  /**
+   * Immutable connection status, replaced as a whole on every transition.
+   */
+  private static class State
   {
+    private final long sequence;
+
+    private final RemoteConnectionStatus status;
+
+    @Nullable
+    private final DateTime blockedUntil;
 
+    @Nullable
+    private final DateTime blockedSince;
+
+    private final int autoBlocks;
+
+    @Nullable
+    private final StatusCheck statusCheck;
+
+    State(final long sequence,
+          final RemoteConnectionStatus status,
+          @Nullable final DateTime blockedUntil,
+          @Nullable final DateTime blockedSince,
+          final int autoBlocks,
+          @Nullable final StatusCheck statusCheck)
+    {
+      this.sequence = sequence;
+      this.status = status;
+      this.blockedUntil = blockedUntil;
+      this.blockedSince = blockedSince;
+      this.autoBlocks = autoBlocks;
+      this.statusCheck = statusCheck;
+    }
+  }
+
+  /**
+   * Probes the remote once its auto-block expires; a successful probe makes it available again.
+   */
+  private class StatusCheck
+      implements Runnable
+  {
     private final String uri;
 
-    private final DateTime fireAt;
+    private Future<?> future;
+
+    private boolean cancelled;
 
-    private CheckStatus(final String uri, final DateTime fireAt) {
+    private StatusCheck(final String uri) {
       this.uri = uri;
-      this.fireAt = fireAt;
+    }
+
+    synchronized void schedule(final long delayMillis) {
+      if (!cancelled) {
+        log.debug("Checking status of {} in {} ms", uri, delayMillis);
+        future = statusCheckScheduler.schedule(this, Math.max(0, delayMillis));
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+      if (future != null) {
+        future.cancel(false);
+      }
     }
 
     @Override
     public void run() {
-      if (fireAt.isAfterNow()) {
-        try {
-          long durationTillFire = new Duration(DateTime.now(), fireAt).getMillis();
-          if (durationTillFire > 0) {
-            log.debug("Wait until {} to check status of {}", fireAt, uri);
-            Thread.sleep(durationTillFire);
-            log.debug("Time is up. Checking status of {}", uri);
-            execute(new HttpHead(uri));
-          }
-        }
-        catch (InterruptedException e) {
-          log.debug("Stopped checking status of {}", uri);
-        }
-        catch (IOException e) {
-          // ignore as we just want to access the host
-        }
+      log.debug("Time is up. Checking status of {}", uri);
+      try {
+        HttpClientUtils.closeQuietly(execute(new HttpHead(uri)));
+      }
+      catch (IOException e) {
+        // ignore as we just want to access the host
+        log.debug("Status check of {} failed", uri, e);
       }
     }
-
   }
-
 }
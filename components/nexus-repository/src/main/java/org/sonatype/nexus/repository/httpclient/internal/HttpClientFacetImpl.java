@@ -35,6 +35,7 @@ import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatus;
 import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusEvent;
 import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusObserver;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.eventbus.Subscribe;
 import org.apache.http.Header;
@@ -87,6 +88,10 @@ public class HttpClientFacetImpl
 
   private BlockingHttpClient httpClient;
 
+  private StatusCheckScheduler statusCheckScheduler;
+
+  private MetricRegistry metricRegistry;
+
   @Inject
   public HttpClientFacetImpl(final HttpClientManager httpClientManager) {
     this.httpClientManager = checkNotNull(httpClientManager);
@@ -98,6 +103,17 @@ public class HttpClientFacetImpl
     this.config = checkNotNull(config);
   }
 
+  /**
+   * @since 3.9
+   */
+  @Inject
+  public void installStatusDependencies(final StatusCheckScheduler statusCheckScheduler,
+                                        final MetricRegistry metricRegistry)
+  {
+    this.statusCheckScheduler = checkNotNull(statusCheckScheduler);
+    this.metricRegistry = checkNotNull(metricRegistry);
+  }
+
   @Override
   protected void doValidate(final Configuration configuration) throws Exception {
     facet(ConfigurationFacet.class).validateSection(configuration, CONFIG_KEY, Config.class);
@@ -227,7 +243,8 @@ public class HttpClientFacetImpl
 
     boolean online = getRepository().getConfiguration().isOnline();
     // wrap delegate with auto-block aware client
-    httpClient = new BlockingHttpClient(delegate, config, this, online);
+    httpClient = new BlockingHttpClient(delegate, config, this, online, statusCheckScheduler,
+        new RemoteHealthMetrics(metricRegistry, getRepository().getName()));
     log.debug("Created HTTP client: {}", httpClient);
   }
 
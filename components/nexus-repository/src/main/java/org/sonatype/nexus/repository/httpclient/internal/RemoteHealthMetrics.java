@@ -0,0 +1,84 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpclient.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Health metrics of the remote behind a single proxy repository, registered under
+ * {@code BlockingHttpClient.<repository>.*}.
+ *
+ * @since 3.9
+ */
+class RemoteHealthMetrics
+{
+  private final MetricRegistry registry;
+
+  private final String prefix;
+
+  private final Timer requests;
+
+  private final Meter failures;
+
+  private final Meter rejected;
+
+  private final Timer blockedTime;
+
+  RemoteHealthMetrics(final MetricRegistry registry, final String repositoryName) {
+    this.registry = checkNotNull(registry);
+    this.prefix = name(BlockingHttpClient.class, checkNotNull(repositoryName));
+    this.requests = registry.timer(name(prefix, "requests"));
+    this.failures = registry.meter(name(prefix, "failures"));
+    this.rejected = registry.meter(name(prefix, "rejected"));
+    this.blockedTime = registry.timer(name(prefix, "blockedTime"));
+  }
+
+  /**
+   * Records a request which reached the remote and completed successfully.
+   */
+  void success(final long elapsedNanos) {
+    requests.update(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Records a request which reached the remote and failed.
+   */
+  void failure() {
+    failures.mark();
+  }
+
+  /**
+   * Records a request rejected locally because the remote is blocked.
+   */
+  void rejected() {
+    rejected.mark();
+  }
+
+  /**
+   * Records the length of an auto-block episode once the remote is available again.
+   */
+  void unblocked(final long blockedMillis) {
+    blockedTime.update(blockedMillis, TimeUnit.MILLISECONDS);
+  }
+
+  void remove() {
+    registry.removeMatching((metricName, metric) -> metricName.startsWith(prefix + '.'));
+  }
+}
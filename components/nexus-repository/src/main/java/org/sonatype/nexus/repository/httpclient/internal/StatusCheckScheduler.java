@@ -0,0 +1,80 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.httpclient.internal;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Shared scheduler running the delayed remote status checks of auto-blocked proxy repositories.
+ *
+ * @since 3.9
+ */
+@Named
+@ManagedLifecycle(phase = SERVICES)
+@Singleton
+public class StatusCheckScheduler
+    extends LifecycleSupport
+{
+  private final int threads;
+
+  private volatile ScheduledThreadPoolExecutor executor;
+
+  @Inject
+  public StatusCheckScheduler(@Named("${nexus.httpclient.statusCheck.threads:-4}") final int threads) {
+    checkArgument(threads > 0, "Threads must be greater than zero");
+    this.threads = threads;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(threads,
+        new NexusThreadFactory("httpclient-status-check", "httpclient-status-check"));
+    scheduler.setRemoveOnCancelPolicy(true);
+    executor = scheduler;
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    ScheduledThreadPoolExecutor scheduler = executor;
+    executor = null;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      if (!scheduler.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+    }
+  }
+
+  /**
+   * Schedules a status check to run once after the given delay.
+   */
+  public ScheduledFuture<?> schedule(final Runnable check, final long delayMillis) {
+    ScheduledThreadPoolExecutor scheduler = executor;
+    checkState(scheduler != null, "Not started");
+    return scheduler.schedule(check, delayMillis, TimeUnit.MILLISECONDS);
+  }
+}
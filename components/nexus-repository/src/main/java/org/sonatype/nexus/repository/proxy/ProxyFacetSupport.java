@@ -32,6 +32,9 @@ import org.sonatype.nexus.repository.cache.CacheInfo;
 import org.sonatype.nexus.repository.cache.NegativeCacheFacet;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
+import org.sonatype.nexus.repository.group.DispatchCancellation;
+import org.sonatype.nexus.repository.group.DispatchCancellation.Registration;
+import org.sonatype.nexus.repository.group.DispatchCancelledException;
 import org.sonatype.nexus.repository.httpclient.HttpClientFacet;
 import org.sonatype.nexus.repository.storage.MissingBlobException;
 import org.sonatype.nexus.repository.storage.RetryDeniedException;
@@ -228,6 +231,13 @@ public abstract class ProxyFacetSupport
     catch (ProxyServiceException e) {
       logContentOrThrow(content, context, e.getHttpResponse().getStatusLine(), e);
     }
+    catch (DispatchCancelledException e) {
+      // the group has its content from another member, nothing worth reporting
+      log.debug("Fetch of {} cancelled: {}", getUrl(context), e.getMessage());
+      if (content == null) {
+        throw e;
+      }
+    }
     catch (IOException e) {
       logContentOrThrow(content, context, null, e); // note this also takes care of RemoteBlockedIOException
     }
@@ -359,6 +369,10 @@ public abstract class ProxyFacetSupport
       log.warn("Unable to resolve url. Reason: {}", e.getMessage());
       throw new BadRequestException("Invalid repository path");
     }
+    DispatchCancellation cancellation = DispatchCancellation.current();
+    if (cancellation != null && cancellation.isCancelled()) {
+      throw new DispatchCancelledException("Skipped fetch of " + uri + ", no longer needed by group");
+    }
     HttpRequestBase request = buildFetchHttpRequest(uri, context);
     if (stale != null) {
       final DateTime lastModified = stale.getAttributes().get(Content.CONTENT_LAST_MODIFIED, DateTime.class);
@@ -372,7 +386,22 @@ public abstract class ProxyFacetSupport
     }
     log.debug("Fetching: {}", request);
 
-    HttpResponse response = execute(context, client, request);
+    HttpResponse response;
+    if (cancellation != null) {
+      // only abort while waiting for the response, content already on its way is still worth caching
+      try (Registration registration = cancellation.onCancel(request::abort)) {
+        response = execute(context, client, request);
+      }
+      catch (IOException e) {
+        if (cancellation.isCancelled()) {
+          throw new DispatchCancelledException("Aborted fetch of " + uri + ", no longer needed by group");
+        }
+        throw e;
+      }
+    }
+    else {
+      response = execute(context, client, request);
+    }
     log.debug("Response: {}", response);
 
     StatusLine status = response.getStatusLine();
@@ -0,0 +1,142 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.purge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.blobstore.api.BlobRef;
+
+import com.google.common.collect.ImmutableList;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.DSYNC;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Progress of a purge of unused components, kept on disk for the purge to pick up after a cancellation or failure.
+ *
+ * Besides the last download date the purge has reached, the checkpoint holds the blobs of the batch being committed.
+ * They are recorded before the batch is committed and cleared once they are deleted, so the blobs of a batch which
+ * was committed right before the purge stopped are not left behind. The file is rewritten as a whole on each change:
+ * the cutoff of the purge, the reached download date ({@code -} if none) and then one blob reference per line.
+ *
+ * @since 3.9
+ */
+class PurgeCheckpoint
+{
+  private static final String NONE = "-";
+
+  private final Path file;
+
+  private final String cutoff;
+
+  @Nullable
+  private Date lastDownloaded;
+
+  private List<BlobRef> pendingBlobRefs;
+
+  private PurgeCheckpoint(final Path file,
+                          final String cutoff,
+                          @Nullable final Date lastDownloaded,
+                          final List<BlobRef> pendingBlobRefs)
+  {
+    this.file = checkNotNull(file);
+    this.cutoff = checkNotNull(cutoff);
+    this.lastDownloaded = lastDownloaded;
+    this.pendingBlobRefs = checkNotNull(pendingBlobRefs);
+  }
+
+  /**
+   * Loads the checkpoint of a purge with the given cutoff; a missing or unreadable file, or one left by a purge with
+   * another cutoff, yields an empty checkpoint.
+   */
+  static PurgeCheckpoint load(final Path file, final Date olderThan) throws IOException {
+    String cutoff = Long.toString(olderThan.getTime());
+    if (Files.exists(file)) {
+      List<String> lines = Files.readAllLines(file, UTF_8);
+      if (lines.size() >= 2 && cutoff.equals(lines.get(0))) {
+        try {
+          Date lastDownloaded = NONE.equals(lines.get(1)) ? null : new Date(Long.parseLong(lines.get(1)));
+          List<BlobRef> pendingBlobRefs = new ArrayList<>();
+          for (String line : lines.subList(2, lines.size())) {
+            pendingBlobRefs.add(BlobRef.parse(line));
+          }
+          return new PurgeCheckpoint(file, cutoff, lastDownloaded, pendingBlobRefs);
+        }
+        catch (IllegalArgumentException e) { // NOSONAR
+          // written only partly, start afresh
+        }
+      }
+    }
+    return new PurgeCheckpoint(file, cutoff, null, ImmutableList.of());
+  }
+
+  /**
+   * Returns the last download date of the assets the purge has checked, or {@code null} to start from the first.
+   */
+  @Nullable
+  Date getLastDownloaded() {
+    return lastDownloaded;
+  }
+
+  /**
+   * Returns the blobs of a batch which was being committed when the purge stopped; its deletions may or may not have
+   * been committed.
+   */
+  List<BlobRef> getPendingBlobRefs() {
+    return pendingBlobRefs;
+  }
+
+  /**
+   * Records the blobs of the batch about to be committed.
+   */
+  void recordPendingBlobs(final List<BlobRef> blobRefs) throws IOException {
+    write(lastDownloaded, ImmutableList.copyOf(blobRefs));
+  }
+
+  /**
+   * Records the last download date reached once a batch was committed and its blobs deleted.
+   */
+  void recordProgress(@Nullable final Date lastDownloaded) throws IOException {
+    write(lastDownloaded, ImmutableList.of());
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private void write(@Nullable final Date lastDownloaded, final List<BlobRef> pendingBlobRefs) throws IOException {
+    StringBuilder content = new StringBuilder()
+        .append(cutoff).append('\n')
+        .append(lastDownloaded != null ? Long.toString(lastDownloaded.getTime()) : NONE).append('\n');
+    pendingBlobRefs.forEach(blobRef -> content.append(blobRef).append('\n'));
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(temp, content.toString().getBytes(UTF_8), CREATE, WRITE, TRUNCATE_EXISTING, DSYNC);
+    Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    this.lastDownloaded = lastDownloaded;
+    this.pendingBlobRefs = pendingBlobRefs;
+  }
+}
@@ -12,40 +12,70 @@
  */
 package org.sonatype.nexus.repository.purge;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.sonatype.nexus.blobstore.api.BlobRef;
+import org.sonatype.nexus.blobstore.api.BlobStore;
+import org.sonatype.nexus.blobstore.api.BlobStoreManager;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
 import org.sonatype.nexus.common.stateguard.Guarded;
-import org.sonatype.nexus.orient.entity.AttachedEntityHelper;
 import org.sonatype.nexus.repository.FacetSupport;
 import org.sonatype.nexus.repository.storage.Asset;
-import org.sonatype.nexus.repository.storage.Bucket;
 import org.sonatype.nexus.repository.storage.Component;
 import org.sonatype.nexus.repository.storage.ComponentEntityAdapter;
 import org.sonatype.nexus.repository.storage.StorageFacet;
 import org.sonatype.nexus.repository.storage.StorageTx;
 import org.sonatype.nexus.repository.transaction.TransactionalDeleteBlob;
+import org.sonatype.nexus.repository.transaction.TransactionalTouchMetadata;
+import org.sonatype.nexus.thread.NexusThreadFactory;
 import org.sonatype.nexus.transaction.UnitOfWork;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
+import com.orientechnologies.orient.core.id.ORID;
 import org.joda.time.DateTime;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toList;
+import static org.sonatype.nexus.logging.task.TaskLoggingMarkers.PROGRESS;
+import static org.sonatype.nexus.orient.entity.AttachedEntityHelper.id;
 import static org.sonatype.nexus.repository.FacetSupport.State.STARTED;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_BLOB_KEY;
 import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_COMPONENT;
 import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_LAST_DOWNLOADED;
-import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_BUCKET;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.blobKey;
 import static org.sonatype.nexus.scheduling.CancelableHelper.checkCancellation;
 
 /**
  * {@link PurgeUnusedFacet} implementation.
  *
+ * Candidate components are found through their assets last downloaded before the cutoff, walking the index on bucket
+ * and last download date in pages of {@code nexus.tasks.purgeUnused.batchSize}. The assets of each page's candidates
+ * are then fetched in one query to tell which components are unused, and the deletions of a page are committed
+ * together; assets without component are deleted in batches of the same size. Blobs of the deleted assets are
+ * soft-deleted in parallel once their batch is committed.
+ *
+ * A {@link PurgeCheckpoint} records the blobs of each batch before it is committed and the download date reached after
+ * it, so a cancelled or failed purge run again the same day resumes from there and still deletes the blobs of a batch
+ * it committed right before stopping.
+ *
  * @since 3.0
  */
 @Named
@@ -53,12 +83,46 @@ public class PurgeUnusedFacetImpl
     extends FacetSupport
     implements PurgeUnusedFacet
 {
+  private static final String CHECKPOINT_DIRECTORY = "purge-unused";
+
+  private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+  private static final String CANDIDATE_ASSETS = String.format("%s IS NOT NULL AND %s >= :from AND %s < :olderThan",
+      P_COMPONENT, P_LAST_DOWNLOADED, P_LAST_DOWNLOADED);
+
+  private static final String ASSETS_OF_COMPONENTS = String.format("%s IN :components", P_COMPONENT);
+
+  private static final String COMPONENTS_IN = "@RID IN :components";
+
+  private static final String UNUSED_ASSETS =
+      String.format("%s IS NULL AND %s < :olderThan", P_COMPONENT, P_LAST_DOWNLOADED);
+
+  private static final String ASSETS_WITH_BLOB_KEYS = String.format("%s IN :blobKeys", P_BLOB_KEY);
+
   private final ComponentEntityAdapter componentEntityAdapter;
 
+  private final BlobStoreManager blobStoreManager;
+
+  private final ApplicationDirectories applicationDirectories;
+
+  private final int batchSize;
+
+  private final int blobDeleteThreads;
+
   @Inject
-  public PurgeUnusedFacetImpl(final ComponentEntityAdapter componentEntityAdapter)
+  public PurgeUnusedFacetImpl(final ComponentEntityAdapter componentEntityAdapter,
+                              final BlobStoreManager blobStoreManager,
+                              final ApplicationDirectories applicationDirectories,
+                              @Named("${nexus.tasks.purgeUnused.batchSize:-500}") final int batchSize,
+                              @Named("${nexus.tasks.purgeUnused.blobDeleteThreads:-4}") final int blobDeleteThreads)
   {
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
+    checkArgument(blobDeleteThreads > 0, "Blob delete threads must be greater than zero");
     this.componentEntityAdapter = checkNotNull(componentEntityAdapter);
+    this.blobStoreManager = checkNotNull(blobStoreManager);
+    this.applicationDirectories = checkNotNull(applicationDirectories);
+    this.batchSize = batchSize;
+    this.blobDeleteThreads = blobDeleteThreads;
   }
 
   @Override
@@ -68,75 +132,308 @@ public class PurgeUnusedFacetImpl
     log.info("Purging unused components from repository {}", getRepository().getName());
 
     Date olderThan = DateTime.now().minusDays(numberOfDays).withTimeAtStartOfDay().toDate();
+    PurgeCheckpoint checkpoint = loadCheckpoint(olderThan);
 
+    ExecutorService blobDeleter = Executors.newFixedThreadPool(blobDeleteThreads,
+        new NexusThreadFactory("purge-unused", "purge-unused-blobs"));
     UnitOfWork.beginBatch(facet(StorageFacet.class).txSupplier());
     try {
-      deleteUnusedComponents(olderThan);
-      deleteUnusedAssets(olderThan);
+      if (checkpoint != null) {
+        deletePendingBlobs(checkpoint, blobDeleter);
+      }
+      deleteUnusedComponents(olderThan, checkpoint, blobDeleter);
+      deleteUnusedAssets(olderThan, checkpoint, blobDeleter);
+      if (checkpoint != null) {
+        checkpoint.delete();
+      }
+    }
+    catch (IOException e) {
+      log.warn("Unable to delete purge checkpoint of {}", getRepository().getName(), e);
     }
     finally {
       UnitOfWork.end();
+      shutdown(blobDeleter);
     }
   }
 
   /**
-   * Delete all unused components.
+   * Deletes the blobs recorded in the checkpoint by a purge which stopped while committing a batch, skipping those
+   * still referenced because the batch was not committed after all.
    */
-  @TransactionalDeleteBlob
-  protected void deleteUnusedComponents(final Date olderThan) {
+  @TransactionalTouchMetadata
+  protected void deletePendingBlobs(final PurgeCheckpoint checkpoint, final ExecutorService blobDeleter) {
+    List<BlobRef> pendingBlobRefs = checkpoint.getPendingBlobRefs();
+    if (pendingBlobRefs.isEmpty()) {
+      return;
+    }
     StorageTx tx = UnitOfWork.currentTx();
 
-    for (Component component : findUnusedComponents(tx, olderThan)) {
-      checkCancellation();
-      log.debug("Deleting unused component {}", component);
-      tx.deleteComponent(component); // TODO: commit in batches
+    Map<String, Object> sqlParams = ImmutableMap.of(
+        "blobKeys", pendingBlobRefs.stream().map(PurgeUnusedFacetImpl::blobKeyOf).collect(toList())
+    );
+    Set<String> blobKeysInUse = new HashSet<>();
+    for (Asset asset : tx.findAssets(ASSETS_WITH_BLOB_KEYS, sqlParams, null, null)) {
+      BlobRef blobRef = asset.blobRef();
+      if (blobRef != null) {
+        blobKeysInUse.add(blobKeyOf(blobRef));
+      }
     }
+    List<BlobRef> blobRefs = pendingBlobRefs.stream()
+        .filter(blobRef -> !blobKeysInUse.contains(blobKeyOf(blobRef)))
+        .collect(toList());
+    log.info("Deleting {} blobs left by the previous purge of unused components from repository {}",
+        blobRefs.size(), getRepository().getName());
+    deleteBlobs(blobRefs, blobDeleter);
+    recordProgress(checkpoint, checkpoint.getLastDownloaded());
   }
 
   /**
-   * Delete all unused assets.
+   * Delete all unused components, resuming from the last download date recorded in the checkpoint (if any).
    */
   @TransactionalDeleteBlob
-  protected void deleteUnusedAssets(final Date olderThan) {
+  protected void deleteUnusedComponents(final Date olderThan,
+                                        @Nullable final PurgeCheckpoint checkpoint,
+                                        final ExecutorService blobDeleter)
+  {
     StorageTx tx = UnitOfWork.currentTx();
 
-    for (Asset asset : findUnusedAssets(tx, olderThan)) {
-      checkCancellation();
-      log.debug("Deleting unused asset {}", asset);
-      tx.deleteAsset(asset); // TODO: commit in batches
+    Date from = checkpoint != null ? checkpoint.getLastDownloaded() : null;
+    if (from != null) {
+      log.info("Resuming purge of unused components from repository {} at assets last downloaded {}",
+          getRepository().getName(), from);
+    }
+    else {
+      from = new Date(0L);
+    }
+    // candidate assets already seen which were last downloaded at the date the next page starts from
+    Set<ORID> seen = new HashSet<>();
+    List<BlobRef> blobRefs = new ArrayList<>();
+    long checked = 0;
+    long deleted = 0;
+    int limit;
+    int found;
+    do {
+      limit = batchSize + seen.size();
+      found = 0;
+      Set<ORID> candidates = new HashSet<>();
+      for (Asset asset : findCandidateAssets(tx, from, olderThan, limit)) {
+        checkCancellation();
+        found++;
+        Date lastDownloaded = asset.lastDownloaded().toDate();
+        if (lastDownloaded.after(from)) {
+          from = lastDownloaded;
+          seen.clear();
+        }
+        if (seen.add(id(asset))) {
+          candidates.add(componentEntityAdapter.recordIdentity(asset.componentId()));
+        }
+      }
+
+      Map<ORID, List<Asset>> assetsByComponent = findAssetsOf(tx, candidates);
+      List<ORID> unused = assetsByComponent.entrySet().stream()
+          .filter(entry -> isUnused(entry.getValue(), olderThan))
+          .map(Map.Entry::getKey)
+          .collect(toList());
+      for (Component component : findComponents(tx, unused)) {
+        checkCancellation();
+        log.debug("Deleting unused component {}", component);
+        assetsByComponent.get(id(component)).forEach(asset -> addBlobRef(blobRefs, asset));
+        tx.deleteComponent(component, false);
+        deleted++;
+      }
+      commitBatch(tx, checkpoint, from, blobRefs, blobDeleter);
+      checked += candidates.size();
+      log.info(PROGRESS, "Checked {} components and deleted {} unused from repository {}", checked, deleted,
+          getRepository().getName());
     }
+    while (found == limit);
   }
 
   /**
-   * Find all components that were last accessed before specified date. Date when a component was last accessed is the
-   * last time an asset of that component was last accessed.
+   * Delete all unused assets.
    */
-  private Iterable<Component> findUnusedComponents(final StorageTx tx, final Date olderThan) {
-    final Bucket bucket = tx.findBucket(getRepository());
+  @TransactionalDeleteBlob
+  protected void deleteUnusedAssets(final Date olderThan,
+                                    @Nullable final PurgeCheckpoint checkpoint,
+                                    final ExecutorService blobDeleter)
+  {
+    StorageTx tx = UnitOfWork.currentTx();
 
-    String sql = String.format(
-        "SELECT FROM (SELECT %s, MAX(%s) AS lastDownloaded FROM asset WHERE %s=:bucket AND %s IS NOT NULL GROUP BY %s) WHERE lastDownloaded < :olderThan",
-        P_COMPONENT, P_LAST_DOWNLOADED, P_BUCKET, P_COMPONENT, P_COMPONENT
-    );
+    Date lastDownloaded = checkpoint != null ? checkpoint.getLastDownloaded() : null;
+    List<BlobRef> blobRefs = new ArrayList<>();
+    long deleted = 0;
+    int found;
+    do {
+      // every asset found is deleted, so each query picks up where the previous one left off
+      found = 0;
+      for (Asset asset : findUnusedAssets(tx, olderThan)) {
+        checkCancellation();
+        found++;
+        log.debug("Deleting unused asset {}", asset);
+        addBlobRef(blobRefs, asset);
+        tx.deleteAsset(asset, false);
+      }
+      commitBatch(tx, checkpoint, lastDownloaded, blobRefs, blobDeleter);
+      deleted += found;
+      log.info(PROGRESS, "Deleted {} unused assets from repository {}", deleted, getRepository().getName());
+    }
+    while (found == batchSize);
+  }
 
+  /**
+   * Finds the next page of assets of components that were last accessed before specified date, in order of access.
+   */
+  private Iterable<Asset> findCandidateAssets(final StorageTx tx,
+                                              final Date from,
+                                              final Date olderThan,
+                                              final int limit)
+  {
     Map<String, Object> sqlParams = ImmutableMap.of(
-        "bucket", AttachedEntityHelper.id(bucket),
+        "from", from,
         "olderThan", olderThan
     );
+    checkCancellation();
+    return tx.findAssets(CANDIDATE_ASSETS, sqlParams, ImmutableList.of(getRepository()),
+        "ORDER BY " + P_LAST_DOWNLOADED + " LIMIT " + limit);
+  }
+
+  /**
+   * Finds all assets of the given components, grouped by component.
+   */
+  private Map<ORID, List<Asset>> findAssetsOf(final StorageTx tx, final Set<ORID> componentIds) {
+    Map<ORID, List<Asset>> assetsByComponent = new LinkedHashMap<>();
+    if (!componentIds.isEmpty()) {
+      Map<String, Object> sqlParams = ImmutableMap.of("components", componentIds);
+      checkCancellation();
+      for (Asset asset : tx.findAssets(ASSETS_OF_COMPONENTS, sqlParams, ImmutableList.of(getRepository()), null)) {
+        assetsByComponent.computeIfAbsent(componentEntityAdapter.recordIdentity(asset.componentId()),
+            componentId -> new ArrayList<>()).add(asset);
+      }
+    }
+    return assetsByComponent;
+  }
 
+  private Iterable<Component> findComponents(final StorageTx tx, final List<ORID> componentIds) {
+    if (componentIds.isEmpty()) {
+      return ImmutableList.of();
+    }
+    Map<String, Object> sqlParams = ImmutableMap.of("components", componentIds);
     checkCancellation();
-    return Iterables.transform(tx.browse(sql, sqlParams),
-        (doc) -> componentEntityAdapter.readEntity(doc.field(P_COMPONENT)));
+    return tx.findComponents(COMPONENTS_IN, sqlParams, ImmutableList.of(getRepository()), null);
   }
 
   /**
-   * Find all assets without component that were last accessed before specified date.
+   * Finds the next batch of assets without component that were last accessed before specified date.
    */
   private Iterable<Asset> findUnusedAssets(final StorageTx tx, final Date olderThan) {
-    String whereClause = String.format("%s IS NULL AND %s < :olderThan", P_COMPONENT, P_LAST_DOWNLOADED);
     Map<String, Object> sqlParams = ImmutableMap.of("olderThan", olderThan);
-
     checkCancellation();
-    return tx.findAssets(whereClause, sqlParams, ImmutableList.of(getRepository()), null);
+    return tx.findAssets(UNUSED_ASSETS, sqlParams, ImmutableList.of(getRepository()), "LIMIT " + batchSize);
+  }
+
+  /**
+   * A component was last accessed when any of its assets was last accessed; components with no accessed assets are
+   * never considered unused.
+   */
+  private static boolean isUnused(final List<Asset> assets, final Date olderThan) {
+    DateTime lastDownloaded = null;
+    for (Asset asset : assets) {
+      DateTime assetLastDownloaded = asset.lastDownloaded();
+      if (assetLastDownloaded != null && (lastDownloaded == null || assetLastDownloaded.isAfter(lastDownloaded))) {
+        lastDownloaded = assetLastDownloaded;
+      }
+    }
+    return lastDownloaded != null && lastDownloaded.toDate().before(olderThan);
+  }
+
+  private static void addBlobRef(final List<BlobRef> blobRefs, final Asset asset) {
+    BlobRef blobRef = asset.blobRef();
+    if (blobRef != null) {
+      blobRefs.add(blobRef);
+    }
+  }
+
+  private static String blobKeyOf(final BlobRef blobRef) {
+    return blobKey(blobRef.getStore(), blobRef.getBlob());
+  }
+
+  /**
+   * Records the blobs of the deleted assets in the checkpoint, commits the deletions made so far, then soft-deletes the
+   * blobs in parallel and records the progress made.
+   */
+  private void commitBatch(final StorageTx tx,
+                           @Nullable final PurgeCheckpoint checkpoint,
+                           @Nullable final Date lastDownloaded,
+                           final List<BlobRef> blobRefs,
+                           final ExecutorService blobDeleter)
+  {
+    if (checkpoint != null && !blobRefs.isEmpty()) {
+      try {
+        checkpoint.recordPendingBlobs(blobRefs);
+      }
+      catch (IOException e) {
+        log.warn("Unable to record blobs to purge in checkpoint of {}", getRepository().getName(), e);
+      }
+    }
+    tx.commit();
+    deleteBlobs(blobRefs, blobDeleter);
+    blobRefs.clear();
+    if (checkpoint != null) {
+      recordProgress(checkpoint, lastDownloaded);
+    }
+    tx.begin();
+  }
+
+  private void deleteBlobs(final List<BlobRef> blobRefs, final ExecutorService blobDeleter) {
+    CompletableFuture.allOf(blobRefs.stream()
+        .map(blobRef -> CompletableFuture.runAsync(() -> deleteBlob(blobRef), blobDeleter))
+        .toArray(CompletableFuture[]::new))
+        .join();
+  }
+
+  private void deleteBlob(final BlobRef blobRef) {
+    try {
+      BlobStore blobStore = blobStoreManager.get(blobRef.getStore());
+      if (blobStore != null) {
+        blobStore.delete(blobRef.getBlobId(), "Purging unused asset");
+      }
+    }
+    catch (Exception e) {
+      log.warn("Unable to delete blob {} of purged asset", blobRef, e);
+    }
+  }
+
+  private void shutdown(final ExecutorService blobDeleter) {
+    blobDeleter.shutdown();
+    try {
+      if (!blobDeleter.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Nullable
+  private PurgeCheckpoint loadCheckpoint(final Date olderThan) {
+    Path file = applicationDirectories.getWorkDirectory(CHECKPOINT_DIRECTORY).toPath()
+        .resolve(getRepository().getName() + CHECKPOINT_SUFFIX);
+    try {
+      return PurgeCheckpoint.load(file, olderThan);
+    }
+    catch (IOException e) {
+      log.warn("Unable to load purge checkpoint of {}, purging without", getRepository().getName(), e);
+      return null;
+    }
+  }
+
+  private void recordProgress(final PurgeCheckpoint checkpoint, @Nullable final Date lastDownloaded) {
+    try {
+      checkpoint.recordProgress(lastDownloaded);
+    }
+    catch (IOException e) {
+      log.warn("Unable to update purge checkpoint of {}", getRepository().getName(), e);
+    }
   }
 }
@@ -0,0 +1,69 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sonatype.nexus.common.entity.EntityId;
+
+/**
+ * Component index changes in a particular repository gathered over a coalescing window.
+ *
+ * Only the latest change to each component is kept, so an update followed by a delete becomes a delete, while a
+ * delete followed by an update (of a re-created component) becomes an update.
+ *
+ * @since 3.9
+ */
+final class CoalescedIndexRequest
+{
+  private final Map<EntityId, Boolean> deletedById = new LinkedHashMap<>();
+
+  private final long createdNanos = System.nanoTime();
+
+  void update(final EntityId componentId) {
+    deletedById.put(componentId, false);
+  }
+
+  void delete(final EntityId componentId) {
+    deletedById.put(componentId, true);
+  }
+
+  /**
+   * Adds the coalesced changes to the given batch under the given repository.
+   */
+  void addTo(final String repositoryName, final IndexBatchRequest batchRequest) {
+    deletedById.forEach((id, deleted) -> {
+      if (deleted) {
+        batchRequest.delete(repositoryName, id);
+      }
+      else {
+        batchRequest.update(repositoryName, id);
+      }
+    });
+  }
+
+  /**
+   * Returns the number of distinct components with pending changes.
+   */
+  int size() {
+    return deletedById.size();
+  }
+
+  /**
+   * Returns the {@link System#nanoTime()} when the first change was gathered.
+   */
+  long createdNanos() {
+    return createdNanos;
+  }
+}
@@ -17,6 +17,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import javax.annotation.Nullable;
 
@@ -44,6 +45,11 @@ public final class IndexBatchRequest
    */
   private final Set<EntityId> pendingDeletes = new HashSet<>();
 
+  /**
+   * Number of updates and deletes requested, before de-duplication.
+   */
+  private int requestCount;
+
   /**
    * Populates index requests based on the given event.
    */
@@ -70,6 +76,7 @@ public final class IndexBatchRequest
    */
   public void update(final String repositoryName, final EntityId componentId) {
     request(repositoryName).update(componentId);
+    requestCount++;
   }
 
   /**
@@ -82,6 +89,7 @@ public final class IndexBatchRequest
       request(repositoryName).update(componentId); // scope delete under specific repository
     }
     pendingDeletes.add(componentId);
+    requestCount++;
   }
 
   /**
@@ -94,6 +102,25 @@ public final class IndexBatchRequest
     return pendingDeletes;
   }
 
+  /**
+   * Moves the index requests into the given coalesced requests and returns any remaining pending deletes.
+   *
+   * @since 3.9
+   */
+  Set<EntityId> coalesceInto(final Function<String, CoalescedIndexRequest> coalescedRequests) {
+    requests.forEach((repositoryName, request) -> request.coalesceInto(coalescedRequests.apply(repositoryName)));
+    return pendingDeletes;
+  }
+
+  /**
+   * Returns the number of updates and deletes requested, before de-duplication.
+   *
+   * @since 3.9
+   */
+  int requestCount() {
+    return requestCount;
+  }
+
   /**
    * Marks the component's index as needing an update or deletion.
    */
@@ -64,6 +64,24 @@ final class IndexRequest
     });
   }
 
+  /**
+   * Moves the index request into the given coalesced request.
+   *
+   * Has side-effect of removing local deletions from {@link #pendingDeletes}.
+   *
+   * @since 3.9
+   */
+  void coalesceInto(final CoalescedIndexRequest coalescedRequest) {
+    updatedIds.forEach(id -> {
+      if (pendingDeletes.remove(id)) {
+        coalescedRequest.delete(id);
+      }
+      else {
+        coalescedRequest.update(id);
+      }
+    });
+  }
+
   /**
    * Applies the index request to the repository's {@link SearchFacet} in bulk.
    *
@@ -12,7 +12,13 @@
  */
 package org.sonatype.nexus.repository.search;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -27,11 +33,18 @@ import org.sonatype.nexus.common.stateguard.InvalidStateException;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
 import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.thread.NexusThreadFactory;
 import org.sonatype.nexus.transaction.UnitOfWork;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.transform;
 import static org.sonatype.nexus.repository.FacetSupport.State.DELETED;
@@ -41,6 +54,12 @@ import static org.sonatype.nexus.repository.FacetSupport.State.STOPPED;
 /**
  * Async processor of {@link IndexBatchRequest}s, which are used to trigger search updates.
  *
+ * When {@code nexus.elasticsearch.coalesceWindow} is positive, changes from entity events are gathered per repository
+ * over that many milliseconds and indexed together, so a component touched by several events in a window (such as a
+ * deploy of its jar, pom and checksums) is indexed once. Indexing lag and the share of requests saved are recorded
+ * under {@code IndexRequestProcessor.*}. Coalescing is off by default: pending changes are not seen by
+ * {@link EventManager#isCalmPeriod()}, so search may lag behind a calm event manager by up to one window.
+ *
  * @since 3.0
  */
 @Named
@@ -49,6 +68,11 @@ public class IndexRequestProcessor
     extends LifecycleSupport
     implements Asynchronous
 {
+  /**
+   * Pending components which trigger an early flush of the coalescing window.
+   */
+  private static final int MAX_PENDING = 10_000;
+
   private final RepositoryManager repositoryManager;
 
   private final EventManager eventManager;
@@ -57,34 +81,159 @@ public class IndexRequestProcessor
 
   private final boolean bulkProcessing;
 
+  private final int coalesceWindow;
+
+  private final Map<String, CoalescedIndexRequest> pending = new HashMap<>();
+
+  private final Object flushLock = new Object();
+
+  private int pendingCount;
+
+  private volatile ScheduledExecutorService coalescer;
+
+  private Meter requested;
+
+  private Meter indexed;
+
+  private Timer lag;
+
   @Inject
   public IndexRequestProcessor(final RepositoryManager repositoryManager,
                                final EventManager eventManager,
                                final SearchService searchService,
-                               @Named("${nexus.elasticsearch.bulkProcessing:-true}") final boolean bulkProcessing)
+                               @Named("${nexus.elasticsearch.bulkProcessing:-true}") final boolean bulkProcessing,
+                               @Named("${nexus.elasticsearch.coalesceWindow:-0}") final int coalesceWindow)
   {
+    checkArgument(coalesceWindow >= 0, "Coalesce window must not be negative");
     this.repositoryManager = checkNotNull(repositoryManager);
     this.eventManager = checkNotNull(eventManager);
     this.searchService = checkNotNull(searchService);
     this.bulkProcessing = bulkProcessing;
+    this.coalesceWindow = coalesceWindow;
+  }
+
+  /**
+   * @since 3.9
+   */
+  @Inject
+  public void setMetricRegistry(final MetricRegistry metricRegistry) {
+    this.requested = metricRegistry.meter(name(IndexRequestProcessor.class, "requested"));
+    this.indexed = metricRegistry.meter(name(IndexRequestProcessor.class, "indexed"));
+    this.lag = metricRegistry.timer(name(IndexRequestProcessor.class, "lag"));
+    metricRegistry.register(name(IndexRequestProcessor.class, "dedupRatio"), new RatioGauge()
+    {
+      @Override
+      protected Ratio getRatio() {
+        return Ratio.of(requested.getCount() - indexed.getCount(), requested.getCount());
+      }
+    });
   }
 
   @Override
   protected void doStart() {
+    if (coalesceWindow > 0) {
+      coalescer = Executors.newSingleThreadScheduledExecutor(
+          new NexusThreadFactory("search-coalescer", "search-coalescer"));
+      coalescer.scheduleWithFixedDelay(this::flushPending, coalesceWindow, coalesceWindow, TimeUnit.MILLISECONDS);
+    }
     eventManager.register(this);
   }
 
   @Override
-  protected void doStop() {
+  protected void doStop() throws Exception {
     eventManager.unregister(this);
 
+    ScheduledExecutorService currentCoalescer = coalescer;
+    coalescer = null;
+    if (currentCoalescer != null) {
+      currentCoalescer.shutdown();
+      if (!currentCoalescer.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+      flushPending();
+    }
+
     searchService.flush();
   }
 
   @Subscribe
   @AllowConcurrentEvents
   public void on(final EntityBatchEvent batchEvent) {
-    process(new IndexBatchRequest(batchEvent));
+    IndexBatchRequest request = new IndexBatchRequest(batchEvent);
+    ScheduledExecutorService currentCoalescer = coalescer;
+    if (currentCoalescer != null) {
+      coalesce(request, currentCoalescer);
+    }
+    else {
+      process(request);
+    }
+  }
+
+  private void coalesce(final IndexBatchRequest request, final ScheduledExecutorService currentCoalescer) {
+    if (requested != null) {
+      requested.mark(request.requestCount());
+    }
+    Set<EntityId> pendingDeletes;
+    boolean flushEarly;
+    synchronized (pending) {
+      pendingDeletes = request.coalesceInto(
+          repositoryName -> pending.computeIfAbsent(repositoryName, name -> new CoalescedIndexRequest()));
+      pendingCount += request.requestCount();
+      flushEarly = pendingCount > MAX_PENDING;
+      if (flushEarly) {
+        pendingCount = 0;
+      }
+    }
+    if (!pendingDeletes.isEmpty()) {
+      // deletes without a repository can't be coalesced; index older changes first so they can't land afterwards
+      synchronized (flushLock) {
+        flushPending();
+        searchService.bulkDelete(null, transform(pendingDeletes, EntityId::getValue));
+      }
+    }
+    else if (flushEarly) {
+      try {
+        currentCoalescer.execute(this::flushPending);
+      }
+      catch (RejectedExecutionException e) { // NOSONAR
+        flushPending(); // stopping, don't leave changes behind
+      }
+    }
+  }
+
+  /**
+   * Indexes the changes gathered so far across all repositories in one bulk update.
+   */
+  private void flushPending() {
+    // flushes run one at a time, so changes reach the index in the order they were gathered
+    synchronized (flushLock) {
+      Map<String, CoalescedIndexRequest> requests;
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        requests = new HashMap<>(pending);
+        pending.clear();
+        pendingCount = 0;
+      }
+
+      IndexBatchRequest batchRequest = new IndexBatchRequest();
+      requests.forEach((repositoryName, request) -> request.addTo(repositoryName, batchRequest));
+      try {
+        searchService.bulkUpdate(() -> process(batchRequest));
+      }
+      catch (Exception e) {
+        log.warn("Failed to update search index for {} repositories", requests.size(), e);
+      }
+
+      long now = System.nanoTime();
+      requests.values().forEach(request -> {
+        if (indexed != null) {
+          indexed.mark(request.size());
+          lag.update(now - request.createdNanos(), TimeUnit.NANOSECONDS);
+        }
+      });
+    }
   }
 
   public void process(final IndexBatchRequest request) {
@@ -83,6 +83,14 @@ public interface SearchService
    */
   void bulkDelete(@Nullable Repository repository, Iterable<String> identifiers);
 
+  /**
+   * Runs the given bulk operations, sending their queued index requests together once all of them have run instead
+   * of after each operation.
+   *
+   * @since 3.9
+   */
+  void bulkUpdate(Runnable operations);
+
   /**
    * Search component metadata and browse results, without the effect of content selectors.
    *
@@ -122,6 +122,8 @@ public class SearchServiceImpl
 
   private BulkProcessor bulkProcessor;
 
+  private final ThreadLocal<Boolean> deferFlush = new ThreadLocal<>();
+
   /**
    * @param client source for a {@link Client}
    * @param repositoryManager the repositoryManager
@@ -294,9 +296,7 @@ public class SearchServiceImpl
       }
     });
 
-    if (!periodicFlush) {
-      bulkProcessor.flush();
-    }
+    maybeFlush();
   }
 
   @Override
@@ -355,7 +355,28 @@ public class SearchServiceImpl
       });
     }
 
-    if (!periodicFlush) {
+    maybeFlush();
+  }
+
+  @Override
+  public void bulkUpdate(final Runnable operations) {
+    checkNotNull(operations);
+    if (deferFlush.get() != null) {
+      operations.run(); // already deferring, outermost call flushes
+      return;
+    }
+    deferFlush.set(true);
+    try {
+      operations.run();
+    }
+    finally {
+      deferFlush.remove();
+      maybeFlush();
+    }
+  }
+
+  private void maybeFlush() {
+    if (!periodicFlush && deferFlush.get() == null) {
       bulkProcessor.flush();
     }
   }
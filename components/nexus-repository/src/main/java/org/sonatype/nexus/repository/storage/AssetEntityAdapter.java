@@ -71,6 +71,15 @@ public class AssetEntityAdapter
    */
   public static final String P_BLOB_REF = "blob_ref";
 
+  /**
+   * Key of {@link Asset} blob key attribute, the blob store and blob id parts of its blob ref without the node, so the
+   * asset can be found by exact match from the blob alone.
+   *
+   * @see #blobKey(String, String)
+   * @since 3.9
+   */
+  public static final String P_BLOB_KEY = "blob_key";
+
   /**
    * Key of {@link Asset} component reference attribute (if asset belongs to a component).
    */
@@ -143,6 +152,20 @@ public class AssetEntityAdapter
       .caseInsensitive()
       .build();
 
+  /**
+   * @since 3.9
+   */
+  public static final String I_BLOB_KEY = new OIndexNameBuilder()
+      .type(DB_CLASS)
+      .property(P_BLOB_KEY)
+      .build();
+
+  private static final String I_BUCKET_LAST_DOWNLOADED = new OIndexNameBuilder()
+      .type(DB_CLASS)
+      .property(P_BUCKET)
+      .property(P_LAST_DOWNLOADED)
+      .build();
+
   private final ComponentEntityAdapter componentEntityAdapter;
 
   @Inject
@@ -163,6 +186,7 @@ public class AssetEntityAdapter
     type.createProperty(P_SIZE, OType.LONG);
     type.createProperty(P_CONTENT_TYPE, OType.STRING);
     type.createProperty(P_BLOB_REF, OType.STRING);
+    type.createProperty(P_BLOB_KEY, OType.STRING);
     type.createProperty(P_LAST_DOWNLOADED, OType.DATETIME);
     type.createProperty(P_BLOB_CREATED, OType.DATETIME);
     type.createProperty(P_BLOB_UPDATED, OType.DATETIME);
@@ -177,6 +201,8 @@ public class AssetEntityAdapter
     );
     type.createIndex(I_BUCKET_NAME, INDEX_TYPE.NOTUNIQUE, P_BUCKET, P_NAME);
     type.createIndex(I_COMPONENT, INDEX_TYPE.NOTUNIQUE, P_COMPONENT);
+    type.createIndex(I_BLOB_KEY, INDEX_TYPE.NOTUNIQUE, P_BLOB_KEY);
+    type.createIndex(I_BUCKET_LAST_DOWNLOADED, INDEX_TYPE.NOTUNIQUE, P_BUCKET, P_LAST_DOWNLOADED);
 
     new OIndexBuilder(type, I_NAME_CASEINSENSITIVE, INDEX_TYPE.NOTUNIQUE)
         .property(P_NAME, OType.STRING)
@@ -239,6 +265,7 @@ public class AssetEntityAdapter
     document.field(P_CREATED_BY_IP, entity.createdByIp());
     BlobRef blobRef = entity.blobRef();
     document.field(P_BLOB_REF, blobRef != null ? blobRef.toString() : null);
+    document.field(P_BLOB_KEY, blobRef != null ? blobKey(blobRef.getStore(), blobRef.getBlob()) : null);
     DateTime lastDownloaded = entity.lastDownloaded();
     document.field(P_LAST_DOWNLOADED, lastDownloaded != null ? lastDownloaded.toDate() : null);
     DateTime blobCreated = entity.blobCreated();
@@ -247,6 +274,15 @@ public class AssetEntityAdapter
     document.field(P_BLOB_UPDATED, blobUpdated != null ? blobUpdated.toDate() : null);
   }
 
+  /**
+   * Returns the {@link #P_BLOB_KEY} value of a blob in the given blob store.
+   *
+   * @since 3.9
+   */
+  public static String blobKey(final String blobStoreName, final String blobId) {
+    return blobStoreName + '@' + blobId;
+  }
+
   Asset findByProperty(final ODatabaseDocumentTx db,
                        final String propName,
                        final Object propValue,
@@ -49,6 +49,13 @@ public interface AssetStore
    */
   OIndex<?> getIndex(String indexName);
 
+  /**
+   * Get a cursor over the entries of a composite index whose leading key is the given bucket
+   *
+   * @since 3.9
+   */
+  OIndexCursor getIndexCursor(String indexName, Bucket bucket);
+
   /**
    * @param cursor to get the asset ids from
    * @param limit the maximum number of records to return
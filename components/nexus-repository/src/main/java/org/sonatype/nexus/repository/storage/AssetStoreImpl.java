@@ -29,10 +29,12 @@ import org.sonatype.nexus.common.entity.EntityId;
 import org.sonatype.nexus.common.stateguard.Guarded;
 import org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport;
 import org.sonatype.nexus.orient.DatabaseInstance;
+import org.sonatype.nexus.orient.entity.AttachedEntityHelper;
 import org.sonatype.nexus.orient.entity.AttachedEntityId;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OCompositeKey;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexCursor;
 
@@ -93,6 +95,17 @@ public class AssetStoreImpl
     }
   }
 
+  @Override
+  @Guarded(by = STARTED)
+  public OIndexCursor getIndexCursor(final String indexName, final Bucket bucket) {
+    OCompositeKey bucketKey = new OCompositeKey(AttachedEntityHelper.id(bucket));
+    try (ODatabaseDocumentTx db = databaseInstance.get().acquire()) {
+      // partial composite keys cover every entry of the bucket, so only its own part of the index is visited
+      return db.getMetadata().getIndexManager().getIndex(indexName)
+          .iterateEntriesBetween(bucketKey, true, bucketKey, true, true);
+    }
+  }
+
   @Override
   @Guarded(by = STARTED)
   public <T> List<Entry<T, EntityId>> getNextPage(final OIndexCursor cursor, final int limit) {
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.storage;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -36,6 +37,16 @@ public interface BrowseNodeStore
    */
   void createComponentNode(String repositoryName, List<String> path, Component component);
 
+  /**
+   * Creates {@link BrowseNode}s for the given assets and components in a single transaction.
+   *
+   * @param assetNodes     assets keyed by the path of their node
+   * @param componentNodes components keyed by the path of their node
+   * @since 3.9
+   */
+  void createNodes(String repositoryName, Map<List<String>, Asset> assetNodes,
+                   Map<List<String>, Component> componentNodes);
+
   /**
    * Deletes the asset's {@link BrowseNode}.
    */
@@ -12,13 +12,18 @@
  */
 package org.sonatype.nexus.repository.storage;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -45,15 +50,18 @@ import org.sonatype.nexus.selector.CselAssetSqlBuilder;
 import org.sonatype.nexus.selector.CselSelector;
 import org.sonatype.nexus.selector.SelectorConfiguration;
 import org.sonatype.nexus.selector.SelectorManager;
+import org.sonatype.nexus.thread.NexusExecutorService;
+import org.sonatype.nexus.thread.NexusThreadFactory;
 
+import com.google.common.base.Throwables;
 import com.orientechnologies.common.concur.ONeedRetryException;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
-import static java.util.stream.Collectors.toList;
 import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SCHEMAS;
 import static org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport.State.STARTED;
 import static org.sonatype.nexus.orient.transaction.OrientTransactional.inTx;
@@ -88,6 +96,10 @@ public class BrowseNodeStoreImpl
 
   private final boolean enabled;
 
+  private final int groupQueryThreads;
+
+  private ExecutorService groupQueryExecutor;
+
   @Inject
   public BrowseNodeStoreImpl(@Named("component") final Provider<DatabaseInstance> databaseInstance,
                              final BrowseNodeEntityAdapter entityAdapter,
@@ -103,6 +115,8 @@ public class BrowseNodeStoreImpl
     this.cselAssetSqlBuilder = checkNotNull(cselAssetSqlBuilder);
     this.deletePageSize = configuration.getDeletePageSize();
     this.enabled = configuration.isEnabled();
+    this.groupQueryThreads = configuration.getGroupQueryThreads();
+    checkArgument(groupQueryThreads > 0, "Group query threads must be greater than zero");
   }
 
   @Override
@@ -112,6 +126,25 @@ public class BrowseNodeStoreImpl
         entityAdapter.register(db);
       }
     }
+    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+        groupQueryThreads,
+        groupQueryThreads,
+        60L,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new NexusThreadFactory("browse-group-query", "browse-group-query")
+    );
+    threadPool.allowCoreThreadTimeOut(true);
+    groupQueryExecutor = NexusExecutorService.forCurrentSubject(threadPool);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    groupQueryExecutor.shutdown();
+    if (!groupQueryExecutor.awaitTermination(5L, TimeUnit.SECONDS)) {
+      log.warn("Failed to terminate thread pool in allotted time");
+    }
+    groupQueryExecutor = null;
   }
 
   @Override
@@ -132,6 +165,22 @@ public class BrowseNodeStoreImpl
         .run(db -> entityAdapter.createAssetNode(db, repositoryName, path, asset));
   }
 
+  @Override
+  @Guarded(by = STARTED)
+  public void createNodes(final String repositoryName,
+                          final Map<List<String>, Asset> assetNodes,
+                          final Map<List<String>, Component> componentNodes)
+  {
+    inTxRetry(databaseInstance)
+        // handle case where concurrent uploads try to create the exact same path at once
+        .retryOn(ONeedRetryException.class, ORecordDuplicatedException.class)
+        .run(db -> {
+          assetNodes.forEach((path, asset) -> entityAdapter.createAssetNode(db, repositoryName, path, asset));
+          componentNodes.forEach(
+              (path, component) -> entityAdapter.createComponentNode(db, repositoryName, path, component));
+        });
+  }
+
   @Override
   @Guarded(by = STARTED)
   public void deleteComponentNode(EntityId componentId) {
@@ -189,13 +238,7 @@ public class BrowseNodeStoreImpl
     String assetFilter = buildAssetFilter(repository, keyword, selectors, filterParameters);
 
     if (repository.getType() instanceof GroupType) {
-      // overlay member results, first-one-wins if there are any nodes with the same name
-      return members(repository)
-          .map(m -> getByPath(m.getName(), path, maxNodes, assetFilter, filterParameters))
-          .flatMap(List::stream)
-          .filter(distinctByName())
-          .limit(maxNodes)
-          .collect(toList());
+      return getByPath(members(repository), path, maxNodes, assetFilter, filterParameters);
     }
     else {
       return getByPath(repository.getName(), path, maxNodes, assetFilter, filterParameters);
@@ -203,20 +246,54 @@ public class BrowseNodeStoreImpl
   }
 
   /**
-   * Returns a filter that discards nodes which have the same name as an earlier node.
-   *
-   * Warning: this method is not thread-safe, so don't use it with a parallel stream
+   * Returns all non-group repositories reachable from the given repository.
    */
-  private static Predicate<BrowseNode> distinctByName() {
-    Set<String> names = new HashSet<>();
-    return node -> names.add(node.getName());
+  private static List<Repository> members(final Repository repository) {
+    return repository.facet(GroupFacet.class).leafMembers();
   }
 
   /**
-   * Returns stream of all non-group repositories reachable from the given repository.
+   * Queries the members concurrently and overlays their results in member order, first-one-wins if there are any
+   * nodes with the same name. Members still waiting to be queried once {@code maxNodes} nodes are merged are skipped.
    */
-  private static Stream<Repository> members(final Repository repository) {
-    return repository.facet(GroupFacet.class).leafMembers().stream();
+  private List<BrowseNode> getByPath(final List<Repository> members,
+                                     final List<String> path,
+                                     final int maxNodes,
+                                     @Nullable final String assetFilter,
+                                     @Nullable final Map<String, Object> filterParameters)
+  {
+    BrowseNodeMerger merger = new BrowseNodeMerger(maxNodes);
+    List<Future<?>> queries = new ArrayList<>(members.size());
+    try {
+      for (int i = 0; i < members.size(); i++) {
+        int memberIndex = i;
+        String memberName = members.get(i).getName();
+        queries.add(groupQueryExecutor.submit(() -> {
+          if (!merger.isDone()) {
+            merger.merge(memberIndex, getByPath(memberName, path, maxNodes, assetFilter, filterParameters));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> query : queries) {
+        if (merger.isDone()) {
+          break;
+        }
+        query.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+    finally {
+      queries.forEach(query -> query.cancel(false));
+    }
+    return merger.getNodes();
   }
 
   /**
@@ -314,4 +391,59 @@ public class BrowseNodeStoreImpl
       filterBuilder.append(')');
     }
   }
+
+  /**
+   * Thread-safe overlay of member results; results may arrive in any order but are merged in member order, so the
+   * first member to contain a node of a given name wins.
+   */
+  private static class BrowseNodeMerger
+  {
+    private final Map<Integer, List<BrowseNode>> pending = new HashMap<>();
+
+    private final Set<String> names = new HashSet<>();
+
+    private final List<BrowseNode> nodes = new ArrayList<>();
+
+    private final int maxNodes;
+
+    private int nextMember;
+
+    private volatile boolean done;
+
+    BrowseNodeMerger(final int maxNodes) {
+      this.maxNodes = maxNodes;
+      this.done = maxNodes <= 0;
+    }
+
+    /**
+     * Returns {@code true} once {@code maxNodes} nodes have been merged.
+     */
+    boolean isDone() {
+      return done;
+    }
+
+    synchronized void merge(final int memberIndex, final List<BrowseNode> memberNodes) {
+      pending.put(memberIndex, memberNodes);
+      List<BrowseNode> next;
+      while (!done && (next = pending.remove(nextMember)) != null) {
+        nextMember++;
+        for (BrowseNode node : next) {
+          if (names.add(node.getName())) {
+            nodes.add(node);
+            if (nodes.size() >= maxNodes) {
+              done = true;
+              break;
+            }
+          }
+        }
+      }
+      if (done) {
+        pending.clear();
+      }
+    }
+
+    synchronized List<BrowseNode> getNodes() {
+      return new ArrayList<>(nodes);
+    }
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.storage;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.hash.HashAlgorithm;
+import org.sonatype.nexus.common.hash.MultiHashingInputStream;
+import org.sonatype.nexus.common.hash.ParallelMultiHashingInputStream;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
+
+/**
+ * Hashes ingested content with each requested {@link HashAlgorithm} concurrently on a shared pool of threads, so
+ * CPU-bound digests do not cap the throughput of a single upload or proxy fetch.
+ *
+ * Per-algorithm throughput is recorded under {@code ParallelHashingService.<algorithm>.bytes} (meter) and
+ * {@code ParallelHashingService.<algorithm>.time} (timer). Content requested with a single algorithm, or read while
+ * the service is disabled or stopped, is hashed on the reading thread as before.
+ *
+ * @since 3.9
+ */
+@Named
+@ManagedLifecycle(phase = SERVICES)
+@Singleton
+public class ParallelHashingService
+    extends LifecycleSupport
+{
+  private final boolean enabled;
+
+  private final int maxThreads;
+
+  private final int chunkSize;
+
+  private final int maxPendingChunks;
+
+  private MetricRegistry metricRegistry;
+
+  private volatile ExecutorService executor;
+
+  @Inject
+  public ParallelHashingService(@Named("${nexus.storage.parallelHashing.enabled:-true}") final boolean enabled,
+                                @Named("${nexus.storage.parallelHashing.maxThreads:-8}") final int maxThreads,
+                                @Named("${nexus.storage.parallelHashing.chunkSize:-65536}") final int chunkSize,
+                                @Named("${nexus.storage.parallelHashing.maxPendingChunks:-8}") final int maxPendingChunks)
+  {
+    checkArgument(maxThreads > 0, "Maximum threads must be greater than zero");
+    checkArgument(chunkSize > 0, "Chunk size must be greater than zero");
+    checkArgument(maxPendingChunks > 0, "Maximum pending chunks must be greater than zero");
+    this.enabled = enabled;
+    this.maxThreads = maxThreads;
+    this.chunkSize = chunkSize;
+    this.maxPendingChunks = maxPendingChunks;
+  }
+
+  @Inject
+  public void setMetricRegistry(final MetricRegistry metricRegistry) {
+    this.metricRegistry = checkNotNull(metricRegistry);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    if (enabled) {
+      // saturated pools reject the lane, which is then run by the reading thread
+      executor = new ThreadPoolExecutor(
+          0,
+          maxThreads,
+          60L,
+          TimeUnit.SECONDS,
+          new SynchronousQueue<>(),
+          new NexusThreadFactory("parallel-hashing", "parallel-hashing")
+      );
+    }
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    ExecutorService currentExecutor = executor;
+    executor = null;
+    if (currentExecutor != null) {
+      currentExecutor.shutdown();
+      if (!currentExecutor.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+    }
+  }
+
+  /**
+   * Wraps the given stream so the data read from it is hashed with the given algorithms.
+   */
+  public MultiHashingInputStream hashing(final Iterable<HashAlgorithm> algorithms, final InputStream inputStream) {
+    ExecutorService currentExecutor = executor;
+    if (currentExecutor == null || Iterables.size(algorithms) < 2) {
+      return new MultiHashingInputStream(algorithms, inputStream);
+    }
+    return new ParallelMultiHashingInputStream(algorithms, inputStream, currentExecutor, chunkSize,
+        maxPendingChunks);
+  }
+
+  /**
+   * Gets the hashes of the data read from a stream returned by {@link #hashing}, recording hashing throughput.
+   */
+  public Map<HashAlgorithm, HashCode> hashes(final MultiHashingInputStream hashingStream) {
+    Map<HashAlgorithm, HashCode> hashes = hashingStream.hashes();
+    if (metricRegistry != null && hashingStream instanceof ParallelMultiHashingInputStream) {
+      long bytes = hashingStream.count();
+      Map<HashAlgorithm, Long> times = ((ParallelMultiHashingInputStream) hashingStream).hashingTimes();
+      for (Entry<HashAlgorithm, Long> entry : times.entrySet()) {
+        String algorithm = entry.getKey().name();
+        metricRegistry.meter(name(ParallelHashingService.class, algorithm, "bytes")).mark(bytes);
+        metricRegistry.timer(name(ParallelHashingService.class, algorithm, "time"))
+            .update(entry.getValue(), TimeUnit.NANOSECONDS);
+      }
+    }
+    return hashes;
+  }
+}
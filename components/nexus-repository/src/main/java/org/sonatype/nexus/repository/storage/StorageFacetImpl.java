@@ -15,6 +15,7 @@ package org.sonatype.nexus.repository.storage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
@@ -25,6 +26,7 @@ import javax.validation.groups.Default;
 
 import org.sonatype.nexus.blobstore.api.Blob;
 import org.sonatype.nexus.blobstore.api.BlobStore;
+import org.sonatype.nexus.blobstore.api.BlobStoreException;
 import org.sonatype.nexus.blobstore.api.BlobStoreManager;
 import org.sonatype.nexus.common.collect.NestedAttributesMap;
 import org.sonatype.nexus.common.event.EventHelper;
@@ -45,6 +47,7 @@ import org.sonatype.nexus.security.ClientInfoProvider;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import org.hibernate.validator.constraints.NotEmpty;
 
@@ -89,6 +92,8 @@ public class StorageFacetImpl
 
   private final ComponentFactory componentFactory;
 
+  private ParallelHashingService parallelHashingService;
+
   @VisibleForTesting
   static final String CONFIG_KEY = "storage";
 
@@ -147,6 +152,14 @@ public class StorageFacetImpl
     this.txSupplier = () -> openStorageTx(databaseInstanceProvider.get().acquire());
   }
 
+  /**
+   * @since 3.9
+   */
+  @Inject
+  public void setParallelHashingService(final ParallelHashingService parallelHashingService) {
+    this.parallelHashingService = checkNotNull(parallelHashingService);
+  }
+
   @Override
   protected void doValidate(final Configuration configuration) throws Exception {
     facet(ConfigurationFacet.class).validateSection(configuration, CONFIG_KEY, Config.class,
@@ -213,14 +226,32 @@ public class StorageFacetImpl
   @Override
   public TempBlob createTempBlob(final InputStream inputStream, final Iterable<HashAlgorithm> hashAlgorithms) {
     BlobStore blobStore = checkNotNull(blobStoreManager.get(config.blobStoreName));
-    MultiHashingInputStream hashingStream = new MultiHashingInputStream(hashAlgorithms, inputStream);
+    MultiHashingInputStream hashingStream = parallelHashingService != null
+        ? parallelHashingService.hashing(hashAlgorithms, inputStream)
+        : new MultiHashingInputStream(hashAlgorithms, inputStream);
     Blob blob = blobStore.create(hashingStream,
         ImmutableMap.of(
             BlobStore.BLOB_NAME_HEADER, "temp",
             BlobStore.CREATED_BY_HEADER, createdBy(),
             BlobStore.CREATED_BY_IP_HEADER, createdByIp(),
             BlobStore.TEMPORARY_BLOB_HEADER, ""));
-    return new TempBlob(blob, hashingStream.hashes(), true, blobStore);
+    Map<HashAlgorithm, HashCode> hashes;
+    try {
+      hashes = parallelHashingService != null
+          ? parallelHashingService.hashes(hashingStream)
+          : hashingStream.hashes();
+    }
+    catch (RuntimeException e) {
+      // nobody else holds the blob yet, so it would be left behind
+      try {
+        blobStore.deleteHard(blob.getId());
+      }
+      catch (BlobStoreException deleteFailure) {
+        e.addSuppressed(deleteFailure);
+      }
+      throw e;
+    }
+    return new TempBlob(blob, hashes, true, blobStore);
   }
 
   @Override
@@ -0,0 +1,153 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.storage.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.blobstore.api.BlobRef;
+import org.sonatype.nexus.common.upgrade.Upgrades;
+import org.sonatype.nexus.orient.DatabaseInstance;
+import org.sonatype.nexus.orient.DatabaseInstanceNames;
+import org.sonatype.nexus.orient.DatabaseUpgradeSupport;
+import org.sonatype.nexus.orient.OClassNameBuilder;
+import org.sonatype.nexus.orient.OIndexNameBuilder;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OClass.INDEX_TYPE;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_BLOB_KEY;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_BLOB_REF;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_LAST_DOWNLOADED;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.blobKey;
+import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_BUCKET;
+
+/**
+ * Upgrade step to introduce the indexed blob_key field on asset, so blob usage can be checked by exact match, and to
+ * index assets by bucket and last_downloaded, so unused assets can be found without scanning the whole bucket.
+ *
+ * @since 3.9
+ */
+@Named
+@Singleton
+@Upgrades(model = DatabaseInstanceNames.COMPONENT, from = "1.8", to = "1.9")
+public class ComponentDatabaseUpgrade_1_9 // NOSONAR
+    extends DatabaseUpgradeSupport
+{
+  static final String ASSET_CLASS = new OClassNameBuilder()
+      .type("asset")
+      .build();
+
+  static final String I_BLOB_KEY = new OIndexNameBuilder()
+      .type(ASSET_CLASS)
+      .property(P_BLOB_KEY)
+      .build();
+
+  static final String I_BUCKET_LAST_DOWNLOADED = new OIndexNameBuilder()
+      .type(ASSET_CLASS)
+      .property(P_BUCKET)
+      .property(P_LAST_DOWNLOADED)
+      .build();
+
+  private static final int BATCH_SIZE = 500;
+
+  private final OSQLSynchQuery<ODocument> selectAssetBatch = new OSQLSynchQuery<>(
+      "select from asset where @rid > ? limit " + BATCH_SIZE);
+
+  private final Provider<DatabaseInstance> componentDatabaseInstance;
+
+  @Inject
+  public ComponentDatabaseUpgrade_1_9(
+      @Named(DatabaseInstanceNames.COMPONENT) final Provider<DatabaseInstance> componentDatabaseInstance)
+  {
+    this.componentDatabaseInstance = checkNotNull(componentDatabaseInstance);
+  }
+
+  @Override
+  public void apply() throws Exception {
+    withDatabaseAndClass(componentDatabaseInstance, ASSET_CLASS, (db, type) -> {
+      createBlobKeyField(type);
+      createBlobKeyIndex(db, type);
+      populateBlobKeyField(db);
+      createLastDownloadedIndex(db, type);
+    });
+  }
+
+  private void createBlobKeyField(final OClass type) {
+    log.info("Creating blob key field on asset");
+    if (!type.existsProperty(P_BLOB_KEY)) {
+      type.createProperty(P_BLOB_KEY, OType.STRING);
+    }
+  }
+
+  private void createBlobKeyIndex(final ODatabaseDocumentTx db, final OClass type) {
+    log.info("Creating index on blob key field on asset");
+    if (db.getMetadata().getIndexManager().getIndex(I_BLOB_KEY) == null) {
+      type.createIndex(I_BLOB_KEY, INDEX_TYPE.NOTUNIQUE, P_BLOB_KEY);
+    }
+  }
+
+  private void createLastDownloadedIndex(final ODatabaseDocumentTx db, final OClass type) {
+    log.info("Creating index on bucket and last downloaded fields on asset");
+    if (db.getMetadata().getIndexManager().getIndex(I_BUCKET_LAST_DOWNLOADED) == null) {
+      type.createIndex(I_BUCKET_LAST_DOWNLOADED, INDEX_TYPE.NOTUNIQUE, P_BUCKET, P_LAST_DOWNLOADED);
+    }
+  }
+
+  private void populateBlobKeyField(final ODatabaseDocumentTx db) {
+    log.info("Populating blob key field on asset, this could be a long-running operation");
+    try {
+      ORID last = new ORecordId();
+      while (last != null) {
+        last = populateBlobKeyFieldBatch(db, last);
+      }
+    }
+    finally {
+      db.rollback();
+    }
+  }
+
+  /**
+   * Populates the next batch of assets after the given record, returning the last record seen or {@code null} when
+   * there are no more assets.
+   */
+  private ORID populateBlobKeyFieldBatch(final ODatabaseDocumentTx db, final ORID after) {
+    log.trace("Processing batch of {} asset records...", BATCH_SIZE);
+    db.begin();
+    List<ODocument> assets = db.query(selectAssetBatch, after);
+    if (assets.isEmpty()) {
+      return null;
+    }
+    for (ODocument asset : assets) {
+      String blobRef = asset.field(P_BLOB_REF, String.class);
+      if (blobRef != null && asset.field(P_BLOB_KEY) == null) {
+        BlobRef ref = BlobRef.parse(blobRef);
+        asset.field(P_BLOB_KEY, blobKey(ref.getStore(), ref.getBlob()));
+        asset.save();
+      }
+    }
+    db.commit();
+    return assets.get(assets.size() - 1).getIdentity();
+  }
+}
@@ -15,9 +15,12 @@ package org.sonatype.nexus.repository.view;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import javax.annotation.Nullable;
 
+import com.google.common.io.ByteStreams;
+
 /**
  * Payload.
  *
@@ -30,11 +33,41 @@ public interface Payload
 
   InputStream openInputStream() throws IOException;
 
+  /**
+   * Opens an input stream to {@code length} bytes of the payload's content, starting at {@code offset}. Payloads that
+   * can seek should override this; by default the preceding content is skipped.
+   *
+   * @since 3.9
+   */
+  default InputStream openInputStream(final long offset, final long length) throws IOException {
+    InputStream input = openInputStream();
+    try {
+      ByteStreams.skipFully(input, offset);
+    }
+    catch (IOException e) {
+      input.close();
+      throw e;
+    }
+    return ByteStreams.limit(input, length);
+  }
+
   long getSize();
 
   @Nullable
   String getContentType();
 
+  /**
+   * Opens a read-only {@link FileChannel} to the payload's content when it is held in a local file, so it can be sent
+   * without copying through heap buffers. Returns {@code null} when the payload is not file-backed, in which case
+   * callers should use {@link #openInputStream()}.
+   *
+   * @since 3.9
+   */
+  @Nullable
+  default FileChannel openFileChannel() throws IOException {
+    return null;
+  }
+
   /**
    * Closes this payload, relinquishing any underlying resources. Streams previously handed out by
    * {@link #openInputStream()} may not be affected by this method and should be closed separately.
@@ -0,0 +1,261 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.nexus.repository.view.matchers.ActionMatcher;
+import org.sonatype.nexus.repository.view.matchers.logic.AndMatcher;
+import org.sonatype.nexus.repository.view.matchers.logic.OrMatcher;
+import org.sonatype.nexus.repository.view.matchers.token.LiteralToken;
+import org.sonatype.nexus.repository.view.matchers.token.Token;
+import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * Dispatch table compiled from the routes of a {@link Router}, used to skip routes that cannot match a request
+ * without evaluating their matchers.
+ *
+ * Each route is given a guard of conditions its matcher implies: the literal prefix and suffix of a
+ * {@link TokenMatcher} pattern and the actions of an {@link ActionMatcher}, also when nested in {@link AndMatcher}s or
+ * (actions only) {@link OrMatcher}s. Prefixes and suffixes are held in tries, so the candidate routes for a request
+ * are found in one pass over its path from each end, whatever the number of routes. Only candidates have their
+ * matcher evaluated, in declaration order, so the first route to match is the same as with a linear scan.
+ *
+ * Guards are only taken from matchers which have no side effect when they don't match, up to the first matcher of an
+ * {@link AndMatcher} which could have one, so skipping a route leaves the context exactly as evaluating it would have.
+ * Routes with other matchers are always candidates.
+ *
+ * @since 3.9
+ */
+class RouteTable
+{
+  private final List<Route> routes;
+
+  private final int words;
+
+  private final TrieNode prefixes = new TrieNode();
+
+  private final TrieNode suffixes = new TrieNode();
+
+  /**
+   * Routes without action guard, and the additional routes allowed for each action.
+   */
+  private final long[] anyAction;
+
+  private final Map<String, long[]> actions = new HashMap<>();
+
+  RouteTable(final List<Route> routes) {
+    this.routes = ImmutableList.copyOf(routes);
+    this.words = (routes.size() + 63) >>> 6;
+    this.anyAction = new long[words];
+
+    for (int i = 0; i < routes.size(); i++) {
+      Guard guard = new Guard();
+      guard.add(routes.get(i).getMatcher());
+
+      insert(prefixes, guard.prefix, false, i);
+      insert(suffixes, guard.suffix, true, i);
+      if (guard.actions == null) {
+        set(anyAction, i);
+      }
+      else {
+        for (String action : guard.actions) {
+          set(actions.computeIfAbsent(action, k -> new long[words]), i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the first route which matches the context, or {@code null} if none does.
+   */
+  @Nullable
+  Route findRoute(final Context context) {
+    Request request = context.getRequest();
+    String path = request.getPath();
+
+    long[] candidates = new long[words];
+    walk(prefixes, path, false, candidates);
+    long[] suffixCandidates = new long[words];
+    walk(suffixes, path, true, suffixCandidates);
+
+    long[] actionCandidates = actions.get(request.getAction());
+    for (int w = 0; w < words; w++) {
+      long allowed = anyAction[w] | (actionCandidates != null ? actionCandidates[w] : 0L);
+      candidates[w] &= suffixCandidates[w] & allowed;
+    }
+
+    for (int w = 0; w < words; w++) {
+      long bits = candidates[w];
+      while (bits != 0) {
+        int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+        Route route = routes.get(i);
+        if (route.getMatcher().matches(context)) {
+          return route;
+        }
+        bits &= bits - 1;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Marks the route at the trie node of the given literal, or at the root when there is none.
+   */
+  private void insert(final TrieNode root, @Nullable final String literal, final boolean reverse, final int route) {
+    TrieNode node = root;
+    if (literal != null) {
+      int length = literal.length();
+      for (int i = 0; i < length; i++) {
+        node = node.child(literal.charAt(reverse ? length - 1 - i : i));
+      }
+    }
+    if (node.routes == null) {
+      node.routes = new long[words];
+    }
+    set(node.routes, route);
+  }
+
+  /**
+   * Collects the routes of every trie node along the path, i.e. of every literal the path starts (or ends) with.
+   */
+  private static void walk(final TrieNode root, final String path, final boolean reverse, final long[] result) {
+    TrieNode node = root;
+    int length = path.length();
+    int i = 0;
+    while (node != null) {
+      if (node.routes != null) {
+        for (int w = 0; w < result.length; w++) {
+          result[w] |= node.routes[w];
+        }
+      }
+      if (i == length) {
+        break;
+      }
+      node = node.get(path.charAt(reverse ? length - 1 - i : i));
+      i++;
+    }
+  }
+
+  private static void set(final long[] bits, final int index) {
+    bits[index >>> 6] |= 1L << index;
+  }
+
+  /**
+   * Trie keyed by character, branches are few so children are kept in small arrays.
+   */
+  private static class TrieNode
+  {
+    private char[] keys = new char[0];
+
+    private TrieNode[] children = new TrieNode[0];
+
+    @Nullable
+    private long[] routes;
+
+    @Nullable
+    TrieNode get(final char key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    TrieNode child(final char key) {
+      TrieNode node = get(key);
+      if (node == null) {
+        node = new TrieNode();
+        int length = keys.length;
+        keys = Arrays.copyOf(keys, length + 1);
+        children = Arrays.copyOf(children, length + 1);
+        keys[length] = key;
+        children[length] = node;
+      }
+      return node;
+    }
+  }
+
+  /**
+   * Conditions implied by a route's matcher; {@code null} fields place no constraint.
+   */
+  private static class Guard
+  {
+    @Nullable
+    private String prefix;
+
+    @Nullable
+    private String suffix;
+
+    @Nullable
+    private Set<String> actions;
+
+    /**
+     * Adds the conditions of the given matcher, returning {@code false} if it could have had side effects by the time
+     * it fails, in which case no conditions of matchers evaluated after it may be added.
+     */
+    boolean add(@Nullable final Matcher matcher) {
+      if (matcher instanceof ActionMatcher) {
+        addActions(((ActionMatcher) matcher).getAllowedActions());
+        return true;
+      }
+      if (matcher instanceof TokenMatcher) {
+        // tokens are only exposed on success, but that is also the case when a later matcher of an AND fails
+        List<Token> tokens = ((TokenMatcher) matcher).getParser().getTokens();
+        if (prefix == null && !tokens.isEmpty() && tokens.get(0) instanceof LiteralToken) {
+          prefix = ((LiteralToken) tokens.get(0)).getValue();
+        }
+        if (suffix == null && !tokens.isEmpty() && tokens.get(tokens.size() - 1) instanceof LiteralToken) {
+          suffix = ((LiteralToken) tokens.get(tokens.size() - 1)).getValue();
+        }
+        return false;
+      }
+      if (matcher instanceof AndMatcher) {
+        for (Matcher child : ((AndMatcher) matcher).getMatchers()) {
+          if (!add(child)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      if (matcher instanceof OrMatcher) {
+        Set<String> orActions = Sets.newHashSet();
+        for (Matcher child : ((OrMatcher) matcher).getMatchers()) {
+          if (!(child instanceof ActionMatcher)) {
+            return false;
+          }
+          orActions.addAll(((ActionMatcher) child).getAllowedActions());
+        }
+        addActions(orActions);
+        return true;
+      }
+      return false;
+    }
+
+    private void addActions(final Iterable<String> allowed) {
+      Set<String> allowedSet = ImmutableSet.copyOf(allowed);
+      actions = actions == null ? allowedSet : Sets.intersection(actions, allowedSet).immutableCopy();
+    }
+  }
+}
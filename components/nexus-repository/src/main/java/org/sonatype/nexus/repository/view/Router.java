@@ -30,19 +30,21 @@ import static com.google.common.base.Preconditions.checkState;
 /**
  * View router.
  *
+ * Routes are compiled into a {@link RouteTable}, so only routes which can match a request have their matcher evaluated.
+ *
  * @since 3.0
  */
 public class Router
     extends ComponentSupport
 {
-  private final List<Route> routes;
+  private final RouteTable routeTable;
 
   private final DefaultRoute defaultRoute;
 
   public static final String LOCAL_ATTRIBUTE_PREFIX = "local.attribute.";
 
   public Router(final List<Route> routes, final DefaultRoute defaultRoute) {
-    this.routes = checkNotNull(routes, "Missing routes");
+    this.routeTable = new RouteTable(checkNotNull(routes, "Missing routes"));
     this.defaultRoute = checkNotNull(defaultRoute, "Missing default route");
   }
 
@@ -143,12 +145,8 @@ public class Router
    * Find the first matching route for the given context.
    */
   private Route findRoute(final Context context) {
-    for (Route route : routes) {
-      if (route.getMatcher().matches(context)) {
-        return route;
-      }
-    }
-    return defaultRoute;
+    Route route = routeTable.findRoute(context);
+    return route != null ? route : defaultRoute;
   }
 
   //
@@ -49,6 +49,13 @@ public class TokenMatcher
     this.parser = new TokenParser(pattern);
   }
 
+  /**
+   * @since 3.9
+   */
+  public TokenParser getParser() {
+    return parser;
+  }
+
   @Override
   public boolean matches(final Context context) {
     checkNotNull(context);
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.view.matchers.token;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,12 +50,14 @@ import static com.google.common.base.Preconditions.checkState;
 public class TokenParser
   extends ComponentSupport
 {
+  private final List<Token> tokens;
+
   private final List<VariableToken> variables;
 
   private final Pattern pattern;
 
   public TokenParser(final String templatePattern) {
-    final List<Token> tokens = new PatternParser(templatePattern).getTokens();
+    tokens = new PatternParser(templatePattern).getTokens();
     pattern = Pattern.compile(regexp(tokens));
     log.trace("Pattern: {}", pattern);
 
@@ -106,6 +109,13 @@ public class TokenParser
     return pattern.toString();
   }
 
+  /**
+   * @since 3.9
+   */
+  public List<Token> getTokens() {
+    return Collections.unmodifiableList(tokens);
+  }
+
   private String regexp(final List<Token> tokens) {
     StringBuilder b = new StringBuilder();
     for (Token token : tokens) {
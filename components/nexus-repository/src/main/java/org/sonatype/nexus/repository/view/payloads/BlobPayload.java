@@ -14,6 +14,7 @@ package org.sonatype.nexus.repository.view.payloads;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import javax.annotation.Nullable;
 
@@ -44,11 +45,22 @@ public class BlobPayload
     return blob.getInputStream();
   }
 
+  @Override
+  public InputStream openInputStream(final long offset, final long length) throws IOException {
+    return blob.getInputStream(offset, length);
+  }
+
   @Override
   public long getSize() {
     return blob.getMetrics().getContentSize();
   }
 
+  @Nullable
+  @Override
+  public FileChannel openFileChannel() throws IOException {
+    return blob.openFileChannel();
+  }
+
   @Nullable
   @Override
   public String getContentType() {
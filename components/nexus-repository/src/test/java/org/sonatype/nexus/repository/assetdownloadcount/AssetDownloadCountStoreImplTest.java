@@ -18,8 +18,10 @@ import org.sonatype.nexus.orient.testsupport.DatabaseInstanceRule;
 import org.sonatype.nexus.repository.assetdownloadcount.internal.AssetDownloadCountEntityAdapter;
 import org.sonatype.nexus.repository.assetdownloadcount.internal.AssetDownloadCountStoreImpl;
 import org.sonatype.nexus.repository.assetdownloadcount.internal.AssetDownloadHistoricDataCleaner;
-import org.sonatype.nexus.repository.assetdownloadcount.internal.CacheRemovalListener;
+import org.sonatype.nexus.repository.assetdownloadcount.internal.DownloadCountWriter;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.subject.support.SubjectRunnable;
 import org.apache.shiro.util.ThreadContext;
@@ -35,7 +37,9 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -64,7 +68,9 @@ public class AssetDownloadCountStoreImplTest
   @Mock
   private Subject subject;
 
-  private CacheRemovalListener cacheRemovalListener;
+  private DownloadCountWriter downloadCountWriter;
+
+  private MetricRegistry metricRegistry = new MetricRegistry();
 
   private AssetDownloadCountStoreImpl underTest;
 
@@ -75,14 +81,14 @@ public class AssetDownloadCountStoreImplTest
         .thenAnswer(invoc -> new SubjectRunnable(subject, (Runnable) invoc.getArguments()[0]));
     ThreadContext.bind(subject);
 
-    cacheRemovalListener = new CacheRemovalListener(database.getInstanceProvider(), assetDownloadCountEntityAdapter);
-    underTest = new AssetDownloadCountStoreImpl(database.getInstanceProvider(), true, 10, 10,
-        assetDownloadCountEntityAdapter, dataCleaner, cacheRemovalListener);
+    downloadCountWriter = new DownloadCountWriter(database.getInstanceProvider(), assetDownloadCountEntityAdapter);
+    underTest = newStore(10, 500, downloadCountWriter);
     underTest.start();
   }
 
   @After
-  public void cleanup() {
+  public void cleanup() throws Exception {
+    underTest.stop();
     ThreadContext.unbindSubject();
   }
 
@@ -120,53 +126,92 @@ public class AssetDownloadCountStoreImplTest
 
   @Test
   public void testIncrementCount() throws Exception {
-    underTest = new AssetDownloadCountStoreImpl(database.getInstanceProvider(), true, 1, 1,
-        assetDownloadCountEntityAdapter, dataCleaner, cacheRemovalListener);
     underTest.incrementCount(REPO_NAME, ASSET_NAME);
     underTest.incrementCount(REPO_NAME, ASSET_NAME + 1);
-    Thread.sleep(100);
+    underTest.flush();
     verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME), eq(1L));
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + 1), eq(1L));
   }
 
   @Test
   public void testIncrementCount_validateCaching() throws Exception {
-    underTest = new AssetDownloadCountStoreImpl(database.getInstanceProvider(), true, 10, 1,
-        assetDownloadCountEntityAdapter, dataCleaner, cacheRemovalListener);
-
-    //increment 10 items, that will fill the queue, but not overflow it
-    for (int i = 0 ; i < 10 ; i++) {
-      underTest.incrementCount(REPO_NAME, ASSET_NAME + i);
+    for (int i = 0 ; i < 3 ; i++) {
+      underTest.incrementCount(REPO_NAME, ASSET_NAME);
     }
+    underTest.incrementCount(REPO_NAME, ASSET_NAME + "b");
 
-    Thread.sleep(100);
-
-    //should be nothing on disk yet
+    //should be nothing on disk until flushed
     verify(assetDownloadCountEntityAdapter, never()).incrementCount(any(), anyString(), anyString(), anyLong());
 
-    //increment 4 more times
-    for (int i = 0 ; i < 4 ; i++) {
-      underTest.incrementCount(REPO_NAME, ASSET_NAME + (10 + i));
-    }
+    underTest.flush();
+
+    //increments of the same asset are coalesced
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME), eq(3L));
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + "b"), eq(1L));
 
-    Thread.sleep(100);
+    underTest.flush();
 
-    //should have stuffed 4 things in db
-    for (int i = 0 ; i < 4 ; i++) {
-      verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + i), eq(1L));
+    //nothing written twice
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME), anyLong());
+  }
+
+  @Test
+  public void testIncrementCount_validateBatching() throws Exception {
+    DownloadCountWriter writer = mock(DownloadCountWriter.class);
+    when(writer.write(anyString(), any())).thenReturn(true);
+    AssetDownloadCountStoreImpl store = newStore(10, 2, writer);
+
+    for (int i = 0 ; i < 3 ; i++) {
+      store.incrementCount(REPO_NAME, ASSET_NAME + i);
     }
+    store.incrementCount(REPO_NAME + "2", ASSET_NAME);
+    store.flush();
+
+    verify(writer, times(2)).write(eq(REPO_NAME), any());
+    verify(writer).write(REPO_NAME + "2", ImmutableMap.of(ASSET_NAME, 1L));
   }
 
   @Test
-  public void testIncrementCount_validateCacheDrops_dbFrozen() throws Exception {
-    underTest = new AssetDownloadCountStoreImpl(database.getInstanceProvider(), true, 1, 1,
-        assetDownloadCountEntityAdapter, dataCleaner, cacheRemovalListener);
+  public void testIncrementCount_validateDropsWhenFull() throws Exception {
+    AssetDownloadCountStoreImpl store = newStore(1, 500, downloadCountWriter);
+
+    store.incrementCount(REPO_NAME, ASSET_NAME + "a");
+    store.incrementCount(REPO_NAME, ASSET_NAME + "b");
+    store.incrementCount(REPO_NAME, ASSET_NAME + "a");
+    store.flush();
+
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + "a"), eq(2L));
+    verify(assetDownloadCountEntityAdapter, never()).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + "b"),
+        anyLong());
+    assertThat(metricRegistry.meter(AssetDownloadCountStoreImpl.class.getName() + ".dropped").getCount(), is(1L));
+  }
+
+  @Test
+  public void testIncrementCount_flushMakesRoom() throws Exception {
+    AssetDownloadCountStoreImpl store = newStore(2, 500, downloadCountWriter);
+
+    store.incrementCount(REPO_NAME, ASSET_NAME + "a");
+    store.incrementCount(REPO_NAME, ASSET_NAME + "b");
+    store.incrementCount(REPO_NAME, ASSET_NAME + "c");
+    store.flush();
+
+    store.incrementCount(REPO_NAME, ASSET_NAME + "c");
+    store.incrementCount(REPO_NAME, ASSET_NAME + "d");
+    store.flush();
+
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + "c"), eq(1L));
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + "d"), eq(1L));
+    verify(assetDownloadCountEntityAdapter).incrementCount(any(), eq(REPO_NAME), eq(ASSET_NAME + "a"), eq(1L));
+    assertThat(metricRegistry.meter(AssetDownloadCountStoreImpl.class.getName() + ".dropped").getCount(), is(1L));
+  }
 
-    cacheRemovalListener.onDatabaseFreezeChangeEvent(new DatabaseFreezeChangeEvent(true));
+  @Test
+  public void testIncrementCount_validateCacheDrops_dbFrozen() throws Exception {
+    downloadCountWriter.onDatabaseFreezeChangeEvent(new DatabaseFreezeChangeEvent(true));
 
     underTest.incrementCount(REPO_NAME, ASSET_NAME + "a");
     underTest.incrementCount(REPO_NAME, ASSET_NAME + "b");
-
-    Thread.sleep(100);
+    underTest.flush();
 
     // should be nothing on disk
     verify(assetDownloadCountEntityAdapter, never()).incrementCount(any(), anyString(), anyString(), anyLong());
@@ -215,4 +260,12 @@ public class AssetDownloadCountStoreImplTest
     count = underTest.getLastThirtyDays(REPO_NAME, ASSET_NAME);
     assertThat(count, is(101L));
   }
+
+  private AssetDownloadCountStoreImpl newStore(final int cacheSize,
+                                               final int batchSize,
+                                               final DownloadCountWriter writer)
+  {
+    return new AssetDownloadCountStoreImpl(database.getInstanceProvider(), true, cacheSize, 10, batchSize,
+        assetDownloadCountEntityAdapter, dataCleaner, writer, metricRegistry);
+  }
 }
@@ -13,6 +13,7 @@
 package org.sonatype.nexus.repository.browse.internal;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +37,10 @@ import org.mockito.Mock;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -125,13 +130,36 @@ public class BrowseNodeManagerTest
 
     manager.createFromAssets(repository, assets);
 
+    Map<List<String>, Asset> assetNodes = new LinkedHashMap<>();
     for (Asset asset : assets) {
-      verify(browseNodeStore).createAssetNode(REPOSITORY_NAME, asList(asset.name()), asset);
+      assetNodes.put(asList(asset.name()), asset);
     }
+    verify(browseNodeStore).createNodes(REPOSITORY_NAME, assetNodes, emptyMap());
 
     verifyNoMoreInteractions(browseNodeStore);
   }
 
+  @Test
+  public void createFromAssetsFallsBackToSingleNodesWhenBulkCreateFails() {
+    List<Asset> assets = asList(
+        createAsset("assetName1", "assetId1", MAVEN_2, null),
+        createAsset("assetName2", "assetId2", MAVEN_2, null)
+    );
+
+    for (Asset asset : assets) {
+      String name = asset.name();
+      when(maven2BrowseNodeGenerator.computeAssetPath(asset, null)).thenReturn(asList(name));
+    }
+    doThrow(new IllegalStateException()).when(browseNodeStore)
+        .createNodes(any(), anyMapOf(List.class, Asset.class), anyMapOf(List.class, Component.class));
+
+    manager.createFromAssets(repository, assets);
+
+    for (Asset asset : assets) {
+      verify(browseNodeStore).createAssetNode(REPOSITORY_NAME, asList(asset.name()), asset);
+    }
+  }
+
   @Test
   public void createFromAssetsSavesNodesWithComponents() {
     List<Component> components = asList(
@@ -156,14 +184,15 @@ public class BrowseNodeManagerTest
 
     manager.createFromAssets(repository, assets);
 
+    Map<List<String>, Asset> assetNodes = new LinkedHashMap<>();
+    Map<List<String>, Component> componentNodes = new LinkedHashMap<>();
     for (int i = 0; i < assets.size(); i++) {
       Asset asset = assets.get(i);
       Component component = components.get(i);
-      verify(browseNodeStore).createComponentNode(REPOSITORY_NAME,
-          asList(component.group(), component.name(), component.version()), component);
-      verify(browseNodeStore).createAssetNode(REPOSITORY_NAME,
-          asList(component.group(), component.name(), component.version(), asset.name()), asset);
+      componentNodes.put(asList(component.group(), component.name(), component.version()), component);
+      assetNodes.put(asList(component.group(), component.name(), component.version(), asset.name()), asset);
     }
+    verify(browseNodeStore).createNodes(REPOSITORY_NAME, assetNodes, componentNodes);
 
     verifyNoMoreInteractions(browseNodeStore);
   }
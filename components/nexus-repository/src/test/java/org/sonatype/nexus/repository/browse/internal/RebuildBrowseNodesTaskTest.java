@@ -34,7 +34,6 @@ import org.sonatype.nexus.repository.storage.BucketStore;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.OCompositeKey;
-import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexCursor;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import org.junit.Before;
@@ -88,9 +87,6 @@ public class RebuildBrowseNodesTaskTest
 
   private ORID bucketRid = new ORecordId("#2:1");
 
-  @Mock
-  private OIndex bucketComponentIndex;
-
   @Mock
   private OIndexCursor cursor;
 
@@ -103,14 +99,13 @@ public class RebuildBrowseNodesTaskTest
     when(bucket.getEntityMetadata()).thenReturn(bucketMetadata);
     when(bucketMetadata.getDocument()).thenReturn(bucketDocument);
     when(bucketDocument.getIdentity()).thenReturn(bucketRid);
-    when(assetStore.getIndex(I_BUCKET_COMPONENT_NAME)).thenReturn(bucketComponentIndex);
-    when(bucketComponentIndex.cursor()).thenReturn(cursor);
+    when(assetStore.getIndexCursor(I_BUCKET_COMPONENT_NAME, bucket)).thenReturn(cursor);
 
     underTest = new RebuildBrowseNodesTask(
         assetStore,
         bucketStore,
         browseNodeManager,
-        new BrowseNodeConfiguration(true, true, REBUILD_PAGE_SIZE, 1000, 10_000, 10_000, seconds(0))
+        new BrowseNodeConfiguration(true, true, REBUILD_PAGE_SIZE, 1000, 10_000, 10_000, seconds(0), 8)
     );
   }
 
@@ -131,9 +126,8 @@ public class RebuildBrowseNodesTaskTest
 
     when(assetStore.countAssets(any())).thenReturn(3L);
     when(assetStore.getNextPage(any(), eq(REBUILD_PAGE_SIZE))).thenReturn(page, emptyList());
-    when(assetStore.getById(EntityHelper.id(asset1))).thenReturn(asset1);
-    when(assetStore.getById(EntityHelper.id(asset2))).thenReturn(asset2);
-    when(assetStore.getById(EntityHelper.id(asset3))).thenReturn(asset3);
+    when(assetStore.getByIds(asList(EntityHelper.id(asset1), EntityHelper.id(asset2), EntityHelper.id(asset3))))
+        .thenReturn(asList(asset1, asset2, asset3));
 
     underTest.execute(repository);
 
@@ -171,9 +165,9 @@ public class RebuildBrowseNodesTaskTest
 
     when(assetStore.countAssets(any())).thenReturn(3L);
     when(assetStore.getNextPage(any(), eq(REBUILD_PAGE_SIZE))).thenReturn(page1, page2, page3);
-    when(assetStore.getById(EntityHelper.id(asset1))).thenReturn(asset1);
-    when(assetStore.getById(EntityHelper.id(asset2))).thenReturn(asset2);
-    when(assetStore.getById(EntityHelper.id(asset3))).thenReturn(asset3);
+    when(assetStore.getByIds(asList(EntityHelper.id(asset1), EntityHelper.id(asset2))))
+        .thenReturn(asList(asset1, asset2));
+    when(assetStore.getByIds(asList(EntityHelper.id(asset3)))).thenReturn(asList(asset3));
 
     underTest.execute(repository);
 
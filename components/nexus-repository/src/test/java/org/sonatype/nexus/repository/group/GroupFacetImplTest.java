@@ -22,6 +22,7 @@ import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.config.Configuration;
 import org.sonatype.nexus.repository.config.ConfigurationFacet;
 import org.sonatype.nexus.repository.group.GroupFacetImpl.Config;
+import org.sonatype.nexus.repository.manager.RepositoryDeletedEvent;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
 import org.sonatype.nexus.repository.types.GroupType;
 import org.sonatype.nexus.repository.types.HostedType;
@@ -34,6 +35,7 @@ import org.mockito.Mock;
 
 import static com.google.common.collect.ImmutableList.copyOf;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
@@ -118,6 +120,27 @@ public class GroupFacetImplTest
     assertThat(underTest.allMembers(), contains(group1, hosted1));
   }
 
+  @Test
+  public void testMembersAreCachedUntilRepositoryChanges() throws Exception {
+    Repository hosted1 = hostedRepository("hosted1");
+    Repository hosted2 = hostedRepository("hosted2");
+    Config config = new Config();
+    config.memberNames = ImmutableSet.of(hosted1.getName(), hosted2.getName());
+    Configuration configuration = new Configuration();
+    when(configurationFacet.readSection(configuration, CONFIG_KEY, Config.class)).thenReturn(config);
+    underTest.doConfigure(configuration);
+
+    assertThat(underTest.members(), contains(hosted1, hosted2));
+    assertThat(underTest.members(), sameInstance(underTest.members()));
+
+    when(repositoryManager.get(hosted2.getName())).thenReturn(null);
+    assertThat(underTest.members(), contains(hosted1, hosted2));
+
+    underTest.on(new RepositoryDeletedEvent(hosted2));
+    assertThat(underTest.members(), contains(hosted1));
+    assertThat(underTest.leafMembers(), contains(hosted1));
+  }
+
   private ConstraintViolationFactory makeConstraintViolationFactory() {
     ConstraintViolationFactory constraintViolationFactory = mock(ConstraintViolationFactory.class);
     when(constraintViolationFactory.createViolation(anyString(), anyString()))
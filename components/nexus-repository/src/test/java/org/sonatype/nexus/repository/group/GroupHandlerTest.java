@@ -12,16 +12,35 @@
  */
 package org.sonatype.nexus.repository.group;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.group.GroupHandler.DispatchedRepositories;
+import org.sonatype.nexus.repository.http.HttpResponses;
+import org.sonatype.nexus.repository.types.GroupType;
+import org.sonatype.nexus.repository.view.Context;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.Request;
+import org.sonatype.nexus.repository.view.Response;
+import org.sonatype.nexus.repository.view.ViewFacet;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class GroupHandlerTest
@@ -42,6 +61,12 @@ public class GroupHandlerTest
   @Mock
   private Repository repository3;
 
+  @Mock
+  private Context context;
+
+  @Mock
+  private Request request;
+
   private DispatchedRepositories underTest;
 
   @Before
@@ -53,6 +78,7 @@ public class GroupHandlerTest
     when(repository2.getName()).thenReturn(REPOSITORY_2);
     when(repository3.toString()).thenReturn(REPOSITORY_3);
     when(repository3.getName()).thenReturn(REPOSITORY_3);
+    when(context.getRequest()).thenReturn(request);
   }
 
   @Test
@@ -74,4 +100,183 @@ public class GroupHandlerTest
     assertThat(underTest.toString(),
         containsString(String.format("[%s, %s, %s]", REPOSITORY_3, REPOSITORY_1, REPOSITORY_2)));
   }
+
+  @Test
+  public void parallelDispatchReturnsFirstSuccessfulMemberInOrder() throws Exception {
+    ParallelGroupDispatcher dispatcher = new ParallelGroupDispatcher(true, 4);
+    dispatcher.start();
+    try {
+      GroupHandler handler = new GroupHandler();
+      handler.setParallelDispatcher(dispatcher);
+
+      Payload lowerPriorityPayload = mock(Payload.class);
+      Response winner = HttpResponses.ok(mock(Payload.class));
+      Response loser = HttpResponses.ok(lowerPriorityPayload);
+
+      mockView(repository1, () -> {
+        Thread.sleep(100);
+        return HttpResponses.notFound();
+      });
+      mockView(repository2, () -> winner);
+      mockView(repository3, () -> loser);
+
+      Response response = handler.getFirst(context, asList(repository1, repository2, repository3), underTest);
+
+      assertThat(response, is(sameInstance(winner)));
+      assertThat(underTest.contains(repository1), is(true));
+      assertThat(underTest.contains(repository3), is(true));
+      verify(lowerPriorityPayload).close();
+    }
+    finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void parallelDispatchSkipsAlreadyDispatchedMembers() throws Exception {
+    ParallelGroupDispatcher dispatcher = new ParallelGroupDispatcher(true, 4);
+    dispatcher.start();
+    try {
+      GroupHandler handler = new GroupHandler();
+      handler.setParallelDispatcher(dispatcher);
+
+      mockView(repository1, HttpResponses::notFound);
+      mockView(repository2, HttpResponses::notFound);
+      underTest.add(repository2);
+
+      Response response = handler.getFirst(context, asList(repository1, repository2), underTest);
+
+      assertThat(response.getStatus().getCode(), is(404));
+      verify(repository2, never()).facet(ViewFacet.class);
+    }
+    finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void parallelDispatchKeepsPrecedenceOfNestedGroups() throws Exception {
+    ParallelGroupDispatcher dispatcher = new ParallelGroupDispatcher(true, 4);
+    dispatcher.start();
+    try {
+      GroupHandler handler = new GroupHandler();
+      handler.setParallelDispatcher(dispatcher);
+
+      // nested group listed ahead of one of its own members
+      Repository nested = mock(Repository.class);
+      GroupFacet nestedFacet = mock(GroupFacet.class);
+      when(nested.getName()).thenReturn("nested");
+      when(nested.toString()).thenReturn("nested");
+      when(nested.getType()).thenReturn(new GroupType());
+      when(nested.facet(GroupFacet.class)).thenReturn(nestedFacet);
+      when(nestedFacet.members()).thenReturn(asList(repository1, repository2));
+
+      Response viaNested = HttpResponses.ok(mock(Payload.class));
+      Payload laterPayload = mock(Payload.class);
+      mockView(repository1, () -> {
+        Thread.sleep(100);
+        return viaNested;
+      });
+      mockView(repository2, () -> HttpResponses.ok(laterPayload));
+
+      Response response = handler.getFirst(context, asList(nested, repository1), underTest);
+
+      // sequential dispatch reaches repository1 through the nested group before repository2
+      assertThat(response, is(sameInstance(viaNested)));
+      assertThat(underTest.toString(),
+          containsString(String.format("[%s, %s, %s]", "nested", REPOSITORY_1, REPOSITORY_2)));
+      verify(laterPayload).close();
+      verify(nested, never()).facet(ViewFacet.class);
+    }
+    finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void parallelDispatchCancelsLosingMembers() throws Exception {
+    ParallelGroupDispatcher dispatcher = new ParallelGroupDispatcher(true, 4);
+    dispatcher.start();
+    try {
+      GroupHandler handler = new GroupHandler();
+      handler.setParallelDispatcher(dispatcher);
+
+      Response winner = HttpResponses.ok(mock(Payload.class));
+      CountDownLatch cancelled = new CountDownLatch(1);
+      mockView(repository1, () -> {
+        Thread.sleep(100);
+        return winner;
+      });
+      mockView(repository2, () -> {
+        DispatchCancellation.current().onCancel(cancelled::countDown);
+        cancelled.await(5, TimeUnit.SECONDS);
+        return HttpResponses.notFound();
+      });
+
+      Response response = handler.getFirst(context, asList(repository1, repository2), underTest);
+
+      assertThat(response, is(sameInstance(winner)));
+      assertThat(cancelled.await(5, TimeUnit.SECONDS), is(true));
+    }
+    finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void parallelDispatchAsksMembersInTurnWhenSaturated() throws Exception {
+    ParallelGroupDispatcher dispatcher = new ParallelGroupDispatcher(true, 1);
+    dispatcher.start();
+    try {
+      GroupHandler handler = new GroupHandler();
+      handler.setParallelDispatcher(dispatcher);
+
+      Response found = HttpResponses.ok(mock(Payload.class));
+      mockView(repository1, () -> {
+        Thread.sleep(100);
+        return HttpResponses.notFound();
+      });
+      mockView(repository2, () -> found);
+      ViewFacet lastView = mock(ViewFacet.class);
+      when(repository3.facet(ViewFacet.class)).thenReturn(lastView);
+
+      Response response = handler.getFirst(context, asList(repository1, repository2, repository3), underTest);
+
+      // the only thread is busy with repository1, so the others are asked in turn once it has answered
+      assertThat(response, is(sameInstance(found)));
+      verify(lastView, never()).dispatch(any(Request.class), any(Context.class));
+    }
+    finally {
+      dispatcher.stop();
+    }
+    assertThat(dispatcher.isEnabled(), is(false));
+    assertThat(dispatcher.trySubmit(() -> null), is(nullValue()));
+  }
+
+  @Test
+  public void membersRuledOutByMembershipIndexAreSkipped() throws Exception {
+    GroupMembershipIndex membershipIndex = mock(GroupMembershipIndex.class);
+    when(request.getPath()).thenReturn("/org/foo/1.0/foo-1.0.jar");
+    when(membershipIndex.mightContain(repository1, "/org/foo/1.0/foo-1.0.jar")).thenReturn(false);
+    when(membershipIndex.mightContain(repository2, "/org/foo/1.0/foo-1.0.jar")).thenReturn(true);
+
+    GroupHandler handler = new GroupHandler();
+    handler.setMembershipIndex(membershipIndex);
+
+    Response found = HttpResponses.ok(mock(Payload.class));
+    mockView(repository1, () -> found);
+    mockView(repository2, () -> found);
+
+    Response response = handler.getFirst(context, asList(repository1, repository2), underTest);
+
+    assertThat(response, is(sameInstance(found)));
+    assertThat(underTest.contains(repository1), is(true));
+    verify(repository1, never()).facet(ViewFacet.class);
+  }
+
+  private void mockView(final Repository repository, final Callable<Response> response) throws Exception {
+    ViewFacet view = mock(ViewFacet.class);
+    when(view.dispatch(request, context)).thenAnswer(invocation -> response.call());
+    when(repository.facet(ViewFacet.class)).thenReturn(view);
+  }
 }
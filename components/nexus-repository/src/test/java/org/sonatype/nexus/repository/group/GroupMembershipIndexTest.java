@@ -0,0 +1,109 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.group;
+
+import org.sonatype.goodies.common.Time;
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Format;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.group.GroupMembershipIndex.MemberFilter;
+import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.repository.types.HostedType;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GroupMembershipIndexTest
+    extends TestSupport
+{
+  @Test
+  public void assetNameDropsLeadingSlash() {
+    assertThat(GroupMembershipIndex.assetName("/org/foo/foo.pom"), is("org/foo/foo.pom"));
+    assertThat(GroupMembershipIndex.assetName("org/foo/foo.pom"), is("org/foo/foo.pom"));
+  }
+
+  @Test
+  public void filterAnswersMaybeUntilReady() {
+    MemberFilter filter = new MemberFilter(10);
+    filter.put("org/foo/foo.pom");
+
+    assertThat(filter.mightContain("org/bar/bar.pom"), is(true));
+
+    filter.markReady();
+
+    assertThat(filter.mightContain("org/foo/foo.pom"), is(true));
+    assertThat(filter.mightContain("org/bar/bar.pom"), is(false));
+  }
+
+  @Test
+  public void filterRequestsRebuildWhenDeletionsDominate() {
+    MemberFilter filter = new MemberFilter(10);
+    filter.put("a");
+    filter.put("b");
+    filter.markReady();
+
+    assertThat(filter.delete(), is(true));
+    assertThat(filter.delete(), is(false));
+  }
+
+  @Test
+  public void failedPlaceholderIsRetriedOnceDue() {
+    MemberFilter placeholder = new MemberFilter(0);
+    assertThat(placeholder.isRetryDue(), is(false));
+
+    placeholder.markFailed(1, System.currentTimeMillis() + 60_000L);
+    assertThat(placeholder.isRetryDue(), is(false));
+    assertThat(placeholder.mightContain("org/foo/foo.pom"), is(true));
+
+    placeholder.markFailed(2, System.currentTimeMillis() - 1);
+    assertThat(placeholder.isRetryDue(), is(true));
+    assertThat(placeholder.getFailures(), is(2));
+  }
+
+  @Test
+  public void failedBuildIsNotRetriedBeforeDelay() throws Exception {
+    HostedType hostedType = new HostedType();
+    StorageFacet storageFacet = mock(StorageFacet.class);
+    when(storageFacet.txSupplier()).thenThrow(new IllegalStateException("database unavailable"));
+    Repository member = mock(Repository.class);
+    when(member.getName()).thenReturn("raw-hosted");
+    when(member.getType()).thenReturn(hostedType);
+    when(member.getFormat()).thenReturn(new Format("raw") { });
+    when(member.facet(StorageFacet.class)).thenReturn(storageFacet);
+
+    GroupMembershipIndex underTest = new GroupMembershipIndex(true, "raw", hostedType, Time.minutes(1),
+        Time.minutes(10));
+    underTest.start();
+    try {
+      assertThat(underTest.mightContain(member, "/org/foo/foo.pom"), is(true));
+      verify(storageFacet, timeout(5000)).txSupplier();
+
+      // requests keep going to the member meanwhile, without rescanning it
+      for (int i = 0; i < 50; i++) {
+        assertThat(underTest.mightContain(member, "/org/foo/foo.pom"), is(true));
+        Thread.sleep(10);
+      }
+      verify(storageFacet, times(1)).txSupplier();
+    }
+    finally {
+      underTest.stop();
+    }
+  }
+}
@@ -12,9 +12,11 @@
  */
 package org.sonatype.nexus.repository.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.view.Payload;
 import org.sonatype.nexus.repository.view.payloads.BytesPayload;
 
 import com.google.common.collect.Range;
@@ -25,6 +27,10 @@ import org.junit.Test;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests {@link PartialPayload}.
@@ -57,6 +63,24 @@ public class PartialPayloadTest
     assertThat(output, is(input));
   }
 
+  @Test
+  public void middleOfStream() throws IOException {
+    final byte[] output = partial(bytesPayload, Range.closed(4L, 6L));
+
+    assertThat(output, is(Bytes.toArray(asList(4, 5, 6))));
+  }
+
+  @Test
+  public void rangeReadDelegatedToPayload() throws IOException {
+    final Payload payload = mock(Payload.class);
+    when(payload.openInputStream(3L, 5L)).thenReturn(new ByteArrayInputStream(input, 3, 5));
+
+    final byte[] output = ByteStreams.toByteArray(new PartialPayload(payload, Range.closed(3L, 7L)).openInputStream());
+
+    assertThat(output, is(Bytes.toArray(asList(3, 4, 5, 6, 7))));
+    verify(payload, never()).openInputStream();
+  }
+
   private byte[] partial(final BytesPayload bytes, final Range<Long> closed) throws IOException {
     final PartialPayload partial = new PartialPayload(bytes, closed);
     return ByteStreams.toByteArray(partial.openInputStream());
@@ -21,6 +21,7 @@ import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusObserver;
 import org.sonatype.nexus.repository.httpclient.RemoteConnectionStatusType;
 import org.sonatype.nexus.repository.httpclient.internal.HttpClientFacetImpl.Config;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
 import org.junit.Before;
@@ -32,6 +33,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -56,6 +58,11 @@ public class BlockingHttpClientTest
   @Mock
   Filterable filterable;
 
+  @Mock
+  StatusCheckScheduler statusCheckScheduler;
+
+  MetricRegistry metricRegistry = new MetricRegistry();
+
   HttpHost httpHost;
 
   BlockingHttpClient underTest;
@@ -63,7 +70,7 @@ public class BlockingHttpClientTest
   @Before
   public void setup() throws Exception {
     httpHost = HttpHost.create("localhost");
-    underTest = new BlockingHttpClient(httpClient, new Config(), statusObserver, true);
+    underTest = newBlockingHttpClient(new Config(), true);
   }
 
   @Test
@@ -71,7 +78,7 @@ public class BlockingHttpClientTest
     Config config = new Config();
     config.blocked = true;
     reset(statusObserver);
-    new BlockingHttpClient(httpClient, config, statusObserver, true);
+    newBlockingHttpClient(config, true);
     ArgumentCaptor<RemoteConnectionStatus> newStatusCaptor = ArgumentCaptor.forClass(RemoteConnectionStatus.class);
     verify(statusObserver).onStatusChanged(any(), newStatusCaptor.capture());
     assertThat(newStatusCaptor.getValue().getType(), is(equalTo(BLOCKED)));
@@ -89,8 +96,34 @@ public class BlockingHttpClientTest
     when(filterable.call()).thenThrow(new IOException());
     filterAndHandleException();
     verifyUpdateStatus(AUTO_BLOCKED_UNAVAILABLE);
+    verify(statusCheckScheduler).schedule(any(Runnable.class), anyLong());
+  }
+
+  @Test
+  public void rejectRequestsWhileAutoBlocked() throws Exception {
+    setInternalState(underTest, "autoBlock", true);
+    when(filterable.call()).thenThrow(new IOException());
+    filterAndHandleException();
+    filterAndHandleException();
+    verify(filterable, times(1)).call();
+    String prefix = "org.sonatype.nexus.repository.httpclient.internal.BlockingHttpClient.test.";
+    assertThat(metricRegistry.meter(prefix + "rejected").getCount(), is(1L));
+  }
+
+  @Test
+  public void recordRequestMetrics() throws Exception {
+    filterAndHandleException();
+    when(filterable.call()).thenThrow(new IOException());
+    filterAndHandleException();
+    String prefix = "org.sonatype.nexus.repository.httpclient.internal.BlockingHttpClient.test.";
+    assertThat(metricRegistry.timer(prefix + "requests").getCount(), is(1L));
+    assertThat(metricRegistry.meter(prefix + "failures").getCount(), is(1L));
+
+    underTest.close();
+    assertThat(metricRegistry.getMetrics().isEmpty(), is(true));
   }
 
+
   @Test
   public void updateStatusWhenUnavailable() throws Exception {
     when(filterable.call()).thenThrow(new IOException());
@@ -107,24 +140,31 @@ public class BlockingHttpClientTest
 
   @Test
   public void updateStatusWhenAutoBlockedTimeHasChanged() throws Exception {
-    setInternalState(underTest, "autoBlock", true);
+    Config config = new Config();
+    config.autoBlock = true;
+    underTest = new BlockingHttpClient(httpClient, config, statusObserver, true, statusCheckScheduler,
+        new RemoteHealthMetrics(metricRegistry, "test"), 1L);
     when(filterable.call()).thenThrow(new IOException());
     filterAndHandleException();
-    setInternalState(underTest, "blockedUntil", (Object) null);
     reset(statusObserver);
-    Thread.sleep(10L); // guarantee a time increase.
+    Thread.sleep(10L); // let the auto-block expire
     filterAndHandleException();
     verify(statusObserver).onStatusChanged(any(), any());
   }
 
   @Test
   public void setStatusToOfflineWhenPassed() throws Exception {
-    underTest = new BlockingHttpClient(httpClient, new Config(), statusObserver, false);
+    underTest = newBlockingHttpClient(new Config(), false);
     ArgumentCaptor<RemoteConnectionStatus> newStatusCaptor = ArgumentCaptor.forClass(RemoteConnectionStatus.class);
     verify(statusObserver, times(2)).onStatusChanged(any(), newStatusCaptor.capture());
     assertThat(newStatusCaptor.getAllValues().get(1).getType(), is(equalTo(OFFLINE)));
   }
 
+  private BlockingHttpClient newBlockingHttpClient(final Config config, final boolean online) {
+    return new BlockingHttpClient(httpClient, config, statusObserver, online, statusCheckScheduler,
+        new RemoteHealthMetrics(metricRegistry, "test"));
+  }
+
   private void verifyUpdateStatus(final RemoteConnectionStatusType newType) {
     ArgumentCaptor<RemoteConnectionStatus> oldStatusCaptor = ArgumentCaptor.forClass(RemoteConnectionStatus.class);
     ArgumentCaptor<RemoteConnectionStatus> newStatusCaptor = ArgumentCaptor.forClass(RemoteConnectionStatus.class);
@@ -0,0 +1,111 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.purge;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.blobstore.api.BlobRef;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PurgeCheckpointTest
+    extends TestSupport
+{
+  private static final Date OLDER_THAN = new Date(1000L);
+
+  private static final BlobRef BLOB_REF = new BlobRef("node", "default", "a8f3f56f-e895-4713-a5d3-18c8a2d1d2b5");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path file;
+
+  @Before
+  public void setup() throws Exception {
+    file = temporaryFolder.getRoot().toPath().resolve("test.checkpoint");
+  }
+
+  @Test
+  public void startsAfreshWithoutFile() throws Exception {
+    PurgeCheckpoint checkpoint = PurgeCheckpoint.load(file, OLDER_THAN);
+
+    assertThat(checkpoint.getLastDownloaded(), is(nullValue()));
+    assertThat(checkpoint.getPendingBlobRefs(), is(empty()));
+  }
+
+  @Test
+  public void resumesFromLastProgress() throws Exception {
+    PurgeCheckpoint checkpoint = PurgeCheckpoint.load(file, OLDER_THAN);
+    checkpoint.recordProgress(new Date(10L));
+    checkpoint.recordProgress(new Date(20L));
+
+    PurgeCheckpoint resumed = PurgeCheckpoint.load(file, OLDER_THAN);
+    assertThat(resumed.getLastDownloaded(), is(new Date(20L)));
+    assertThat(resumed.getPendingBlobRefs(), is(empty()));
+  }
+
+  @Test
+  public void keepsPendingBlobsUntilProgressIsRecorded() throws Exception {
+    PurgeCheckpoint checkpoint = PurgeCheckpoint.load(file, OLDER_THAN);
+    checkpoint.recordProgress(new Date(10L));
+    checkpoint.recordPendingBlobs(ImmutableList.of(BLOB_REF));
+
+    PurgeCheckpoint resumed = PurgeCheckpoint.load(file, OLDER_THAN);
+    assertThat(resumed.getLastDownloaded(), is(new Date(10L)));
+    assertThat(resumed.getPendingBlobRefs(), contains(BLOB_REF));
+
+    resumed.recordProgress(new Date(20L));
+
+    assertThat(PurgeCheckpoint.load(file, OLDER_THAN).getPendingBlobRefs(), is(empty()));
+  }
+
+  @Test
+  public void discardedWhenCutoffDiffers() throws Exception {
+    PurgeCheckpoint.load(file, OLDER_THAN).recordPendingBlobs(ImmutableList.of(BLOB_REF));
+
+    PurgeCheckpoint checkpoint = PurgeCheckpoint.load(file, new Date(2000L));
+    assertThat(checkpoint.getLastDownloaded(), is(nullValue()));
+    assertThat(checkpoint.getPendingBlobRefs(), is(empty()));
+  }
+
+  @Test
+  public void discardedWhenUnreadable() throws Exception {
+    Files.write(file, "1000\n10\nnot a blob ref\n".getBytes(UTF_8));
+
+    assertThat(PurgeCheckpoint.load(file, OLDER_THAN).getLastDownloaded(), is(nullValue()));
+  }
+
+  @Test
+  public void deleteRemovesFile() throws Exception {
+    PurgeCheckpoint checkpoint = PurgeCheckpoint.load(file, OLDER_THAN);
+    checkpoint.recordProgress(new Date(10L));
+    checkpoint.delete();
+
+    assertThat(Files.exists(file), is(false));
+    assertThat(PurgeCheckpoint.load(file, OLDER_THAN).getLastDownloaded(), is(nullValue()));
+  }
+}
@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.repository.purge;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
@@ -19,12 +20,18 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.blobstore.api.BlobRef;
+import org.sonatype.nexus.blobstore.api.BlobStore;
+import org.sonatype.nexus.blobstore.api.BlobStoreManager;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
+import org.sonatype.nexus.common.entity.EntityId;
 import org.sonatype.nexus.common.entity.EntityMetadata;
 import org.sonatype.nexus.orient.entity.AttachedEntityMetadata;
 import org.sonatype.nexus.orient.entity.EntityAdapter;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.storage.Asset;
 import org.sonatype.nexus.repository.storage.Bucket;
+import org.sonatype.nexus.repository.storage.Component;
 import org.sonatype.nexus.repository.storage.ComponentEntityAdapter;
 import org.sonatype.nexus.repository.storage.StorageFacet;
 import org.sonatype.nexus.repository.storage.StorageTx;
@@ -32,28 +39,49 @@ import org.sonatype.nexus.scheduling.CancelableHelper;
 import org.sonatype.nexus.scheduling.TaskInterruptedException;
 import org.sonatype.nexus.transaction.UnitOfWork;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import org.joda.time.DateTime;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runners.model.MultipleFailureException;
 import org.mockito.Mock;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.lang.Thread.sleep;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PurgeUnusedFacetImplTest
     extends TestSupport
 {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Mock
   private ComponentEntityAdapter componentEntityAdapter;
 
+  @Mock
+  private BlobStoreManager blobStoreManager;
+
+  @Mock
+  private ApplicationDirectories applicationDirectories;
+
   @Mock
   private Repository repository;
 
@@ -64,10 +92,10 @@ public class PurgeUnusedFacetImplTest
   private StorageTx tx;
 
   @Mock
-  private Iterable<ODocument> componentDocsIterable;
+  private Iterable<Component> componentIterable;
 
   @Mock
-  private Iterator<ODocument> componentDocsIterator;
+  private Iterator<Component> componentIterator;
 
   @Mock
   private Iterable<Asset> assetIterable;
@@ -83,30 +111,33 @@ public class PurgeUnusedFacetImplTest
   public void setup() throws Exception {
     Bucket bucket = mockBucket();
     when(tx.findBucket(repository)).thenReturn(bucket);
-    when(tx.browse(any(), any())).thenReturn(componentDocsIterable);
+    when(tx.findComponents(any(), any(), any(), any())).thenReturn(componentIterable);
+    when(tx.browseAssets(any(Component.class))).thenReturn(emptyList());
     when(tx.findAssets(any(), any(), any(), any())).thenReturn(assetIterable);
-    when(componentDocsIterable.iterator()).thenReturn(componentDocsIterator);
+    when(componentIterable.iterator()).thenReturn(componentIterator);
     when(assetIterable.iterator()).thenReturn(assetIterator);
     when(repository.facet(StorageFacet.class)).thenReturn(storageFacet);
     when(storageFacet.txSupplier()).thenReturn(() -> tx);
+    when(componentEntityAdapter.recordIdentity(any(EntityId.class))).thenReturn(new ORecordId(2, 1));
 
     uncaught = newArrayList();
 
-    underTest = new PurgeUnusedFacetImpl(componentEntityAdapter);
+    underTest = new PurgeUnusedFacetImpl(componentEntityAdapter, blobStoreManager, applicationDirectories, 500, 1);
     underTest.attach(repository);
   }
 
   @Test
   public void testCancellable() throws Exception {
     // infinite item loops
-    when(componentDocsIterator.hasNext()).thenReturn(true);
-    when(componentDocsIterator.next()).thenReturn(mock(ODocument.class));
+    Component component = mockComponent();
+    when(componentIterator.hasNext()).thenReturn(true);
+    when(componentIterator.next()).thenReturn(component);
     when(assetIterator.hasNext()).thenReturn(true);
-    when(assetIterator.next()).thenReturn(mock(Asset.class));
+    when(assetIterator.next()).thenReturn(mockAsset());
 
     List<Runnable> cancelables = Arrays.asList(
-        () -> underTest.deleteUnusedComponents(new Date()),
-        () -> underTest.deleteUnusedAssets(new Date())
+        () -> underTest.deleteUnusedComponents(new Date(), null, MoreExecutors.newDirectExecutorService()),
+        () -> underTest.deleteUnusedAssets(new Date(), null, MoreExecutors.newDirectExecutorService())
     );
 
     for (Runnable cancelable : cancelables) {
@@ -128,6 +159,35 @@ public class PurgeUnusedFacetImplTest
     }
   }
 
+  @Test
+  public void deletesPendingBlobsNoLongerInUse() throws Exception {
+    BlobRef deletedBlobRef = new BlobRef("node", "default", "deleted");
+    BlobRef keptBlobRef = new BlobRef("node", "default", "kept");
+    Path file = temporaryFolder.getRoot().toPath().resolve("test.checkpoint");
+    Date olderThan = new Date();
+    PurgeCheckpoint checkpoint = PurgeCheckpoint.load(file, olderThan);
+    checkpoint.recordPendingBlobs(ImmutableList.of(deletedBlobRef, keptBlobRef));
+
+    // the batch was rolled back for the asset still referring to this blob
+    Asset asset = mock(Asset.class);
+    when(asset.blobRef()).thenReturn(keptBlobRef);
+    when(tx.findAssets(any(), any(), any(), any())).thenReturn(ImmutableList.of(asset));
+    BlobStore blobStore = mock(BlobStore.class);
+    when(blobStoreManager.get("default")).thenReturn(blobStore);
+
+    UnitOfWork.beginBatch(tx);
+    try {
+      underTest.deletePendingBlobs(checkpoint, MoreExecutors.newDirectExecutorService());
+    }
+    finally {
+      UnitOfWork.end();
+    }
+
+    verify(blobStore).delete(deletedBlobRef.getBlobId(), "Purging unused asset");
+    verify(blobStore, never()).delete(eq(keptBlobRef.getBlobId()), any());
+    assertThat(PurgeCheckpoint.load(file, olderThan).getPendingBlobRefs(), is(empty()));
+  }
+
   private Thread createTaskThread(final Runnable action, final AtomicBoolean cancelFlag) {
     Thread t = new Thread(() -> {
       CancelableHelper.set(cancelFlag);
@@ -147,14 +207,30 @@ public class PurgeUnusedFacetImplTest
   }
 
   private Bucket mockBucket() {
+    Bucket bucket = mock(Bucket.class);
+    when(bucket.getEntityMetadata()).thenReturn(mockEntityMetadata());
+    return bucket;
+  }
+
+  private Asset mockAsset() {
+    Asset asset = mock(Asset.class);
+    when(asset.getEntityMetadata()).thenReturn(mockEntityMetadata());
+    when(asset.lastDownloaded()).thenReturn(DateTime.now().minusDays(2));
+    when(asset.componentId()).thenReturn(mock(EntityId.class));
+    return asset;
+  }
+
+  private Component mockComponent() {
+    Component component = mock(Component.class);
+    when(component.getEntityMetadata()).thenReturn(mockEntityMetadata());
+    return component;
+  }
+
+  private EntityMetadata mockEntityMetadata() {
     EntityAdapter owner = mock(EntityAdapter.class);
     ODocument document = mock(ODocument.class);
     ORID orID = new ORecordId(1, 1);
     when(document.getIdentity()).thenReturn(orID);
-    EntityMetadata entityMetadata = new AttachedEntityMetadata(owner, document);
-
-    Bucket bucket = mock(Bucket.class);
-    when(bucket.getEntityMetadata()).thenReturn(entityMetadata);
-    return bucket;
+    return new AttachedEntityMetadata(owner, document);
   }
 }
@@ -29,6 +29,7 @@ import org.sonatype.nexus.repository.storage.ComponentUpdatedEvent
 import org.sonatype.nexus.repository.storage.StorageFacet
 import org.sonatype.nexus.repository.storage.StorageTx
 
+import com.codahale.metrics.MetricRegistry
 import com.google.common.base.Suppliers
 import org.junit.Before
 import org.junit.Test
@@ -36,11 +37,16 @@ import org.junit.runner.RunWith
 import org.junit.runners.Parameterized
 import org.junit.runners.Parameterized.Parameter
 import org.junit.runners.Parameterized.Parameters
+import org.mockito.ArgumentCaptor
+import org.mockito.InOrder
 import org.mockito.Mock
 
 import static org.mockito.Mockito.any
 import static org.mockito.Mockito.anySet
+import static org.mockito.Mockito.doAnswer
 import static org.mockito.Mockito.doThrow
+import static org.mockito.Mockito.inOrder
+import static org.mockito.Mockito.isNull
 import static org.mockito.Mockito.mock
 import static org.mockito.Mockito.verify
 import static org.mockito.Mockito.verifyNoMoreInteractions
@@ -99,7 +105,8 @@ class IndexRequestProcessorTest
 
   @Before
   public void setup() {
-    indexRequestProcessor = new IndexRequestProcessor(repositoryManager, eventManager, searchService, bulkProcessing)
+    indexRequestProcessor = new IndexRequestProcessor(repositoryManager, eventManager, searchService, bulkProcessing,
+        0)
     when(repositoryManager.get('testRepo')).thenReturn(repository)
     when(repository.optionalFacet(SearchFacet)).thenReturn(Optional.of(searchFacet))
     when(repository.facet(StorageFacet)).thenReturn(storageFacet)
@@ -176,6 +183,98 @@ class IndexRequestProcessorTest
     indexRequestProcessor.on(simpleBatchEvent)
   }
 
+  @Test
+  public void entityEventsWithinWindowAreCoalesced() throws Exception {
+    MetricRegistry metricRegistry = new MetricRegistry()
+    IndexRequestProcessor coalescingProcessor = new IndexRequestProcessor(repositoryManager, eventManager,
+        searchService, bulkProcessing, 60_000)
+    coalescingProcessor.metricRegistry = metricRegistry
+    doAnswer({ invocation -> invocation.arguments[0].run(); null }).when(searchService).bulkUpdate(any(Runnable))
+    coalescingProcessor.start()
+
+    // alpha is updated by several batches, beta is put then deleted
+    coalescingProcessor.on(new EntityBatchEvent([
+        mockEntityEvent(ComponentCreatedEvent, alphaComponentId),
+        mockEntityEvent(AssetCreatedEvent, betaComponentId)
+    ]))
+    coalescingProcessor.on(new EntityBatchEvent([
+        mockEntityEvent(AssetCreatedEvent, alphaComponentId),
+        mockEntityEvent(ComponentDeletedEvent, betaComponentId)
+    ]))
+    coalescingProcessor.on(new EntityBatchEvent([
+        mockEntityEvent(AssetUpdatedEvent, alphaComponentId)
+    ]))
+
+    verifyNoMoreInteractions(searchFacet)
+
+    coalescingProcessor.stop() // flushes the pending window
+
+    if (bulkProcessing) {
+      verify(searchFacet).bulkDelete([betaComponentId] as Set)
+      verify(searchFacet).bulkPut([alphaComponentId] as Set)
+    }
+    else {
+      verify(searchFacet).delete(betaComponentId)
+      verify(searchFacet).put(alphaComponentId)
+    }
+    verifyNoMoreInteractions(searchFacet)
+    verify(searchService).bulkUpdate(any(Runnable))
+
+    assert metricRegistry.meter('org.sonatype.nexus.repository.search.IndexRequestProcessor.requested').count == 5
+    assert metricRegistry.meter('org.sonatype.nexus.repository.search.IndexRequestProcessor.indexed').count == 2
+    assert metricRegistry.timer('org.sonatype.nexus.repository.search.IndexRequestProcessor.lag').count == 1
+  }
+
+  @Test
+  public void updateAfterDeleteWithinWindowIsIndexed() throws Exception {
+    IndexRequestProcessor coalescingProcessor = new IndexRequestProcessor(repositoryManager, eventManager,
+        searchService, bulkProcessing, 60_000)
+    doAnswer({ invocation -> invocation.arguments[0].run(); null }).when(searchService).bulkUpdate(any(Runnable))
+    coalescingProcessor.start()
+
+    coalescingProcessor.on(new EntityBatchEvent([mockEntityEvent(ComponentDeletedEvent, alphaComponentId)]))
+    coalescingProcessor.on(new EntityBatchEvent([mockEntityEvent(ComponentCreatedEvent, alphaComponentId)]))
+
+    coalescingProcessor.stop()
+
+    if (bulkProcessing) {
+      verify(searchFacet).bulkPut([alphaComponentId] as Set)
+    }
+    else {
+      verify(searchFacet).put(alphaComponentId)
+    }
+    verifyNoMoreInteractions(searchFacet)
+  }
+
+  @Test
+  public void unscopedDeleteIsSentAfterPendingChanges() throws Exception {
+    IndexRequestProcessor coalescingProcessor = new IndexRequestProcessor(repositoryManager, eventManager,
+        searchService, bulkProcessing, 60_000)
+    doAnswer({ invocation -> invocation.arguments[0].run(); null }).when(searchService).bulkUpdate(any(Runnable))
+    coalescingProcessor.start()
+
+    ComponentDeletedEvent unscopedDelete = mock(ComponentDeletedEvent)
+    when(unscopedDelete.getComponentId()).thenReturn(alphaComponentId)
+
+    coalescingProcessor.on(new EntityBatchEvent([mockEntityEvent(ComponentCreatedEvent, alphaComponentId)]))
+    coalescingProcessor.on(new EntityBatchEvent([unscopedDelete]))
+
+    // the pending put is flushed before the delete, without waiting for the window
+    InOrder inOrder = inOrder(searchFacet, searchService)
+    if (bulkProcessing) {
+      inOrder.verify(searchFacet).bulkPut([alphaComponentId] as Set)
+    }
+    else {
+      inOrder.verify(searchFacet).put(alphaComponentId)
+    }
+    ArgumentCaptor<Iterable> deleted = ArgumentCaptor.forClass(Iterable)
+    inOrder.verify(searchService).bulkDelete(isNull(), deleted.capture())
+    assert deleted.value.toList() == [alphaComponentId.value]
+
+    coalescingProcessor.stop()
+    verifyNoMoreInteractions(searchFacet)
+  }
+
   void throwOnPut(final Throwable throwable) {
     if (bulkProcessing) {
       doThrow(throwable).when(searchFacet).bulkPut(anySet())
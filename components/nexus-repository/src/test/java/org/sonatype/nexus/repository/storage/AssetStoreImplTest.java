@@ -43,6 +43,8 @@ public class AssetStoreImplTest
   @Rule
   public DatabaseInstanceRule database = DatabaseInstanceRule.inMemory("test");
 
+  private BucketEntityAdapter bucketEntityAdapter;
+
   private AssetEntityAdapter assetEntityAdapter;
 
   private AssetStoreImpl underTest;
@@ -53,7 +55,7 @@ public class AssetStoreImplTest
 
   @Before
   public void setUp() {
-    BucketEntityAdapter bucketEntityAdapter = new BucketEntityAdapter();
+    bucketEntityAdapter = new BucketEntityAdapter();
     ComponentFactory componentFactory = new ComponentFactory(emptySet());
     ComponentEntityAdapter componentEntityAdapter = new ComponentEntityAdapter(bucketEntityAdapter, componentFactory,
         emptySet());
@@ -66,10 +68,7 @@ public class AssetStoreImplTest
       componentEntityAdapter.register(db);
       assetEntityAdapter.register(db);
 
-      bucket = new Bucket();
-      bucket.attributes(new NestedAttributesMap(P_ATTRIBUTES, new HashMap<>()));
-      bucket.setRepositoryName("test-repo");
-      bucketEntityAdapter.addEntity(db, bucket);
+      bucket = createBucket(db, "test-repo");
 
       component = createComponent(bucket, "group", "name", "1.0");
       componentEntityAdapter.addEntity(db, component);
@@ -119,4 +118,42 @@ public class AssetStoreImplTest
     assertThat(assetPage1.size(), is(1));
     assertThat(assetPage1.get(0).getValue(), is(EntityHelper.id(asset1)));
   }
+
+  @Test
+  public void getIndexCursorOnlyVisitsEntriesOfBucket() {
+    int limit = 10;
+
+    Asset asset1 = createAsset(bucket, "asset1", component);
+    Asset asset2 = createAsset(bucket, "asset2", component);
+
+    Bucket otherBucket;
+    Asset otherAsset;
+    try (ODatabaseDocumentTx db = database.getInstance().connect()) {
+      otherBucket = createBucket(db, "other-repo");
+      otherAsset = createAsset(otherBucket, "asset1", component);
+
+      assetEntityAdapter.addEntity(db, asset1);
+      assetEntityAdapter.addEntity(db, otherAsset);
+      assetEntityAdapter.addEntity(db, asset2);
+    }
+
+    OIndexCursor cursor = underTest.getIndexCursor(AssetEntityAdapter.I_BUCKET_COMPONENT_NAME, bucket);
+    List<Entry<OCompositeKey, EntityId>> assetPage = underTest.getNextPage(cursor, limit);
+    assertThat(assetPage.size(), is(2));
+    assertThat(assetPage.get(0).getValue(), is(EntityHelper.id(asset1)));
+    assertThat(assetPage.get(1).getValue(), is(EntityHelper.id(asset2)));
+
+    cursor = underTest.getIndexCursor(AssetEntityAdapter.I_BUCKET_COMPONENT_NAME, otherBucket);
+    assetPage = underTest.getNextPage(cursor, limit);
+    assertThat(assetPage.size(), is(1));
+    assertThat(assetPage.get(0).getValue(), is(EntityHelper.id(otherAsset)));
+  }
+
+  private Bucket createBucket(final ODatabaseDocumentTx db, final String repositoryName) {
+    Bucket newBucket = new Bucket();
+    newBucket.attributes(new NestedAttributesMap(P_ATTRIBUTES, new HashMap<>()));
+    newBucket.setRepositoryName(repositoryName);
+    bucketEntityAdapter.addEntity(db, newBucket);
+    return newBucket;
+  }
 }
@@ -13,6 +13,9 @@
 package org.sonatype.nexus.repository.storage;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.sonatype.goodies.testsupport.TestSupport;
 import org.sonatype.nexus.common.entity.EntityId;
@@ -32,6 +35,8 @@ import org.sonatype.nexus.selector.SelectorManager;
 
 import com.google.common.collect.ImmutableMap;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,7 +46,9 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.is;
@@ -123,10 +130,16 @@ public class BrowseNodeStoreImplTest
   @Mock
   private EntityId assetId;
 
+  @Mock
+  private Subject subject;
+
   private BrowseNodeStoreImpl underTest;
 
   @Before
   public void setUp() throws Exception {
+    when(subject.associateWith(any(Callable.class))).thenAnswer(invoc -> invoc.getArguments()[0]);
+    ThreadContext.bind(subject);
+
     when(databaseInstance.acquire()).thenReturn(db);
     when(databaseInstance.connect()).thenReturn(db);
 
@@ -146,14 +159,7 @@ public class BrowseNodeStoreImplTest
     when(byVersion.getAttributes()).thenReturn(ImmutableMap.of("expression", "coordinate.version == \"2.1\""));
     when(jexl.getType()).thenReturn(JexlSelector.TYPE);
 
-    underTest = new BrowseNodeStoreImpl(
-        () -> databaseInstance,
-        browseNodeEntityAdapter,
-        securityHelper,
-        selectorManager,
-        new CselAssetSqlBuilder(),
-        new BrowseNodeConfiguration(true, true, 1000, DELETE_PAGE_SIZE, 10_000, 10_000, seconds(0)));
-
+    underTest = newStore(4);
     underTest.start();
 
     verify(browseNodeEntityAdapter).register(db);
@@ -162,6 +168,17 @@ public class BrowseNodeStoreImplTest
   @After
   public void tearDown() throws Exception {
     underTest.stop();
+    ThreadContext.unbindSubject();
+  }
+
+  private BrowseNodeStoreImpl newStore(final int groupQueryThreads) {
+    return new BrowseNodeStoreImpl(
+        () -> databaseInstance,
+        browseNodeEntityAdapter,
+        securityHelper,
+        selectorManager,
+        new CselAssetSqlBuilder(),
+        new BrowseNodeConfiguration(true, true, 1000, DELETE_PAGE_SIZE, 10_000, 10_000, seconds(0), groupQueryThreads));
   }
 
   @Test
@@ -420,10 +437,55 @@ public class BrowseNodeStoreImplTest
     verifyNoMoreInteractions(browseNodeEntityAdapter, securityHelper, selectorManager);
   }
 
+  @Test
+  public void groupQueryMergesConcurrentResultsInMemberOrder() throws Exception {
+    List<String> queryPath = asList("org", "foo");
+
+    when(securityHelper.anyPermitted(any())).thenReturn(true);
+    when(repository.getType()).thenReturn(new GroupType());
+    when(repository.facet(GroupFacet.class)).thenReturn(groupFacet);
+    when(groupFacet.leafMembers()).thenReturn(asList(memberA, memberB, memberC));
+
+    CountDownLatch memberCQueried = new CountDownLatch(1);
+    AtomicBoolean queriedConcurrently = new AtomicBoolean();
+
+    // the first member only answers once the last member has been queried
+    when(browseNodeEntityAdapter.getByPath(db, MEMBER_A, queryPath, MAX_NODES, "", emptyMap()))
+        .thenAnswer(invoc -> {
+          queriedConcurrently.set(memberCQueried.await(5, SECONDS));
+          return asList(node(MEMBER_A, "com"), node(MEMBER_A, "org"));
+        });
+    when(browseNodeEntityAdapter.getByPath(db, MEMBER_B, queryPath, MAX_NODES, "", emptyMap()))
+        .thenReturn(asList(node(MEMBER_B, "biz"), node(MEMBER_B, "org")));
+    when(browseNodeEntityAdapter.getByPath(db, MEMBER_C, queryPath, MAX_NODES, "", emptyMap()))
+        .thenAnswer(invoc -> {
+          memberCQueried.countDown();
+          return asList(node(MEMBER_C, "com"), node(MEMBER_C, "javax"));
+        });
+
+    Iterable<BrowseNode> nodes = underTest.getByPath(repository, queryPath, MAX_NODES, null);
+
+    assertThat(queriedConcurrently.get(), is(true));
+
+    // results arrived out of order, but earlier members should still win
+    assertThat(nodes, contains(
+        allOf(hasProperty("repositoryName", is(MEMBER_A)), hasProperty("name", is("com"))),
+        allOf(hasProperty("repositoryName", is(MEMBER_A)), hasProperty("name", is("org"))),
+        allOf(hasProperty("repositoryName", is(MEMBER_B)), hasProperty("name", is("biz"))),
+        allOf(hasProperty("repositoryName", is(MEMBER_C)), hasProperty("name", is("javax")))));
+  }
+
   @Test
   public void groupQueryWithLimit() throws Exception {
     List<String> queryPath = asList("org", "foo");
 
+    // use a single query thread so the remaining members are still waiting when the limit is reached
+    underTest.stop();
+    underTest = newStore(1);
+    underTest.start();
+
+    verify(browseNodeEntityAdapter, times(2)).register(db);
+
     when(securityHelper.anyPermitted(any())).thenReturn(true);
     when(repository.getType()).thenReturn(new GroupType());
     when(repository.facet(GroupFacet.class)).thenReturn(groupFacet);
@@ -443,7 +505,7 @@ public class BrowseNodeStoreImplTest
         allOf(hasProperty("repositoryName", is(MEMBER_A)), hasProperty("name", is("com")))));
 
     verify(securityHelper).anyPermitted(any(RepositoryViewPermission.class));
-    // merging of results should be lazy: only the first member should have been consulted
+    // merging of results should stop early: only the first member should have been consulted
     verify(browseNodeEntityAdapter).getByPath(db, MEMBER_A, queryPath, 1, "", emptyMap());
     verifyNoMoreInteractions(browseNodeEntityAdapter, securityHelper, selectorManager);
   }
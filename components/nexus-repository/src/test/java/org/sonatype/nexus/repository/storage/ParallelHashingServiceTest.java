@@ -0,0 +1,101 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.storage;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.hash.HashAlgorithm;
+import org.sonatype.nexus.common.hash.Hashes;
+import org.sonatype.nexus.common.hash.MultiHashingInputStream;
+import org.sonatype.nexus.common.hash.ParallelMultiHashingInputStream;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.MD5;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
+import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA256;
+
+public class ParallelHashingServiceTest
+    extends TestSupport
+{
+  private static final List<HashAlgorithm> ALGORITHMS = ImmutableList.of(SHA1, SHA256, MD5);
+
+  private MetricRegistry metricRegistry;
+
+  private ParallelHashingService underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    metricRegistry = new MetricRegistry();
+    underTest = new ParallelHashingService(true, 2, 1024, 4);
+    underTest.setMetricRegistry(metricRegistry);
+    underTest.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    underTest.stop();
+  }
+
+  @Test
+  public void multipleAlgorithmsAreHashedInParallel() throws Exception {
+    byte[] bytes = new byte[10_000];
+
+    MultiHashingInputStream hashingStream = underTest.hashing(ALGORITHMS, new ByteArrayInputStream(bytes));
+    ByteStreams.exhaust(hashingStream);
+    Map<HashAlgorithm, HashCode> hashes = underTest.hashes(hashingStream);
+
+    assertThat(hashingStream, instanceOf(ParallelMultiHashingInputStream.class));
+    assertThat(hashes, is(Hashes.hash(ALGORITHMS, new ByteArrayInputStream(bytes))));
+    assertThat(metricRegistry.meter("org.sonatype.nexus.repository.storage.ParallelHashingService.sha256.bytes")
+        .getCount(), is(10_000L));
+    assertThat(metricRegistry.timer("org.sonatype.nexus.repository.storage.ParallelHashingService.md5.time")
+        .getCount(), is(1L));
+  }
+
+  @Test
+  public void singleAlgorithmIsHashedOnReadingThread() throws Exception {
+    MultiHashingInputStream hashingStream = underTest.hashing(singletonList(SHA1),
+        new ByteArrayInputStream(new byte[10]));
+
+    assertThat(hashingStream, not(instanceOf(ParallelMultiHashingInputStream.class)));
+  }
+
+  @Test
+  public void disabledServiceHashesOnReadingThread() throws Exception {
+    ParallelHashingService disabled = new ParallelHashingService(false, 2, 1024, 4);
+    disabled.start();
+    try {
+      MultiHashingInputStream hashingStream = disabled.hashing(ALGORITHMS, new ByteArrayInputStream(new byte[10]));
+
+      assertThat(hashingStream, not(instanceOf(ParallelMultiHashingInputStream.class)));
+    }
+    finally {
+      disabled.stop();
+    }
+  }
+}
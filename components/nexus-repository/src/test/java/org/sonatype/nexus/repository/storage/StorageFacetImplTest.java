@@ -24,6 +24,8 @@ import org.sonatype.nexus.blobstore.api.BlobMetrics;
 import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration;
 import org.sonatype.nexus.blobstore.api.BlobStoreManager;
+import org.sonatype.nexus.common.hash.HashAlgorithm;
+import org.sonatype.nexus.common.hash.MultiHashingInputStream;
 import org.sonatype.nexus.common.node.NodeAccess;
 import org.sonatype.nexus.orient.DatabaseInstance;
 import org.sonatype.nexus.repository.Repository;
@@ -47,8 +49,10 @@ import static java.util.Collections.singletonList;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.common.hash.HashAlgorithm.SHA1;
@@ -226,4 +230,31 @@ public class StorageFacetImplTest
     }
     verify(blobStore).deleteHard(blobId);
   }
+
+  @Test
+  public void createTempBlobDeletesBlobWhenHashingFails() throws Exception {
+    byte[] contents = "hello, world".getBytes(StandardCharsets.UTF_8);
+    ParallelHashingService parallelHashingService = mock(ParallelHashingService.class);
+    when(parallelHashingService.hashing(Matchers.<Iterable<HashAlgorithm>>any(), any(InputStream.class)))
+        .thenAnswer(invocationOnMock -> new MultiHashingInputStream(singletonList(SHA1),
+            (InputStream) invocationOnMock.getArguments()[1]));
+    IllegalStateException failure = new IllegalStateException("Failed to hash content");
+    when(parallelHashingService.hashes(any(MultiHashingInputStream.class))).thenThrow(failure);
+    underTest.setParallelHashingService(parallelHashingService);
+    underTest.doConfigure(configuration);
+    when(blobStoreManager.get(BLOB_STORE_NAME)).thenReturn(blobStore);
+    when(blobStore.create(any(InputStream.class), Matchers.<Map<String, String>>any())).thenAnswer(
+        invocationOnMock -> {
+          ByteStreams.toByteArray((InputStream) invocationOnMock.getArguments()[0]);
+          return blob;
+        });
+    try (ByteArrayInputStream in = new ByteArrayInputStream(contents)) {
+      underTest.createTempBlob(in, singletonList(SHA1));
+      fail("Expected hashing failure");
+    }
+    catch (IllegalStateException e) {
+      assertThat(e, is(failure));
+    }
+    verify(blobStore).deleteHard(blobId);
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.storage.internal
+
+import org.sonatype.goodies.testsupport.TestSupport
+import org.sonatype.nexus.orient.testsupport.DatabaseInstanceRule
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx
+import com.orientechnologies.orient.core.metadata.schema.OClass
+import com.orientechnologies.orient.core.metadata.schema.OType
+import com.orientechnologies.orient.core.record.impl.ODocument
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+
+import static org.hamcrest.Matchers.containsInAnyOrder
+import static org.hamcrest.Matchers.is
+import static org.hamcrest.Matchers.not
+import static org.hamcrest.core.IsNull.nullValue
+import static org.junit.Assert.assertThat
+import static org.sonatype.nexus.repository.storage.internal.ComponentDatabaseUpgrade_1_9.ASSET_CLASS
+import static org.sonatype.nexus.repository.storage.internal.ComponentDatabaseUpgrade_1_9.I_BLOB_KEY
+import static org.sonatype.nexus.repository.storage.internal.ComponentDatabaseUpgrade_1_9.I_BUCKET_LAST_DOWNLOADED
+
+class ComponentDatabaseUpgrade_1_9_Test
+    extends TestSupport
+{
+  static final String P_NAME = 'name'
+
+  static final String P_BLOB_REF = 'blob_ref'
+
+  static final String P_BLOB_KEY = 'blob_key'
+
+  static final String P_BUCKET = 'bucket'
+
+  static final String P_LAST_DOWNLOADED = 'last_downloaded'
+
+  @Rule
+  public DatabaseInstanceRule componentDatabase = DatabaseInstanceRule.inMemory("test_component")
+
+  ComponentDatabaseUpgrade_1_9 underTest
+
+  @Before
+  void setUp() {
+    underTest = new ComponentDatabaseUpgrade_1_9(componentDatabase.getInstanceProvider())
+  }
+
+  @Test
+  void 'upgrade step creates and populates blob_key property and indexes last_downloaded'() {
+    componentDatabase.instance.connect().withCloseable { db ->
+      createAssetType(db)
+      createAssetRecord('a.pom', 'default@node-a:1')
+      createAssetRecord('b.pom', 'other@node-b:2')
+      createAssetRecord('c', null)
+    }
+
+    underTest.apply()
+
+    componentDatabase.instance.connect().withCloseable { db ->
+      assertThat(db.metadata.indexManager.getIndex(I_BLOB_KEY), not(nullValue()))
+      assertThat(db.metadata.indexManager.getIndex(I_BUCKET_LAST_DOWNLOADED), not(nullValue()))
+      assertThat(blobKeys(db), containsInAnyOrder('default@1', 'other@2', null))
+    }
+
+    underTest.apply()
+
+    componentDatabase.instance.connect().withCloseable { db ->
+      assertThat(db.metadata.indexManager.getIndex(I_BLOB_KEY), not(nullValue()))
+      assertThat(db.metadata.indexManager.getIndex(I_BUCKET_LAST_DOWNLOADED), not(nullValue()))
+      assertThat(blobKeys(db), containsInAnyOrder('default@1', 'other@2', null))
+    }
+  }
+
+  @Test
+  void 'upgrade step does not throw exceptions if asset class is not found in schema'() {
+    underTest.apply()
+
+    componentDatabase.instance.connect().withCloseable { db ->
+      assertThat(db.metadata.schema.existsClass(ASSET_CLASS), is(false))
+    }
+  }
+
+  private static blobKeys(final ODatabaseDocumentTx db) {
+    db.browseClass(ASSET_CLASS).collect { it.field(P_BLOB_KEY) }
+  }
+
+  private static void createAssetType(final ODatabaseDocumentTx db) {
+    OClass assetType = db.metadata.schema.createClass(ASSET_CLASS)
+    assetType.createProperty(P_NAME, OType.STRING)
+    assetType.createProperty(P_BLOB_REF, OType.STRING)
+    assetType.createProperty(P_BUCKET, OType.LINK)
+    assetType.createProperty(P_LAST_DOWNLOADED, OType.DATETIME)
+  }
+
+  private static void createAssetRecord(final String name, final String blobRef) {
+    ODocument document = new ODocument(ASSET_CLASS)
+    document.field(P_NAME, name)
+    document.field(P_BLOB_REF, blobRef)
+    document.save()
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.view;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.view.matchers.ActionMatcher;
+import org.sonatype.nexus.repository.view.matchers.token.TokenMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonatype.nexus.repository.view.matchers.logic.LogicMatchers.and;
+import static org.sonatype.nexus.repository.view.matchers.logic.LogicMatchers.or;
+
+public class RouteTableTest
+    extends TestSupport
+{
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private Handler handler;
+
+  @Mock
+  private Matcher customMatcher;
+
+  private List<Route> routes;
+
+  private RouteTable underTest;
+
+  @Before
+  public void setup() {
+    routes = Arrays.asList(
+        route(new TokenMatcher("/v2/")),
+        route(and(new ActionMatcher("PUT"), new TokenMatcher("/v2/{name:.+}/blobs/uploads/{uuid}"))),
+        route(and(
+            or(new ActionMatcher("GET"), new ActionMatcher("HEAD")),
+            new TokenMatcher("/v2/{name:.+}/blobs/{digest}"))),
+        route(and(new TokenMatcher("/{path:.+}.jar"), new ActionMatcher("DELETE"))),
+        route(customMatcher),
+        route(new TokenMatcher("/{name:.+}/{version}.{extension}"))
+    );
+    underTest = new RouteTable(routes);
+  }
+
+  @Test
+  public void literalPattern() {
+    assertThat(findRoute("GET", "/v2/"), is(sameInstance(routes.get(0))));
+  }
+
+  @Test
+  public void actionAndPattern() {
+    assertThat(findRoute("PUT", "/v2/library/alpine/blobs/uploads/1234"), is(sameInstance(routes.get(1))));
+    assertThat(findRoute("HEAD", "/v2/library/alpine/blobs/sha256:abc"), is(sameInstance(routes.get(2))));
+  }
+
+  @Test
+  public void firstMatchingRouteWins() {
+    when(customMatcher.matches(any(Context.class))).thenReturn(true);
+
+    assertThat(findRoute("GET", "/org/foo/1.0/foo-1.0.pom"), is(sameInstance(routes.get(4))));
+  }
+
+  @Test
+  public void unguardedMatcherIsAlwaysEvaluated() {
+    assertThat(findRoute("GET", "/org/foo/1.0/foo-1.0.pom"), is(sameInstance(routes.get(5))));
+    verify(customMatcher).matches(any(Context.class));
+  }
+
+  @Test
+  public void conditionsAfterTokenMatcherDoNotSkipRoute() {
+    // the token matcher runs before the action matcher fails, so its tokens are left in the context
+    Context context = context("GET", "/foo.jar");
+    assertThat(underTest.findRoute(context), is(nullValue()));
+    assertThat(context.getAttributes().get(TokenMatcher.State.class).pattern(), is("/{path:.+}.jar"));
+  }
+
+  @Test
+  public void guardsSkipRoutes() {
+    assertThat(findRoute("GET", "/unmatched"), is(nullValue()));
+    verify(customMatcher).matches(any(Context.class));
+
+    assertThat(findRoute("DELETE", "/org/foo/1.0/foo-1.0.jar"), is(sameInstance(routes.get(3))));
+    verify(customMatcher).matches(any(Context.class));
+  }
+
+  @Test
+  public void manyRoutes() {
+    Route[] many = new Route[200];
+    for (int i = 0; i < many.length; i++) {
+      many[i] = route(new TokenMatcher("/path" + i + "/{name}"));
+    }
+    RouteTable table = new RouteTable(Arrays.asList(many));
+
+    Context context = context("GET", "/path150/foo");
+    assertThat(table.findRoute(context), is(sameInstance(many[150])));
+    assertThat(context.getAttributes().get(TokenMatcher.State.class), is(notNullValue()));
+    assertThat(table.findRoute(context("GET", "/path200/foo")), is(nullValue()));
+  }
+
+  @Test
+  public void customMatcherNotEvaluatedAfterEarlierMatch() {
+    findRoute("GET", "/v2/");
+    verify(customMatcher, never()).matches(any(Context.class));
+  }
+
+  private Route findRoute(final String action, final String path) {
+    return underTest.findRoute(context(action, path));
+  }
+
+  private Context context(final String action, final String path) {
+    return new Context(repository, new Request.Builder().action(action).path(path).build());
+  }
+
+  private Route route(final Matcher matcher) {
+    return new Route.Builder().matcher(matcher).handler(handler).create();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.security.authz;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.shiro.authz.Permission;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Set of permissions compiled for fast {@link #implies} checks.
+ *
+ * {@link WildcardPermission2}s are stored in a trie with a level per part, so a check whose parts each hold a single
+ * token, such as a {@code nexus:repository-view:<format>:<name>:<action>} check, takes at most two hash lookups per
+ * level instead of comparing against every permission. Other permissions and checks fall back to a linear scan; the
+ * result is always the same as asking each permission in turn.
+ *
+ * @since 3.9
+ */
+public class PermissionIndex
+{
+  private static final String WILDCARD_TOKEN = "*";
+
+  private final List<Permission> permissions;
+
+  private final List<Permission> unindexed = new ArrayList<>();
+
+  private final Node root = new Node();
+
+  public PermissionIndex(final Collection<Permission> permissions) {
+    this.permissions = ImmutableList.copyOf(permissions);
+    for (Permission permission : this.permissions) {
+      if (permission instanceof WildcardPermission2) {
+        add(((WildcardPermission2) permission).getParts());
+      }
+      else {
+        unindexed.add(permission);
+      }
+    }
+  }
+
+  public int size() {
+    return permissions.size();
+  }
+
+  public boolean implies(final Permission permission) {
+    checkNotNull(permission);
+
+    String[] tokens = tokens(permission);
+    if (tokens == null) {
+      return impliedBy(permissions, permission);
+    }
+    return root.implies(tokens, 0) || impliedBy(unindexed, permission);
+  }
+
+  private static boolean impliedBy(final List<Permission> permissions, final Permission permission) {
+    for (Permission each : permissions) {
+      if (each.implies(permission)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the single token of each part, or {@code null} if the permission can't be checked against the trie.
+   */
+  @Nullable
+  private static String[] tokens(final Permission permission) {
+    if (!(permission instanceof WildcardPermission2)) {
+      return null;
+    }
+    List<Set<String>> parts = ((WildcardPermission2) permission).getParts();
+    String[] tokens = new String[parts.size()];
+    for (int i = 0; i < tokens.length; i++) {
+      Set<String> part = parts.get(i);
+      if (part.size() != 1) {
+        return null;
+      }
+      tokens[i] = part.iterator().next();
+    }
+    return tokens;
+  }
+
+  private void add(final List<Set<String>> parts) {
+    List<Node> nodes = ImmutableList.of(root);
+    for (Set<String> part : parts) {
+      List<Node> next = new ArrayList<>();
+      for (Node node : nodes) {
+        if (part.contains(WILDCARD_TOKEN)) {
+          next.add(node.wildcard());
+        }
+        else {
+          for (String token : part) {
+            next.add(node.child(token));
+          }
+        }
+      }
+      nodes = next;
+    }
+    for (Node node : nodes) {
+      node.terminal = true;
+    }
+  }
+
+  /**
+   * Trie node; {@code terminal} marks the end of a permission, which implies everything below it.
+   */
+  private static class Node
+  {
+    private final Map<String, Node> children = new HashMap<>();
+
+    private Node wildcard;
+
+    private boolean terminal;
+
+    Node child(final String token) {
+      return children.computeIfAbsent(token, key -> new Node());
+    }
+
+    Node wildcard() {
+      if (wildcard == null) {
+        wildcard = new Node();
+      }
+      return wildcard;
+    }
+
+    boolean implies(final String[] tokens, final int index) {
+      if (terminal) {
+        return true;
+      }
+      if (index == tokens.length) {
+        // longer permissions only imply the check if all their remaining parts are wildcards
+        for (Node node = wildcard; node != null; node = node.wildcard) {
+          if (node.terminal) {
+            return true;
+          }
+        }
+        return false;
+      }
+      Node child = children.get(tokens[index]);
+      if (child != null && child.implies(tokens, index + 1)) {
+        return true;
+      }
+      return wildcard != null && wildcard.implies(tokens, index + 1);
+    }
+  }
+}
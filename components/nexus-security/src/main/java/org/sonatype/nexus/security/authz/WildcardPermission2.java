@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.security.authz;
 
+import java.util.List;
 import java.util.Set;
 
 import com.google.common.base.Joiner;
@@ -53,6 +54,16 @@ public class WildcardPermission2
     return cachedHash;
   }
 
+  /**
+   * Exposes the parts to {@link PermissionIndex}.
+   *
+   * @since 3.9
+   */
+  @Override
+  protected List<Set<String>> getParts() {
+    return super.getParts();
+  }
+
   private static final Joiner JOINER = Joiner.on(',');
 
   /**
@@ -12,26 +12,39 @@
  */
 package org.sonatype.nexus.security.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.common.event.EventManager;
+import org.sonatype.nexus.security.authz.AuthorizationConfigurationChanged;
+import org.sonatype.nexus.security.authz.PermissionIndex;
 import org.sonatype.nexus.security.role.RoleIdentifier;
 import org.sonatype.nexus.security.user.RoleMappingUserManager;
 import org.sonatype.nexus.security.user.UserManager;
 import org.sonatype.nexus.security.user.UserNotFoundException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.credential.Sha1CredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationException;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.authz.permission.PermissionResolver;
+import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.mgt.RealmSecurityManager;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.realm.Realm;
@@ -44,6 +57,10 @@ import org.slf4j.LoggerFactory;
  * Default {@link AuthorizingRealm}.
  *
  * This realm ONLY handles authorization.
+ *
+ * Permissions of each cached {@link AuthorizationInfo} are compiled into a {@link PermissionIndex}, which lives as long
+ * as the cached info. Each index is stamped with the generation of the permissions it was compiled from and is
+ * recompiled on use once roles or privileges have changed since.
  */
 @Singleton
 @Named(AuthorizingRealmImpl.NAME)
@@ -62,10 +79,21 @@ public class AuthorizingRealmImpl
 
   private final Map<String, UserManager> userManagerMap;
 
+  /**
+   * Compiled permissions, weakly keyed by (identity of) the cached authorization info.
+   */
+  private final Cache<AuthorizationInfo, StampedIndex> permissionIndexes = CacheBuilder.newBuilder().weakKeys().build();
+
+  /**
+   * Bumped whenever roles or privileges change.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
   @Inject
   public AuthorizingRealmImpl(final RealmSecurityManager realmSecurityManager,
                               final UserManager userManager,
-                              final Map<String, UserManager> userManagerMap)
+                              final Map<String, UserManager> userManagerMap,
+                              final EventManager eventManager)
   {
     this.realmSecurityManager = realmSecurityManager;
     this.userManager = userManager;
@@ -74,6 +102,24 @@ public class AuthorizingRealmImpl
     setName(NAME);
     setAuthenticationCachingEnabled(false); // we authz only, no authc done by this realm
     setAuthorizationCachingEnabled(true);
+    eventManager.register(this);
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final AuthorizationConfigurationChanged event) {
+    invalidate();
+  }
+
+  @AllowConcurrentEvents
+  @Subscribe
+  public void on(final SecurityContributionChangedEvent event) {
+    invalidate();
+  }
+
+  private void invalidate() {
+    generation.incrementAndGet();
+    permissionIndexes.invalidateAll();
   }
 
   @Override
@@ -153,6 +199,61 @@ public class AuthorizingRealmImpl
     return new SimpleAuthorizationInfo(roles);
   }
 
+  @Override
+  protected boolean isPermitted(final Permission permission, final AuthorizationInfo info) {
+    if (info == null || getAuthorizationCache() == null) {
+      // without caching every check sees a fresh info, so compiling it would not pay off
+      return super.isPermitted(permission, info);
+    }
+    // read the generation before resolving, so an index compiled while permissions change is never trusted later
+    long currentGeneration = currentGeneration();
+    StampedIndex stamped = permissionIndexes.getIfPresent(info);
+    if (stamped == null || stamped.generation != currentGeneration) {
+      stamped = new StampedIndex(currentGeneration, new PermissionIndex(getPermissions(info)));
+      permissionIndexes.put(info, stamped);
+    }
+    return stamped.index.implies(permission);
+  }
+
+  /**
+   * Combines our generation with that of the role permission resolver. Either is bumped by its own subscriber, in no
+   * particular order, so an index compiled between the two from permissions the resolver had yet to drop is still
+   * recognised as stale.
+   */
+  private long currentGeneration() {
+    RolePermissionResolver rolePermissionResolver = getRolePermissionResolver();
+    if (rolePermissionResolver instanceof RolePermissionResolverImpl) {
+      return generation.get() + ((RolePermissionResolverImpl) rolePermissionResolver).getGeneration();
+    }
+    return generation.get();
+  }
+
+  /**
+   * Resolves all permissions of the given info, as {@link AuthorizingRealm} does for each check.
+   */
+  private List<Permission> getPermissions(final AuthorizationInfo info) {
+    List<Permission> permissions = new ArrayList<>();
+    if (info.getObjectPermissions() != null) {
+      permissions.addAll(info.getObjectPermissions());
+    }
+    PermissionResolver permissionResolver = getPermissionResolver();
+    if (info.getStringPermissions() != null && permissionResolver != null) {
+      for (String permission : info.getStringPermissions()) {
+        permissions.add(permissionResolver.resolvePermission(permission));
+      }
+    }
+    RolePermissionResolver rolePermissionResolver = getRolePermissionResolver();
+    if (info.getRoles() != null && rolePermissionResolver != null) {
+      for (String role : info.getRoles()) {
+        Collection<Permission> rolePermissions = rolePermissionResolver.resolvePermissionsInRole(role);
+        if (rolePermissions != null) {
+          permissions.addAll(rolePermissions);
+        }
+      }
+    }
+    return permissions;
+  }
+
   private void cleanUpRealmList(Set<String> realmNames) {
     for (UserManager userManager : this.userManagerMap.values()) {
       String authRealmName = userManager.getAuthenticationRealmName();
@@ -167,4 +268,16 @@ public class AuthorizingRealmImpl
       realmNames.add("default");
     }
   }
+
+  private static class StampedIndex
+  {
+    private final long generation;
+
+    private final PermissionIndex index;
+
+    StampedIndex(final long generation, final PermissionIndex index) {
+      this.generation = generation;
+      this.index = index;
+    }
+  }
 }
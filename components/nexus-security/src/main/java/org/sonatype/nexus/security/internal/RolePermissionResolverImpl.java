@@ -19,6 +19,7 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -72,6 +73,11 @@ public class RolePermissionResolverImpl
    */
   private final Cache<String,String> roleNotFoundCache;
 
+  /**
+   * Bumped after every invalidation.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
   @Inject
   public RolePermissionResolverImpl(final SecurityConfigurationManager configuration,
                                     final List<PrivilegeDescriptor> privilegeDescriptors,
@@ -91,9 +97,21 @@ public class RolePermissionResolverImpl
     permissionsCache.invalidateAll();
     rolePermissionsCache.invalidateAll();
     roleNotFoundCache.invalidateAll();
+    // bump only once cleared, so permissions resolved under the new generation are never stale
+    generation.incrementAndGet();
     log.trace("Cache invalidated");
   }
 
+  /**
+   * Returns a number which changes whenever cached role permissions are invalidated; read it before resolving
+   * permissions to later tell whether they may have gone stale.
+   *
+   * @since 3.9
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
   @AllowConcurrentEvents
   @Subscribe
   public void on(final AuthorizationConfigurationChanged event) {
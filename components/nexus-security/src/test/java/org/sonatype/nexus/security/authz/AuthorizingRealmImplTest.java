@@ -15,11 +15,14 @@ package org.sonatype.nexus.security.authz;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.sonatype.nexus.common.event.EventManager;
 import org.sonatype.nexus.security.AbstractSecurityTest;
 import org.sonatype.nexus.security.config.CPrivilege;
 import org.sonatype.nexus.security.config.CRole;
 import org.sonatype.nexus.security.config.CUser;
 import org.sonatype.nexus.security.internal.AuthorizingRealmImpl;
+import org.sonatype.nexus.security.internal.RolePermissionResolverImpl;
+import org.sonatype.nexus.security.internal.SecurityContributionChangedEvent;
 import org.sonatype.nexus.security.internal.SecurityConfigurationManagerImpl;
 import org.sonatype.nexus.security.privilege.WildcardPrivilegeDescriptor;
 import org.sonatype.nexus.security.user.UserStatus;
@@ -75,6 +78,63 @@ public class AuthorizingRealmImplTest
     Assert.assertFalse(realm.isPermitted(principal, new WildcardPermission("app:ui:delete")));
   }
 
+  @Test
+  public void testAuthorizationChangesAreSeen() throws Exception {
+    buildTestAuthorizationConfig();
+
+    SimplePrincipalCollection principal = new SimplePrincipalCollection("username", realm.getName());
+
+    Assert.assertTrue(realm.isPermitted(principal, new WildcardPermission("app:config:read")));
+    Assert.assertFalse(realm.isPermitted(principal, new WildcardPermission("app:ui:read")));
+
+    CPrivilege priv = WildcardPrivilegeDescriptor.privilege("app:ui:read");
+    configurationManager.createPrivilege(priv);
+    CRole role = configurationManager.readRole("role");
+    role.addPrivilege(priv.getId());
+    configurationManager.updateRole(role);
+    lookup(EventManager.class).post(new AuthorizationConfigurationChanged());
+
+    Assert.assertTrue(realm.isPermitted(principal, new WildcardPermission("app:ui:read")));
+  }
+
+  @Test
+  public void testRevokedPrivilegeIsSeenAfterContributionChange() throws Exception {
+    buildTestAuthorizationConfig();
+
+    SimplePrincipalCollection principal = new SimplePrincipalCollection("username", realm.getName());
+
+    Assert.assertTrue(realm.isPermitted(principal, new WildcardPermission("app:config:read")));
+
+    CRole role = configurationManager.readRole("role");
+    role.getPrivileges().clear();
+    configurationManager.updateRole(role);
+    lookup(EventManager.class).post(new SecurityContributionChangedEvent());
+
+    Assert.assertFalse(realm.isPermitted(principal, new WildcardPermission("app:config:read")));
+  }
+
+  @Test
+  public void testIndexCompiledBeforeResolverIsInvalidatedIsNotKept() throws Exception {
+    buildTestAuthorizationConfig();
+
+    SimplePrincipalCollection principal = new SimplePrincipalCollection("username", realm.getName());
+    RolePermissionResolverImpl resolver = (RolePermissionResolverImpl) lookup(RolePermissionResolver.class);
+
+    Assert.assertTrue(realm.isPermitted(principal, new WildcardPermission("app:config:read")));
+
+    CRole role = configurationManager.readRole("role");
+    role.getPrivileges().clear();
+    configurationManager.updateRole(role);
+
+    // the realm hears about the change first and recompiles from permissions the resolver still has cached
+    realm.on(new SecurityContributionChangedEvent());
+    Assert.assertTrue(realm.isPermitted(principal, new WildcardPermission("app:config:read")));
+
+    // once the resolver catches up the stale index must not be used
+    resolver.on(new SecurityContributionChangedEvent());
+    Assert.assertFalse(realm.isPermitted(principal, new WildcardPermission("app:config:read")));
+  }
+
   private void buildTestAuthorizationConfig() throws Exception {
     buildTestAuthorizationConfig("username");
   }
@@ -0,0 +1,93 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.security.authz;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.AllPermission;
+import org.apache.shiro.authz.permission.WildcardPermission;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link PermissionIndex}.
+ */
+public class PermissionIndexTest
+    extends TestSupport
+{
+  private static PermissionIndex index(final String... permissions) {
+    List<Permission> compiled = new ArrayList<>();
+    for (String permission : permissions) {
+      compiled.add(new WildcardPermission2(permission));
+    }
+    return new PermissionIndex(compiled);
+  }
+
+  private static boolean implies(final PermissionIndex index, final String permission) {
+    return index.implies(new WildcardPermission2(permission));
+  }
+
+  @Test
+  public void literalParts() {
+    PermissionIndex index = index("nexus:repository-view:maven2:central:read,browse");
+
+    assertThat(implies(index, "nexus:repository-view:maven2:central:read"), is(true));
+    assertThat(implies(index, "nexus:repository-view:maven2:central:browse"), is(true));
+    assertThat(implies(index, "nexus:repository-view:maven2:central:edit"), is(false));
+    assertThat(implies(index, "nexus:repository-view:maven2:releases:read"), is(false));
+    assertThat(implies(index, "nexus:repository-view:npm:central:read"), is(false));
+  }
+
+  @Test
+  public void wildcardParts() {
+    PermissionIndex index = index("nexus:repository-view:*:*:read", "nexus:repository-view:npm:*:*");
+
+    assertThat(implies(index, "nexus:repository-view:maven2:central:read"), is(true));
+    assertThat(implies(index, "nexus:repository-view:npm:npmjs:delete"), is(true));
+    assertThat(implies(index, "nexus:repository-view:maven2:central:delete"), is(false));
+    assertThat(implies(index, "nexus:repository-view:*:*:read"), is(true));
+  }
+
+  @Test
+  public void shorterAndLongerPermissions() {
+    PermissionIndex index = index("nexus:repository-admin", "nexus:tasks:*:*");
+
+    assertThat(implies(index, "nexus:repository-admin:maven2:central:read"), is(true));
+    assertThat(implies(index, "nexus:tasks"), is(true));
+    assertThat(implies(index, "nexus:tasks:read"), is(true));
+    assertThat(implies(index, "nexus:repository-view"), is(false));
+  }
+
+  @Test
+  public void multiValuedChecksFallBackToScan() {
+    PermissionIndex index = index("nexus:repository-view:maven2:central:read,browse");
+
+    assertThat(implies(index, "nexus:repository-view:maven2:central:read,browse"), is(true));
+    assertThat(implies(index, "nexus:repository-view:maven2:central:read,edit"), is(false));
+  }
+
+  @Test
+  public void otherPermissionsAreScanned() {
+    PermissionIndex index = new PermissionIndex(Collections.singletonList(new AllPermission()));
+
+    assertThat(index.implies(new WildcardPermission2("nexus:repository-view:maven2:central:read")), is(true));
+    assertThat(index.implies(new WildcardPermission("nexus:repository-view:maven2:central:read")), is(true));
+  }
+}
@@ -12,33 +12,60 @@
  */
 package org.sonatype.nexus.audit.internal;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.goodies.lifecycle.LifecycleSupport;
 import org.sonatype.nexus.audit.AuditData;
 import org.sonatype.nexus.audit.AuditDataRecordedEvent;
 import org.sonatype.nexus.audit.AuditRecorder;
 import org.sonatype.nexus.audit.InitiatorProvider;
+import org.sonatype.nexus.common.app.ManagedLifecycle;
+import org.sonatype.nexus.common.event.EventHelper;
 import org.sonatype.nexus.common.event.EventManager;
 import org.sonatype.nexus.common.node.NodeAccess;
+import org.sonatype.nexus.thread.NexusThreadFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.singletonList;
+import static org.sonatype.nexus.common.app.ManagedLifecycle.Phase.SERVICES;
 
 /**
  * Default {@link AuditRecorder} implementation.
  *
+ * Recorded data is handed to a background writer through an {@link AuditRingBuffer} and stored in batches, so the
+ * audited action does not wait on the audit database. When the buffer is full the data is dropped and counted by the
+ * {@code dropped} metric. Data still buffered when the recorder stops is written before it completes, and data
+ * recorded while the writer is not running is stored directly.
+ *
  * @since 3.1
  */
 @Named
+@ManagedLifecycle(phase = SERVICES)
 @Singleton
 public class AuditRecorderImpl
-    extends ComponentSupport
+    extends LifecycleSupport
     implements AuditRecorder
 {
+  private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
   private final EventManager eventManager;
 
   private final NodeAccess nodeAccess;
@@ -47,18 +74,78 @@ public class AuditRecorderImpl
 
   private final InitiatorProvider initiatorProvider;
 
+  private final MetricRegistry metricRegistry;
+
+  private final int batchSize;
+
+  private final AuditRingBuffer<AuditData> buffer;
+
+  private final Meter dropped;
+
+  private final Timer batches;
+
+  private final AtomicLong overflow = new AtomicLong();
+
+  private final Object drainLock = new Object();
+
   private volatile boolean enabled = false;
 
+  private volatile boolean running;
+
+  private volatile boolean writerWaiting;
+
+  private volatile Thread writerThread;
+
+  private ExecutorService writer;
+
   @Inject
   public AuditRecorderImpl(final EventManager eventManager,
                            final NodeAccess nodeAccess,
                            final AuditStore auditStore,
-                           final InitiatorProvider initiatorProvider)
+                           final InitiatorProvider initiatorProvider,
+                           final MetricRegistry metricRegistry,
+                           @Named("${nexus.audit.bufferSize:-8192}") final int bufferSize,
+                           @Named("${nexus.audit.batchSize:-100}") final int batchSize)
   {
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
     this.eventManager = eventManager;
     this.nodeAccess = nodeAccess;
     this.auditStore = auditStore;
     this.initiatorProvider = initiatorProvider;
+    this.metricRegistry = checkNotNull(metricRegistry);
+    this.batchSize = batchSize;
+    this.buffer = new AuditRingBuffer<>(bufferSize);
+    this.dropped = metricRegistry.meter(name(AuditRecorderImpl.class, "dropped"));
+    this.batches = metricRegistry.timer(name(AuditRecorderImpl.class, "batches"));
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    String pendingName = name(AuditRecorderImpl.class, "pending");
+    metricRegistry.remove(pendingName);
+    metricRegistry.register(pendingName, (Gauge<Integer>) buffer::size);
+
+    running = true;
+    writer = Executors.newSingleThreadExecutor(new NexusThreadFactory("audit-writer", "audit"));
+    writer.execute(this::writeBuffered);
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    running = false;
+    LockSupport.unpark(writerThread);
+    writer.shutdown();
+    if (writer.awaitTermination(10L, TimeUnit.SECONDS)) {
+      // catch anything offered while the writer was finishing
+      writeRemaining();
+    }
+    else {
+      log.warn("Failed to terminate thread pool in allotted time");
+    }
+    writer = null;
+    writerThread = null;
+
+    metricRegistry.remove(name(AuditRecorderImpl.class, "pending"));
   }
 
   @Override
@@ -86,10 +173,99 @@ public class AuditRecorderImpl
         data.setInitiator(initiatorProvider.get());
       }
 
+      // replicated changes are audited by the node which made them
+      if (EventHelper.isReplicating()) {
+        log.debug("Skipping replicated: {}", data);
+        return;
+      }
+
       log.debug("Record: {}", data);
+      if (!running) {
+        write(singletonList(data));
+      }
+      else if (buffer.offer(data)) {
+        if (!running) {
+          // stopped while offering, the final drain may already have happened so don't leave this behind
+          writeRemaining();
+        }
+        else if (writerWaiting) {
+          LockSupport.unpark(writerThread);
+        }
+      }
+      else {
+        dropped.mark();
+        if (overflow.getAndIncrement() == 0) {
+          log.warn("Audit buffer is full, dropping audit data until the writer catches up");
+        }
+      }
+    }
+  }
+
+  /**
+   * Background writer, drains the buffer in batches until the recorder stops and the buffer is empty.
+   */
+  private void writeBuffered() {
+    writerThread = Thread.currentThread();
+    List<AuditData> batch = new ArrayList<>(batchSize);
+    while (running || !buffer.isEmpty()) {
+      if (drain(batch) == 0) {
+        writerWaiting = true;
+        if (running && buffer.isEmpty()) {
+          LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+        }
+        writerWaiting = false;
+        continue;
+      }
+      write(batch);
+      batch.clear();
+
+      long overflowed = overflow.getAndSet(0);
+      if (overflowed > 0) {
+        log.warn("Dropped {} audit records while the audit buffer was full", overflowed);
+      }
+    }
+  }
+
+  private void writeRemaining() {
+    List<AuditData> batch = new ArrayList<>(batchSize);
+    while (drain(batch) > 0) {
+      write(batch);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Moves the next batch out of the buffer. Serialized because producers may also drain once the recorder stops,
+   * while the buffer only supports a single consumer at a time.
+   */
+  private int drain(final List<AuditData> batch) {
+    synchronized (drainLock) {
+      return buffer.drainTo(batch, batchSize);
+    }
+  }
+
+  private void write(final List<AuditData> batch) {
+    try (Timer.Context ignored = batches.time()) {
+      auditStore.addAll(batch);
+    }
+    catch (Exception e) {
+      log.warn("Failed to record {} audit records in one batch, recording them one by one", batch.size(),
+          log.isDebugEnabled() ? e : null);
+      writeEach(batch);
+      return;
+    }
+    for (AuditData data : batch) {
+      eventManager.post(new AuditDataRecordedEvent(data.copy()));
+    }
+  }
+
+  private void writeEach(final List<AuditData> batch) {
+    for (AuditData data : batch) {
       try {
-        auditStore.add(data);
-        eventManager.post(new AuditDataRecordedEvent(data.copy()));
+        // drop any metadata left over from the failed batch
+        AuditData detached = data.detach();
+        auditStore.add(detached);
+        eventManager.post(new AuditDataRecordedEvent(detached.copy()));
       }
       catch (Exception e) {
         log.warn("Failed to record audit data", e);
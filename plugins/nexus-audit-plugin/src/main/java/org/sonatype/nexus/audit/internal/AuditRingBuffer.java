@@ -0,0 +1,127 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.audit.internal;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded lock-free ring buffer with many producers and a single consumer.
+ *
+ * Each slot carries a sequence number telling producers when it is free to claim and the consumer when it has been
+ * filled, so neither side ever blocks; {@link #offer} simply fails when the buffer is full.
+ *
+ * @since 3.9
+ */
+class AuditRingBuffer<E>
+{
+  private final int mask;
+
+  private final AtomicReferenceArray<E> elements;
+
+  private final AtomicLongArray sequences;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * Creates a buffer holding at least the given number of elements, rounded up to a power of two.
+   */
+  AuditRingBuffer(final int minCapacity) {
+    checkArgument(minCapacity > 0, "Capacity must be greater than zero");
+    int capacity = minCapacity == 1 ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+    this.mask = capacity - 1;
+    this.elements = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Adds the element, returning {@code false} without waiting if the buffer is full.
+   */
+  boolean offer(final E element) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.set(index, element);
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      }
+      else if (available < 0) {
+        return false;
+      }
+      else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest element, or returns {@code null} if there is none. Must only be called by the consumer.
+   */
+  @Nullable
+  E poll() {
+    long position = head.get();
+    int index = (int) (position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    E element = elements.get(index);
+    elements.set(index, null);
+    sequences.set(index, position + mask + 1);
+    head.set(position + 1);
+    return element;
+  }
+
+  /**
+   * Moves up to {@code maxElements} of the oldest elements into the given list. Must only be called by the consumer.
+   */
+  int drainTo(final List<? super E> list, final int maxElements) {
+    int count = 0;
+    E element;
+    while (count < maxElements && (element = poll()) != null) {
+      list.add(element);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the approximate number of elements waiting in the buffer.
+   */
+  int size() {
+    return (int) Math.max(0, tail.get() - head.get());
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+}
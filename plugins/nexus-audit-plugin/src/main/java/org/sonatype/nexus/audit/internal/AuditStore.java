@@ -28,6 +28,13 @@ public interface AuditStore
 {
   void add(AuditData data) throws Exception;
 
+  /**
+   * Adds all the given data in a single transaction.
+   *
+   * @since 3.9
+   */
+  void addAll(List<AuditData> data) throws Exception;
+
   void clear() throws Exception;
 
   long approximateSize() throws Exception;
@@ -80,6 +80,20 @@ public class OrientAuditStore
     inTxRetry(databaseInstance).run(db -> entityAdapter.addEntity(db, data));
   }
 
+  @Override
+  @Guarded(by = STARTED)
+  public void addAll(final List<AuditData> data) throws Exception {
+    checkNotNull(data);
+
+    checkState(!EventHelper.isReplicating(), "Replication in progress");
+
+    inTxRetry(databaseInstance).run(db -> {
+      for (AuditData each : data) {
+        entityAdapter.addEntity(db, each);
+      }
+    });
+  }
+
   @Override
   @Guarded(by = STARTED)
   public void clear() throws Exception {
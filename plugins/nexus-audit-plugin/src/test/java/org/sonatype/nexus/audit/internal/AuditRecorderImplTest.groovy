@@ -12,6 +12,8 @@
  */
 package org.sonatype.nexus.audit.internal
 
+import java.util.concurrent.CountDownLatch
+
 import org.sonatype.goodies.testsupport.TestSupport
 import org.sonatype.nexus.audit.AuditData
 import org.sonatype.nexus.audit.AuditDataRecordedEvent
@@ -19,11 +21,19 @@ import org.sonatype.nexus.audit.InitiatorProvider
 import org.sonatype.nexus.common.event.EventManager
 import org.sonatype.nexus.common.node.NodeAccess
 
+import com.codahale.metrics.MetricRegistry
+import org.junit.After
 import org.junit.Before
 import org.junit.Test
 import org.mockito.ArgumentCaptor
 import org.mockito.Mock
+import org.mockito.stubbing.Answer
 
+import static com.codahale.metrics.MetricRegistry.name
+import static org.mockito.Matchers.any
+import static org.mockito.Mockito.doAnswer
+import static org.mockito.Mockito.doThrow
+import static org.mockito.Mockito.times
 import static org.mockito.Mockito.verify
 import static org.mockito.Mockito.verifyNoMoreInteractions
 import static org.mockito.Mockito.verifyZeroInteractions
@@ -47,6 +57,8 @@ class AuditRecorderImplTest
   @Mock
   InitiatorProvider initiatorProvider
 
+  MetricRegistry metricRegistry = new MetricRegistry()
+
   AuditRecorderImpl underTest
 
   private static final String initiator = 'test/1.2.3.4'
@@ -58,8 +70,16 @@ class AuditRecorderImplTest
     when(initiatorProvider.get()).thenReturn(initiator)
     when(nodeAccess.getId()).thenReturn(nodeId)
 
-    underTest = new AuditRecorderImpl(eventManager, nodeAccess, auditStore, initiatorProvider)
+    underTest = new AuditRecorderImpl(eventManager, nodeAccess, auditStore, initiatorProvider, metricRegistry, 1, 10)
     underTest.enabled = true
+    underTest.start()
+  }
+
+  @After
+  void tearDown() {
+    if (underTest.isStarted()) {
+      underTest.stop()
+    }
   }
 
   private static AuditData makeAuditData() {
@@ -83,12 +103,13 @@ class AuditRecorderImplTest
   void 'defaults are filled in if missing'() {
     AuditData data = makeAuditData()
     underTest.record(data)
+    underTest.stop()
 
-    def argument = ArgumentCaptor.forClass(AuditData.class)
-    verify(auditStore).add(argument.capture())
+    def argument = ArgumentCaptor.forClass(List.class)
+    verify(auditStore).addAll(argument.capture())
     verifyNoMoreInteractions(auditStore)
 
-    AuditData captured = argument.value
+    AuditData captured = argument.value[0]
     assert captured.timestamp != null
     assert captured.nodeId == nodeId
     assert captured.initiator == initiator
@@ -98,6 +119,7 @@ class AuditRecorderImplTest
   void 'event fired when data recorded'() {
     AuditData data = makeAuditData()
     underTest.record(data)
+    underTest.stop()
 
     def argument = ArgumentCaptor.forClass(Object.class)
     verify(eventManager).post(argument.capture())
@@ -106,4 +128,43 @@ class AuditRecorderImplTest
     Object captured = argument.value
     assert captured instanceof AuditDataRecordedEvent
   }
+
+  @Test
+  void 'data is stored directly when the writer is not running'() {
+    underTest.stop()
+    AuditData data = makeAuditData()
+    underTest.record(data)
+
+    verify(auditStore).addAll([data])
+  }
+
+  @Test
+  void 'data is dropped when the buffer is full'() {
+    def writing = new CountDownLatch(1)
+    def release = new CountDownLatch(1)
+    doAnswer({ writing.countDown(); release.await(); null } as Answer).when(auditStore).addAll(any(List.class))
+
+    // keep the writer busy with the first record, then fill the single slot of the buffer
+    underTest.record(makeAuditData())
+    writing.await()
+    underTest.record(makeAuditData())
+    underTest.record(makeAuditData())
+
+    assert metricRegistry.meter(name(AuditRecorderImpl.class, 'dropped')).count == 1
+
+    release.countDown()
+    underTest.stop()
+    verify(auditStore, times(2)).addAll(any(List.class))
+  }
+
+  @Test
+  void 'failed batch is stored one by one'() {
+    doThrow(new IllegalStateException('boom')).when(auditStore).addAll(any(List.class))
+
+    underTest.record(makeAuditData())
+    underTest.stop()
+
+    verify(auditStore).add(any(AuditData.class))
+    verify(eventManager).post(any(AuditDataRecordedEvent.class))
+  }
 }
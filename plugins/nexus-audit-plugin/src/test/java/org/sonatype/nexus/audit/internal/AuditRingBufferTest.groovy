@@ -0,0 +1,61 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.audit.internal
+
+import org.sonatype.goodies.testsupport.TestSupport
+
+import org.junit.Test
+
+/**
+ * Tests for {@link AuditRingBuffer}.
+ */
+class AuditRingBufferTest
+    extends TestSupport
+{
+  @Test
+  void 'capacity is rounded up to a power of two'() {
+    assert new AuditRingBuffer(1).capacity() == 1
+    assert new AuditRingBuffer(5).capacity() == 8
+    assert new AuditRingBuffer(8).capacity() == 8
+  }
+
+  @Test
+  void 'offer fails when full'() {
+    def buffer = new AuditRingBuffer<String>(2)
+
+    assert buffer.offer('a')
+    assert buffer.offer('b')
+    assert !buffer.offer('c')
+    assert buffer.size() == 2
+  }
+
+  @Test
+  void 'elements are drained in order across wrap around'() {
+    def buffer = new AuditRingBuffer<Integer>(4)
+    def drained = []
+
+    (0..<10).each { i ->
+      assert buffer.offer(i)
+      if (i % 3 == 2) {
+        buffer.drainTo(drained, 3)
+      }
+    }
+    while (buffer.drainTo(drained, 2) > 0) {
+      // keep draining
+    }
+
+    assert drained == (0..<10).toList()
+    assert buffer.empty
+    assert buffer.poll() == null
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.s3.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.sonatype.nexus.common.stateguard.Guarded;
+import org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport.State.STARTED;
+
+/**
+ * Streams content into S3 using multipart uploads, reading fixed-size parts into buffers and uploading the parts
+ * concurrently. Content that fits in a single part is sent with a plain put, buffered at its actual size.
+ *
+ * Each upload has at most {@code parallelism} parts in flight, so it holds no more than {@code parallelism + 1} part
+ * buffers regardless of content size. Uploads never wait on each other: buffers are handed back to a small idle pool
+ * for reuse, but a new one is allocated whenever the pool is empty.
+ *
+ * @since 3.9
+ */
+@Named
+@Singleton
+public class MultipartUploader
+    extends StateGuardLifecycleSupport
+{
+  /**
+   * Smallest part size accepted by S3 (and compatible stores) for all but the last part of an upload.
+   */
+  static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+  private final int partSize;
+
+  private final int parallelism;
+
+  private BlockingQueue<byte[]> buffers;
+
+  private AtomicInteger allocatedBuffers;
+
+  private ExecutorService executor;
+
+  private int activeClients;
+
+  @Inject
+  public MultipartUploader(@Named("${nexus.s3.multipartupload.partSize:-5242880}") final int partSize,
+                           @Named("${nexus.s3.multipartupload.parallelism:-4}") final int parallelism)
+  {
+    checkArgument(partSize >= MIN_PART_SIZE, "Part size must be at least %s bytes", MIN_PART_SIZE);
+    checkArgument(parallelism > 0, "Parallelism must be greater than zero");
+    this.partSize = partSize;
+    this.parallelism = parallelism;
+  }
+
+  public synchronized void startUsing() throws Exception {
+    if (activeClients == 0) {
+      start();
+    }
+    activeClients++;
+  }
+
+  public synchronized void stopUsing() throws Exception {
+    checkState(activeClients > 0, "Not started");
+    activeClients--;
+    if (activeClients == 0) {
+      stop();
+    }
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    buffers = new ArrayBlockingQueue<>(maxIdleBuffers());
+    allocatedBuffers = new AtomicInteger();
+    // concurrency is bounded per upload, so the pool itself must not make uploads queue behind each other
+    executor = Executors.newCachedThreadPool(new NexusThreadFactory("s3-multipart", "s3-blobstore"));
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    executor.shutdown();
+    if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+      log.warn("Failed to terminate thread pool in allotted time");
+    }
+    executor = null;
+    buffers = null;
+    allocatedBuffers = null;
+  }
+
+  @VisibleForTesting
+  int getPartSize() {
+    return partSize;
+  }
+
+  /**
+   * Uploads the given stream to {@code bucket/key}. The stream is read to its end but not closed.
+   *
+   * On failure any partially uploaded parts are aborted so no orphaned multipart upload is left in the bucket.
+   */
+  @Timed
+  @Guarded(by = STARTED)
+  public void upload(final AmazonS3 s3, final String bucket, final String key, final InputStream contents)
+      throws IOException
+  {
+    checkNotNull(s3);
+    checkNotNull(bucket);
+    checkNotNull(key);
+    checkNotNull(contents);
+
+    // read the first part outside the buffer pool, small content then only takes the memory it needs
+    byte[] firstPart = ByteStreams.toByteArray(ByteStreams.limit(contents, partSize));
+    if (firstPart.length < partSize) {
+      log.debug("Uploading {} bytes to {} in a single request", firstPart.length, key);
+      ObjectMetadata metadata = new ObjectMetadata();
+      metadata.setContentLength(firstPart.length);
+      s3.putObject(bucket, key, new ByteArrayInputStream(firstPart), metadata);
+      return;
+    }
+
+    uploadParts(s3, bucket, key, contents, firstPart);
+  }
+
+  private void uploadParts(final AmazonS3 s3,
+                           final String bucket,
+                           final String key,
+                           final InputStream contents,
+                           final byte[] firstPart) throws IOException
+  {
+    String uploadId;
+    try {
+      uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId();
+    }
+    catch (Exception e) {
+      releaseBuffer(firstPart);
+      throw e;
+    }
+    log.debug("Started multipart upload {} to {}", uploadId, key);
+
+    Semaphore partsInFlight = new Semaphore(parallelism);
+    List<Future<PartETag>> parts = new ArrayList<>();
+    try {
+      partsInFlight.acquire();
+      parts.add(submitPart(s3, bucket, key, uploadId, 1, firstPart, partSize, partsInFlight));
+
+      int length = partSize;
+      while (length == partSize) {
+        partsInFlight.acquire();
+        byte[] buffer = acquireBuffer();
+        try {
+          length = ByteStreams.read(contents, buffer, 0, partSize);
+        }
+        catch (Exception e) {
+          releaseBuffer(buffer);
+          partsInFlight.release();
+          throw e;
+        }
+        if (length > 0) {
+          parts.add(submitPart(s3, bucket, key, uploadId, parts.size() + 1, buffer, length, partsInFlight));
+        }
+        else {
+          releaseBuffer(buffer);
+          partsInFlight.release();
+        }
+      }
+
+      List<PartETag> partETags = new ArrayList<>(parts.size());
+      for (Future<PartETag> part : parts) {
+        partETags.add(part.get());
+      }
+      s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+      log.debug("Completed multipart upload {} to {} with {} parts", uploadId, key, partETags.size());
+    }
+    catch (InterruptedException e) {
+      abort(s3, bucket, key, uploadId, parts);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted during multipart upload to " + key);
+    }
+    catch (ExecutionException e) {
+      abort(s3, bucket, key, uploadId, parts);
+      throw new IOException("Error uploading part to " + key, e.getCause());
+    }
+    catch (Exception e) {
+      abort(s3, bucket, key, uploadId, parts);
+      throw e;
+    }
+  }
+
+  private Future<PartETag> submitPart(final AmazonS3 s3,
+                                      final String bucket,
+                                      final String key,
+                                      final String uploadId,
+                                      final int partNumber,
+                                      final byte[] buffer,
+                                      final int length,
+                                      final Semaphore partsInFlight)
+  {
+    return executor.submit(() -> {
+      try {
+        UploadPartRequest request = new UploadPartRequest()
+            .withBucketName(bucket)
+            .withKey(key)
+            .withUploadId(uploadId)
+            .withPartNumber(partNumber)
+            .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+            .withPartSize(length);
+        return s3.uploadPart(request).getPartETag();
+      }
+      finally {
+        releaseBuffer(buffer);
+        partsInFlight.release();
+      }
+    });
+  }
+
+  private void abort(final AmazonS3 s3,
+                     final String bucket,
+                     final String key,
+                     final String uploadId,
+                     final List<Future<PartETag>> parts)
+  {
+    // let in-flight parts settle first, so they return their buffers and cannot land after the abort
+    for (Future<PartETag> part : parts) {
+      try {
+        part.get();
+      }
+      catch (Exception e) { // NOSONAR
+        log.trace("Part of aborted upload {} failed", uploadId, e);
+      }
+    }
+    try {
+      s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+    }
+    catch (Exception e) {
+      log.warn("Unable to abort multipart upload {} to {}", uploadId, key, log.isDebugEnabled() ? e : null);
+    }
+  }
+
+  /**
+   * Takes an idle buffer from the pool, or allocates a new one if there is none; never waits.
+   */
+  private byte[] acquireBuffer() {
+    byte[] buffer = buffers.poll();
+    if (buffer != null) {
+      return buffer;
+    }
+    allocatedBuffers.incrementAndGet();
+    return new byte[partSize];
+  }
+
+  /**
+   * Returns a buffer to the idle pool, leaving it to the garbage collector if the pool is full.
+   */
+  private void releaseBuffer(final byte[] buffer) {
+    buffers.offer(buffer);
+  }
+
+  private int maxIdleBuffers() {
+    return parallelism * 2;
+  }
+}
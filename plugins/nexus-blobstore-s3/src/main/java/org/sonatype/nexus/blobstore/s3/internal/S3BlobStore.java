@@ -12,7 +12,7 @@
  */
 package org.sonatype.nexus.blobstore.s3.internal;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -44,6 +44,7 @@ import org.sonatype.nexus.common.stateguard.Guarded;
 import org.sonatype.nexus.common.stateguard.StateGuardLifecycleSupport;
 
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectTagging;
 import com.amazonaws.services.s3.model.SetObjectTaggingRequest;
 import com.amazonaws.services.s3.model.Tag;
@@ -56,11 +57,8 @@ import com.google.common.hash.HashCode;
 import org.joda.time.DateTime;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.iterable.S3Objects;
-import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 
 import static java.lang.String.format;
 import static java.util.Collections.singletonList;
@@ -127,6 +125,8 @@ public class S3BlobStore
 
   private final BlobIdLocationResolver blobIdLocationResolver;
 
+  private final MultipartUploader uploader;
+
   private BlobStoreConfiguration blobStoreConfiguration;
 
   private S3BlobStoreMetricsStore storeMetrics;
@@ -138,10 +138,12 @@ public class S3BlobStore
   @Inject
   public S3BlobStore(final AmazonS3Factory amazonS3Factory,
                      final BlobIdLocationResolver blobIdLocationResolver,
+                     final MultipartUploader uploader,
                      final S3BlobStoreMetricsStore storeMetrics)
   {
     this.amazonS3Factory = checkNotNull(amazonS3Factory);
     this.blobIdLocationResolver = checkNotNull(blobIdLocationResolver);
+    this.uploader = checkNotNull(uploader);
     this.storeMetrics = checkNotNull(storeMetrics);
   }
 
@@ -163,12 +165,14 @@ public class S3BlobStore
 	   storeMetrics.setBucket(getConfiguredBucket());
 	   storeMetrics.setS3(s3);
 	   storeMetrics.start();
+	   uploader.startUsing();
   }
 
   @Override
   protected void doStop() throws Exception {
     liveBlobs = null;
     storeMetrics.stop();
+    uploader.stopUsing();
   }
 
   /**
@@ -199,14 +203,8 @@ public class S3BlobStore
 
     return create(headers, destination -> {
         try (InputStream data = blobData) {
-          //终于对流有了新的认识，这里限制jar包的大小为1m+data的大小，后续有需求在进行变更
-          BufferedInputStream bis = new BufferedInputStream(data,104857600);
-          //BufferedInputStream bis = new BufferedInputStream(data,data.available());
-          MetricsInputStream input = new MetricsInputStream(bis);
-          //TransferManager transferManager = TransferManagerBuilder.standard().withS3Client(s3).build();
-          //transferManager.upload(getConfiguredBucket(), destination, input, new ObjectMetadata())
-          //    .waitForCompletion();
-          s3.putObject(getConfiguredBucket(), destination, input, new ObjectMetadata());
+          MetricsInputStream input = new MetricsInputStream(data);
+          uploader.upload(s3, getConfiguredBucket(), destination, input);
           return input.getMetrics();
         } catch (Exception e) {
           throw new BlobStoreException("error uploading blob", e, null);
@@ -570,6 +568,19 @@ public class S3BlobStore
       S3Object object = s3.getObject(getConfiguredBucket(), contentPath(getId()));
       return object.getObjectContent();
     }
+
+    @Override
+    public InputStream getInputStream(final long offset, final long length) {
+      checkArgument(offset >= 0, "Offset must not be negative");
+      checkArgument(length >= 0, "Length must not be negative");
+      if (length == 0) {
+        // an empty range cannot be expressed as a ranged GET
+        return new ByteArrayInputStream(new byte[0]);
+      }
+      GetObjectRequest request = new GetObjectRequest(getConfiguredBucket(), contentPath(getId()))
+          .withRange(offset, offset + length - 1);
+      return s3.getObject(request).getObjectContent();
+    }
   }
 
   private interface BlobIngester {
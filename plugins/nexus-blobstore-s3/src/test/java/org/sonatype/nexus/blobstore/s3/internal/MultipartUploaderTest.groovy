@@ -0,0 +1,178 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.s3.internal
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import com.amazonaws.services.s3.AmazonS3
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult
+import com.amazonaws.services.s3.model.PartETag
+import com.amazonaws.services.s3.model.UploadPartRequest
+import com.amazonaws.services.s3.model.UploadPartResult
+import spock.lang.Specification
+
+/**
+ * {@link MultipartUploader} tests.
+ */
+class MultipartUploaderTest
+    extends Specification
+{
+  static final int PART_SIZE = MultipartUploader.MIN_PART_SIZE
+
+  AmazonS3 s3 = Mock()
+
+  MultipartUploader uploader = new MultipartUploader(PART_SIZE, 2)
+
+  def setup() {
+    uploader.start()
+  }
+
+  def cleanup() {
+    uploader.stop()
+  }
+
+  def 'content smaller than a part is sent with a single put'() {
+    given: 'a small stream'
+      def contents = new ByteArrayInputStream('hello world'.bytes)
+
+    when: 'it is uploaded'
+      uploader.upload(s3, 'mybucket', 'content/test.bytes', contents)
+
+    then: 'a single put is issued with the exact length'
+      1 * s3.putObject('mybucket', 'content/test.bytes', _, _) >> { bucket, key, input, metadata ->
+        assert metadata.contentLength == 11
+        assert input.text == 'hello world'
+      }
+      0 * s3.initiateMultipartUpload(_)
+  }
+
+  def 'large content is uploaded in ordered parts'() {
+    given: 'a stream spanning two and a half parts'
+      def size = PART_SIZE * 2 + PART_SIZE.intdiv(2)
+      def contents = new ByteArrayInputStream(new byte[size])
+      def received = Collections.synchronizedMap([:])
+
+    when: 'it is uploaded'
+      uploader.upload(s3, 'mybucket', 'content/big.bytes', contents)
+
+    then: 'the parts are uploaded and completed in order'
+      1 * s3.initiateMultipartUpload(_) >> new InitiateMultipartUploadResult(uploadId: 'upload-1')
+      3 * s3.uploadPart(_) >> { UploadPartRequest request ->
+        assert request.uploadId == 'upload-1'
+        received[request.partNumber] = request.partSize
+        new UploadPartResult(partNumber: request.partNumber, ETag: "etag-${request.partNumber}")
+      }
+      1 * s3.completeMultipartUpload(_) >> { CompleteMultipartUploadRequest request ->
+        assert request.partETags*.partNumber == [1, 2, 3]
+        assert request.partETags*.ETag == ['etag-1', 'etag-2', 'etag-3']
+        null
+      }
+      0 * s3.putObject(*_)
+      0 * s3.abortMultipartUpload(_)
+      received == [1: (long) PART_SIZE, 2: (long) PART_SIZE, 3: (long) PART_SIZE.intdiv(2)]
+  }
+
+  def 'failed part aborts the upload'() {
+    given: 'a stream spanning two parts'
+      def contents = new ByteArrayInputStream(new byte[PART_SIZE * 2])
+
+    when: 'one part fails to upload'
+      uploader.upload(s3, 'mybucket', 'content/big.bytes', contents)
+
+    then: 'the multipart upload is aborted and the failure surfaces'
+      1 * s3.initiateMultipartUpload(_) >> new InitiateMultipartUploadResult(uploadId: 'upload-2')
+      2 * s3.uploadPart(_) >> { UploadPartRequest request ->
+        if (request.partNumber == 2) {
+          throw new IllegalStateException('boom')
+        }
+        new UploadPartResult(partNumber: request.partNumber, ETag: 'etag')
+      }
+      1 * s3.abortMultipartUpload({ it.uploadId == 'upload-2' })
+      0 * s3.completeMultipartUpload(_)
+      thrown(IOException)
+  }
+
+  def 'buffers are reused across uploads'() {
+    given: 'a stream spanning several parts'
+      def contents = { new ByteArrayInputStream(new byte[PART_SIZE * 5]) }
+      s3.initiateMultipartUpload(_) >> new InitiateMultipartUploadResult(uploadId: 'upload-3')
+      s3.uploadPart(_) >> { UploadPartRequest request -> new UploadPartResult(partNumber: request.partNumber) }
+
+    when: 'it is uploaded repeatedly'
+      3.times { uploader.upload(s3, 'mybucket', 'content/big.bytes', contents()) }
+
+    then: 'no more than the pooled buffers are ever allocated'
+      uploader.allocatedBuffers.get() <= 4
+  }
+
+  def 'uploads stalled on their client streams do not hold up other uploads'() {
+    given: 'more uploads blocked reading their content than there are pooled buffers'
+      def unblock = new CountDownLatch(1)
+      def stalled = (1..6).collect { n ->
+        def slowClient = new InputStream() {
+          @Override
+          int read() {
+            unblock.await()
+            return -1
+          }
+        }
+        Thread.start { uploader.upload(s3, 'mybucket', "content/slow-${n}.bytes", slowClient) }
+      }
+
+    when: 'another small blob is uploaded'
+      def fast = Thread.start {
+        uploader.upload(s3, 'mybucket', 'content/fast.bytes', new ByteArrayInputStream('hello'.bytes))
+      }
+      fast.join(5000)
+
+    then: 'it completes while the others are still waiting'
+      !fast.alive
+      1 * s3.putObject('mybucket', 'content/fast.bytes', _, _)
+
+    cleanup:
+      unblock.countDown()
+      stalled*.join(5000)
+  }
+
+  def 'parallelism is bounded per upload rather than across uploads'() {
+    given: 'more concurrent multipart uploads than the parallelism of a single upload'
+      def uploads = 5
+      def allInFlight = new CountDownLatch(uploads)
+      def waited = Collections.synchronizedList([])
+      s3.initiateMultipartUpload(_) >> { InitiateMultipartUploadRequest request ->
+        new InitiateMultipartUploadResult(uploadId: request.key)
+      }
+      s3.uploadPart(_) >> { UploadPartRequest request ->
+        if (request.partNumber == 1) {
+          allInFlight.countDown()
+          waited << allInFlight.await(5, TimeUnit.SECONDS)
+        }
+        new UploadPartResult(partNumber: request.partNumber, ETag: 'etag')
+      }
+
+    when: 'they are uploaded at the same time'
+      def threads = (1..uploads).collect { n ->
+        Thread.start {
+          uploader.upload(s3, 'mybucket', "content/big-${n}.bytes", new ByteArrayInputStream(new byte[PART_SIZE * 2]))
+        }
+      }
+      threads*.join(10_000)
+
+    then: 'the first part of every upload was in flight at once'
+      waited.size() == uploads
+      waited.every()
+  }
+}
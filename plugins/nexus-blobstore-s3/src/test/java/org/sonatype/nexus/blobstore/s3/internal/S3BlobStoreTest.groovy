@@ -40,9 +40,11 @@ class S3BlobStoreTest
 
   S3BlobStoreMetricsStore storeMetrics = Mock()
 
+  MultipartUploader uploader = Mock()
+
   AmazonS3 s3 = Mock()
 
-  S3BlobStore blobStore = new S3BlobStore(amazonS3Factory, locationResolver, storeMetrics)
+  S3BlobStore blobStore = new S3BlobStore(amazonS3Factory, locationResolver, uploader, storeMetrics)
 
   def config = new BlobStoreConfiguration()
 
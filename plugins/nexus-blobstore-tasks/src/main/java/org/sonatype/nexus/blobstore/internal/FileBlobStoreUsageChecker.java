@@ -12,7 +12,11 @@
  */
 package org.sonatype.nexus.blobstore.internal;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
 
 import javax.inject.Inject;
@@ -21,20 +25,30 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.sonatype.nexus.blobstore.api.BlobId;
-import org.sonatype.nexus.blobstore.api.BlobRef;
 import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.blobstore.api.BlobStoreUsageChecker;
 import org.sonatype.nexus.orient.DatabaseInstance;
 import org.sonatype.nexus.repository.storage.ComponentDatabase;
 
 import com.codahale.metrics.annotation.Timed;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.P_BLOB_KEY;
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.blobKey;
+import static org.sonatype.nexus.repository.storage.MetadataNodeEntityAdapter.P_NAME;
+
 /**
  * Check if a blob is reference in the corresponding metadata.
  *
+ * Blobs are looked up by exact match on the indexed blob key of assets, which holds the blob store and blob id of the
+ * asset's blob ref, so the node which wrote the blob doesn't matter. Checks of many blobs are resolved in batches of
+ * {@code nexus.blobstore.usageChecker.batchSize} blobs per query.
+ *
  * @since 3.6
  */
 @Named
@@ -42,28 +56,59 @@ import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 public class FileBlobStoreUsageChecker
     implements BlobStoreUsageChecker
 {
-  private static final String ANY_NODE = "%";
+  private final OSQLSynchQuery<ODocument> assetBlobKeyQuery = new OSQLSynchQuery<>(
+      "SELECT FROM asset WHERE blob_key = ? AND name = ? LIMIT 1"
+  );
 
-  private final OSQLSynchQuery<ODocument> assetBlobRefQuery = new OSQLSynchQuery<>(
-      "SELECT FROM asset WHERE name = ? AND blob_ref LIKE ? LIMIT 1"
+  private final OSQLSynchQuery<ODocument> assetBlobKeysQuery = new OSQLSynchQuery<>(
+      "SELECT name, blob_key FROM asset WHERE blob_key IN :keys"
   );
 
   private final Supplier<ODatabaseDocumentTx> txSupplier;
 
+  private final int batchSize;
+
   @Inject
-  public FileBlobStoreUsageChecker(@Named(ComponentDatabase.NAME) final Provider<DatabaseInstance> databaseInstanceProvider)
+  public FileBlobStoreUsageChecker(@Named(ComponentDatabase.NAME) final Provider<DatabaseInstance> databaseInstanceProvider,
+                                   @Named("${nexus.blobstore.usageChecker.batchSize:-500}") final int batchSize)
   {
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
     this.txSupplier = () -> databaseInstanceProvider.get().acquire();
+    this.batchSize = batchSize;
   }
 
   @Override
   @Timed
   public boolean test(final BlobStore blobStore, final BlobId blobId, final String blobName) {
-    BlobRef blobRef = new BlobRef(ANY_NODE, blobStore.getBlobStoreConfiguration().getName(), blobId.asUniqueString());
+    String blobKey = blobKey(blobStore.getBlobStoreConfiguration().getName(), blobId.asUniqueString());
     try (ODatabaseDocumentTx tx = txSupplier.get()) {
       tx.begin();
-      List<ODocument> results = tx.command(assetBlobRefQuery).execute(blobName, blobRef.toString());
+      List<ODocument> results = tx.command(assetBlobKeyQuery).execute(blobKey, blobName);
       return !results.isEmpty();
     }
   }
+
+  @Override
+  @Timed
+  public Set<BlobId> test(final BlobStore blobStore, final Map<BlobId, String> blobNames) {
+    String blobStoreName = blobStore.getBlobStoreConfiguration().getName();
+    Set<BlobId> inUse = new HashSet<>();
+    try (ODatabaseDocumentTx tx = txSupplier.get()) {
+      tx.begin();
+      for (List<BlobId> batch : Iterables.partition(blobNames.keySet(), batchSize)) {
+        Map<String, BlobId> blobIds = new HashMap<>(batch.size());
+        for (BlobId blobId : batch) {
+          blobIds.put(blobKey(blobStoreName, blobId.asUniqueString()), blobId);
+        }
+        List<ODocument> results = tx.command(assetBlobKeysQuery).execute(ImmutableMap.of("keys", blobIds.keySet()));
+        for (ODocument result : results) {
+          BlobId blobId = blobIds.get(result.<String>field(P_BLOB_KEY));
+          if (blobId != null && blobNames.get(blobId).equals(result.field(P_NAME))) {
+            inUse.add(blobId);
+          }
+        }
+      }
+    }
+    return inUse;
+  }
 }
@@ -73,18 +73,64 @@ public abstract class BaseRestoreBlobStrategy<T>
   {
     RestoreBlobData blobData = new RestoreBlobData(blob, properties, blobStoreName, repositoryManager);
     Optional<StorageFacet> storageFacet = blobData.getRepository().optionalFacet(StorageFacet.class);
-    T restoreData = createRestoreData(blobData);
+    if (!storageFacet.isPresent()) {
+      logSkipped(blobData);
+      return;
+    }
 
-    if (storageFacet.isPresent() && canAttemptRestore(restoreData)) {
-      doRestore(storageFacet.get(), blobData, restoreData, isDryRun);
+    UnitOfWork.begin(storageFacet.get().txSupplier());
+    try {
+      maybeRestore(blobData, isDryRun);
+    }
+    finally {
+      UnitOfWork.end();
+    }
+  }
+
+  /**
+   * Restores the batch re-using a single database connection, while still committing each blob separately.
+   *
+   * @since 3.9
+   */
+  @Override
+  public void restore(final List<RestoreBlobData> blobs, final boolean isDryRun) {
+    if (blobs.isEmpty()) {
+      return;
+    }
+    Optional<StorageFacet> storageFacet = blobs.get(0).getRepository().optionalFacet(StorageFacet.class);
+    if (!storageFacet.isPresent()) {
+      blobs.forEach(this::logSkipped);
+      return;
+    }
+
+    UnitOfWork.beginBatch(storageFacet.get().txSupplier());
+    try {
+      for (RestoreBlobData blobData : blobs) {
+        maybeRestore(blobData, isDryRun);
+      }
+    }
+    finally {
+      UnitOfWork.end();
+    }
+  }
+
+  private void maybeRestore(final RestoreBlobData blobData, final boolean isDryRun) {
+    T restoreData = createRestoreData(blobData);
+    if (canAttemptRestore(restoreData)) {
+      doRestore(blobData, restoreData, isDryRun);
     }
     else {
-      log.debug("Skipping asset, blob store: {}, repository: {}, blob name: {}, blob id: {}",
-          blobStoreName, blobData.getRepository().getName(), blobData.getBlobName(), blob.getId());
+      logSkipped(blobData);
     }
   }
 
-  private void doRestore(StorageFacet storageFacet, RestoreBlobData blobData, T restoreData, boolean isDryRun) {
+  private void logSkipped(final RestoreBlobData blobData) {
+    log.debug("Skipping asset, blob store: {}, repository: {}, blob name: {}, blob id: {}",
+        blobData.getBlobStoreName(), blobData.getRepository().getName(), blobData.getBlobName(),
+        blobData.getBlob().getId());
+  }
+
+  private void doRestore(RestoreBlobData blobData, T restoreData, boolean isDryRun) {
     String logPrefix = isDryRun ? dryRunPrefix.get() : "";
     String path = getAssetPath(restoreData);
     String blobStoreName = blobData.getBlobStoreName();
@@ -92,7 +138,6 @@ public abstract class BaseRestoreBlobStrategy<T>
     String blobName = blobData.getBlobName();
     Blob blob = blobData.getBlob();
 
-    UnitOfWork.begin(storageFacet.txSupplier());
     try {
       if (assetExists(restoreData)) {
         log.debug(
@@ -118,9 +163,6 @@ public abstract class BaseRestoreBlobStrategy<T>
       log.error("Error while restoring asset: blob store: {}, repository: {}, path: {}, blob name: {}, blob id: {}",
           blobStoreName, repoName, path, blobName, blob.getId(), e);
     }
-    finally {
-      UnitOfWork.end();
-    }
   }
 
   /**
@@ -65,6 +65,13 @@ public class RestoreBlobData
     return blobStoreName;
   }
 
+  /**
+   * @since 3.9
+   */
+  public Properties getProperties() {
+    return blobProperties;
+  }
+
   public Repository getRepository() {
     return repository;
   }
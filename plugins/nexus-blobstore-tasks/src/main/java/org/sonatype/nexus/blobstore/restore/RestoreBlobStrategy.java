@@ -12,6 +12,7 @@
  */
 package org.sonatype.nexus.blobstore.restore;
 
+import java.util.List;
 import java.util.Properties;
 
 import org.sonatype.nexus.blobstore.api.Blob;
@@ -38,4 +39,18 @@ public interface RestoreBlobStrategy
    * @param isDryRun if {@code true}, no lasting changes will be made, only logged
    */
   void restore(Properties properties, Blob blob, String blobStoreName, boolean isDryRun);
+
+  /**
+   * Restores a batch of blobs from the same repository. By default each blob is restored in turn.
+   *
+   * @since 3.9
+   *
+   * @param blobs being restored, all from the same repository
+   * @param isDryRun if {@code true}, no lasting changes will be made, only logged
+   */
+  default void restore(List<RestoreBlobData> blobs, boolean isDryRun) {
+    for (RestoreBlobData blobData : blobs) {
+      restore(blobData.getProperties(), blobData.getBlob(), blobData.getBlobStoreName(), isDryRun);
+    }
+  }
 }
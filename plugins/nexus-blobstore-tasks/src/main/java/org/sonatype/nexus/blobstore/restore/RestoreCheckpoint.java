@@ -0,0 +1,82 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.restore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.DSYNC;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+
+/**
+ * Durable record of the blob store partitions a {@link RestoreMetadataTask} has finished with, so an interrupted run
+ * can resume where it left off.
+ *
+ * The first line holds the options of the run; the checkpoint is discarded when resumed with different options. Each
+ * finished partition is appended as a line of its own, and a line left incomplete by a crash is ignored.
+ *
+ * @since 3.9
+ */
+class RestoreCheckpoint
+{
+  private static final String NEWLINE = "\n";
+
+  private final Path file;
+
+  private final Set<String> completed;
+
+  private RestoreCheckpoint(final Path file, final Set<String> completed) {
+    this.file = checkNotNull(file);
+    this.completed = Collections.unmodifiableSet(completed);
+  }
+
+  /**
+   * Opens the checkpoint in the given file, starting afresh if it doesn't exist or was written for other options.
+   */
+  static RestoreCheckpoint open(final Path file, final String options) throws IOException {
+    if (Files.exists(file)) {
+      List<String> lines = Arrays.asList(new String(Files.readAllBytes(file), UTF_8).split(NEWLINE, -1));
+      // the last element follows the final newline, so is either empty or an incomplete line
+      if (lines.size() > 1 && options.equals(lines.get(0))) {
+        return new RestoreCheckpoint(file, new HashSet<>(lines.subList(1, lines.size() - 1)));
+      }
+    }
+    Files.write(file, (options + NEWLINE).getBytes(UTF_8), CREATE, TRUNCATE_EXISTING, DSYNC);
+    return new RestoreCheckpoint(file, new HashSet<>());
+  }
+
+  /**
+   * Returns the partitions which were finished when the checkpoint was opened.
+   */
+  Set<String> getCompleted() {
+    return completed;
+  }
+
+  synchronized void markCompleted(final String partition) throws IOException {
+    Files.write(file, (partition + NEWLINE).getBytes(UTF_8), APPEND, DSYNC);
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(file);
+  }
+}
@@ -12,41 +12,41 @@
  */
 package org.sonatype.nexus.blobstore.restore;
 
+import java.nio.file.Path;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Properties;
 import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.sonatype.nexus.blobstore.api.Blob;
-import org.sonatype.nexus.blobstore.api.BlobAttributes;
-import org.sonatype.nexus.blobstore.api.BlobId;
 import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.blobstore.api.BlobStoreManager;
 import org.sonatype.nexus.blobstore.api.BlobStoreUsageChecker;
-import org.sonatype.nexus.blobstore.file.FileBlobAttributes;
 import org.sonatype.nexus.blobstore.file.FileBlobStore;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
 import org.sonatype.nexus.common.log.DryRunPrefix;
-import org.sonatype.nexus.logging.task.ProgressLogIntervalHelper;
-import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.manager.RepositoryManager;
 import org.sonatype.nexus.repository.types.GroupType;
 import org.sonatype.nexus.scheduling.Cancelable;
 import org.sonatype.nexus.scheduling.TaskSupport;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.sonatype.nexus.blobstore.api.BlobAttributesConstants.HEADER_PREFIX;
 import static org.sonatype.nexus.blobstore.restore.DefaultIntegrityCheckStrategy.DEFAULT_NAME;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.BLOB_STORE_NAME_FIELD_ID;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.DRY_RUN;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.INTEGRITY_CHECK;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.RESTORE_BLOBS;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.UNDELETE_BLOBS;
-import static org.sonatype.nexus.repository.storage.Bucket.REPO_NAME_HEADER;
 
 /**
+ * Restores metadata from, and un-deletes, the blobs of a blob store using a {@link RestorePipeline}, optionally
+ * followed by an integrity check.
+ *
+ * Each stage of the pipeline runs on {@code nexus.blobstore.restore.threads} threads, restoring blobs in batches of
+ * up to {@code nexus.blobstore.restore.batchSize}. Runs which are not dry runs resume from the checkpoint left by an
+ * earlier run with the same options that was interrupted or partly failed.
+ *
  * @since 3.4
  */
 @Named
@@ -54,6 +54,10 @@ public class RestoreMetadataTask
     extends TaskSupport
     implements Cancelable
 {
+  private static final String CHECKPOINT_DIRECTORY = "restore";
+
+  private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
   private final BlobStoreManager blobStoreManager;
 
   private final RepositoryManager repositoryManager;
@@ -68,14 +72,25 @@ public class RestoreMetadataTask
 
   private final IntegrityCheckStrategy defaultIntegrityCheckStrategy;
 
+  private final ApplicationDirectories applicationDirectories;
+
+  private final int threads;
+
+  private final int batchSize;
+
   @Inject
   public RestoreMetadataTask(final BlobStoreManager blobStoreManager,
                              final RepositoryManager repositoryManager,
                              final Map<String, RestoreBlobStrategy> restoreBlobStrategies,
                              final BlobStoreUsageChecker blobStoreUsageChecker,
                              final DryRunPrefix dryRunPrefix,
-                             final Map<String, IntegrityCheckStrategy> integrityCheckStrategies)
+                             final Map<String, IntegrityCheckStrategy> integrityCheckStrategies,
+                             final ApplicationDirectories applicationDirectories,
+                             @Named("${nexus.blobstore.restore.threads:-8}") final int threads,
+                             @Named("${nexus.blobstore.restore.batchSize:-100}") final int batchSize)
   {
+    checkArgument(threads > 0, "Threads must be greater than zero");
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
     this.blobStoreManager = checkNotNull(blobStoreManager);
     this.repositoryManager = checkNotNull(repositoryManager);
     this.restoreBlobStrategies = checkNotNull(restoreBlobStrategies);
@@ -83,6 +98,9 @@ public class RestoreMetadataTask
     this.dryRunPrefix = checkNotNull(dryRunPrefix);
     this.defaultIntegrityCheckStrategy = checkNotNull(integrityCheckStrategies.get(DEFAULT_NAME));
     this.integrityCheckStrategies = checkNotNull(integrityCheckStrategies);
+    this.applicationDirectories = checkNotNull(applicationDirectories);
+    this.threads = threads;
+    this.batchSize = batchSize;
   }
 
   @Override
@@ -106,6 +124,7 @@ public class RestoreMetadataTask
   }
 
   private void restore(final String blobStoreName, final boolean restore, final boolean undelete, final boolean dryRun) // NOSONAR
+      throws Exception
   {
     if (!restore && !undelete) {
       log.warn("No repair/restore operations selected");
@@ -115,47 +134,38 @@ public class RestoreMetadataTask
     String logPrefix = dryRun ? dryRunPrefix.get() : "";
     BlobStore store = blobStoreManager.get(blobStoreName);
 
-    ProgressLogIntervalHelper progressLogger = new ProgressLogIntervalHelper(log, 60);
-    long processed = 0;
-    long undeleted = 0;
-
     if (dryRun) {
       log.info("{}Actions will be logged, but no changes will be made.", logPrefix);
     }
     if (store instanceof FileBlobStore) {
-      FileBlobStore fileBlobStore = (FileBlobStore) store;
-      for (BlobId blobId : (Iterable<BlobId>)fileBlobStore.getBlobIdStream()::iterator) {
-        Optional<Context> context = buildContext(blobStoreName, fileBlobStore, blobId);
-        if (context.isPresent()) {
-          Context c =  context.get();
-          if (restore && c.restoreBlobStrategy != null && !c.blobAttributes.isDeleted()) {
-            c.restoreBlobStrategy.restore(c.properties, c.blob, c.blobStoreName, dryRun);
-          }
-          if (undelete &&
-              fileBlobStore
-                  .maybeUndeleteBlob(blobStoreUsageChecker, c.blobId, (FileBlobAttributes) c.blobAttributes, dryRun))
-          {
-            undeleted++;
-          }
-        }
-
-        processed++;
+      // dry runs make no changes, so must neither resume from nor leave behind a checkpoint
+      RestoreCheckpoint checkpoint = dryRun ? null : RestoreCheckpoint.open(checkpointFile(blobStoreName),
+          String.format("restore=%s,undelete=%s", restore, undelete));
 
-        progressLogger.info("{}Elapsed time: {}, processed: {}, un-deleted: {}", logPrefix, progressLogger.getElapsed(),
-            processed, undeleted);
+      boolean completed = new RestorePipeline((FileBlobStore) store, blobStoreName, repositoryManager,
+          restoreBlobStrategies, blobStoreUsageChecker, restore, undelete, dryRun, logPrefix, threads, batchSize,
+          checkpoint).run(this::isCanceled);
 
-        if (isCanceled()) {
-          break;
+      if (checkpoint != null) {
+        if (completed) {
+          checkpoint.delete();
+        }
+        else {
+          log.warn("Restore of blob store {} did not complete, the next run will resume from where it left off",
+              blobStoreName);
         }
       }
-
-      progressLogger.flush();
     }
     else {
       log.error("Blob store does not support rebuild: {}", blobStoreName);
     }
   }
 
+  private Path checkpointFile(final String blobStoreName) {
+    return applicationDirectories.getWorkDirectory(CHECKPOINT_DIRECTORY).toPath()
+        .resolve(blobStoreName + CHECKPOINT_SUFFIX);
+  }
+
   private void blobStoreIntegrityCheck(final boolean integrityCheck, final String blobStoreId) {
     if (!integrityCheck) {
       log.warn("Integrity check operation not selected");
@@ -176,97 +186,4 @@ public class RestoreMetadataTask
             .check(repository, blobStore, this::isCanceled)
         );
   }
-
-  private Optional<Context> buildContext(final String blobStoreName, final FileBlobStore fileBlobStore,
-                                                                    final BlobId blobId)
-  {
-    return Optional.of(new Context(blobStoreName, fileBlobStore, blobId))
-        .map(c -> c.blob(c.fileBlobStore.get(c.blobId, true)))
-        .map(c -> c.blobAttributes(c.fileBlobStore.getBlobAttributes(c.blobId)))
-        .map(c -> c.properties(c.blobAttributes.getProperties()))
-        .map(c -> c.repositoryName(c.properties.getProperty(HEADER_PREFIX + REPO_NAME_HEADER)))
-        .map(c -> c.repository(repositoryManager.get(c.repositoryName)))
-        .map(c -> c.restoreBlobStrategy(restoreBlobStrategies.get(c.repository.getFormat().getValue())));
-  }
-
-  private static class Context {
-    final String blobStoreName;
-
-    final FileBlobStore fileBlobStore;
-
-    final BlobId blobId;
-
-    Blob blob;
-
-    BlobAttributes blobAttributes;
-
-    Properties properties;
-
-    String repositoryName;
-
-    Repository repository;
-
-    RestoreBlobStrategy restoreBlobStrategy;
-
-    Context(final String blobStoreName, final FileBlobStore fileBlobStore, final BlobId blobId) {
-      this.blobStoreName = checkNotNull(blobStoreName);
-      this.fileBlobStore = checkNotNull(fileBlobStore);
-      this.blobId = checkNotNull(blobId);
-    }
-
-    Context blob(final Blob blob) {
-      if (blob == null) {
-        return null;
-      }
-      else {
-        this.blob = blob;
-        return this;
-      }
-    }
-
-    Context blobAttributes(final BlobAttributes blobAttributes) {
-      if (blobAttributes == null) {
-        return null;
-      }
-      else {
-        this.blobAttributes = blobAttributes;
-        return this;
-      }
-    }
-
-    Context properties(final Properties properties) {
-      if (properties == null) {
-        return null;
-      }
-      else {
-        this.properties = properties;
-        return this;
-      }
-    }
-
-    Context repositoryName(final String repositoryName) {
-      if (repositoryName == null) {
-        return null;
-      }
-      else {
-        this.repositoryName = repositoryName;
-        return this;
-      }
-    }
-
-    Context repository(final Repository repository) {
-      if (repository == null) {
-        return null;
-      }
-      else {
-        this.repository = repository;
-        return this;
-      }
-    }
-
-    Context restoreBlobStrategy(final RestoreBlobStrategy restoreBlobStrategy) {
-      this.restoreBlobStrategy = restoreBlobStrategy;
-      return this;
-    }
-  }
 }
@@ -0,0 +1,513 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.blobstore.restore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import org.sonatype.goodies.common.ComponentSupport;
+import org.sonatype.nexus.blobstore.api.Blob;
+import org.sonatype.nexus.blobstore.api.BlobAttributes;
+import org.sonatype.nexus.blobstore.api.BlobId;
+import org.sonatype.nexus.blobstore.api.BlobStoreUsageChecker;
+import org.sonatype.nexus.blobstore.file.FileBlobAttributes;
+import org.sonatype.nexus.blobstore.file.FileBlobStore;
+import org.sonatype.nexus.logging.task.ProgressLogIntervalHelper;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.manager.RepositoryManager;
+import org.sonatype.nexus.thread.NexusThreadFactory;
+
+import org.slf4j.MDC;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonatype.nexus.blobstore.api.BlobAttributesConstants.HEADER_PREFIX;
+import static org.sonatype.nexus.blobstore.api.BlobStore.BLOB_NAME_HEADER;
+import static org.sonatype.nexus.repository.storage.Bucket.REPO_NAME_HEADER;
+
+/**
+ * Staged pipeline which restores metadata from, and un-deletes, the blobs of a {@link FileBlobStore}.
+ *
+ * Partitions of the blob store are walked in parallel. The blob ids found pass through bounded queues to workers which
+ * load their attributes, and then to workers which restore them in per-repository batches and un-delete them with
+ * bulk usage checks. A full queue holds up the stage feeding it, so memory use stays bounded whatever the size of the
+ * blob store.
+ *
+ * Partitions are recorded in the optional {@link RestoreCheckpoint} once all their blobs have been processed without
+ * failure, so an interrupted or partly failed run resumes with the partitions still outstanding.
+ *
+ * @since 3.9
+ */
+class RestorePipeline
+    extends ComponentSupport
+{
+  private final FileBlobStore fileBlobStore;
+
+  private final String blobStoreName;
+
+  private final RepositoryManager repositoryManager;
+
+  private final Map<String, RestoreBlobStrategy> restoreBlobStrategies;
+
+  private final BlobStoreUsageChecker blobStoreUsageChecker;
+
+  private final boolean restore;
+
+  private final boolean undelete;
+
+  private final boolean dryRun;
+
+  private final String logPrefix;
+
+  private final int threads;
+
+  private final int batchSize;
+
+  private final RestoreCheckpoint checkpoint;
+
+  private final BlockingQueue<Item> found;
+
+  private final BlockingQueue<Item> loaded;
+
+  private final AtomicInteger partitionsWalked = new AtomicInteger();
+
+  private final AtomicLong blobsFound = new AtomicLong();
+
+  private final AtomicLong blobsLoaded = new AtomicLong();
+
+  private final AtomicLong blobsProcessed = new AtomicLong();
+
+  private final AtomicLong blobsUndeleted = new AtomicLong();
+
+  private final AtomicLong blobsFailed = new AtomicLong();
+
+  private final Map<String, String> mdc;
+
+  /**
+   * Marks the end of a queue; a worker taking it puts it back for the next worker and finishes.
+   */
+  private final Item end = new Item(null, null);
+
+  RestorePipeline(final FileBlobStore fileBlobStore,
+                  final String blobStoreName,
+                  final RepositoryManager repositoryManager,
+                  final Map<String, RestoreBlobStrategy> restoreBlobStrategies,
+                  final BlobStoreUsageChecker blobStoreUsageChecker,
+                  final boolean restore,
+                  final boolean undelete,
+                  final boolean dryRun,
+                  final String logPrefix,
+                  final int threads,
+                  final int batchSize,
+                  @Nullable final RestoreCheckpoint checkpoint)
+  {
+    checkArgument(threads > 0, "Threads must be greater than zero");
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
+    this.fileBlobStore = checkNotNull(fileBlobStore);
+    this.blobStoreName = checkNotNull(blobStoreName);
+    this.repositoryManager = checkNotNull(repositoryManager);
+    this.restoreBlobStrategies = checkNotNull(restoreBlobStrategies);
+    this.blobStoreUsageChecker = checkNotNull(blobStoreUsageChecker);
+    this.restore = restore;
+    this.undelete = undelete;
+    this.dryRun = dryRun;
+    this.logPrefix = checkNotNull(logPrefix);
+    this.threads = threads;
+    this.batchSize = batchSize;
+    this.checkpoint = checkpoint;
+    this.found = new ArrayBlockingQueue<>(threads * batchSize);
+    this.loaded = new ArrayBlockingQueue<>(threads * batchSize);
+    this.mdc = MDC.getCopyOfContextMap();
+  }
+
+  /**
+   * Runs the pipeline to completion, or until cancelled.
+   *
+   * @return {@code true} if every outstanding partition was processed without failure
+   */
+  boolean run(final BooleanSupplier isCanceled) throws InterruptedException {
+    List<String> partitions = new ArrayList<>(fileBlobStore.getBlobIdPartitions());
+    if (checkpoint != null && !checkpoint.getCompleted().isEmpty()) {
+      partitions.removeAll(checkpoint.getCompleted());
+      log.info("{}Resuming from checkpoint, {} partitions of blob store {} remaining", logPrefix, partitions.size(),
+          blobStoreName);
+    }
+
+    ProgressLogIntervalHelper progressLogger = new ProgressLogIntervalHelper(log, 60);
+    ExecutorService walkers = newPool("walk", Math.max(1, Math.min(threads, partitions.size())));
+    ExecutorService loaders = newPool("load", threads);
+    ExecutorService processors = newPool("process", threads);
+    try {
+      List<Future<?>> walks = new ArrayList<>(partitions.size());
+      for (String partition : partitions) {
+        walks.add(walkers.submit(withMdc(() -> walk(new Partition(partition)))));
+      }
+      List<Future<?>> loads = submit(loaders, this::load);
+      List<Future<?>> processes = submit(processors, this::process);
+
+      if (!await(walks, partitions.size(), isCanceled, progressLogger)) {
+        return false;
+      }
+      found.put(end);
+      if (!await(loads, partitions.size(), isCanceled, progressLogger)) {
+        return false;
+      }
+      loaded.put(end);
+      if (!await(processes, partitions.size(), isCanceled, progressLogger)) {
+        return false;
+      }
+      logProgress(progressLogger, partitions.size());
+      return blobsFailed.get() == 0;
+    }
+    finally {
+      processors.shutdownNow();
+      loaders.shutdownNow();
+      walkers.shutdownNow();
+      progressLogger.flush();
+    }
+  }
+
+  private ExecutorService newPool(final String stage, final int size) {
+    return Executors.newFixedThreadPool(size, new NexusThreadFactory("restore-" + stage, "restore-metadata"));
+  }
+
+  private List<Future<?>> submit(final ExecutorService executor, final Runnable worker) {
+    List<Future<?>> futures = new ArrayList<>(threads);
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(withMdc(worker)));
+    }
+    return futures;
+  }
+
+  /**
+   * Carries the task's logging context over to the pipeline threads, so their output ends up in the task log.
+   */
+  private Runnable withMdc(final Runnable runnable) {
+    return () -> {
+      if (mdc != null) {
+        MDC.setContextMap(mdc);
+      }
+      try {
+        runnable.run();
+      }
+      finally {
+        MDC.clear();
+      }
+    };
+  }
+
+  /**
+   * Waits for a stage to finish, logging progress meanwhile.
+   *
+   * @return {@code false} if the task was cancelled
+   */
+  private boolean await(final List<Future<?>> futures,
+                        final int partitions,
+                        final BooleanSupplier isCanceled,
+                        final ProgressLogIntervalHelper progressLogger) throws InterruptedException
+  {
+    for (Future<?> future : futures) {
+      while (true) {
+        if (isCanceled.getAsBoolean()) {
+          log.info("{}Restore of blob store {} cancelled", logPrefix, blobStoreName);
+          return false;
+        }
+        try {
+          future.get(1, TimeUnit.SECONDS);
+          break;
+        }
+        catch (TimeoutException e) { // NOSONAR
+          logProgress(progressLogger, partitions);
+        }
+        catch (ExecutionException e) {
+          throw new IllegalStateException("Restore of blob store " + blobStoreName + " failed", e.getCause());
+        }
+      }
+    }
+    return true;
+  }
+
+  private void logProgress(final ProgressLogIntervalHelper progressLogger, final int partitions) {
+    progressLogger.info(
+        "{}Elapsed time: {}, partitions walked: {}/{}, found: {}, loaded: {}, processed: {}, un-deleted: {}, failed: {}",
+        logPrefix, progressLogger.getElapsed(), partitionsWalked.get(), partitions, blobsFound.get(),
+        blobsLoaded.get(), blobsProcessed.get(), blobsUndeleted.get(), blobsFailed.get());
+  }
+
+  /**
+   * First stage: walks a partition, queueing up its blobs.
+   */
+  private void walk(final Partition partition) {
+    try (Stream<BlobId> blobIds = fileBlobStore.getBlobIdStream(partition.name)) {
+      Iterator<BlobId> iterator = blobIds.iterator();
+      while (iterator.hasNext()) {
+        Item item = new Item(partition, iterator.next());
+        partition.pending.incrementAndGet();
+        found.put(item);
+        blobsFound.incrementAndGet();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    catch (RuntimeException e) {
+      log.warn("Unable to walk partition {} of blob store {}", partition.name, blobStoreName, e);
+      partition.failed.set(true);
+      blobsFailed.incrementAndGet();
+    }
+    partitionsWalked.incrementAndGet();
+    partition.walked = true;
+    partition.maybeCompleted();
+  }
+
+  /**
+   * Second stage: loads the blobs and their attributes, passing on those with work to do.
+   */
+  private void load() {
+    try {
+      for (Item item = found.take(); item != end; item = found.take()) {
+        try {
+          if (load(item)) {
+            blobsLoaded.incrementAndGet();
+            loaded.put(item);
+          }
+          else {
+            item.done();
+          }
+        }
+        catch (InterruptedException e) {
+          throw e;
+        }
+        catch (Exception e) {
+          log.warn("Unable to load blob {} in blob store {}", item.blobId, blobStoreName, e);
+          item.markFailed();
+          item.done();
+        }
+      }
+      found.put(end);
+    }
+    catch (InterruptedException e) { // NOSONAR
+      log.debug("Loading blobs interrupted");
+    }
+  }
+
+  private boolean load(final Item item) {
+    item.blob = fileBlobStore.get(item.blobId, true);
+    if (item.blob == null) {
+      return false;
+    }
+    item.blobAttributes = fileBlobStore.getBlobAttributes(item.blobId);
+    if (item.blobAttributes == null || item.blobAttributes.getProperties() == null) {
+      return false;
+    }
+    Properties properties = item.blobAttributes.getProperties();
+    String repositoryName = properties.getProperty(HEADER_PREFIX + REPO_NAME_HEADER);
+    Repository repository = repositoryName != null ? repositoryManager.get(repositoryName) : null;
+    if (repository == null) {
+      return false;
+    }
+    item.repository = repository;
+    item.restoreBlobStrategy = restoreBlobStrategies.get(repository.getFormat().getValue());
+    return undelete || item.needsRestore();
+  }
+
+  /**
+   * Third stage: restores and un-deletes the blobs in batches.
+   */
+  private void process() {
+    List<Item> batch = new ArrayList<>(batchSize);
+    try {
+      while (true) {
+        batch.clear();
+        batch.add(loaded.take());
+        loaded.drainTo(batch, batchSize - 1);
+        boolean ended = batch.remove(end);
+        if (!batch.isEmpty()) {
+          process(batch);
+        }
+        if (ended) {
+          loaded.put(end);
+          return;
+        }
+      }
+    }
+    catch (InterruptedException e) { // NOSONAR
+      log.debug("Processing blobs interrupted");
+    }
+  }
+
+  private void process(final List<Item> batch) {
+    if (restore) {
+      Map<Repository, List<Item>> byRepository = new LinkedHashMap<>();
+      for (Item item : batch) {
+        if (item.needsRestore()) {
+          byRepository.computeIfAbsent(item.repository, repository -> new ArrayList<>()).add(item);
+        }
+      }
+      byRepository.forEach(this::restore);
+    }
+    if (undelete) {
+      undelete(batch);
+    }
+    for (Item item : batch) {
+      item.done();
+    }
+  }
+
+  private void restore(final Repository repository, final List<Item> items) {
+    List<RestoreBlobData> blobs = new ArrayList<>(items.size());
+    for (Item item : items) {
+      blobs.add(new RestoreBlobData(item.blob, item.blobAttributes.getProperties(), blobStoreName, repositoryManager));
+    }
+    try {
+      items.get(0).restoreBlobStrategy.restore(blobs, dryRun);
+    }
+    catch (Exception e) {
+      log.warn("Unable to restore {} blobs of repository {} in blob store {}", items.size(), repository.getName(),
+          blobStoreName, e);
+      items.forEach(Item::markFailed);
+    }
+  }
+
+  private void undelete(final List<Item> batch) {
+    Map<BlobId, String> blobNames = new HashMap<>();
+    for (Item item : batch) {
+      String blobName = item.blobAttributes.getProperties().getProperty(HEADER_PREFIX + BLOB_NAME_HEADER);
+      if (item.blobAttributes.isDeleted() && blobName != null) {
+        blobNames.put(item.blobId, blobName);
+      }
+    }
+    Set<BlobId> inUse;
+    try {
+      inUse = blobNames.isEmpty() ? Collections.emptySet() : blobStoreUsageChecker.test(fileBlobStore, blobNames);
+    }
+    catch (Exception e) {
+      log.warn("Unable to check usage of {} blobs in blob store {}", blobNames.size(), blobStoreName, e);
+      batch.forEach(Item::markFailed);
+      return;
+    }
+
+    BlobStoreUsageChecker knownUsage = (blobStore, blobId, blobName) -> inUse.contains(blobId);
+    for (Item item : batch) {
+      try {
+        if (fileBlobStore.maybeUndeleteBlob(knownUsage, item.blobId, (FileBlobAttributes) item.blobAttributes, dryRun)) {
+          blobsUndeleted.incrementAndGet();
+        }
+      }
+      catch (Exception e) {
+        log.warn("Unable to un-delete blob {} in blob store {}", item.blobId, blobStoreName, e);
+        item.markFailed();
+      }
+    }
+  }
+
+  /**
+   * Tracks the blobs of a partition still in the pipeline, recording the partition in the checkpoint once all of them
+   * have been processed without failure.
+   */
+  private class Partition
+  {
+    final String name;
+
+    final AtomicLong pending = new AtomicLong();
+
+    final AtomicBoolean failed = new AtomicBoolean();
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    volatile boolean walked;
+
+    Partition(final String name) {
+      this.name = checkNotNull(name);
+    }
+
+    void maybeCompleted() {
+      if (walked && pending.get() == 0 && completed.compareAndSet(false, true) && !failed.get() && checkpoint != null) {
+        try {
+          checkpoint.markCompleted(name);
+        }
+        catch (IOException e) {
+          log.warn("Unable to record partition {} of blob store {} in checkpoint", name, blobStoreName, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * A blob passing through the pipeline.
+   */
+  private class Item
+  {
+    final Partition partition;
+
+    final BlobId blobId;
+
+    Blob blob;
+
+    BlobAttributes blobAttributes;
+
+    Repository repository;
+
+    RestoreBlobStrategy restoreBlobStrategy;
+
+    boolean failed;
+
+    Item(@Nullable final Partition partition, @Nullable final BlobId blobId) {
+      this.partition = partition;
+      this.blobId = blobId;
+    }
+
+    boolean needsRestore() {
+      return restoreBlobStrategy != null && !blobAttributes.isDeleted();
+    }
+
+    void markFailed() {
+      failed = true;
+    }
+
+    void done() {
+      if (failed) {
+        partition.failed.set(true);
+        blobsFailed.incrementAndGet();
+      }
+      blobsProcessed.incrementAndGet();
+      if (partition.pending.decrementAndGet() == 0) {
+        partition.maybeCompleted();
+      }
+    }
+  }
+}
@@ -14,6 +14,7 @@ package org.sonatype.nexus.blobstore.internal
 
 import org.sonatype.goodies.testsupport.TestSupport
 import org.sonatype.nexus.blobstore.api.BlobId
+import org.sonatype.nexus.blobstore.api.BlobRef
 import org.sonatype.nexus.blobstore.api.BlobStore
 import org.sonatype.nexus.blobstore.api.BlobStoreConfiguration
 import org.sonatype.nexus.orient.testsupport.DatabaseInstanceRule
@@ -28,6 +29,7 @@ import org.mockito.Mock
 import static org.hamcrest.CoreMatchers.equalTo
 import static org.junit.Assert.assertThat
 import static org.mockito.Mockito.when
+import static org.sonatype.nexus.repository.storage.AssetEntityAdapter.blobKey
 
 class FileBlobStoreUsageCheckerTest
     extends TestSupport
@@ -42,6 +44,8 @@ class FileBlobStoreUsageCheckerTest
 
   static final BlobId BLOB_ID = new BlobId(BLOB_ID_STRING)
 
+  static final String OTHER_BLOB_NAME = 'org/example/3.1/plexus-3.1.jar'
+
   @Rule
   public DatabaseInstanceRule configDatabase = DatabaseInstanceRule.inMemory("test_component")
 
@@ -61,12 +65,14 @@ class FileBlobStoreUsageCheckerTest
       asset(BLOB_NAME, "$DEFAULT@some-node-id:$BLOB_ID_STRING")
       asset(BLOB_NAME, "$DEFAULT@some-other-node-id:$BLOB_ID_STRING")
       asset(BLOB_NAME, "notdefault@some-other-node-id:0")
+      asset(OTHER_BLOB_NAME, "$DEFAULT@some-node-id:1")
+      asset(OTHER_BLOB_NAME, "$DEFAULT@some-node-id:2")
     }
 
     when(blobStore.blobStoreConfiguration).thenReturn(blobStoreConfiguration)
     when(blobStoreConfiguration.name).thenReturn(DEFAULT)
 
-    underTest = new FileBlobStoreUsageChecker(configDatabase.instanceProvider)
+    underTest = new FileBlobStoreUsageChecker(configDatabase.instanceProvider, 2)
   }
 
   @Test
@@ -90,10 +96,31 @@ class FileBlobStoreUsageCheckerTest
     assertThat(underTest.test(blobStore, BLOB_ID, BLOB_NAME), equalTo(false))
   }
 
+  @Test
+  void 'when blobs are checked in bulk'() {
+    def blobNames = [
+        (BLOB_ID): BLOB_NAME,
+        (new BlobId('0')): BLOB_NAME,
+        (new BlobId('1')): OTHER_BLOB_NAME,
+        (new BlobId('2')): 'org/example/not.pom',
+        (new BlobId('3')): OTHER_BLOB_NAME
+    ]
+    assertThat(underTest.test(blobStore, blobNames), equalTo([BLOB_ID, new BlobId('1')] as Set))
+  }
+
+  @Test
+  void 'when blobs checked in bulk are in another blob store'() {
+    when(blobStoreConfiguration.name).thenReturn('notdefault')
+    assertThat(underTest.test(blobStore, [(new BlobId('0')): BLOB_NAME, (BLOB_ID): BLOB_NAME]),
+        equalTo([new BlobId('0')] as Set))
+  }
+
   static private asset(final name, final blob_ref) {
     def asset = new ODocument('asset')
     asset.field('name', name)
     asset.field('blob_ref', blob_ref)
+    BlobRef blobRef = BlobRef.parse(blob_ref)
+    asset.field('blob_key', blobKey(blobRef.store, blobRef.blob))
     asset.save()
   }
 }
@@ -12,11 +12,13 @@
  */
 package org.sonatype.nexus.blobstore.restore;
 
+import java.io.File;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.stream.Stream;
 
 import org.sonatype.goodies.testsupport.TestSupport;
@@ -26,6 +28,7 @@ import org.sonatype.nexus.blobstore.api.BlobStoreManager;
 import org.sonatype.nexus.blobstore.api.BlobStoreUsageChecker;
 import org.sonatype.nexus.blobstore.file.FileBlobAttributes;
 import org.sonatype.nexus.blobstore.file.FileBlobStore;
+import org.sonatype.nexus.common.app.ApplicationDirectories;
 import org.sonatype.nexus.common.log.DryRunPrefix;
 import org.sonatype.nexus.repository.Format;
 import org.sonatype.nexus.repository.Repository;
@@ -40,16 +43,27 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
@@ -58,6 +72,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.blobstore.restore.DefaultIntegrityCheckStrategy.DEFAULT_NAME;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.BLOB_STORE_NAME_FIELD_ID;
+import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.DRY_RUN;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.INTEGRITY_CHECK;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.RESTORE_BLOBS;
 import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor.TYPE_ID;
@@ -66,6 +81,8 @@ import static org.sonatype.nexus.blobstore.restore.RestoreMetadataTaskDescriptor
 public class RestoreMetadataTaskTest
     extends TestSupport
 {
+  static final String PARTITION = "vol-1/chp-1";
+
   RestoreMetadataTask underTest;
 
   @Mock
@@ -104,6 +121,12 @@ public class RestoreMetadataTaskTest
   @Mock
   IntegrityCheckStrategy testIntegrityCheckStrategy;
 
+  @Mock
+  ApplicationDirectories applicationDirectories;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   Map<String, IntegrityCheckStrategy> integrityCheckStrategies;
 
   BlobId blobId;
@@ -118,8 +141,11 @@ public class RestoreMetadataTaskTest
     integrityCheckStrategies.put(Maven2Format.NAME, testIntegrityCheckStrategy);
     integrityCheckStrategies.put(DEFAULT_NAME, defaultIntegrityCheckStrategy);
 
+    when(applicationDirectories.getWorkDirectory("restore")).thenReturn(temporaryFolder.getRoot());
+
     underTest = new RestoreMetadataTask(blobStoreManager, repositoryManager,
-        ImmutableMap.of("maven2", restoreBlobStrategy), blobstoreUsageChecker, dryRunPrefix, integrityCheckStrategies);
+        ImmutableMap.of("maven2", restoreBlobStrategy), blobstoreUsageChecker, dryRunPrefix, integrityCheckStrategies,
+        applicationDirectories, 2, 10);
 
     reset(integrityCheckStrategies); // reset this mock so we more easily verify calls
 
@@ -137,7 +163,8 @@ public class RestoreMetadataTaskTest
     blobAttributes = new FileBlobAttributes(Paths.get(resource.toURI()));
     blobAttributes.load();
     blobId = new BlobId("86e20baa-0bca-4915-a7dc-9a4f34e72321");
-    when(fileBlobStore.getBlobIdStream()).thenReturn(Stream.of(blobId));
+    when(fileBlobStore.getBlobIdPartitions()).thenReturn(singletonList(PARTITION));
+    when(fileBlobStore.getBlobIdStream(PARTITION)).thenAnswer(invocation -> Stream.of(blobId));
     when(blobStoreManager.get("test")).thenReturn(fileBlobStore);
 
     when(fileBlobStore.get(blobId, true)).thenReturn(blob);
@@ -155,12 +182,17 @@ public class RestoreMetadataTaskTest
 
     underTest.execute();
 
-    ArgumentCaptor<Properties> propertiesArgumentCaptor = ArgumentCaptor.forClass(Properties.class);
-    verify(restoreBlobStrategy).restore(propertiesArgumentCaptor.capture(), eq(blob), eq("test"), eq(false));
-    verify(fileBlobStore).maybeUndeleteBlob(blobstoreUsageChecker, blobId, blobAttributes, false);
-    Properties properties = propertiesArgumentCaptor.getValue();
-
-    assertThat(properties.getProperty("@BlobStore.blob-name"), is("org/codehaus/plexus/plexus/3.1/plexus-3.1.pom"));
+    ArgumentCaptor<List> batchArgumentCaptor = ArgumentCaptor.forClass(List.class);
+    verify(restoreBlobStrategy).restore(batchArgumentCaptor.capture(), eq(false));
+    verify(fileBlobStore).maybeUndeleteBlob(any(), eq(blobId), eq(blobAttributes), eq(false));
+    List<RestoreBlobData> batch = batchArgumentCaptor.getValue();
+
+    assertThat(batch.size(), is(1));
+    assertThat(batch.get(0).getBlob(), is(blob));
+    assertThat(batch.get(0).getBlobStoreName(), is("test"));
+    assertThat(batch.get(0).getProperties().getProperty("@BlobStore.blob-name"),
+        is("org/codehaus/plexus/plexus/3.1/plexus-3.1.pom"));
+    assertThat(checkpointFile().exists(), is(false));
   }
 
   @Test
@@ -172,7 +204,7 @@ public class RestoreMetadataTaskTest
 
     underTest.execute();
 
-    verify(restoreBlobStrategy).restore(any(), eq(blob), eq("test"), eq(false));
+    verify(restoreBlobStrategy).restore(anyListOf(RestoreBlobData.class), eq(false));
     verify(fileBlobStore, never()).maybeUndeleteBlob(any(), any(), any(), eq(false));
   }
 
@@ -188,9 +220,83 @@ public class RestoreMetadataTaskTest
     underTest.execute();
 
     verify(restoreBlobStrategy, never()).restore(any(), any(), any());
+    verify(restoreBlobStrategy, never()).restore(anyListOf(RestoreBlobData.class), anyBoolean());
     verify(fileBlobStore).maybeUndeleteBlob(any(), any(), any(), eq(false));
   }
 
+  @Test
+  public void testUndeleteChecksUsageInBulk() throws Exception {
+    configuration.setBoolean(RESTORE_BLOBS, false);
+    configuration.setBoolean(UNDELETE_BLOBS, true);
+    underTest.configure(configuration);
+
+    blobAttributes.setDeleted(true);
+    when(blobstoreUsageChecker.test(eq(fileBlobStore), anyMapOf(BlobId.class, String.class)))
+        .thenReturn(singleton(blobId));
+    when(fileBlobStore.maybeUndeleteBlob(any(), eq(blobId), eq(blobAttributes), eq(false))).thenAnswer(
+        invocation -> ((BlobStoreUsageChecker) invocation.getArguments()[0]).test(fileBlobStore, blobId, "name"));
+
+    underTest.execute();
+
+    verify(blobstoreUsageChecker)
+        .test(fileBlobStore, singletonMap(blobId, "org/codehaus/plexus/plexus/3.1/plexus-3.1.pom"));
+    verify(blobstoreUsageChecker, never()).test(any(), any(BlobId.class), anyString());
+    verify(fileBlobStore).maybeUndeleteBlob(any(), eq(blobId), eq(blobAttributes), eq(false));
+  }
+
+  @Test
+  public void testRestoreResumesFromCheckpoint() throws Exception {
+    configuration.setBoolean(RESTORE_BLOBS, true);
+    configuration.setBoolean(UNDELETE_BLOBS, false);
+    underTest.configure(configuration);
+
+    when(fileBlobStore.getBlobIdPartitions()).thenReturn(asList("done", PARTITION));
+    Files.write(checkpointFile().toPath(), "restore=true,undelete=false\ndone\n".getBytes(UTF_8));
+
+    underTest.execute();
+
+    verify(fileBlobStore, never()).getBlobIdStream("done");
+    verify(fileBlobStore).getBlobIdStream(PARTITION);
+    verify(restoreBlobStrategy).restore(anyListOf(RestoreBlobData.class), eq(false));
+    assertThat(checkpointFile().exists(), is(false));
+  }
+
+  @Test
+  public void testRestoreKeepsCheckpointOfFailedPartitions() throws Exception {
+    configuration.setBoolean(RESTORE_BLOBS, true);
+    configuration.setBoolean(UNDELETE_BLOBS, false);
+    underTest.configure(configuration);
+
+    when(fileBlobStore.getBlobIdPartitions()).thenReturn(asList("empty", PARTITION));
+    when(fileBlobStore.getBlobIdStream("empty")).thenAnswer(invocation -> Stream.empty());
+    doThrow(new IllegalStateException("boom")).when(restoreBlobStrategy)
+        .restore(anyListOf(RestoreBlobData.class), anyBoolean());
+
+    underTest.execute();
+
+    assertThat(Files.readAllLines(checkpointFile().toPath()), contains("restore=true,undelete=false", "empty"));
+  }
+
+  @Test
+  public void testDryRunLeavesNoCheckpoint() throws Exception {
+    configuration.setBoolean(RESTORE_BLOBS, true);
+    configuration.setBoolean(UNDELETE_BLOBS, false);
+    configuration.setBoolean(DRY_RUN, true);
+    underTest.configure(configuration);
+
+    doThrow(new IllegalStateException("boom")).when(restoreBlobStrategy)
+        .restore(anyListOf(RestoreBlobData.class), anyBoolean());
+
+    underTest.execute();
+
+    verify(restoreBlobStrategy).restore(anyListOf(RestoreBlobData.class), eq(true));
+    assertThat(checkpointFile().exists(), is(false));
+  }
+
+  private File checkpointFile() {
+    return new File(temporaryFolder.getRoot(), "test.checkpoint");
+  }
+
   @Test
   public void testNoRestoreMetadataNoUnDeleteNoIntegrityCheck() throws Exception {
     configuration.setBoolean(RESTORE_BLOBS, false);
@@ -15,6 +15,7 @@ package org.sonatype.nexus.repository.httpbridge.internal;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -32,6 +33,7 @@ import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.Status;
 
 import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.HttpOutput;
 
 /**
  * Default {@link HttpResponseSender}.
@@ -79,8 +81,12 @@ public class DefaultHttpResponseSender
           }
 
           if (request != null && !HttpMethods.HEAD.equals(request.getAction())) {
-            try (InputStream input = payload.openInputStream(); OutputStream output = httpResponse.getOutputStream()) {
-              ByteStreams.copy(input, output);
+            try (OutputStream output = httpResponse.getOutputStream()) {
+              if (!sendFileContent(payload, output)) {
+                try (InputStream input = payload.openInputStream()) {
+                  ByteStreams.copy(input, output);
+                }
+              }
             }
           }
         }
@@ -90,4 +96,25 @@ public class DefaultHttpResponseSender
       }
     }
   }
+
+  /**
+   * Hands file-backed payloads to Jetty as a channel, which reads them into its own pooled buffers rather than going
+   * through an input stream and a temporary byte array. This is not zero-copy, the content still passes through those
+   * buffers on its way to the socket. The file is deliberately not memory-mapped, as mappings pin address space and
+   * file handles until they are garbage collected.
+   * Returns {@code false} if the payload or output does not support this.
+   */
+  private boolean sendFileContent(final Payload payload, final OutputStream output) throws IOException {
+    if (!(output instanceof HttpOutput)) {
+      return false;
+    }
+    try (FileChannel channel = payload.openFileChannel()) {
+      if (channel == null) {
+        return false;
+      }
+      log.trace("Sending {} bytes from file channel", channel.size());
+      ((HttpOutput) output).sendContent(channel);
+      return true;
+    }
+  }
 }
@@ -15,7 +15,13 @@ package org.sonatype.nexus.repository.httpbridge.internal;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -31,8 +37,10 @@ import org.sonatype.nexus.repository.view.Response;
 import org.sonatype.nexus.repository.view.Status;
 import org.sonatype.nexus.repository.view.payloads.StringPayload;
 
+import org.eclipse.jetty.server.HttpOutput;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Spy;
@@ -45,6 +53,8 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonatype.nexus.repository.http.HttpStatus.FORBIDDEN;
@@ -155,6 +165,45 @@ public class DefaultHttpResponseSenderTest
     order.verifyNoMoreInteractions();
   }
 
+  @Test
+  public void fileBackedPayloadSentDirectlyThroughJetty() throws Exception {
+    when(request.getAction()).thenReturn(HttpMethods.GET);
+
+    Path file = util.createTempFile().toPath();
+    Files.write(file, TEST_CONTENT);
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    when(payload.openFileChannel()).thenReturn(channel);
+
+    HttpOutput jettyOutput = mock(HttpOutput.class);
+    when(httpServletResponse.getOutputStream()).thenReturn(jettyOutput);
+
+    underTest.send(request, HttpResponses.ok(payload), httpServletResponse);
+
+    ArgumentCaptor<ReadableByteChannel> content = ArgumentCaptor.forClass(ReadableByteChannel.class);
+    verify(jettyOutput).sendContent(content.capture());
+    assertThat(content.getValue(), is(channel));
+    assertThat(channel.isOpen(), is(false));
+    verify(jettyOutput, never()).sendContent(any(ByteBuffer.class));
+    verify(payload, never()).openInputStream();
+    verify(payload).close();
+  }
+
+  @Test
+  public void nonFileBackedPayloadCopiedThroughJetty() throws Exception {
+    when(request.getAction()).thenReturn(HttpMethods.GET);
+
+    HttpOutput jettyOutput = mock(HttpOutput.class);
+    when(httpServletResponse.getOutputStream()).thenReturn(jettyOutput);
+
+    underTest.send(request, HttpResponses.ok(payload), httpServletResponse);
+
+    verify(payload).openFileChannel();
+    verify(payload).openInputStream();
+    verify(jettyOutput, atLeastOnce()).write(any(byte[].class), anyInt(), anyInt());
+    verify(jettyOutput, never()).sendContent(any(ByteBuffer.class));
+    verify(jettyOutput, never()).sendContent(any(ReadableByteChannel.class));
+  }
+
   @Test
   public void customStatusMessageIsMaintained() throws Exception {
     when(request.getAction()).thenReturn(HttpMethods.GET);
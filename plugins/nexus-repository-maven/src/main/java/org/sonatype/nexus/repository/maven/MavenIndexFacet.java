@@ -41,6 +41,14 @@ public interface MavenIndexFacet
    */
   void publishIndex() throws IOException;
 
+  /**
+   * Publishes Maven Indexer indexes repository for downstream consumption, rebuilding them from scratch if
+   * {@code full} is set. Otherwise repositories supporting it publish only what changed since the last publish.
+   *
+   * @since 3.9
+   */
+  void publishIndex(boolean full) throws IOException;
+
   /**
    * Removes published Maven Indexer indexes from repository (or cache, if proxy).
    */
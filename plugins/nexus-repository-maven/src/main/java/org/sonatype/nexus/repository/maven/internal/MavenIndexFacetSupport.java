@@ -43,6 +43,16 @@ public abstract class MavenIndexFacetSupport
     }
   }
 
+  /**
+   * Publishes the index from scratch, whether {@code full} or not; override to support incremental publishing.
+   *
+   * @since 3.9
+   */
+  @Override
+  public void publishIndex(final boolean full) throws IOException {
+    publishIndex();
+  }
+
   @Override
   public void unpublishIndex() throws IOException {
     UnitOfWork.begin(getRepository().facet(StorageFacet.class).txSupplier());
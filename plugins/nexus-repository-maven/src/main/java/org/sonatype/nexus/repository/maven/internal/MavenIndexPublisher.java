@@ -18,28 +18,38 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.TreeSet;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.common.text.Strings2;
 import org.sonatype.nexus.orient.entity.AttachedEntityHelper;
 import org.sonatype.nexus.repository.Repository;
 import org.sonatype.nexus.repository.maven.MavenFacet;
 import org.sonatype.nexus.repository.maven.MavenPath;
+import org.sonatype.nexus.repository.maven.MavenPath.Coordinates;
 import org.sonatype.nexus.repository.maven.MavenPath.SignatureType;
 import org.sonatype.nexus.repository.maven.internal.Attributes.AssetKind;
 import org.sonatype.nexus.repository.proxy.ProxyFacet;
+import org.sonatype.nexus.repository.storage.Component;
 import org.sonatype.nexus.repository.storage.StorageTx;
 import org.sonatype.nexus.repository.types.ProxyType;
 import org.sonatype.nexus.repository.view.Content;
@@ -51,10 +61,16 @@ import org.sonatype.nexus.repository.view.payloads.StreamPayload.InputStreamSupp
 import org.sonatype.nexus.transaction.Transactional;
 import org.sonatype.nexus.transaction.UnitOfWork;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closer;
+import com.google.common.primitives.Ints;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import org.apache.maven.index.reader.ChunkReader;
+import org.apache.maven.index.reader.ChunkWriter;
 import org.apache.maven.index.reader.IndexReader;
 import org.apache.maven.index.reader.IndexWriter;
 import org.apache.maven.index.reader.Record;
@@ -74,6 +90,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.transform;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.apache.maven.index.reader.Utils.allGroups;
 import static org.apache.maven.index.reader.Utils.descriptor;
@@ -92,11 +109,35 @@ public final class MavenIndexPublisher
 {
   private static final Logger log = LoggerFactory.getLogger(MavenIndexPublisher.class);
 
-  private static final String INDEX_PROPERTY_FILE = "/.index/nexus-maven-repository-index.properties";
+  private static final String INDEX_PROPERTY_NAME = "nexus-maven-repository-index.properties";
 
-  private static final String INDEX_MAIN_CHUNK_FILE = "/.index/nexus-maven-repository-index.gz";
+  private static final String INDEX_MAIN_CHUNK_NAME = "nexus-maven-repository-index.gz";
 
-  private static final String SELECT_HOSTED_ARTIFACTS =
+  private static final String INDEX_PROPERTY_FILE = "/.index/" + INDEX_PROPERTY_NAME;
+
+  private static final String INDEX_MAIN_CHUNK_FILE = "/.index/" + INDEX_MAIN_CHUNK_NAME;
+
+  private static final String INDEX_CHUNK_PREFIX = "nexus-maven-repository-index.";
+
+  private static final String INDEX_ID = "nexus.index.id";
+
+  private static final String INDEX_TIMESTAMP = "nexus.index.timestamp";
+
+  private static final String INDEX_LAST_INCREMENTAL = "nexus.index.last-incremental";
+
+  private static final String INDEX_INCREMENTAL_PREFIX = "nexus.index.incremental-";
+
+  private static final String INDEX_DATE_FORMAT = "yyyyMMddHHmmss.SSS Z";
+
+  private static final int INDEX_VERSION = 1;
+
+  /**
+   * How many incremental chunks are kept for consumers to catch up with, older ones are deleted.
+   */
+  private static final int MAX_INCREMENTAL_CHUNKS =
+      SystemPropertiesHelper.getInteger("nexus.maven.index.incremental.maxChunks", 30);
+
+  private static final String SELECT_ARTIFACT_FIELDS =
       "SELECT " +
           "last_updated AS lastModified, " +
           "component.group AS groupId, " +
@@ -109,16 +150,36 @@ public final class MavenIndexPublisher
           "name AS path, " +
           "attributes.content.last_modified AS contentLastModified, " +
           "size AS contentSize, " +
-          "attributes.checksum.sha1 AS sha1 " +
+          "attributes.checksum.sha1 AS sha1 ";
+
+  private static final String SELECT_HOSTED_ARTIFACTS =
+      SELECT_ARTIFACT_FIELDS +
           "FROM asset " +
           "WHERE bucket=:bucket " +
           "AND attributes.maven2.asset_kind=:asset_kind " +
           "AND component IS NOT NULL";
 
+  private static final String SELECT_COMPONENT_ARTIFACTS =
+      SELECT_ARTIFACT_FIELDS +
+          "FROM asset " +
+          "WHERE component=:component " +
+          "AND attributes.maven2.asset_kind=:asset_kind";
+
+  private static final String SELECT_COMPONENTS_BY_BASE_VERSION =
+      "group = :groupId AND name = :artifactId AND attributes.maven2." + Attributes.P_BASE_VERSION + " = :baseVersion";
+
   private static final RecordExpander RECORD_EXPANDER = new RecordExpander();
 
   private static final RecordCompactor RECORD_COMPACTOR = new RecordCompactor();
 
+  private static final int MERGE_THREADS = SystemPropertiesHelper.getInteger("nexus.maven.index.merge.threads", 4);
+
+  private static final int MERGE_BATCH_SIZE =
+      SystemPropertiesHelper.getInteger("nexus.maven.index.merge.batchSize", 1000);
+
+  private static final int MERGE_MAX_BATCHES =
+      SystemPropertiesHelper.getInteger("nexus.maven.index.merge.maxBatches", 4);
+
   private MavenIndexPublisher() {
     // nop
   }
@@ -155,11 +216,16 @@ public final class MavenIndexPublisher
    */
   public static boolean unpublishIndexFiles(final Repository repository) throws IOException {
     checkNotNull(repository);
+    deleteIncrementalChunks(repository, incrementalChunks(loadProperties(repository)));
     return delete(repository, INDEX_PROPERTY_FILE) && delete(repository, INDEX_MAIN_CHUNK_FILE);
   }
 
   /**
    * Publishes MI index into {@code target}, sourced from {@code repositories} repositories.
+   *
+   * The member indexes are decoded concurrently and streamed into the target index in member order, so the first
+   * member containing a record wins. Duplicates are tracked by fingerprint in tables which move to memory-mapped files
+   * as they grow, keeping heap use bounded whatever the size of the member indexes.
    */
   public static void publishMergedIndex(final Repository target, final List<Repository> repositories)
       throws IOException
@@ -181,12 +247,17 @@ public final class MavenIndexPublisher
         }
       }
 
+      // registered last so its threads are stopped before the chunk readers they use are closed
+      ParallelRecordReader recordReader = closer.register(
+          new ParallelRecordReader(records, MERGE_THREADS, MERGE_BATCH_SIZE, MERGE_MAX_BATCHES));
+      Iterable<Record> merged = () -> recordReader;
+
       try (Maven2WritableResourceHandler resourceHandler = new Maven2WritableResourceHandler(target)) {
         try (IndexWriter indexWriter = new IndexWriter(resourceHandler, target.getName(), false)) {
           indexWriter.writeChunk(
               transform(
                   decorate(
-                      filter(concat(records), new UniqueFilter()),
+                      filter(merged, new UniqueFilter()),
                       target.getName()
                   ),
                   RECORD_COMPACTOR::apply
@@ -211,6 +282,8 @@ public final class MavenIndexPublisher
     Transactional.operation.throwing(IOException.class).call(
         () -> {
           final StorageTx tx = UnitOfWork.currentTx();
+          // a full publish starts a new chain, so incremental chunks of the previous one are of no further use
+          List<Integer> staleChunks = incrementalChunks(loadProperties(repository));
           try (Maven2WritableResourceHandler resourceHandler = new Maven2WritableResourceHandler(repository)) {
             try (IndexWriter indexWriter = new IndexWriter(resourceHandler, repository.getName(), false)) {
               indexWriter.writeChunk(
@@ -224,11 +297,121 @@ public final class MavenIndexPublisher
               );
             }
           }
+          deleteIncrementalChunks(repository, staleChunks);
           return null;
         }
     );
   }
 
+  /**
+   * Publishes the changes made to a hosted repository since its index was last published, without rebuilding the
+   * index from scratch. The changes are written as a new incremental chunk, which consumers of the index download to
+   * catch up, and merged into the main chunk, which is streamed from its previous version so only the changed
+   * components are queried. The oldest incremental chunks are deleted once there are more than
+   * {@code nexus.maven.index.incremental.maxChunks}.
+   *
+   * Returns {@code false}, publishing nothing, if the repository has no published index to update; the caller should
+   * then {@link #publishHostedIndex(Repository) publish a full index} instead.
+   *
+   * @param changedPaths paths of the assets created, updated or deleted since the index was last published
+   * @param deletedPaths paths of the assets deleted since the index was last published
+   * @since 3.9
+   */
+  public static boolean publishHostedIndexChanges(final Repository repository,
+                                                  final Set<String> changedPaths,
+                                                  final Set<String> deletedPaths) throws IOException
+  {
+    checkNotNull(repository);
+    checkNotNull(changedPaths);
+    checkNotNull(deletedPaths);
+    return Transactional.operation.throwing(IOException.class).call(
+        () -> {
+          final StorageTx tx = UnitOfWork.currentTx();
+          final MavenFacet mavenFacet = repository.facet(MavenFacet.class);
+          final String repositoryName = repository.getName();
+          Properties properties = loadProperties(repository);
+          if (properties == null || !repositoryName.equals(properties.getProperty(INDEX_ID))) {
+            return false;
+          }
+
+          Set<String> changedComponents = new HashSet<>();
+          for (String path : changedPaths) {
+            MavenPath mavenPath = mavenFacet.getMavenPathParser().parsePath(path);
+            if (mavenPath.getCoordinates() != null && !mavenPath.isHash()) {
+              changedComponents.add(componentKey(mavenPath.getCoordinates()));
+            }
+          }
+          Date timestamp = new Date();
+          List<Record> added = getComponentRecords(tx, repository, mavenFacet, changedComponents);
+          Set<String> addedKeys = new HashSet<>();
+          added.forEach(record -> addedKeys.add(uinfo(record)));
+          List<Record> removed = new ArrayList<>();
+          for (String path : deletedPaths) {
+            MavenPath mavenPath = mavenFacet.getMavenPathParser().parsePath(path);
+            if (mavenPath.getCoordinates() != null && !mavenPath.isSubordinate()) {
+              Record record = toRemovedRecord(mavenPath, timestamp);
+              if (!addedKeys.contains(uinfo(record))) {
+                removed.add(record);
+              }
+            }
+          }
+          if (added.isEmpty() && removed.isEmpty()) {
+            log.debug("No index changes to publish in {}", repositoryName);
+            return true;
+          }
+
+          int chunk = nextIncrementalChunk(properties);
+          String chunkName = INDEX_CHUNK_PREFIX + chunk + ".gz";
+          List<Integer> discardedChunks = recordIncrementalChunk(properties, chunk, MAX_INCREMENTAL_CHUNKS);
+          Set<String> removedKeys = new HashSet<>();
+          removed.forEach(record -> removedKeys.add(uinfo(record)));
+          Predicate<Record> unchanged = record -> !changedComponents.contains(componentKey(record))
+              && !removedKeys.contains(uinfo(record));
+
+          try (Maven2WritableResourceHandler resourceHandler = new Maven2WritableResourceHandler(repository)) {
+            try (Maven2WritableResource mainChunk = resourceHandler.locate(INDEX_MAIN_CHUNK_NAME);
+                 InputStream previous = mainChunk.read()) {
+              if (previous == null) {
+                return false;
+              }
+              try (Maven2WritableResource incrementalChunk = resourceHandler.locate(chunkName)) {
+                writeChunk(incrementalChunk, chunkName, timestamp, decorate(concat(removed, added), repositoryName));
+              }
+              // the new main chunk is stored when its resource closes, after the previous one is fully read
+              try (ChunkReader previousChunk = new ChunkReader(INDEX_MAIN_CHUNK_NAME, previous)) {
+                writeChunk(mainChunk, INDEX_MAIN_CHUNK_NAME, timestamp,
+                    decorate(
+                        filter(
+                            concat(
+                                filter(
+                                    filter(transform(previousChunk, RECORD_EXPANDER::apply),
+                                        new RecordTypeFilter(Type.ARTIFACT_ADD)),
+                                    unchanged
+                                ),
+                                added
+                            ),
+                            new UniqueFilter()
+                        ),
+                        repositoryName
+                    )
+                );
+              }
+            }
+            properties.setProperty(INDEX_TIMESTAMP, formatTimestamp(timestamp));
+            try (Maven2WritableResource propertiesResource = resourceHandler.locate(INDEX_PROPERTY_NAME)) {
+              try (OutputStream out = propertiesResource.write()) {
+                properties.store(out, null);
+              }
+            }
+          }
+          deleteIncrementalChunks(repository, discardedChunks);
+          log.debug("Published incremental index chunk {} of {} with {} added and {} removed records", chunk,
+              repositoryName, added.size(), removed.size());
+          return true;
+        }
+    );
+  }
+
   /**
    * Primes proxy cache with given path and return {@code true} if succeeds. Accepts only maven proxy type.
    */
@@ -267,6 +450,159 @@ public final class MavenIndexPublisher
   }
 
 
+  /**
+   * Returns the records to publish of the given components, keyed as by {@link #componentKey(Coordinates)}.
+   */
+  private static List<Record> getComponentRecords(final StorageTx tx,
+                                                  final Repository repository,
+                                                  final MavenFacet mavenFacet,
+                                                  final Set<String> componentKeys)
+  {
+    List<Record> records = new ArrayList<>();
+    for (String componentKey : componentKeys) {
+      List<String> gav = Splitter.on(':').splitToList(componentKey);
+      Iterable<Component> components = tx.findComponents(
+          SELECT_COMPONENTS_BY_BASE_VERSION,
+          ImmutableMap.of("groupId", gav.get(0), "artifactId", gav.get(1), "baseVersion", gav.get(2)),
+          singletonList(repository),
+          null
+      );
+      for (Component component : components) {
+        Map<String, Object> sqlParams = new HashMap<>();
+        sqlParams.put("component", AttachedEntityHelper.id(component));
+        sqlParams.put(P_ASSET_KIND, AssetKind.ARTIFACT.name());
+        for (ODocument document : tx.browse(SELECT_COMPONENT_ARTIFACTS, sqlParams)) {
+          records.add(toRecord(mavenFacet, document));
+        }
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Creates the record telling index consumers that an artifact was deleted.
+   */
+  private static Record toRemovedRecord(final MavenPath mavenPath, final Date timestamp) {
+    Coordinates coordinates = mavenPath.getCoordinates();
+    Record record = new Record(Type.ARTIFACT_REMOVE, new HashMap<>());
+    record.put(Record.REC_MODIFIED, timestamp.getTime());
+    record.put(Record.GROUP_ID, coordinates.getGroupId());
+    record.put(Record.ARTIFACT_ID, coordinates.getArtifactId());
+    record.put(Record.VERSION, coordinates.getBaseVersion());
+    record.put(Record.CLASSIFIER, coordinates.getClassifier());
+    record.put(Record.FILE_EXTENSION, pathExtension(mavenPath.getFileName()));
+    return record;
+  }
+
+  private static String componentKey(final Coordinates coordinates) {
+    return coordinates.getGroupId() + ':' + coordinates.getArtifactId() + ':' + coordinates.getBaseVersion();
+  }
+
+  private static String componentKey(final Record record) {
+    return record.get(Record.GROUP_ID) + ':' + record.get(Record.ARTIFACT_ID) + ':' + record.get(Record.VERSION);
+  }
+
+  /**
+   * Returns the key MI records are unique by.
+   */
+  private static String uinfo(final Record record) {
+    return record.get(Record.GROUP_ID) + '|' +
+        record.get(Record.ARTIFACT_ID) + '|' +
+        record.get(Record.VERSION) + '|' +
+        defStr(record.get(Record.CLASSIFIER), "n/a") + '|' +
+        record.get(Record.FILE_EXTENSION);
+  }
+
+  /**
+   * Writes a chunk of records into the resource; on failure the partly written chunk is discarded, not stored.
+   */
+  private static void writeChunk(final Maven2WritableResource resource,
+                                 final String chunkName,
+                                 final Date timestamp,
+                                 final Iterable<Record> records) throws IOException
+  {
+    try (ChunkWriter chunkWriter = new ChunkWriter(chunkName, resource.write(), INDEX_VERSION, timestamp)) {
+      chunkWriter.writeChunk(transform(records, RECORD_COMPACTOR::apply).iterator());
+    }
+    catch (IOException | RuntimeException e) {
+      resource.discard();
+      throw e;
+    }
+  }
+
+  @Nullable
+  private static Properties loadProperties(final Repository repository) throws IOException {
+    try (Maven2WritableResourceHandler resourceHandler = new Maven2WritableResourceHandler(repository);
+         Maven2WritableResource resource = resourceHandler.locate(INDEX_PROPERTY_NAME);
+         InputStream in = resource.read()) {
+      if (in == null) {
+        return null;
+      }
+      Properties properties = new Properties();
+      properties.load(in);
+      return properties;
+    }
+  }
+
+  /**
+   * Returns the incremental chunks listed in index properties, newest first.
+   */
+  @VisibleForTesting
+  static List<Integer> incrementalChunks(@Nullable final Properties properties) {
+    List<Integer> chunks = new ArrayList<>();
+    if (properties != null) {
+      for (String key : properties.stringPropertyNames()) {
+        if (key.startsWith(INDEX_INCREMENTAL_PREFIX)) {
+          Integer chunk = Ints.tryParse(properties.getProperty(key).trim());
+          if (chunk != null) {
+            chunks.add(chunk);
+          }
+        }
+      }
+    }
+    chunks.sort(Comparator.reverseOrder());
+    return chunks;
+  }
+
+  @VisibleForTesting
+  static int nextIncrementalChunk(final Properties properties) {
+    Integer last = Ints.tryParse(properties.getProperty(INDEX_LAST_INCREMENTAL, "0").trim());
+    return last != null ? last + 1 : incrementalChunks(properties).stream().findFirst().orElse(0) + 1;
+  }
+
+  /**
+   * Lists {@code chunk} as the latest incremental chunk in the index properties, keeping at most {@code maxChunks}
+   * listed. Returns the chunks no longer listed.
+   */
+  @VisibleForTesting
+  static List<Integer> recordIncrementalChunk(final Properties properties, final int chunk, final int maxChunks) {
+    List<Integer> chunks = incrementalChunks(properties);
+    properties.stringPropertyNames().stream()
+        .filter(key -> key.startsWith(INDEX_INCREMENTAL_PREFIX))
+        .forEach(properties::remove);
+    chunks.add(0, chunk);
+    for (int i = 0; i < Math.min(maxChunks, chunks.size()); i++) {
+      properties.setProperty(INDEX_INCREMENTAL_PREFIX + i, String.valueOf(chunks.get(i)));
+    }
+    properties.setProperty(INDEX_LAST_INCREMENTAL, String.valueOf(chunk));
+    return chunks.size() > maxChunks ? new ArrayList<>(chunks.subList(maxChunks, chunks.size())) : emptyList();
+  }
+
+  private static void deleteIncrementalChunks(final Repository repository, final List<Integer> chunks)
+      throws IOException
+  {
+    for (Integer chunk : chunks) {
+      delete(repository, "/.index/" + INDEX_CHUNK_PREFIX + chunk + ".gz");
+    }
+  }
+
+  @VisibleForTesting
+  static String formatTimestamp(final Date timestamp) {
+    SimpleDateFormat format = new SimpleDateFormat(INDEX_DATE_FORMAT, Locale.ENGLISH);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(timestamp);
+  }
+
   /**
    * Converts orient SQL query result into Maven Indexer Reader {@link Record}. Should be invoked only with documents
    * belonging to components, but not checksums or signatures.
@@ -364,23 +700,31 @@ public final class MavenIndexPublisher
             singletonList(allGroups(allGroups)), // placeholder, will be recreated at the end with proper content
             singletonList(rootGroups(rootGroups)) // placeholder, will be recreated at the end with proper content
         ),
-        (Record rec) -> {
-          if (Type.DESCRIPTOR == rec.getType()) {
-            return rec;
-          }
-          else if (Type.ALL_GROUPS == rec.getType()) {
-            return allGroups(allGroups);
-          }
-          else if (Type.ROOT_GROUPS == rec.getType()) {
-            return rootGroups(rootGroups);
-          }
-          else {
-            final String groupId = rec.get(Record.GROUP_ID);
-            if (groupId != null) {
-              allGroups.add(groupId);
-              rootGroups.add(rootGroup(groupId));
+        new Function<Record, Record>()
+        {
+          private String lastGroupId;
+
+          @Override
+          public Record apply(final Record rec) {
+            if (Type.DESCRIPTOR == rec.getType()) {
+              return rec;
+            }
+            else if (Type.ALL_GROUPS == rec.getType()) {
+              return allGroups(allGroups);
+            }
+            else if (Type.ROOT_GROUPS == rec.getType()) {
+              return rootGroups(rootGroups);
+            }
+            else {
+              final String groupId = rec.get(Record.GROUP_ID);
+              // records of a group mostly arrive together, so skip the tree lookups when it repeats
+              if (groupId != null && !groupId.equals(lastGroupId)) {
+                allGroups.add(groupId);
+                rootGroups.add(rootGroup(groupId));
+                lastGroupId = groupId;
+              }
+              return rec;
             }
-            return rec;
           }
         }
     );
@@ -456,6 +800,16 @@ public final class MavenIndexPublisher
       return new BufferedOutputStream(Files.newOutputStream(path));
     }
 
+    /**
+     * Drops anything written so far, so closing the resource stores nothing.
+     */
+    void discard() throws IOException {
+      if (path != null) {
+        Files.delete(path);
+        path = null;
+      }
+    }
+
     @Override
     public void close() throws IOException {
       if (path != null) {
@@ -500,42 +854,22 @@ public final class MavenIndexPublisher
 
   /**
    * Memory conservative "uniqueness filter" that filters MI keys (UINFO), allowing one uinfo at the time. MI index
-   * is unique by UINFO composite field, and this predicate filters it as such.
+   * is unique by UINFO composite field, and this predicate filters it as such. Seen keys are kept as fingerprints in a
+   * {@link RecordKeySet}, which moves to memory-mapped files as it grows.
    */
   private static class UniqueFilter
       implements Predicate<Record>
   {
-    /**
-     * G->A->V->Set(CE), just to check for uniqueness.
-     */
-    private Map<String, Map<String, Map<String, Set<String>>>> gavce = new HashMap<>();
+    private final RecordKeySet gavce = new RecordKeySet();
 
     @Override
     public boolean apply(final Record input) {
-      String g = input.get(Record.GROUP_ID);
-      String a = input.get(Record.ARTIFACT_ID);
-      String v = input.get(Record.VERSION);
-      String ce = defStr(input.get(Record.CLASSIFIER), "n/a") + ":" + input.get(Record.FILE_EXTENSION);
-      // G
-      Map<String, Map<String, Set<String>>> gMap = gavce.get(g);
-      if (gMap == null) {
-        gMap = new HashMap<>();
-        gavce.put(g, gMap);
-      }
-      // A
-      Map<String, Set<String>> aMap = gMap.get(a);
-      if (aMap == null) {
-        aMap = new HashMap<>();
-        gMap.put(a, aMap);
+      try {
+        return gavce.add(uinfo(input));
       }
-      // V
-      Set<String> vSet = aMap.get(v);
-      if (vSet == null) {
-        vSet = new HashSet<>();
-        aMap.put(v, vSet);
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-      // CE
-      return vSet.add(ce);
     }
   }
 
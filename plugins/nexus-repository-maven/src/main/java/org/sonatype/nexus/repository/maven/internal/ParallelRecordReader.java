@@ -0,0 +1,208 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.maven.internal;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.nexus.thread.NexusThreadFactory;
+
+import com.google.common.base.Throwables;
+import org.apache.maven.index.reader.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads several sources of MI records concurrently while returning their records in source order, as if the sources
+ * were concatenated.
+ *
+ * Each source is iterated (and so decompressed, parsed and expanded) on a worker thread, which hands its records over
+ * in batches through a small bounded queue. A worker whose queue is full waits until the consumer reaches its source,
+ * so no more than {@code maxBatches} batches per source are ever held in memory, whatever the size of the sources.
+ *
+ * A failure while reading a source is rethrown by {@link #hasNext()} once the consumer reaches it. The reader must be
+ * closed, before the sources themselves, to release its threads.
+ *
+ * @since 3.9
+ */
+final class ParallelRecordReader
+    implements Iterator<Record>, Closeable
+{
+  private static final Logger log = LoggerFactory.getLogger(ParallelRecordReader.class);
+
+  private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+  private final List<BlockingQueue<Batch>> queues;
+
+  private final ExecutorService executor;
+
+  private volatile boolean closed;
+
+  private int current;
+
+  private Iterator<Record> batch = Collections.emptyIterator();
+
+  ParallelRecordReader(final List<? extends Iterable<Record>> sources,
+                       final int threads,
+                       final int batchSize,
+                       final int maxBatches)
+  {
+    checkNotNull(sources);
+    checkArgument(threads > 0, "Threads must be greater than zero");
+    checkArgument(batchSize > 0, "Batch size must be greater than zero");
+    checkArgument(maxBatches > 0, "Maximum batches must be greater than zero");
+    this.queues = new ArrayList<>(sources.size());
+    this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, sources.size())),
+        new NexusThreadFactory("maven-index-merge", "maven-index-merge"));
+
+    // sources are started in order, so the one being consumed always has a thread
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    for (Iterable<Record> source : sources) {
+      BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(maxBatches);
+      queues.add(queue);
+      executor.execute(() -> {
+        if (mdc != null) {
+          MDC.setContextMap(mdc);
+        }
+        try {
+          read(source, queue, batchSize);
+        }
+        finally {
+          MDC.clear();
+        }
+      });
+    }
+  }
+
+  private void read(final Iterable<Record> source, final BlockingQueue<Batch> queue, final int batchSize) {
+    try {
+      List<Record> records = new ArrayList<>(batchSize);
+      for (Record record : source) {
+        records.add(record);
+        if (records.size() == batchSize) {
+          if (!offer(queue, new Batch(records, null))) {
+            return;
+          }
+          records = new ArrayList<>(batchSize);
+        }
+      }
+      if (!records.isEmpty() && !offer(queue, new Batch(records, null))) {
+        return;
+      }
+      offer(queue, Batch.END);
+    }
+    catch (Exception e) {
+      if (closed) {
+        log.trace("Failed reading index records after merge was closed", e);
+      }
+      else {
+        offer(queue, new Batch(null, e));
+      }
+    }
+  }
+
+  /**
+   * Waits for room in the queue, returns {@code false} if the reader was closed (or interrupted) meanwhile.
+   */
+  private boolean offer(final BlockingQueue<Batch> queue, final Batch batch) {
+    try {
+      while (!closed) {
+        if (queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!batch.hasNext()) {
+      if (current == queues.size()) {
+        return false;
+      }
+      Batch next;
+      try {
+        next = queues.get(current).take();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while merging index records", e);
+      }
+      if (next.failure != null) {
+        Throwables.throwIfUnchecked(next.failure);
+        throw new IllegalStateException("Failed to read index records", next.failure);
+      }
+      if (next == Batch.END) {
+        current++;
+      }
+      else {
+        batch = next.records.iterator();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Record next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return batch.next();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(5L, TimeUnit.SECONDS)) {
+        log.warn("Failed to terminate thread pool in allotted time");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Batch
+  {
+    static final Batch END = new Batch(Collections.emptyList(), null);
+
+    final List<Record> records;
+
+    final Throwable failure;
+
+    Batch(final List<Record> records, final Throwable failure) {
+      this.records = records;
+      this.failure = failure;
+    }
+  }
+}
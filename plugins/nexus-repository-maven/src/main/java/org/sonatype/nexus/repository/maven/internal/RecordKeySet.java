@@ -0,0 +1,208 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.maven.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Set of record keys used to deduplicate MI records, with heap use bounded whatever the number of keys.
+ *
+ * Only a 128-bit fingerprint of each key is kept, in open-addressing tables spread over independently grown segments.
+ * Small tables are kept on heap; once a segment outgrows {@link #HEAP_SLOTS} its table moves to a memory-mapped
+ * temporary file, so large indexes are deduplicated in the page cache instead of on heap. The files are opened for
+ * deletion on close, so they go away with their mappings and need no cleanup. The chance of two distinct keys sharing
+ * a fingerprint is negligible even for the largest public indexes.
+ *
+ * Not thread safe.
+ *
+ * @since 3.9
+ */
+final class RecordKeySet
+{
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private static final int SEGMENT_BITS = 6;
+
+  private static final int INITIAL_SLOTS = 1 << 10;
+
+  /**
+   * Largest table per segment kept on heap, 128KB of fingerprints.
+   */
+  @VisibleForTesting
+  static final int HEAP_SLOTS = 1 << 13;
+
+  /**
+   * Largest table per segment, 1GB of fingerprints.
+   */
+  private static final int MAX_SLOTS = 1 << 26;
+
+  private static final int SLOT_BYTES = 2 * Long.BYTES;
+
+  private final Path directory;
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  private long size;
+
+  RecordKeySet() {
+    this(Paths.get(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * @param directory where tables outgrowing the heap are mapped
+   */
+  RecordKeySet(final Path directory) {
+    this.directory = checkNotNull(directory);
+  }
+
+  /**
+   * Adds the key, returns {@code true} if it was not already present.
+   */
+  boolean add(final CharSequence key) throws IOException {
+    ByteBuffer hash = ByteBuffer.wrap(HASH.hashString(key, UTF_8).asBytes());
+    long high = hash.getLong();
+    long low = hash.getLong();
+    if (high == 0 && low == 0) {
+      low = 1; // all-zero marks an empty slot
+    }
+    int index = (int) (high >>> (Long.SIZE - SEGMENT_BITS));
+    Segment segment = segments[index];
+    if (segment == null) {
+      segment = new Segment(directory);
+      segments[index] = segment;
+    }
+    if (segment.add(high, low)) {
+      size++;
+      return true;
+    }
+    return false;
+  }
+
+  long size() {
+    return size;
+  }
+
+  @VisibleForTesting
+  long capacity() {
+    long capacity = 0;
+    for (Segment segment : segments) {
+      if (segment != null) {
+        capacity += segment.slots;
+      }
+    }
+    return capacity;
+  }
+
+  /**
+   * Linear probing table of fingerprints, the high and low halves of each side by side; grows once three quarters
+   * full.
+   */
+  private static final class Segment
+  {
+    private final Path directory;
+
+    private ByteBuffer table;
+
+    private int slots;
+
+    private int count;
+
+    private Segment(final Path directory) {
+      this.directory = directory;
+      this.table = ByteBuffer.allocate(INITIAL_SLOTS * SLOT_BYTES);
+      this.slots = INITIAL_SLOTS;
+    }
+
+    private boolean add(final long high, final long low) throws IOException {
+      if (!insert(table, slots, high, low)) {
+        return false;
+      }
+      count++;
+      if (count > slots - (slots >>> 2)) {
+        grow();
+      }
+      return true;
+    }
+
+    private void grow() throws IOException {
+      if (slots == MAX_SLOTS) {
+        if (count == slots - 1) {
+          throw new IllegalStateException("Too many index records to deduplicate");
+        }
+        return;
+      }
+      int newSlots = slots << 1;
+      ByteBuffer newTable = newSlots <= HEAP_SLOTS ? ByteBuffer.allocate(newSlots * SLOT_BYTES) : map(newSlots);
+      for (int slot = 0; slot < slots; slot++) {
+        long high = table.getLong(slot * SLOT_BYTES);
+        long low = table.getLong(slot * SLOT_BYTES + Long.BYTES);
+        if (high != 0 || low != 0) {
+          insert(newTable, newSlots, high, low);
+        }
+      }
+      table = newTable;
+      slots = newSlots;
+    }
+
+    /**
+     * Maps a zeroed table from a new temporary file. The file is deleted when its channel closes, or on platforms
+     * which can't delete mapped files, once the mapping is garbage collected.
+     */
+    private ByteBuffer map(final int slots) throws IOException {
+      Path file = Files.createTempFile(directory, "record-keys", ".tmp");
+      try (FileChannel channel = FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE)) {
+        // mapping past the end extends the file with zeroes, which are empty slots
+        return channel.map(READ_WRITE, 0, (long) slots * SLOT_BYTES);
+      }
+      catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(file);
+        throw e;
+      }
+    }
+
+    private static boolean insert(final ByteBuffer table, final int slots, final long high, final long low) {
+      int mask = slots - 1;
+      int slot = (int) low & mask;
+      while (true) {
+        int offset = slot * SLOT_BYTES;
+        long slotHigh = table.getLong(offset);
+        long slotLow = table.getLong(offset + Long.BYTES);
+        if (slotHigh == 0 && slotLow == 0) {
+          table.putLong(offset, high);
+          table.putLong(offset + Long.BYTES, low);
+          return true;
+        }
+        if (slotHigh == high && slotLow == low) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+  }
+}
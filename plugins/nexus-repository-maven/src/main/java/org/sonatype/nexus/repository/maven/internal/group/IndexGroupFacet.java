@@ -40,7 +40,7 @@ public class IndexGroupFacet
   public void publishIndex() throws IOException {
     UnitOfWork.begin(getRepository().facet(StorageFacet.class).txSupplier());
     try {
-      List<Repository> leafMembers = facet(GroupFacet.class).leafMembers();
+      List<Repository> leafMembers = new ArrayList<>(facet(GroupFacet.class).leafMembers());
       ArrayList<String> withoutIndex = new ArrayList<>();
       for (Iterator<Repository> ri = leafMembers.iterator(); ri.hasNext(); ) {
         Repository repository = ri.next();
@@ -13,32 +13,122 @@
 package org.sonatype.nexus.repository.maven.internal.hosted;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Named;
 
+import org.sonatype.nexus.common.property.SystemPropertiesHelper;
 import org.sonatype.nexus.repository.maven.MavenIndexFacet;
 import org.sonatype.nexus.repository.maven.internal.MavenIndexFacetSupport;
 import org.sonatype.nexus.repository.maven.internal.MavenIndexPublisher;
+import org.sonatype.nexus.repository.storage.AssetDeletedEvent;
+import org.sonatype.nexus.repository.storage.AssetEvent;
 import org.sonatype.nexus.repository.storage.StorageFacet;
 import org.sonatype.nexus.transaction.UnitOfWork;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
 /**
  * Hosted implementation of {@link MavenIndexFacet}.
  *
+ * Asset changes are tracked from one publish to the next, so a publish only writes an incremental chunk with what
+ * changed. The first publish after the repository starts, or after more than
+ * {@code nexus.maven.index.incremental.maxChanges} changes, rebuilds the index from scratch, as does any publish
+ * asking for a full rebuild.
+ *
  * @since 3.0
  */
 @Named
 public class MavenHostedIndexFacet
     extends MavenIndexFacetSupport
 {
+  private static final int MAX_TRACKED_CHANGES =
+      SystemPropertiesHelper.getInteger("nexus.maven.index.incremental.maxChanges", 100_000);
+
+  private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+
+  private final Set<String> deletedPaths = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Whether every change since the index was last published has been tracked.
+   */
+  private volatile boolean tracking;
+
+  @Override
+  protected void doStop() throws Exception {
+    tracking = false;
+    super.doStop();
+  }
+
   @Override
   public void publishIndex() throws IOException {
+    publishIndex(false);
+  }
+
+  @Override
+  public void publishIndex(final boolean full) throws IOException {
     UnitOfWork.begin(getRepository().facet(StorageFacet.class).txSupplier());
     try {
+      if (!full && tracking && publishChanges()) {
+        return;
+      }
+      // track from here on, so changes made while publishing are picked up by the next publish
+      changedPaths.clear();
+      deletedPaths.clear();
+      tracking = true;
       MavenIndexPublisher.publishHostedIndex(getRepository());
     }
+    catch (IOException | RuntimeException e) {
+      tracking = false;
+      throw e;
+    }
     finally {
       UnitOfWork.end();
     }
   }
+
+  private boolean publishChanges() throws IOException {
+    // take the changes tracked so far, anything tracked meanwhile is left for the next publish
+    Set<String> changed = drain(changedPaths);
+    Set<String> deleted = drain(deletedPaths);
+    log.debug("Publishing {} changed and {} deleted paths of {}", changed.size(), deleted.size(),
+        getRepository().getName());
+    return MavenIndexPublisher.publishHostedIndexChanges(getRepository(), changed, deleted);
+  }
+
+  private static Set<String> drain(final Set<String> paths) {
+    Set<String> drained = new HashSet<>();
+    for (Iterator<String> itr = paths.iterator(); itr.hasNext(); ) {
+      drained.add(itr.next());
+      itr.remove();
+    }
+    return drained;
+  }
+
+  @Subscribe
+  @AllowConcurrentEvents
+  public void on(final AssetEvent event) {
+    if (!tracking || !getRepository().getName().equals(event.getRepositoryName())) {
+      return;
+    }
+    String path = event.getAsset().name();
+    if (path.startsWith(".index/")) {
+      return; // the index itself
+    }
+    changedPaths.add(path);
+    if (event instanceof AssetDeletedEvent) {
+      deletedPaths.add(path);
+    }
+    if (changedPaths.size() > MAX_TRACKED_CHANGES) {
+      log.debug("Too many changes in {} since its index was last published, next publish will be full",
+          getRepository().getName());
+      tracking = false;
+      changedPaths.clear();
+      deletedPaths.clear();
+    }
+  }
 }
@@ -21,6 +21,8 @@ import org.sonatype.nexus.repository.RepositoryTaskSupport;
 import org.sonatype.nexus.repository.maven.MavenIndexFacet;
 import org.sonatype.nexus.repository.maven.internal.Maven2Format;
 
+import static org.sonatype.nexus.repository.maven.tasks.PublishMavenIndexTaskDescriptor.FULL_REBUILD_FIELD_ID;
+
 /**
  * Maven 2 publish MI indexes task.
  *
@@ -34,7 +36,7 @@ public class PublishMavenIndexTask
   protected void execute(final Repository repository) {
     MavenIndexFacet mavenIndexFacet = repository.facet(MavenIndexFacet.class);
     try {
-      mavenIndexFacet.publishIndex();
+      mavenIndexFacet.publishIndex(getConfiguration().getBoolean(FULL_REBUILD_FIELD_ID, false));
     }
     catch (IOException e) {
       throw new RuntimeException(e);
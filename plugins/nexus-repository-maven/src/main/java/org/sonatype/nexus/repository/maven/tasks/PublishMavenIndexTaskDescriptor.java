@@ -15,10 +15,13 @@ package org.sonatype.nexus.repository.maven.tasks;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.sonatype.nexus.formfields.CheckboxFormField;
 import org.sonatype.nexus.formfields.RepositoryCombobox;
 import org.sonatype.nexus.repository.maven.internal.Maven2Format;
 import org.sonatype.nexus.scheduling.TaskDescriptorSupport;
 
+import static org.sonatype.nexus.formfields.FormField.OPTIONAL;
+
 /**
  * Task descriptor for {@link PublishMavenIndexTask}.
  *
@@ -33,6 +36,8 @@ public class PublishMavenIndexTaskDescriptor
 
   public static final String REPOSITORY_NAME_FIELD_ID = "repositoryName";
 
+  public static final String FULL_REBUILD_FIELD_ID = "fullRebuild";
+
   public PublishMavenIndexTaskDescriptor() {
     super(TYPE_ID,
         PublishMavenIndexTask.class,
@@ -44,7 +49,14 @@ public class PublishMavenIndexTaskDescriptor
             "Repository",
             "Select the Maven repository to publish indexer files for",
             true
-        ).includingAnyOfFormats(Maven2Format.NAME).includeAnEntryForAllRepositories()
+        ).includingAnyOfFormats(Maven2Format.NAME).includeAnEntryForAllRepositories(),
+        new CheckboxFormField(
+            FULL_REBUILD_FIELD_ID,
+            "Full rebuild",
+            "Rebuild the indexes of hosted repositories from scratch, instead of publishing only what changed since " +
+                "they were last published. This can significantly increase the time needed for this task.",
+            OPTIONAL
+        ).withInitialValue(false)
     );
   }
 }
@@ -0,0 +1,460 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.maven.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+import org.sonatype.nexus.common.entity.EntityMetadata;
+import org.sonatype.nexus.orient.entity.AttachedEntityMetadata;
+import org.sonatype.nexus.orient.entity.EntityAdapter;
+import org.sonatype.nexus.repository.Repository;
+import org.sonatype.nexus.repository.maven.MavenFacet;
+import org.sonatype.nexus.repository.maven.MavenPath;
+import org.sonatype.nexus.repository.maven.internal.hosted.MavenHostedIndexFacet;
+import org.sonatype.nexus.repository.storage.Asset;
+import org.sonatype.nexus.repository.storage.AssetDeletedEvent;
+import org.sonatype.nexus.repository.storage.AssetEvent;
+import org.sonatype.nexus.repository.storage.Bucket;
+import org.sonatype.nexus.repository.storage.Component;
+import org.sonatype.nexus.repository.storage.DefaultComponent;
+import org.sonatype.nexus.repository.storage.StorageFacet;
+import org.sonatype.nexus.repository.storage.StorageTx;
+import org.sonatype.nexus.repository.view.Content;
+import org.sonatype.nexus.repository.view.Payload;
+import org.sonatype.nexus.repository.view.payloads.BytesPayload;
+import org.sonatype.nexus.transaction.UnitOfWork;
+
+import com.google.common.io.ByteStreams;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import org.apache.maven.index.reader.ChunkReader;
+import org.apache.maven.index.reader.Record;
+import org.apache.maven.index.reader.Record.Type;
+import org.apache.maven.index.reader.RecordExpander;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * UT for {@link MavenIndexPublisher}
+ */
+public class MavenIndexPublisherTest
+    extends TestSupport
+{
+  private static final String REPOSITORY_NAME = "maven-releases";
+
+  private static final String MAIN_CHUNK = "nexus-maven-repository-index.gz";
+
+  @Mock
+  private Repository repository;
+
+  @Mock
+  private MavenFacet mavenFacet;
+
+  @Mock
+  private StorageFacet storageFacet;
+
+  @Mock
+  private StorageTx tx;
+
+  /**
+   * Content of the repository, by path.
+   */
+  private final Map<String, byte[]> storage = new HashMap<>();
+
+  /**
+   * Components of the repository, by "groupId:artifactId:version".
+   */
+  private final Map<String, Component> components = new LinkedHashMap<>();
+
+  /**
+   * Artifact assets of the repository, by component id.
+   */
+  private final Map<ORID, List<ODocument>> artifacts = new LinkedHashMap<>();
+
+  private int nextId;
+
+  @Before
+  public void setUp() throws Exception {
+    Bucket bucket = new Bucket();
+    bucket.setEntityMetadata(entityMetadata(new ORecordId(1, 1)));
+
+    when(repository.getName()).thenReturn(REPOSITORY_NAME);
+    when(repository.facet(MavenFacet.class)).thenReturn(mavenFacet);
+    when(repository.facet(StorageFacet.class)).thenReturn(storageFacet);
+    when(storageFacet.txSupplier()).thenReturn(() -> tx);
+    when(tx.findBucket(repository)).thenReturn(bucket);
+    when(tx.browse(anyString(), anyMapOf(String.class, Object.class))).thenAnswer(invocation -> {
+      Map<?, ?> params = (Map<?, ?>) invocation.getArguments()[1];
+      if (params.containsKey("component")) {
+        return artifacts.getOrDefault(params.get("component"), emptyList());
+      }
+      List<ODocument> all = new ArrayList<>();
+      artifacts.values().forEach(all::addAll);
+      return all;
+    });
+    when(tx.findComponents(anyString(), anyMapOf(String.class, Object.class), Matchers.<Iterable<Repository>>any(),
+        anyString())).thenAnswer(invocation -> {
+      Map<?, ?> params = (Map<?, ?>) invocation.getArguments()[1];
+      Component component = components.get(
+          params.get("groupId") + ":" + params.get("artifactId") + ":" + params.get("baseVersion"));
+      return component != null ? singletonList(component) : emptyList();
+    });
+
+    when(mavenFacet.getMavenPathParser()).thenReturn(new Maven2MavenPathParser());
+    when(mavenFacet.get(any(MavenPath.class))).thenAnswer(invocation -> {
+      byte[] content = storage.get(((MavenPath) invocation.getArguments()[0]).getPath());
+      return content != null ? new Content(new BytesPayload(content, null)) : null;
+    });
+    when(mavenFacet.put(any(MavenPath.class), any(Payload.class))).thenAnswer(invocation -> {
+      try (InputStream in = ((Payload) invocation.getArguments()[1]).openInputStream()) {
+        storage.put(((MavenPath) invocation.getArguments()[0]).getPath(), ByteStreams.toByteArray(in));
+      }
+      return null;
+    });
+    when(mavenFacet.delete(Matchers.<MavenPath>anyVararg())).thenAnswer(invocation -> {
+      boolean deleted = false;
+      for (Object path : invocation.getArguments()) {
+        deleted |= storage.remove(((MavenPath) path).getPath()) != null;
+      }
+      return deleted;
+    });
+  }
+
+  @Test
+  public void changesAreMergedIntoMainChunk() throws Exception {
+    deploy("org.foo", "a", "1.0", "A");
+    deploy("org.foo", "b", "1.0", "B");
+    publishFull();
+
+    deploy("org.foo", "a", "1.0", "A updated");
+    deploy("org.bar", "c", "2.0", "C");
+    undeploy("org.foo", "b", "1.0");
+
+    int chunk = MavenIndexPublisher.nextIncrementalChunk(readProperties());
+    assertThat(publishChanges(
+        newHashSet("org/foo/a/1.0/a-1.0.jar", "org/bar/c/2.0/c-2.0.jar", "org/foo/b/1.0/b-1.0.jar"),
+        newHashSet("org/foo/b/1.0/b-1.0.jar")), is(true));
+
+    List<Record> main = readChunk(MAIN_CHUNK);
+    assertThat(artifacts(main, Type.ARTIFACT_ADD), containsInAnyOrder("org.foo:a:1.0", "org.bar:c:2.0"));
+    assertThat(artifacts(main, Type.ARTIFACT_REMOVE), is(empty()));
+    assertThat(names(main), containsInAnyOrder("A updated", "C"));
+
+    List<Record> incremental = readChunk("nexus-maven-repository-index." + chunk + ".gz");
+    assertThat(artifacts(incremental, Type.ARTIFACT_ADD), containsInAnyOrder("org.foo:a:1.0", "org.bar:c:2.0"));
+    assertThat(artifacts(incremental, Type.ARTIFACT_REMOVE), contains("org.foo:b:1.0"));
+
+    Properties properties = readProperties();
+    assertThat(properties.getProperty("nexus.index.last-incremental"), is(String.valueOf(chunk)));
+    assertThat(MavenIndexPublisher.incrementalChunks(properties), hasItem(chunk));
+  }
+
+  @Test
+  public void redeployedArtifactIsNotRemoved() throws Exception {
+    deploy("org.foo", "a", "1.0", "A");
+    publishFull();
+
+    deploy("org.foo", "a", "1.0", "A again");
+    int chunk = MavenIndexPublisher.nextIncrementalChunk(readProperties());
+    Set<String> paths = newHashSet("org/foo/a/1.0/a-1.0.jar");
+    assertThat(publishChanges(paths, paths), is(true));
+
+    assertThat(artifacts(readChunk(MAIN_CHUNK), Type.ARTIFACT_ADD), contains("org.foo:a:1.0"));
+    List<Record> incremental = readChunk("nexus-maven-repository-index." + chunk + ".gz");
+    assertThat(artifacts(incremental, Type.ARTIFACT_ADD), contains("org.foo:a:1.0"));
+    assertThat(artifacts(incremental, Type.ARTIFACT_REMOVE), is(empty()));
+  }
+
+  @Test
+  public void changesAreNotPublishedWithoutIndex() throws Exception {
+    deploy("org.foo", "a", "1.0", "A");
+
+    assertThat(publishChanges(newHashSet("org/foo/a/1.0/a-1.0.jar"), emptySet()), is(false));
+    assertThat(storage.isEmpty(), is(true));
+  }
+
+  @Test
+  public void hostedFacetPublishesTrackedChanges() throws Exception {
+    MavenHostedIndexFacet underTest = new MavenHostedIndexFacet();
+    underTest.attach(repository);
+
+    deploy("org.foo", "a", "1.0", "A");
+    deploy("org.foo", "b", "1.0", "B");
+    underTest.publishIndex();
+
+    deploy("org.bar", "c", "2.0", "C");
+    underTest.on(assetEvent("org/bar/c/2.0/c-2.0.jar"));
+    undeploy("org.foo", "b", "1.0");
+    underTest.on(assetDeletedEvent("org/foo/b/1.0/b-1.0.jar"));
+    underTest.on(assetEvent(".index/" + MAIN_CHUNK));
+
+    int chunk = MavenIndexPublisher.nextIncrementalChunk(readProperties());
+    underTest.publishIndex();
+
+    assertThat(artifacts(readChunk(MAIN_CHUNK), Type.ARTIFACT_ADD), contains("org.foo:a:1.0", "org.bar:c:2.0"));
+    List<Record> incremental = readChunk("nexus-maven-repository-index." + chunk + ".gz");
+    assertThat(artifacts(incremental, Type.ARTIFACT_ADD), contains("org.bar:c:2.0"));
+    assertThat(artifacts(incremental, Type.ARTIFACT_REMOVE), contains("org.foo:b:1.0"));
+
+    // a requested full publish starts over, dropping the incremental chunks
+    underTest.publishIndex(true);
+
+    assertThat(artifacts(readChunk(MAIN_CHUNK), Type.ARTIFACT_ADD),
+        containsInAnyOrder("org.foo:a:1.0", "org.bar:c:2.0"));
+    assertThat(incrementalChunkFiles(), is(empty()));
+  }
+
+  @Test
+  public void hostedFacetPublishesFullIndexUnlessTracking() throws Exception {
+    deploy("org.foo", "a", "1.0", "A");
+    publishFull();
+
+    // changes made before the facet tracks them can only be picked up by a full publish
+    MavenHostedIndexFacet underTest = new MavenHostedIndexFacet();
+    underTest.attach(repository);
+    deploy("org.bar", "c", "2.0", "C");
+    underTest.on(assetEvent("org/bar/c/2.0/c-2.0.jar"));
+
+    underTest.publishIndex();
+
+    assertThat(artifacts(readChunk(MAIN_CHUNK), Type.ARTIFACT_ADD),
+        containsInAnyOrder("org.foo:a:1.0", "org.bar:c:2.0"));
+    assertThat(incrementalChunkFiles(), is(empty()));
+  }
+
+  @Test
+  public void hostedFacetIgnoresOtherRepositories() throws Exception {
+    MavenHostedIndexFacet underTest = new MavenHostedIndexFacet();
+    underTest.attach(repository);
+
+    deploy("org.foo", "a", "1.0", "A");
+    underTest.publishIndex();
+
+    AssetEvent event = assetEvent("org/bar/c/2.0/c-2.0.jar");
+    when(event.getRepositoryName()).thenReturn("maven-snapshots");
+    underTest.on(event);
+    underTest.publishIndex();
+
+    assertThat(artifacts(readChunk(MAIN_CHUNK), Type.ARTIFACT_ADD), contains("org.foo:a:1.0"));
+    assertThat(incrementalChunkFiles(), is(empty()));
+  }
+
+  @Test
+  public void firstIncrementalChunk() {
+    Properties properties = new Properties();
+    properties.setProperty("nexus.index.id", "maven-releases");
+
+    int chunk = MavenIndexPublisher.nextIncrementalChunk(properties);
+    assertThat(chunk, is(1));
+    assertThat(MavenIndexPublisher.recordIncrementalChunk(properties, chunk, 3), is(empty()));
+
+    assertThat(properties.getProperty("nexus.index.last-incremental"), is("1"));
+    assertThat(properties.getProperty("nexus.index.incremental-0"), is("1"));
+    assertThat(MavenIndexPublisher.incrementalChunks(properties), contains(1));
+  }
+
+  @Test
+  public void oldestChunksAreDiscarded() {
+    Properties properties = new Properties();
+    properties.setProperty("nexus.index.last-incremental", "7");
+    properties.setProperty("nexus.index.incremental-0", "7");
+    properties.setProperty("nexus.index.incremental-1", "6");
+    properties.setProperty("nexus.index.incremental-2", "5");
+
+    int chunk = MavenIndexPublisher.nextIncrementalChunk(properties);
+    assertThat(chunk, is(8));
+    assertThat(MavenIndexPublisher.recordIncrementalChunk(properties, chunk, 3), contains(5));
+
+    assertThat(properties.getProperty("nexus.index.last-incremental"), is("8"));
+    assertThat(properties.getProperty("nexus.index.incremental-0"), is("8"));
+    assertThat(properties.getProperty("nexus.index.incremental-1"), is("7"));
+    assertThat(properties.getProperty("nexus.index.incremental-2"), is("6"));
+    assertThat(properties.getProperty("nexus.index.incremental-3"), is(nullValue()));
+  }
+
+  @Test
+  public void unreadableChunksAreIgnored() {
+    Properties properties = new Properties();
+    properties.setProperty("nexus.index.last-incremental", "bogus");
+    properties.setProperty("nexus.index.incremental-0", "4");
+    properties.setProperty("nexus.index.incremental-1", "bogus");
+
+    assertThat(MavenIndexPublisher.incrementalChunks(properties), contains(4));
+    assertThat(MavenIndexPublisher.nextIncrementalChunk(properties), is(5));
+    assertThat(MavenIndexPublisher.incrementalChunks(null), is(empty()));
+  }
+
+  @Test
+  public void timestampInIndexFormat() {
+    assertThat(MavenIndexPublisher.formatTimestamp(new Date(0L)), is("19700101000000.000 +0000"));
+  }
+
+  private void deploy(final String groupId, final String artifactId, final String version, final String name) {
+    String key = groupId + ":" + artifactId + ":" + version;
+    Component component = components.get(key);
+    if (component == null) {
+      component = new DefaultComponent();
+      component.setEntityMetadata(entityMetadata(new ORecordId(2, nextId++)));
+      components.put(key, component);
+    }
+    ODocument document = new ODocument();
+    document.field("lastModified", System.currentTimeMillis());
+    document.field("groupId", groupId);
+    document.field("artifactId", artifactId);
+    document.field("version", version);
+    document.field("packaging", "jar");
+    document.field("pom_name", name);
+    document.field("path", groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" +
+        version + ".jar");
+    document.field("contentLastModified", System.currentTimeMillis());
+    document.field("contentSize", 1024L);
+    document.field("sha1", "da39a3ee5e6b4b0d3255bfef95601890afd80709");
+    artifacts.put(id(component), singletonList(document));
+  }
+
+  private void undeploy(final String groupId, final String artifactId, final String version) {
+    Component component = components.remove(groupId + ":" + artifactId + ":" + version);
+    artifacts.remove(id(component));
+  }
+
+  private static ORID id(final Component component) {
+    return ((AttachedEntityMetadata) component.getEntityMetadata()).getDocument().getIdentity();
+  }
+
+  private static EntityMetadata entityMetadata(final ORID id) {
+    ODocument document = mock(ODocument.class);
+    when(document.getIdentity()).thenReturn(id);
+    return new AttachedEntityMetadata(mock(EntityAdapter.class), document);
+  }
+
+  private AssetEvent assetEvent(final String path) {
+    return assetEvent(mock(AssetEvent.class), path);
+  }
+
+  private AssetEvent assetDeletedEvent(final String path) {
+    return assetEvent(mock(AssetDeletedEvent.class), path);
+  }
+
+  private AssetEvent assetEvent(final AssetEvent event, final String path) {
+    Asset asset = new Asset();
+    asset.name(path);
+    when(event.getRepositoryName()).thenReturn(REPOSITORY_NAME);
+    when(event.getAsset()).thenReturn(asset);
+    return event;
+  }
+
+  private void publishFull() throws IOException {
+    UnitOfWork.begin(storageFacet.txSupplier());
+    try {
+      MavenIndexPublisher.publishHostedIndex(repository);
+    }
+    finally {
+      UnitOfWork.end();
+    }
+  }
+
+  private boolean publishChanges(final Set<String> changedPaths, final Set<String> deletedPaths) throws IOException {
+    UnitOfWork.begin(storageFacet.txSupplier());
+    try {
+      return MavenIndexPublisher.publishHostedIndexChanges(repository, changedPaths, deletedPaths);
+    }
+    finally {
+      UnitOfWork.end();
+    }
+  }
+
+  private Properties readProperties() throws IOException {
+    Properties properties = new Properties();
+    properties.load(new ByteArrayInputStream(storage.get(".index/nexus-maven-repository-index.properties")));
+    return properties;
+  }
+
+  private List<Record> readChunk(final String name) throws IOException {
+    byte[] content = storage.get(".index/" + name);
+    assertThat("Missing " + name, content, not(nullValue()));
+    RecordExpander recordExpander = new RecordExpander();
+    List<Record> records = new ArrayList<>();
+    try (ChunkReader chunkReader = new ChunkReader(name, new ByteArrayInputStream(content))) {
+      for (Map<String, String> record : chunkReader) {
+        records.add(recordExpander.apply(record));
+      }
+    }
+    return records;
+  }
+
+  private List<String> incrementalChunkFiles() {
+    List<String> chunks = new ArrayList<>();
+    for (String path : storage.keySet()) {
+      if (path.matches("\\.index/nexus-maven-repository-index\\.\\d+\\.gz")) {
+        chunks.add(path);
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * Returns "groupId:artifactId:version" of the records of given type, in chunk order.
+   */
+  private static List<String> artifacts(final List<Record> records, final Type type) {
+    List<String> artifacts = new ArrayList<>();
+    for (Record record : records) {
+      if (record.getType() == type) {
+        artifacts.add(record.get(Record.GROUP_ID) + ":" + record.get(Record.ARTIFACT_ID) + ":" +
+            record.get(Record.VERSION));
+      }
+    }
+    return artifacts;
+  }
+
+  private static List<String> names(final List<Record> records) {
+    List<String> names = new ArrayList<>();
+    for (Record record : records) {
+      if (record.getType() == Type.ARTIFACT_ADD) {
+        names.add(record.get(Record.NAME));
+      }
+    }
+    return names;
+  }
+}
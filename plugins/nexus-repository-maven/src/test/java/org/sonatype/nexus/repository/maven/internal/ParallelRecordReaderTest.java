@@ -0,0 +1,113 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.maven.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.apache.maven.index.reader.Record;
+import org.apache.maven.index.reader.Record.Type;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+/**
+ * UT for {@link ParallelRecordReader}
+ */
+public class ParallelRecordReaderTest
+    extends TestSupport
+{
+  @Test
+  public void recordsAreReturnedInSourceOrder() {
+    List<List<Record>> sources = ImmutableList.of(records("a", 25), records("b", 0), records("c", 7));
+    List<String> artifactIds = new ArrayList<>();
+    try (ParallelRecordReader underTest = new ParallelRecordReader(sources, 2, 3, 2)) {
+      underTest.forEachRemaining(record -> artifactIds.add(record.get(Record.ARTIFACT_ID)));
+    }
+
+    List<String> expected = new ArrayList<>();
+    for (List<Record> source : sources) {
+      source.forEach(record -> expected.add(record.get(Record.ARTIFACT_ID)));
+    }
+    assertThat(artifactIds, is(expected));
+    assertThat(artifactIds.size(), is(32));
+  }
+
+  @Test
+  public void noSources() {
+    try (ParallelRecordReader underTest = new ParallelRecordReader(Collections.emptyList(), 2, 3, 2)) {
+      List<Record> records = new ArrayList<>();
+      underTest.forEachRemaining(records::add);
+      assertThat(records, is(empty()));
+    }
+  }
+
+  @Test
+  public void readAheadIsBounded() throws Exception {
+    AtomicInteger read = new AtomicInteger();
+    Iterable<Record> source = Iterables.transform(records("a", 1000), record -> {
+      read.incrementAndGet();
+      return record;
+    });
+    try (ParallelRecordReader underTest = new ParallelRecordReader(ImmutableList.of(source), 1, 10, 2)) {
+      underTest.next();
+      Thread.sleep(200);
+      // two queued batches, the one being consumed and the one the worker is filling
+      assertThat(read.get(), lessThanOrEqualTo(40));
+    }
+  }
+
+  @Test
+  public void failureIsRethrownInOrder() {
+    Iterable<Record> failing = Iterables.transform(records("b", 5), record -> {
+      if ("b3".equals(record.get(Record.ARTIFACT_ID))) {
+        throw new IllegalStateException("corrupt chunk");
+      }
+      return record;
+    });
+    List<String> artifactIds = new ArrayList<>();
+    List<Iterable<Record>> sources = ImmutableList.of(records("a", 2), failing);
+    try (ParallelRecordReader underTest = new ParallelRecordReader(sources, 2, 2, 2)) {
+      underTest.forEachRemaining(record -> artifactIds.add(record.get(Record.ARTIFACT_ID)));
+      fail();
+    }
+    catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("corrupt chunk"));
+    }
+    assertThat(artifactIds, contains("a0", "a1", "b0", "b1"));
+  }
+
+  private static List<Record> records(final String prefix, final int count) {
+    List<Record> records = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Record record = new Record(Type.ARTIFACT_ADD, new HashMap<>());
+      record.put(Record.GROUP_ID, "org.foo");
+      record.put(Record.ARTIFACT_ID, prefix + i);
+      record.put(Record.VERSION, "1.0");
+      records.add(record);
+    }
+    return records;
+  }
+}
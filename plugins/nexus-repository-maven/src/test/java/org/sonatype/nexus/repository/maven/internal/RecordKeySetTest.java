@@ -0,0 +1,67 @@
+/*
+ * Sonatype Nexus (TM) Open Source Version
+ * Copyright (c) 2008-present Sonatype, Inc.
+ * All rights reserved. Includes the third-party code listed at http://links.sonatype.com/products/nexus/oss/attributions.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse Public License Version 1.0,
+ * which accompanies this distribution and is available at http://www.eclipse.org/legal/epl-v10.html.
+ *
+ * Sonatype Nexus (TM) Professional Version is available from Sonatype, Inc. "Sonatype" and "Sonatype Nexus" are trademarks
+ * of Sonatype, Inc. Apache Maven is a trademark of the Apache Software Foundation. M2eclipse is a trademark of the
+ * Eclipse Foundation. All other trademarks are the property of their respective owners.
+ */
+package org.sonatype.nexus.repository.maven.internal;
+
+import org.sonatype.goodies.testsupport.TestSupport;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * UT for {@link RecordKeySet}
+ */
+public class RecordKeySetTest
+    extends TestSupport
+{
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private RecordKeySet underTest;
+
+  @Before
+  public void setup() throws Exception {
+    underTest = new RecordKeySet(temporaryFolder.getRoot().toPath());
+  }
+
+  @Test
+  public void duplicatesAreRejected() throws Exception {
+    assertThat(underTest.add("org.foo|bar|1.0|n/a|jar"), is(true));
+    assertThat(underTest.add("org.foo|bar|1.0|sources|jar"), is(true));
+    assertThat(underTest.add("org.foo|bar|1.0|n/a|jar"), is(false));
+    assertThat(underTest.add(new StringBuilder("org.foo|bar|1.0|sources|jar")), is(false));
+    assertThat(underTest.size(), is(2L));
+  }
+
+  @Test
+  public void growsToHoldManyKeys() throws Exception {
+    long initialCapacity = 64 * 1024;
+    int count = 500_000;
+    for (int i = 0; i < count; i++) {
+      assertThat(underTest.add("org.foo|bar|" + i + "|n/a|jar"), is(true));
+    }
+    for (int i = 0; i < count; i += 7) {
+      assertThat(underTest.add("org.foo|bar|" + i + "|n/a|jar"), is(false));
+    }
+    assertThat(underTest.size(), is((long) count));
+    assertThat(underTest.capacity(), greaterThan(initialCapacity));
+    assertThat(underTest.capacity() * 3 / 4, greaterThan((long) count));
+    // the tables outgrew the heap, so were moved to mapped files
+    assertThat(underTest.capacity(), greaterThan(64L * RecordKeySet.HEAP_SLOTS));
+  }
+}
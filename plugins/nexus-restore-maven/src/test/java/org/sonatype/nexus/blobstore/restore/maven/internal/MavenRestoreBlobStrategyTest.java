@@ -23,6 +23,7 @@ import org.sonatype.nexus.blobstore.api.Blob;
 import org.sonatype.nexus.blobstore.api.BlobId;
 import org.sonatype.nexus.blobstore.api.BlobStore;
 import org.sonatype.nexus.blobstore.api.BlobStoreManager;
+import org.sonatype.nexus.blobstore.restore.RestoreBlobData;
 import org.sonatype.nexus.common.hash.HashAlgorithm;
 import org.sonatype.nexus.common.log.DryRunPrefix;
 import org.sonatype.nexus.common.node.NodeAccess;
@@ -45,10 +46,12 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -176,4 +179,16 @@ public class MavenRestoreBlobStrategyTest
 
     assertEquals("asset hashes do not match blob", expectedHashes, assetBlobCaptor.getValue().getHashes());
   }
+
+  @Test
+  public void testRestoreBatch() throws Exception {
+    when(blob.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(blobBytes));
+    RestoreBlobData blobData = new RestoreBlobData(blob, properties, "test", repositoryManager);
+
+    underTest.restore(asList(blobData, blobData), false);
+
+    verify(storageFacet).txSupplier();
+    verify(mavenFacet, times(2)).get(mavenPath);
+    verify(mavenFacet, times(2)).put(eq(mavenPath), any(), eq(null));
+  }
 }